@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.encoding;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of encoding and decoding a typical mixed-type row (int, long, double, String)
+ * with {@link MultiFieldEncoder} and {@link MultiFieldDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MultiFieldEncodingBenchmark{
+    private static final int NUM_ROWS=1024;
+
+    @Param({"4","16"})
+    public int numFields;
+
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private String[] strings;
+    private byte[][] encodedRows;
+    private MultiFieldEncoder encoder;
+    private MultiFieldDecoder decoder;
+
+    @Setup
+    public void setUp(){
+        Random random=new Random(0);
+        ints=new int[NUM_ROWS];
+        longs=new long[NUM_ROWS];
+        doubles=new double[NUM_ROWS];
+        strings=new String[NUM_ROWS];
+        for(int i=0;i<NUM_ROWS;i++){
+            ints[i]=random.nextInt();
+            longs[i]=random.nextLong();
+            doubles[i]=random.nextDouble();
+            strings[i]="value-"+random.nextInt(100000);
+        }
+        encoder=MultiFieldEncoder.create(numFields);
+        decoder=MultiFieldDecoder.create();
+        encodedRows=new byte[NUM_ROWS][];
+        for(int i=0;i<NUM_ROWS;i++){
+            encodedRows[i]=encodeRow(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void encode(Blackhole bh){
+        for(int i=0;i<NUM_ROWS;i++){
+            bh.consume(encodeRow(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void decode(Blackhole bh){
+        for(byte[] row : encodedRows){
+            decoder.set(row);
+            for(int f=0;f<numFields;f+=4){
+                bh.consume(decoder.decodeNextInt());
+                bh.consume(decoder.decodeNextLong());
+                bh.consume(decoder.decodeNextDouble());
+                bh.consume(decoder.decodeNextString());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void skip(Blackhole bh){
+        for(byte[] row : encodedRows){
+            decoder.set(row);
+            for(int f=0;f<numFields;f++){
+                bh.consume(decoder.skip());
+            }
+        }
+    }
+
+    /* ****************************************************************************************************/
+    /*private helper methods*/
+    private byte[] encodeRow(int i){
+        encoder.reset();
+        for(int f=0;f<numFields;f+=4){
+            encoder.encodeNext(ints[i])
+                    .encodeNext(longs[i])
+                    .encodeNext(doubles[i])
+                    .encodeNext(strings[i]);
+        }
+        return encoder.build();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.kvpair;
+
+import com.splicemachine.primitives.Bytes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-row operations which the write pipeline performs on every {@link KVPair}: sizing,
+ * ordering (when writes are sorted into regions), hashing (when writes are de-duplicated) and shallow cloning
+ * (when writes are decoded off the wire).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KVPairBenchmark{
+    private static final int NUM_PAIRS=1024;
+
+    @Param({"16","256"})
+    public int valueSize;
+
+    private KVPair[] pairs;
+
+    @Setup
+    public void setUp(){
+        Random random=new Random(0);
+        pairs=new KVPair[NUM_PAIRS];
+        for(int i=0;i<NUM_PAIRS;i++){
+            byte[] value=new byte[valueSize];
+            random.nextBytes(value);
+            pairs[i]=new KVPair(Bytes.toBytes(random.nextLong()),value,KVPair.Type.INSERT);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public long size(){
+        long size=0;
+        for(KVPair pair : pairs){
+            size+=pair.getSize();
+        }
+        return size;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public KVPair[] sort(){
+        KVPair[] copy=Arrays.copyOf(pairs,pairs.length);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public Set<KVPair> dedup(){
+        Set<KVPair> set=new HashSet<>(2*NUM_PAIRS);
+        set.addAll(Arrays.asList(pairs));
+        return set;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public void shallowClone(Blackhole bh){
+        for(KVPair pair : pairs){
+            bh.consume(pair.shallowClone());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.pipeline.callbuffer.RecordingCallBuffer;
+import com.splicemachine.pipeline.testsetup.MPipelineTestEnv;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.testenv.TestTransactionSetup;
+import com.splicemachine.storage.Partition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a transactional write of {@code rowsPerWrite} rows through the {@link WriteCoordinator}: the call
+ * buffer, the {@link BulkWriteAction} it flushes with, and the server-side write pipeline, SI checks and
+ * in-memory partition that the action's writes are applied to.
+ * <p>
+ * Every write adds another version of each row, so each iteration starts over with a fresh in-memory
+ * environment (and iterations are kept short) to keep the amount of stored data from growing without bound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BulkWriteActionBenchmark{
+    private static final byte[] TABLE=Bytes.toBytes("1424");
+
+    @Param({"1","1000"})
+    public int rowsPerWrite;
+
+    @Param({"64"})
+    public int valueSize;
+
+    private List<KVPair> rows;
+    private WriteCoordinator writeCoordinator;
+    private Partition partition;
+    private Txn txn;
+
+    @Setup(Level.Trial)
+    public void generateRows(){
+        Random random=new Random(0);
+        rows=new ArrayList<>(rowsPerWrite);
+        for(int i=0;i<rowsPerWrite;i++){
+            byte[] value=new byte[valueSize];
+            random.nextBytes(value);
+            rows.add(new KVPair(Bytes.toBytes(random.nextLong()),value,KVPair.Type.INSERT));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception{
+        MPipelineTestEnv env=new MPipelineTestEnv();
+        env.createTransactionalTable(TABLE);
+        writeCoordinator=env.writeCoordinator();
+        partition=writeCoordinator.getPartitionFactory().getTable(TABLE);
+        txn=new TestTransactionSetup(env,false).txnLifecycleManager.beginTransaction(TABLE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception{
+        txn.rollback();
+        partition.close();
+    }
+
+    @Benchmark
+    public void write() throws Exception{
+        try(RecordingCallBuffer<KVPair> buffer=writeCoordinator.synchronousWriteBuffer(partition,txn)){
+            for(KVPair row : rows){
+                buffer.add(row);
+            }
+            buffer.flushBufferAndWait();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.MOperationFactory;
+import com.splicemachine.si.impl.SimpleTxnOperationFactory;
+import com.splicemachine.si.impl.data.MExceptionFactory;
+import com.splicemachine.si.impl.txn.ActiveWriteTxn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic write batches shared by the pipeline benchmarks.
+ */
+class BulkWritesData{
+
+    private BulkWritesData(){}
+
+    static TxnOperationFactory operationFactory(){
+        return new SimpleTxnOperationFactory(MExceptionFactory.INSTANCE,new MOperationFactory(new IncrementingClock()));
+    }
+
+    static TxnView writeTxn(){
+        return new ActiveWriteTxn(1L,1L,Txn.ROOT_TRANSACTION,true,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+    }
+
+    /**
+     * @return {@code numRegions} BulkWrites of {@code rowsPerRegion} inserts each, with {@code valueSize}
+     * random bytes per row.
+     */
+    static BulkWrites bulkWrites(int numRegions,int rowsPerRegion,int valueSize){
+        Random random=new Random(0);
+        List<BulkWrite> bws=new ArrayList<>(numRegions);
+        for(int r=0;r<numRegions;r++){
+            Collection<KVPair> mutations=new ArrayList<>(rowsPerRegion);
+            for(int i=0;i<rowsPerRegion;i++){
+                byte[] value=new byte[valueSize];
+                random.nextBytes(value);
+                mutations.add(new KVPair(Bytes.toBytes(random.nextLong()),value,KVPair.Type.INSERT));
+            }
+            bws.add(new BulkWrite(mutations,"region"+r));
+        }
+        return new BulkWrites(bws,writeTxn());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of moving a {@link BulkWrites} across the wire with {@link PipelineEncoding}. Since
+ * decoding is lazy, {@link #decodeAndIterate(Blackhole)} walks every decoded {@link KVPair} to capture the
+ * full cost seen by the receiving side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PipelineEncodingBenchmark{
+
+    @Param({"1","16"})
+    public int numRegions;
+
+    @Param({"1000"})
+    public int rowsPerRegion;
+
+    @Param({"64"})
+    public int valueSize;
+
+    private TxnOperationFactory operationFactory;
+    private BulkWrites bulkWrites;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp(){
+        operationFactory=BulkWritesData.operationFactory();
+        bulkWrites=BulkWritesData.bulkWrites(numRegions,rowsPerRegion,valueSize);
+        encoded=PipelineEncoding.encode(operationFactory,bulkWrites);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        return PipelineEncoding.encode(operationFactory,bulkWrites);
+    }
+
+    @Benchmark
+    public void decodeAndIterate(Blackhole bh){
+        BulkWrites decoded=PipelineEncoding.decode(operationFactory,encoded);
+        for(BulkWrite bw : decoded.getBulkWrites()){
+            for(KVPair kvPair : bw.getMutations()){
+                bh.consume(kvPair);
+            }
+        }
+    }
+}
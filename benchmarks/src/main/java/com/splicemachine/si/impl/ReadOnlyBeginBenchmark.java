@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl;
+
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.impl.data.MExceptionFactory;
+import com.splicemachine.si.impl.hlc.HLCReadTimestampSource;
+import com.splicemachine.timestamp.api.TimestampSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the cost of beginning a top-level read-only transaction when its begin timestamp comes from
+ * the timestamp oracle, and when it comes from the local hybrid logical clock ({@link HLCReadTimestampSource}).
+ *
+ * The in-memory timestamp source has no network hop, so each call to the oracle is delayed by
+ * {@link #oracleLatencyMicros} to stand in for the round trip to the timestamp server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput,Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+public class ReadOnlyBeginBenchmark{
+
+    @Param({"oracle","hlc"})
+    public String timestampSource;
+
+    @Param({"0","200"})
+    public long oracleLatencyMicros;
+
+    @Param({"50"})
+    public long maxClockSkewMs;
+
+    private ClientTxnLifecycleManager lifecycleManager;
+
+    @Setup
+    public void setUp(){
+        TimestampSource oracle=new DelayedTimestampSource(new MemTimestampSource(),oracleLatencyMicros);
+        MemTxnStore txnStore=new MemTxnStore(new IncrementingClock(),oracle,MExceptionFactory.INSTANCE,1000);
+        lifecycleManager=new ClientTxnLifecycleManager(oracle,MExceptionFactory.INSTANCE);
+        lifecycleManager.setTxnStore(txnStore);
+        lifecycleManager.setKeepAliveScheduler(new ManualKeepAliveScheduler(txnStore));
+        if("hlc".equals(timestampSource))
+            lifecycleManager.setReadOnlyTimestampSource(new HLCReadTimestampSource(oracle,maxClockSkewMs));
+    }
+
+    @Benchmark
+    public Txn beginReadOnly() throws IOException{
+        return lifecycleManager.beginTransaction();
+    }
+
+    private static class DelayedTimestampSource implements TimestampSource{
+        private final TimestampSource delegate;
+        private final long delayNanos;
+
+        DelayedTimestampSource(TimestampSource delegate,long delayMicros){
+            this.delegate=delegate;
+            this.delayNanos=TimeUnit.MICROSECONDS.toNanos(delayMicros);
+        }
+
+        @Override
+        public long nextTimestamp(){
+            if(delayNanos>0)
+                LockSupport.parkNanos(delayNanos);
+            return delegate.nextTimestamp();
+        }
+
+        @Override public void rememberTimestamp(long timestamp){ delegate.rememberTimestamp(timestamp); }
+        @Override public long retrieveTimestamp(){ return delegate.retrieveTimestamp(); }
+        @Override public void shutdown(){ delegate.shutdown(); }
+    }
+}
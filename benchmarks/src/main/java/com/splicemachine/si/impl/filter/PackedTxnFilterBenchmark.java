@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.filter;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.ClientTxnLifecycleManager;
+import com.splicemachine.si.impl.ManualKeepAliveScheduler;
+import com.splicemachine.si.impl.MemTimestampSource;
+import com.splicemachine.si.impl.MemTxnStore;
+import com.splicemachine.si.impl.SimpleTxnFilter;
+import com.splicemachine.si.impl.data.MExceptionFactory;
+import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
+import com.splicemachine.si.impl.store.CompletedTxnCacheSupplier;
+import com.splicemachine.storage.CellType;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.EntryDecoder;
+import com.splicemachine.storage.EntryEncoder;
+import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.storage.MCell;
+import com.splicemachine.timestamp.api.TimestampSource;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-row cost of transactional filtering with a {@link PackedTxnFilter}, which is what
+ * {@code SIFilterPacked} delegates to on the region server.
+ *
+ * Rows are written by a set of committed transactions from the in-memory transaction store. When
+ * {@link #resolved} is true, every version carries a commit timestamp cell (so visibility is decided
+ * from the row alone); otherwise each version must be looked up through the transaction supplier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PackedTxnFilterBenchmark{
+    private static final int NUM_ROWS=1024;
+    private static final int NUM_WRITERS=64;
+    private static final byte[] TABLE=Bytes.toBytes("1424");
+
+    @Param({"true","false"})
+    public boolean resolved;
+
+    @Param({"1","4"})
+    public int versionsPerRow;
+
+    private DataCell[][] rows;
+    private Txn reader;
+    private TxnSupplier txnSupplier;
+
+    @Setup
+    public void setUp() throws IOException{
+        TimestampSource timestampSource=new MemTimestampSource();
+        MemTxnStore txnStore=new MemTxnStore(new IncrementingClock(),timestampSource,MExceptionFactory.INSTANCE,1000);
+        ClientTxnLifecycleManager lifecycleManager=new ClientTxnLifecycleManager(timestampSource,MExceptionFactory.INSTANCE);
+        lifecycleManager.setTxnStore(txnStore);
+        lifecycleManager.setKeepAliveScheduler(new ManualKeepAliveScheduler(txnStore));
+        txnSupplier=new CompletedTxnCacheSupplier(txnStore,1024,16);
+
+        Txn[] writers=new Txn[NUM_WRITERS];
+        for(int i=0;i<NUM_WRITERS;i++){
+            writers[i]=lifecycleManager.beginTransaction(TABLE);
+            writers[i].commit();
+        }
+        reader=lifecycleManager.beginTransaction();
+
+        BitSet setCols=new BitSet(2);
+        setCols.set(0);
+        setCols.set(1);
+        BitSet scalarFields=new BitSet(2);
+        scalarFields.set(0);
+        EntryEncoder encoder=EntryEncoder.create(new KryoPool(1),2,setCols,scalarFields,new BitSet(),new BitSet());
+
+        Random random=new Random(0);
+        rows=new DataCell[NUM_ROWS][];
+        for(int r=0;r<NUM_ROWS;r++){
+            byte[] key=Bytes.toBytes(r);
+            List<DataCell> cells=new ArrayList<>();
+            //versions are sorted newest first within each column, and the commit timestamp column sorts first
+            Txn[] versions=new Txn[versionsPerRow];
+            for(int v=0;v<versionsPerRow;v++){
+                versions[v]=writers[(r+versionsPerRow-1-v)%NUM_WRITERS];
+            }
+            if(resolved){
+                for(Txn version : versions){
+                    cells.add(new MCell(key,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,
+                            version.getTxnId(),Bytes.toBytes(version.getCommitTimestamp()),CellType.COMMIT_TIMESTAMP));
+                }
+            }
+            for(Txn version : versions){
+                MultiFieldEncoder fields=encoder.getEntryEncoder();
+                fields.reset();
+                fields.encodeNext(random.nextLong()).encodeNext("value-"+random.nextInt(100000));
+                cells.add(new MCell(key,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,
+                        version.getTxnId(),encoder.encode(),CellType.USER_DATA));
+            }
+            rows[r]=cells.toArray(new DataCell[cells.size()]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void filterRows(Blackhole bh) throws IOException{
+        /*
+         * A new filter is created for each scan, so the per-scan caches start out empty, as
+         * they would for a fresh scanner
+         */
+        SimpleTxnFilter simpleFilter=new SimpleTxnFilter(null,reader,NoOpReadResolver.INSTANCE,txnSupplier);
+        HRowAccumulator accumulator=new HRowAccumulator(EntryPredicateFilter.emptyPredicate(),new EntryDecoder(),false);
+        PackedTxnFilter filter=new PackedTxnFilter(simpleFilter,accumulator);
+        for(DataCell[] row : rows){
+            filter.nextRow();
+            for(DataCell cell : row){
+                bh.consume(filter.filterCell(cell));
+            }
+            if(!filter.filterRow())
+                bh.consume(filter.produceAccumulatedResult());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of decoding packed rows with {@link EntryDecoder}, both when reading every column
+ * and when skipping forward to a single column (as a projection or a predicate would).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntryDecoderBenchmark{
+    private static final int NUM_ROWS=1024;
+
+    @Param({"8","64"})
+    public int numColumns;
+
+    private byte[][] encodedRows;
+    private EntryDecoder entryDecoder;
+
+    @Setup
+    public void setUp() throws IOException{
+        BitSet setCols=new BitSet(numColumns);
+        BitSet scalarFields=new BitSet(numColumns);
+        for(int i=0;i<numColumns;i++){
+            setCols.set(i);
+            if(i%2==0)
+                scalarFields.set(i);
+        }
+        EntryEncoder encoder=EntryEncoder.create(new KryoPool(1),numColumns,setCols,scalarFields,new BitSet(),new BitSet());
+        Random random=new Random(0);
+        encodedRows=new byte[NUM_ROWS][];
+        for(int r=0;r<NUM_ROWS;r++){
+            MultiFieldEncoder fieldEncoder=encoder.getEntryEncoder();
+            fieldEncoder.reset();
+            for(int i=0;i<numColumns;i++){
+                if(i%2==0)
+                    fieldEncoder.encodeNext(random.nextLong());
+                else
+                    fieldEncoder.encodeNext("column-"+random.nextInt(100000));
+            }
+            encodedRows[r]=encoder.encode();
+        }
+        entryDecoder=new EntryDecoder();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void decodeAllColumns(Blackhole bh) throws IOException{
+        for(byte[] row : encodedRows){
+            entryDecoder.set(row);
+            MultiFieldDecoder decoder=entryDecoder.getEntryDecoder();
+            for(int i=0;i<numColumns;i++){
+                if(i%2==0)
+                    bh.consume(decoder.decodeNextLong());
+                else
+                    bh.consume(decoder.decodeNextString());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public void seekToLastColumn(Blackhole bh) throws IOException{
+        int last=numColumns-1;
+        for(byte[] row : encodedRows){
+            entryDecoder.set(row);
+            MultiFieldDecoder decoder=entryDecoder.getEntryDecoder();
+            for(int i=0;i<last;i++){
+                entryDecoder.seekForward(decoder,i);
+            }
+            if(entryDecoder.isSet(last))
+                bh.consume(decoder.decodeNextString());
+        }
+    }
+}
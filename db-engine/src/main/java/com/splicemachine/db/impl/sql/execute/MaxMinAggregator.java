@@ -72,6 +72,14 @@ public final class MaxMinAggregator extends OrderableAggregator {
 		}
 	}
 
+	/**
+	 * @return true if this aggregator computes MAX(), false for MIN()
+	 */
+	public boolean isMax()
+	{
+		return isMax;
+	}
+
 	/**
 	 * @return ExecAggregator the new aggregator
 	 */
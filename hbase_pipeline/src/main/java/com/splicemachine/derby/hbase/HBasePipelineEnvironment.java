@@ -34,6 +34,7 @@ import com.splicemachine.pipeline.api.PipelineMeter;
 import com.splicemachine.pipeline.api.WritePipelineFactory;
 import com.splicemachine.pipeline.client.RpcChannelFactory;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
+import com.splicemachine.pipeline.utils.EncodingBufferPool;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
 import com.splicemachine.pipeline.utils.SimplePipelineCompressor;
 import com.splicemachine.si.api.data.ExceptionFactory;
@@ -49,6 +50,7 @@ import com.splicemachine.si.data.hbase.coprocessor.HBaseSIEnvironment;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.driver.SIEnvironment;
 import com.splicemachine.storage.DataFilterFactory;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.PartitionInfoCache;
 import com.splicemachine.timestamp.api.TimestampSource;
 import com.splicemachine.utils.kryo.KryoPool;
@@ -96,7 +98,8 @@ public class HBasePipelineEnvironment implements PipelineEnvironment{
         KryoPool kryoPool=new KryoPool(pipelineConfiguration.getPipelineKryoPoolSize());
         kryoPool.setKryoRegistry(new PipelineKryoRegistry());
         //TODO -sf- enable snappy compression here
-        this.compressor = new SimplePipelineCompressor(kryoPool,env.getSIDriver().getOperationFactory());
+        EncodingBufferPool bufferPool=new EncodingBufferPool(pipelineConfiguration.getEncodingBufferPoolBytes());
+        this.compressor = new SimplePipelineCompressor(kryoPool,env.getSIDriver().getOperationFactory(),bufferPool);
 
         RpcChannelFactory channelFactory = ChannelFactoryService.loadChannelFactory(this.pipelineConfiguration);
         this.writerFactory = new CoprocessorWriterFactory(compressor,partitionInfoCache(),pipelineExceptionFactory,channelFactory,
@@ -121,6 +124,7 @@ public class HBasePipelineEnvironment implements PipelineEnvironment{
     @Override public TimestampSource timestampSource(){ return delegate.timestampSource(); }
     @Override public TxnSupplier txnSupplier(){ return delegate.txnSupplier(); }
     @Override public RollForward rollForward(){ return delegate.rollForward(); }
+    @Override public RollForward rollForward(Partition partition){ return delegate.rollForward(partition); }
     @Override public TxnOperationFactory operationFactory(){ return delegate.operationFactory(); }
     @Override public SIDriver getSIDriver(){ return delegate.getSIDriver(); }
 
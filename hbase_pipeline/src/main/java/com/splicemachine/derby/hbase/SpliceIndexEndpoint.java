@@ -137,7 +137,8 @@ public class SpliceIndexEndpoint extends SpliceMessage.SpliceIndexService implem
                           SpliceMessage.BulkWriteRequest request,
                           RpcCallback<SpliceMessage.BulkWriteResponse> done){
         try{
-            byte[] bytes=bulkWrites(request.getBytes().toByteArray());
+            //decode straight out of the request, so that the KVPairs are slices over the received bytes
+            byte[] bytes=bulkWrites(ZeroCopyLiteralByteString.zeroCopyGetBytes(request.getBytes()));
             if(bytes==null||bytes.length<=0)
                 LOG.error("No bytes constructed for the result!");
 
@@ -26,6 +26,7 @@ import org.apache.hadoop.io.compress.SnappyCodec;
 import org.apache.log4j.Logger;
 
 import com.splicemachine.access.HConfiguration;
+import com.splicemachine.pipeline.utils.EncodingBufferPool;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
 import com.splicemachine.utils.SpliceLogUtils;
 
@@ -96,6 +97,23 @@ public class SnappyPipelineCompressor implements PipelineCompressor{
         return baos.toByteArray();
     }
 
+    @Override
+    public EncodingBufferPool.Buffer compressToBuffer(Object o) throws IOException{
+        EncodingBufferPool.Buffer d = delegate.compressToBuffer(o);
+        if(!supportsNative) return d;
+        try{
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(d.length());
+            OutputStream os = snappy.createOutputStream(baos);
+            os.write(d.array(),0,d.length());
+            os.flush();
+            os.close();
+            byte[] compressed = baos.toByteArray();
+            return EncodingBufferPool.unpooled(compressed,compressed.length);
+        }finally{
+            d.release();
+        }
+    }
+
     @Override
     public <T> T decompress(byte[] bytes,Class<T> clazz) throws IOException{
         throw new UnsupportedOperationException("IMPLEMENT");
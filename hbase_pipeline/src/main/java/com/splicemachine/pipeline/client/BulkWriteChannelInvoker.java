@@ -21,6 +21,7 @@ import com.splicemachine.access.api.WrongPartitionException;
 import com.splicemachine.access.hbase.HBaseTableInfoFactory;
 import com.splicemachine.coprocessor.SpliceMessage;
 import com.splicemachine.pipeline.api.PipelineExceptionFactory;
+import com.splicemachine.pipeline.utils.EncodingBufferPool;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
 import com.splicemachine.storage.PartitionInfoCache;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -67,16 +68,23 @@ public class BulkWriteChannelInvoker {
         CoprocessorRpcChannel channel = channelFactory.newChannel(tableName,write.getRegionKey());
 
         boolean cacheCheck = false;
+        EncodingBufferPool.Buffer requestBuffer = null;
         try {
             SpliceMessage.SpliceIndexService service = ProtobufUtil.newServiceStub(SpliceMessage.SpliceIndexService.class, channel);
             SpliceMessage.BulkWriteRequest.Builder builder = SpliceMessage.BulkWriteRequest.newBuilder();
-            byte[] requestBytes = compressor.compress(write);
-            builder.setBytes(ZeroCopyLiteralByteString.wrap(requestBytes));
+            requestBuffer = compressor.compressToBuffer(write);
+            builder.setBytes(ZeroCopyLiteralByteString.wrap(requestBuffer.array(),0,requestBuffer.length()));
             SpliceMessage.BulkWriteRequest bwr = builder.build();
 
             BlockingRpcCallback<SpliceMessage.BulkWriteResponse> doneCallback =new BlockingRpcCallback<>();
             ServerRpcController controller = new ServerRpcController();
             service.bulkWrite(controller, bwr, doneCallback);
+            /*
+             * The channel serializes the request before the call returns, so the buffer can go back to the
+             * pool now rather than being held while we decode the response
+             */
+            requestBuffer.release();
+            requestBuffer = null;
             if (controller.failed()){
                 IOException error=controller.getFailedOn();
                 clearCacheIfNeeded(error);
@@ -97,6 +105,9 @@ public class BulkWriteChannelInvoker {
         } catch (Exception e) {
         	if (!cacheCheck) clearCacheIfNeeded(e);
             throw pef.processRemoteException(e);
+        } finally {
+            if(requestBuffer!=null)
+                requestBuffer.release();
         }
     }
 
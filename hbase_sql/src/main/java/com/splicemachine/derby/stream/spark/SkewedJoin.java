@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.derby.impl.SpliceSpark;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.stats.frequency.FrequencyCounter;
+import com.splicemachine.stats.frequency.FrequencyCounters;
+import com.splicemachine.stats.frequency.FrequencyEstimate;
+import org.apache.log4j.Logger;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.api.java.function.PairFunction;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shuffle hash join which spreads skewed join keys over several partitions.
+ *
+ * A sample of the keys of the left side is taken first, and the frequent keys of each sampled partition are found
+ * with a <em>SpaceSaver</em> counter. A key is skewed when its share of the sample is at least
+ * {@link SConfiguration#getSparkJoinSkewFactor()} times the share of a single partition. Each left row of a
+ * skewed key is then salted with one of {@code n} values, and each matching right row is replicated once for each
+ * of those {@code n} values, so that the rows of that key are joined by {@code n} tasks instead of one. Keys which
+ * are not skewed are salted with 0 and joined as they would be by an ordinary hash join.
+ */
+class SkewedJoin{
+    private static final Logger LOG=Logger.getLogger(SkewedJoin.class);
+
+    private SkewedJoin(){}
+
+    static <K,V,W> JavaPairRDD<K,Tuple2<V,W>> join(JavaPairRDD<K,V> left,JavaPairRDD<K,W> right,OperationContext context){
+        SConfiguration config=EngineDriver.driver().getConfiguration();
+        double sampleFraction=config.getSparkJoinSkewSampleFraction();
+        int numPartitions=Math.max(left.getNumPartitions(),right.getNumPartitions());
+        if(sampleFraction<=0 || numPartitions<2)
+            return left.join(right);
+
+        double skewFactor=config.getSparkJoinSkewFactor();
+        int maxCounters=Math.max(16,(int)Math.ceil(2*numPartitions/skewFactor));
+        List<Tuple2<Long,List<Tuple2<K,Long>>>> samples=left.keys()
+                .sample(false,Math.min(sampleFraction,1d))
+                .mapPartitions(new SampleKeysFunction<K>(maxCounters))
+                .collect();
+        Map<K,Integer> skewedKeys=skewedKeys(samples,numPartitions,skewFactor,config.getSparkJoinMaxSalts());
+        if(skewedKeys.isEmpty())
+            return left.join(right);
+
+        if(LOG.isDebugEnabled())
+            LOG.debug("Spreading "+skewedKeys.size()+" skewed join keys over "+numPartitions+" partitions");
+        if(context!=null)
+            context.recordSkewedJoinKeys(skewedKeys.size());
+        Broadcast<Map<K,Integer>> salts=SpliceSpark.getContext().broadcast(skewedKeys);
+        JavaPairRDD<Tuple2<K,Integer>,V> saltedLeft=left.mapPartitionsToPair(new SaltFunction<K,V>(salts),true);
+        JavaPairRDD<Tuple2<K,Integer>,W> saltedRight=right.flatMapToPair(new ReplicateFunction<K,W>(salts,context));
+        return saltedLeft.join(saltedRight,numPartitions).mapToPair(new UnsaltFunction<K,Tuple2<V,W>>());
+    }
+
+    /**
+     * @param samples for each sampled partition, the number of sampled keys and the estimated count of its frequent keys
+     * @return the number of salts to use for each skewed key
+     */
+    static <K> Map<K,Integer> skewedKeys(List<Tuple2<Long,List<Tuple2<K,Long>>>> samples,int numPartitions,double skewFactor,int maxSalts){
+        long total=0;
+        Map<K,Long> counts=new HashMap<>();
+        for(Tuple2<Long,List<Tuple2<K,Long>>> sample : samples){
+            total+=sample._1();
+            for(Tuple2<K,Long> estimate : sample._2()){
+                Long count=counts.get(estimate._1());
+                counts.put(estimate._1(),count==null?estimate._2():count+estimate._2());
+            }
+        }
+        if(total<numPartitions || maxSalts<2)
+            return Collections.emptyMap();
+
+        double threshold=total*skewFactor/numPartitions;
+        Map<K,Integer> skewed=new HashMap<>();
+        for(Map.Entry<K,Long> count : counts.entrySet()){
+            if(count.getValue()<threshold)
+                continue;
+            //spread the key over as many partitions as its share of the sample would fill
+            int salts=(int)Math.min(maxSalts,Math.ceil((double)count.getValue()*numPartitions/total));
+            if(salts>1)
+                skewed.put(count.getKey(),salts);
+        }
+        return skewed;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper classes*/
+
+    /**
+     * Counts the frequent keys of a sampled partition. Keys which cannot be ordered are not counted, so a join
+     * on such keys is never salted.
+     */
+    private static class SampleKeysFunction<K> implements FlatMapFunction<Iterator<K>,Tuple2<Long,List<Tuple2<K,Long>>>>, Serializable{
+        private final int maxCounters;
+
+        SampleKeysFunction(int maxCounters){
+            this.maxCounters=maxCounters;
+        }
+
+        @Override
+        public Iterator<Tuple2<Long,List<Tuple2<K,Long>>>> call(Iterator<K> keys) throws Exception{
+            FrequencyCounter<K> counter=FrequencyCounters.counter(new NaturalComparator<K>(),maxCounters);
+            long sampled=0;
+            while(keys.hasNext()){
+                K key=keys.next();
+                if(!(key instanceof Comparable))
+                    return Collections.emptyIterator();
+                counter.update(key);
+                sampled++;
+            }
+            List<Tuple2<K,Long>> frequent=new ArrayList<>();
+            if(sampled>0){
+                for(FrequencyEstimate<K> estimate : counter.frequentElements(maxCounters).allFrequentElements()){
+                    frequent.add(new Tuple2<K,Long>(estimate.getValue(),estimate.count()));
+                }
+            }
+            return Collections.singletonList(new Tuple2<>(sampled,frequent)).iterator();
+        }
+    }
+
+    private static class NaturalComparator<K> implements Comparator<K>, Serializable{
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(K o1,K o2){
+            return ((Comparable<K>)o1).compareTo(o2);
+        }
+    }
+
+    /**
+     * Salts the left side. The rows of a skewed key are salted round-robin, starting from the partition's index
+     * so that the salts of a recomputed partition are the same as those of the original.
+     */
+    private static class SaltFunction<K,V> implements PairFlatMapFunction<Iterator<Tuple2<K,V>>,Tuple2<K,Integer>,V>, Serializable{
+        private final Broadcast<Map<K,Integer>> salts;
+
+        SaltFunction(Broadcast<Map<K,Integer>> salts){
+            this.salts=salts;
+        }
+
+        @Override
+        public Iterator<Tuple2<Tuple2<K,Integer>,V>> call(final Iterator<Tuple2<K,V>> rows) throws Exception{
+            final Map<K,Integer> skewedKeys=salts.value();
+            final TaskContext task=TaskContext.get();
+            return new Iterator<Tuple2<Tuple2<K,Integer>,V>>(){
+                private int next=task==null?0:task.partitionId();
+
+                @Override
+                public boolean hasNext(){
+                    return rows.hasNext();
+                }
+
+                @Override
+                public Tuple2<Tuple2<K,Integer>,V> next(){
+                    Tuple2<K,V> row=rows.next();
+                    Integer n=skewedKeys.get(row._1());
+                    int salt=0;
+                    if(n!=null){
+                        salt=(next & Integer.MAX_VALUE)%n;
+                        next++;
+                    }
+                    return new Tuple2<>(new Tuple2<>(row._1(),salt),row._2());
+                }
+
+                @Override
+                public void remove(){
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Replicates each right row of a skewed key once for each of the key's salts.
+     */
+    private static class ReplicateFunction<K,W> implements PairFlatMapFunction<Tuple2<K,W>,Tuple2<K,Integer>,W>, Serializable{
+        private final Broadcast<Map<K,Integer>> salts;
+        private final OperationContext context;
+
+        ReplicateFunction(Broadcast<Map<K,Integer>> salts,OperationContext context){
+            this.salts=salts;
+            this.context=context;
+        }
+
+        @Override
+        public Iterator<Tuple2<Tuple2<K,Integer>,W>> call(Tuple2<K,W> row) throws Exception{
+            Integer n=salts.value().get(row._1());
+            if(n==null)
+                return Collections.singletonList(new Tuple2<>(new Tuple2<>(row._1(),0),row._2())).iterator();
+            List<Tuple2<Tuple2<K,Integer>,W>> replicas=new ArrayList<>(n);
+            for(int salt=0;salt<n;salt++){
+                replicas.add(new Tuple2<>(new Tuple2<>(row._1(),salt),row._2()));
+            }
+            if(context!=null)
+                context.recordReplicatedJoinRows(n-1);
+            return replicas.iterator();
+        }
+    }
+
+    private static class UnsaltFunction<K,T> implements PairFunction<Tuple2<Tuple2<K,Integer>,T>,K,T>, Serializable{
+        @Override
+        public Tuple2<K,T> call(Tuple2<Tuple2<K,Integer>,T> row) throws Exception{
+            return new Tuple2<>(row._1()._1(),row._2());
+        }
+    }
+}
@@ -54,6 +54,10 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
     public Accumulator<Long> rowsJoinedLeft;
     public Accumulator<Long> rowsJoinedRight;
     public Accumulator<Long> rowsProduced;
+    public Accumulator<Long> skewedJoinKeys;
+    public Accumulator<Long> replicatedJoinRows;
+    public Accumulator<Long> baseRowPrefetches;
+    public Accumulator<Long> baseRowsPrefetched;
     public Accumulator<Long> rowsFiltered;
     public Accumulator<Long> rowsWritten;
     public Accumulator<Long> retryAttempts;
@@ -94,6 +98,10 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         this.rowsJoinedLeft=SpliceSpark.getContext().accumulator(0l,baseName+" rows joined left",param);
         this.rowsJoinedRight=SpliceSpark.getContext().accumulator(0l,baseName+" rows joined right",param);
         this.rowsProduced=SpliceSpark.getContext().accumulator(0l,baseName+" rows produced",param);
+        this.skewedJoinKeys=SpliceSpark.getContext().accumulator(0l,baseName+" skewed join keys",param);
+        this.replicatedJoinRows=SpliceSpark.getContext().accumulator(0l,baseName+" rows replicated for skewed join keys",param);
+        this.baseRowPrefetches=SpliceSpark.getContext().accumulator(0l,baseName+" base row prefetches",param);
+        this.baseRowsPrefetched=SpliceSpark.getContext().accumulator(0l,baseName+" base rows prefetched",param);
 
         this.retryAttempts =SpliceSpark.getContext().accumulator(0L, "(WritePipeline) retry attempts", param);
         this.regionTooBusyExceptions =SpliceSpark.getContext().accumulator(0L, "(WritePipeline) region too busy exceptions", param);
@@ -123,6 +131,10 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         this.rowsJoinedLeft=SpliceSpark.getContext().accumulator(0l,"rows joined left",param);
         this.rowsJoinedRight=SpliceSpark.getContext().accumulator(0l,"rows joined right",param);
         this.rowsProduced=SpliceSpark.getContext().accumulator(0l,"rows produced",param);
+        this.skewedJoinKeys=SpliceSpark.getContext().accumulator(0l,"skewed join keys",param);
+        this.replicatedJoinRows=SpliceSpark.getContext().accumulator(0l,"rows replicated for skewed join keys",param);
+        this.baseRowPrefetches=SpliceSpark.getContext().accumulator(0l,"base row prefetches",param);
+        this.baseRowsPrefetched=SpliceSpark.getContext().accumulator(0l,"base rows prefetched",param);
 
         this.retryAttempts =SpliceSpark.getContext().accumulator(0L, "(WritePipeline) retry attempts", param);
         this.regionTooBusyExceptions =SpliceSpark.getContext().accumulator(0L, "(WritePipeline) region too busy exceptions", param);
@@ -160,6 +172,10 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         out.writeObject(rowsJoinedLeft);
         out.writeObject(rowsJoinedRight);
         out.writeObject(rowsProduced);
+        out.writeObject(skewedJoinKeys);
+        out.writeObject(replicatedJoinRows);
+        out.writeObject(baseRowPrefetches);
+        out.writeObject(baseRowsPrefetched);
         out.writeObject(badRecordsAccumulator);
         out.writeObject(thrownErrorsRows);
         out.writeObject(retriedRows);
@@ -195,6 +211,10 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         rowsJoinedLeft=(Accumulator<Long>)in.readObject();
         rowsJoinedRight=(Accumulator<Long>)in.readObject();
         rowsProduced=(Accumulator<Long>)in.readObject();
+        skewedJoinKeys=(Accumulator<Long>)in.readObject();
+        replicatedJoinRows=(Accumulator<Long>)in.readObject();
+        baseRowPrefetches=(Accumulator<Long>)in.readObject();
+        baseRowsPrefetched=(Accumulator<Long>)in.readObject();
         badRecordsAccumulator = (Accumulable<BadRecordsRecorder,String>) in.readObject();
 
         thrownErrorsRows=(Accumulator<Long>)in.readObject();
@@ -340,6 +360,22 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         rowsJoinedRight.add(1l);
     }
 
+    @Override
+    public void recordSkewedJoinKeys(long keys){
+        skewedJoinKeys.add(keys);
+    }
+
+    @Override
+    public void recordReplicatedJoinRows(long rows){
+        replicatedJoinRows.add(rows);
+    }
+
+    @Override
+    public void recordBaseRowPrefetch(long rows){
+        baseRowPrefetches.add(1l);
+        baseRowsPrefetched.add(rows);
+    }
+
     @Override
     public void recordProduced(){
         rowsProduced.add(1l);
@@ -161,6 +161,13 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
         return new SparkPairDataSet<>(rdd1);
     }
 
+    @Override
+    public <W> PairDataSet<K, Tuple2<V, W>> hashJoin(PairDataSet<K, W> rightDataSet,String name,OperationContext context){
+        JavaPairRDD<K, Tuple2<V, W>> rdd1=SkewedJoin.join(rdd,((SparkPairDataSet<K, W>)rightDataSet).rdd,context);
+        rdd1.setName(name);
+        return new SparkPairDataSet<>(rdd1);
+    }
+
     private <W> Multimap<K, W> generateMultimap(JavaPairRDD<K, W> rightPairDataSet){
         Multimap<K, W> returnValue=ArrayListMultimap.create();
         List<Tuple2<K, W>> value=rightPairDataSet.collect();
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.spark;
+
+import org.junit.Assert;
+import org.junit.Test;
+import scala.Tuple2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class SkewedJoinTest{
+
+    @Test
+    public void testFindsSkewedKeysAcrossPartitions() throws Exception{
+        //"hot" holds half of the sample, split over two sampled partitions
+        List<Tuple2<Long,List<Tuple2<String,Long>>>> samples=Arrays.asList(
+                sample(500L,new Tuple2<>("hot",250L),new Tuple2<>("warm",10L)),
+                sample(500L,new Tuple2<>("hot",250L),new Tuple2<>("cold",1L)));
+        Map<String,Integer> skewed=SkewedJoin.skewedKeys(samples,16,4d,32);
+        Assert.assertEquals("Incorrect skewed keys",Collections.singleton("hot"),skewed.keySet());
+        Assert.assertEquals("Incorrect number of salts",8,skewed.get("hot").intValue());
+    }
+
+    @Test
+    public void testSaltsAreBounded() throws Exception{
+        List<Tuple2<Long,List<Tuple2<String,Long>>>> samples=Collections.singletonList(
+                sample(1000L,new Tuple2<>("hot",1000L)));
+        Map<String,Integer> skewed=SkewedJoin.skewedKeys(samples,64,4d,8);
+        Assert.assertEquals("Incorrect number of salts",8,skewed.get("hot").intValue());
+    }
+
+    @Test
+    public void testUniformKeysAreNotSkewed() throws Exception{
+        List<Tuple2<Long,List<Tuple2<String,Long>>>> samples=Collections.singletonList(
+                sample(100L,new Tuple2<>("a",25L),new Tuple2<>("b",25L),new Tuple2<>("c",25L),new Tuple2<>("d",25L)));
+        Assert.assertTrue("No key should be skewed",SkewedJoin.skewedKeys(samples,4,4d,32).isEmpty());
+    }
+
+    @SafeVarargs
+    private static Tuple2<Long,List<Tuple2<String,Long>>> sample(long total,Tuple2<String,Long>... frequent){
+        return new Tuple2<>(total,Arrays.asList(frequent));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.hbase;
+
+import com.splicemachine.storage.EntryAggregator;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.regionserver.HBasePlatformUtils;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Aggregating region scanner which reads through the {@code ScannerContext} of each call, so that the rows it
+ * aggregates count towards the size and time limits of the RPC, and it returns (allowing a heartbeat to be sent)
+ * once any of them has been reached.
+ */
+public class AggregatingRegionScanner extends AbstractAggregatingRegionScanner{
+    private ScannerContext scannerContext;
+
+    public AggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator){
+        super(delegate,aggregator);
+    }
+
+    public AggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator,int maxRows,int maxGroups){
+        super(delegate,aggregator,maxRows,maxGroups);
+    }
+
+    @Override
+    public int getBatch(){
+        return getDelegate().getBatch();
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> result,ScannerContext scannerContext) throws IOException{
+        this.scannerContext=scannerContext;
+        try{
+            return nextRaw(result);
+        }finally{
+            this.scannerContext=null;
+        }
+    }
+
+    @Override
+    public boolean next(List<Cell> result,ScannerContext scannerContext) throws IOException{
+        return nextRaw(result,scannerContext);
+    }
+
+    @Override
+    protected boolean nextRow(List<Cell> rowCells) throws IOException{
+        if(scannerContext==null)
+            return super.nextRow(rowCells);
+        return getDelegate().nextRaw(rowCells,scannerContext);
+    }
+
+    @Override
+    protected boolean limitReached(){
+        return scannerContext!=null && HBasePlatformUtils.scannerLimitReached(scannerContext);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.hbase;
+
+import com.splicemachine.storage.EntryAggregator;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+
+/**
+ * Aggregating region scanner for HBase versions without a {@code ScannerContext}, which only bounds each call
+ * by the number of rows and groups it aggregates.
+ */
+public class AggregatingRegionScanner extends AbstractAggregatingRegionScanner{
+    public AggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator){
+        super(delegate,aggregator);
+    }
+
+    public AggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator,int maxRows,int maxGroups){
+        super(delegate,aggregator,maxRows,maxGroups);
+    }
+}
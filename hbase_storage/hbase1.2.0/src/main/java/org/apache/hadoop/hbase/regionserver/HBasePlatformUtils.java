@@ -76,4 +76,12 @@ public class HBasePlatformUtils{
         return scannerContext.setScannerState(ScannerContext.NextState.BATCH_LIMIT_REACHED).hasMoreValues();
     }
 
+    /**
+     * @return true if the size or time limit of {@code scannerContext} has been reached, checked between rows
+     */
+    public static boolean scannerLimitReached(ScannerContext scannerContext) {
+        return scannerContext.checkSizeLimit(ScannerContext.LimitScope.BETWEEN_ROWS)
+                || scannerContext.checkTimeLimit(ScannerContext.LimitScope.BETWEEN_ROWS);
+    }
+
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.hbase;
+
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.EntryAggregator;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decorator for an (SI-filtered) region scanner which folds every visible row into an {@link EntryAggregator},
+ * rather than returning it.
+ *
+ * Each call to {@code next} aggregates a bounded number of rows (stopping early once the aggregator holds too many
+ * groups, or the scanner context of the call has reached one of its limits), and then returns a single row holding
+ * the partial aggregate of each group seen by that call as a cell in the {@link SIConstants#AGGREGATE_COLUMN_BYTES}
+ * column. A region may therefore return several partials for the same group, which the client merges. Each
+ * returned row has the key of the last row aggregated into it, so a client which has to re-open its scanner will
+ * resume after those rows. A call which aggregates no rows returns nothing.
+ */
+public abstract class AbstractAggregatingRegionScanner implements RegionScanner{
+    static final int DEFAULT_MAX_ROWS=8192;
+    static final int DEFAULT_MAX_GROUPS=1024;
+
+    private final RegionScanner delegate;
+    private final EntryAggregator aggregator;
+    private final int maxRows;
+    private final int maxGroups;
+    private final List<Cell> rowCells=new ArrayList<>();
+    private boolean done=false;
+
+    public AbstractAggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator){
+        this(delegate,aggregator,DEFAULT_MAX_ROWS,DEFAULT_MAX_GROUPS);
+    }
+
+    public AbstractAggregatingRegionScanner(RegionScanner delegate,EntryAggregator aggregator,int maxRows,int maxGroups){
+        this.delegate=delegate;
+        this.aggregator=aggregator;
+        this.maxRows=maxRows;
+        this.maxGroups=maxGroups;
+    }
+
+    @Override
+    public boolean nextRaw(List<Cell> result) throws IOException{
+        if(done) return false;
+
+        Cell lastCell=null;
+        int rows=0;
+        boolean more;
+        do{
+            rowCells.clear();
+            more=nextRow(rowCells);
+            if(rowCells.isEmpty()) continue;
+            //the SI filter returns the accumulated row as the last cell
+            lastCell=rowCells.get(rowCells.size()-1);
+            aggregator.aggregate(lastCell.getValueArray(),lastCell.getValueOffset(),lastCell.getValueLength());
+            rows++;
+        }while(more && rows<maxRows && aggregator.numGroups()<maxGroups && !limitReached());
+        rowCells.clear();
+        done=!more;
+        if(lastCell==null) return more;
+
+        byte[] row=CellUtil.cloneRow(lastCell);
+        List<byte[]> partials=aggregator.encodePartials();
+        /*
+         * Cells in a row are sorted by descending timestamp, so number them downwards
+         */
+        long timestamp=partials.size();
+        for(byte[] partial : partials){
+            result.add(new KeyValue(row,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.AGGREGATE_COLUMN_BYTES,timestamp--,partial));
+        }
+        aggregator.reset();
+        return more;
+    }
+
+    public boolean nextRaw(List<Cell> result,int limit) throws IOException{
+        return nextRaw(result);
+    }
+
+    @Override
+    public boolean next(List<Cell> results) throws IOException{
+        return nextRaw(results);
+    }
+
+    public boolean next(List<Cell> result,int limit) throws IOException{
+        return nextRaw(result);
+    }
+
+    @Override
+    public HRegionInfo getRegionInfo(){
+        return delegate.getRegionInfo();
+    }
+
+    @Override
+    public boolean isFilterDone() throws IOException{
+        return done || delegate.isFilterDone();
+    }
+
+    @Override
+    public boolean reseek(byte[] row) throws IOException{
+        throw new UnsupportedOperationException("Cannot reseek an aggregating scanner");
+    }
+
+    @Override
+    public long getMaxResultSize(){
+        return delegate.getMaxResultSize();
+    }
+
+    @Override
+    public long getMvccReadPoint(){
+        return delegate.getMvccReadPoint();
+    }
+
+    @Override
+    public void close() throws IOException{
+        delegate.close();
+    }
+
+    protected RegionScanner getDelegate(){
+        return delegate;
+    }
+
+    /**
+     * Read the next row from the underlying scanner.
+     *
+     * @return true if the underlying scanner may have more rows
+     */
+    protected boolean nextRow(List<Cell> rowCells) throws IOException{
+        return delegate.nextRaw(rowCells);
+    }
+
+    /**
+     * @return true if the current call has reached a limit imposed by the server (size or time), and so
+     * should return what it has aggregated so far
+     */
+    protected boolean limitReached(){
+        return false;
+    }
+}
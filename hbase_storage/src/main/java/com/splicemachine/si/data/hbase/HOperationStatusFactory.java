@@ -38,6 +38,11 @@ public class HOperationStatusFactory implements OperationStatusFactory{
         public MutationStatus checkConstraint(KVPair mutation,DataResult existingRow) throws IOException{
             return HMutationStatus.success();
         }
+
+        @Override
+        public boolean appliesTo(KVPair.Type writeType){
+            return false;
+        }
     };
 
     private HOperationStatusFactory(){}
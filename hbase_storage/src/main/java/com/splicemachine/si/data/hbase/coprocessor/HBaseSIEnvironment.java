@@ -50,10 +50,12 @@ import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.driver.SIEnvironment;
 import com.splicemachine.si.impl.readresolve.SynchronousReadResolver;
 import com.splicemachine.si.impl.rollforward.NoopRollForward;
+import com.splicemachine.si.impl.rollforward.RollForwardEngine;
 import com.splicemachine.si.impl.store.CompletedTxnCacheSupplier;
 import com.splicemachine.storage.DataFilterFactory;
 import com.splicemachine.storage.HFilterFactory;
 import com.splicemachine.storage.HNIOFileSystem;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.PartitionInfoCache;
 import com.splicemachine.timestamp.api.TimestampSource;
 import com.splicemachine.timestamp.hbase.ZkTimestampSource;
@@ -77,6 +79,7 @@ public class HBaseSIEnvironment implements SIEnvironment{
     private final Clock clock;
     private final DistributedFileSystem fileSystem;
     private final SnowflakeFactory snowflakeFactory;
+    private final RollForwardEngine rollForwardEngine;
     private SIDriver siDriver;
 
 
@@ -118,6 +121,7 @@ public class HBaseSIEnvironment implements SIEnvironment{
                 config.getTransactionTimeout(),
                 config.getTransactionKeepAliveThreads(),
                 txnStore);
+        this.rollForwardEngine = config.isRollForwardSegmented()? new RollForwardEngine(config,txnSupplier) : null;
         siDriver = SIDriver.loadDriver(this);
     }
 
@@ -146,6 +150,7 @@ public class HBaseSIEnvironment implements SIEnvironment{
                 config.getTransactionTimeout(),
                 config.getTransactionKeepAliveThreads(),
                 txnStore);
+        this.rollForwardEngine = config.isRollForwardSegmented()? new RollForwardEngine(config,txnSupplier) : null;
         siDriver = SIDriver.loadDriver(this);
     }
 
@@ -187,6 +192,20 @@ public class HBaseSIEnvironment implements SIEnvironment{
         return NoopRollForward.INSTANCE;
     }
 
+    @Override
+    public RollForward rollForward(Partition partition){
+        if(rollForwardEngine==null) return NoopRollForward.INSTANCE;
+        return rollForwardEngine.rollForward(partition);
+    }
+
+    /**
+     * @return the engine which rolls forward region segments in the background, or {@code null} if
+     * segmented roll forward is disabled
+     */
+    public RollForwardEngine rollForwardEngine(){
+        return rollForwardEngine;
+    }
+
     @Override
     public TxnOperationFactory operationFactory(){
         return txnOpFactory;
@@ -42,6 +42,7 @@ import org.apache.hadoop.hbase.regionserver.*;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.log4j.Logger;
 import org.spark_project.guava.collect.Iterables;
 import org.spark_project.guava.collect.Maps;
@@ -49,6 +50,7 @@ import org.spark_project.guava.collect.Maps;
 import com.splicemachine.access.HConfiguration;
 import com.splicemachine.concurrent.SystemClock;
 import com.splicemachine.constants.EnvUtils;
+import com.splicemachine.hbase.AggregatingRegionScanner;
 import com.splicemachine.hbase.SICompactionScanner;
 import com.splicemachine.hbase.ZkUtils;
 import com.splicemachine.kvpair.KVPair;
@@ -57,17 +59,22 @@ import com.splicemachine.si.api.data.TxnOperationFactory;
 import com.splicemachine.si.api.filter.TransactionalFilter;
 import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.si.api.server.TransactionalRegion;
+import com.splicemachine.si.api.server.Transactor;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.si.impl.HOperationFactory;
+import com.splicemachine.si.impl.JoinKeyFilterPacked;
 import com.splicemachine.si.impl.SIFilterPacked;
 import com.splicemachine.si.impl.SimpleTxnOperationFactory;
 import com.splicemachine.si.impl.Tracer;
 import com.splicemachine.si.impl.TxnRegion;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.rollforward.RollForwardEngine;
 import com.splicemachine.si.impl.server.SICompactionState;
+import com.splicemachine.storage.EntryAggregator;
 import com.splicemachine.storage.EntryPredicateFilter;
 import com.splicemachine.storage.HMutationStatus;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 import com.splicemachine.storage.MutationStatus;
 import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.RegionPartition;
@@ -82,6 +89,9 @@ public class SIObserver extends BaseRegionObserver{
     private TxnOperationFactory txnOperationFactory;
     private OperationStatusFactory operationStatusFactory;
     private TransactionalRegion region;
+    private Partition regionPartition;
+    private RollForwardEngine rollForwardEngine;
+    private Transactor transactor;
 
     @Override
     public void start(CoprocessorEnvironment e) throws IOException{
@@ -95,9 +105,11 @@ public class SIObserver extends BaseRegionObserver{
             //noinspection unchecked
             txnOperationFactory=new SimpleTxnOperationFactory(driver.getExceptionFactory(),HOperationFactory.INSTANCE);
             //noinspection unchecked
-            Partition regionPartition = new RegionPartition((HRegion)rce.getRegion());
+            regionPartition = new RegionPartition((HRegion)rce.getRegion());
+            rollForwardEngine = env.rollForwardEngine();
+            transactor = driver.getTransactor();
             region=new TxnRegion(regionPartition,
-                    driver.getRollForward(),
+                    driver.getRollForward(regionPartition),
                     driver.getReadResolver(regionPartition),
                     driver.getTxnSupplier(),
                     driver.getTransactor(),
@@ -111,6 +123,10 @@ public class SIObserver extends BaseRegionObserver{
     @Override
     public void stop(CoprocessorEnvironment e) throws IOException{
         SpliceLogUtils.trace(LOG,"stopping %s",SIObserver.class);
+        if(rollForwardEngine!=null)
+            rollForwardEngine.unregister(regionPartition);
+        if(transactor!=null)
+            transactor.discardRecentWriters(regionPartition);
         super.stop(e);
     }
 
@@ -137,9 +153,47 @@ public class SIObserver extends BaseRegionObserver{
             assert (scan.getMaxVersions()==Integer.MAX_VALUE);
             addSIFilterToScan(scan);
         }
+        if(tableEnvMatch)
+            addJoinKeyFilterToScan(scan);
         return super.preScannerOpen(e,scan,s);
     }
 
+    @Override
+    public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> e,Scan scan,RegionScanner s) throws IOException{
+        if(tableEnvMatch && shouldUseSI(scan)){
+            byte[] aggregate=scan.getAttribute(SIConstants.ENTRY_AGGREGATE_LABEL);
+            if(aggregate!=null){
+                SpliceLogUtils.trace(LOG,"postScannerOpen aggregating scan %s",scan);
+                return new AggregatingRegionScanner(s,EntryAggregator.fromBytes(aggregate));
+            }
+        }
+        return super.postScannerOpen(e,scan,s);
+    }
+
+    @Override
+    public void postFlush(ObserverContext<RegionCoprocessorEnvironment> e) throws IOException{
+        if(tableEnvMatch && rollForwardEngine!=null){
+            /*
+             * The flush has just written a batch of rows to disk, most of which have no commit timestamp yet,
+             * so this is a good time to see if any segments are worth rolling forward
+             */
+            rollForwardEngine.regionFlushed(regionPartition);
+        }
+        super.postFlush(e);
+    }
+
+    @Override
+    public boolean postBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> ctx,List<Pair<byte[], String>> familyPaths,boolean hasLoaded) throws IOException{
+        if(tableEnvMatch && transactor!=null){
+            /*
+             * The loaded rows were written without going through the transactor, so we can no longer
+             * trust what it remembers about the writers of rows in this region
+             */
+            transactor.discardRecentWriters(regionPartition);
+        }
+        return super.postBulkLoadHFile(ctx,familyPaths,hasLoaded);
+    }
+
     @Override
     public void postCompact(ObserverContext<RegionCoprocessorEnvironment> e,Store store,StoreFile resultFile){
         if(tableEnvMatch){
@@ -167,8 +221,10 @@ public class SIObserver extends BaseRegionObserver{
         if(tableEnvMatch){
             SIDriver driver=SIDriver.driver();
             SICompactionState state = new SICompactionState(driver.getTxnSupplier(),
-                    driver.getRollForward(),
-                    driver.getConfiguration().getActiveTransactionCacheSize());
+                    driver.getRollForward(regionPartition),
+                    driver.getConfiguration().getActiveTransactionCacheSize(),
+                    driver.getLowWatermark(),
+                    scanType==ScanType.COMPACT_DROP_DELETES);
             return new SICompactionScanner(state,scanner);
         }else{
             return super.preCompact(e,store,scanner,scanType,compactionRequest);
@@ -273,6 +329,18 @@ public class SIObserver extends BaseRegionObserver{
         scan.setFilter(newFilter);
     }
 
+    private void addJoinKeyFilterToScan(Scan scan){
+        JoinKeyBloomFilter bloomFilter=JoinKeyBloomFilter.fromBytes(scan.getAttribute(SIConstants.JOIN_KEY_FILTER_LABEL));
+        if(bloomFilter==null) return;
+        SpliceLogUtils.trace(LOG,"preScannerOpen adding join key filter %s",bloomFilter);
+        Filter joinKeyFilter=new JoinKeyFilterPacked(bloomFilter);
+        Filter currentFilter=scan.getFilter();
+        if(currentFilter!=null)
+            scan.setFilter(composeFilters(new Filter[]{currentFilter,joinKeyFilter}));
+        else
+            scan.setFilter(joinKeyFilter);
+    }
+
     private EntryPredicateFilter getPredicateFilter(OperationWithAttributes operation) throws IOException{
         final byte[] serializedPredicateFilter=operation.getAttribute(ENTRY_PREDICATE_LABEL);
         return EntryPredicateFilter.fromBytes(serializedPredicateFilter);
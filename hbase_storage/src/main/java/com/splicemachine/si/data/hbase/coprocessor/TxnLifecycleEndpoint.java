@@ -38,6 +38,8 @@ import com.splicemachine.si.api.txn.lifecycle.TxnLifecycleStore;
 import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
 import com.splicemachine.si.coprocessor.TxnMessage;
 import com.splicemachine.si.impl.data.StripedTxnLifecycleStore;
+import com.splicemachine.si.impl.TxnUtils;
+import com.splicemachine.si.impl.HTransactionTimeout;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.region.RegionServerControl;
 import com.splicemachine.si.impl.region.RegionTxnStore;
@@ -55,6 +57,7 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
     private static final Logger LOG=Logger.getLogger(TxnLifecycleEndpoint.class);
 
     private TxnLifecycleStore lifecycleStore;
+    private HRegion region;
     private volatile boolean isTxnTable=false;
 
     public static final CountedReference<TransactionResolver> resolverRef=new CountedReference<>(new Supplier<TransactionResolver>(){
@@ -72,7 +75,7 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
     @Override
     public void start(CoprocessorEnvironment env) throws IOException{
         RegionCoprocessorEnvironment rce=(RegionCoprocessorEnvironment)env;
-        HRegion region=(HRegion)rce.getRegion();
+        region=(HRegion)rce.getRegion();
         HBaseSIEnvironment siEnv = HBaseSIEnvironment.loadEnvironment(new SystemClock(),ZkUtils.getRecoverableZooKeeper());
         SConfiguration configuration=siEnv.configuration();
         TableType table=EnvUtils.getTableType(configuration,rce);
@@ -85,7 +88,9 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
                     driver.getTxnSupplier(),
                     resolver,
                     txnKeepAliveTimeout,
-                    new SystemClock());
+                    new SystemClock(),
+                    configuration.getGroupCommitMaxBatchSize(),
+                    configuration.getGroupCommitMaxWait());
             TimestampSource timestampSource=driver.getTimestampSource();
             int txnLockStrips = configuration.getTransactionLockStripes();
             lifecycleStore = new StripedTxnLifecycleStore(txnLockStrips,regionStore,
@@ -173,6 +178,54 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
         }
     }
 
+    @Override
+    public void getTransactions(RpcController controller,TxnMessage.MultiTxnRequest request,RpcCallback<TxnMessage.MultiTxnResponse> done){
+        try{
+            TxnMessage.MultiTxnResponse.Builder response=TxnMessage.MultiTxnResponse.newBuilder();
+            int count=request.getTxnIdsCount();
+            for(int i=0;i<count;i++){
+                long txnId=request.getTxnIds(i);
+                /*
+                 * The request is sent to every region covering the requested ids, so skip any
+                 * ids which this region does not own--the region which owns them will answer for them
+                 */
+                if(!region.getRegionInfo().containsRow(TxnUtils.getRowKey(txnId)))
+                    continue;
+                TxnMessage.Txn transaction=lifecycleStore.getTransaction(txnId);
+                if(transaction.getInfo().getTxnId()<0) continue; //the transaction does not exist
+                response.addTxns(transaction);
+            }
+            done.run(response.build());
+        }catch(IOException ioe){
+            ResponseConverter.setControllerException(controller,ioe);
+        }
+    }
+
+    @Override
+    public void keepAliveTransactions(RpcController controller,TxnMessage.MultiTxnRequest request,RpcCallback<TxnMessage.KeepAliveResponse> done){
+        try{
+            TxnMessage.KeepAliveResponse.Builder response=TxnMessage.KeepAliveResponse.newBuilder();
+            int count=request.getTxnIdsCount();
+            for(int i=0;i<count;i++){
+                long txnId=request.getTxnIds(i);
+                if(!region.getRegionInfo().containsRow(TxnUtils.getRowKey(txnId))){
+                    //the region was split or moved since the caller grouped its transactions
+                    response.addMisdirectedTxnIds(txnId);
+                    continue;
+                }
+                try{
+                    if(lifecycleStore.keepAlive(txnId))
+                        response.addAliveTxnIds(txnId);
+                }catch(HTransactionTimeout htt){
+                    response.addTimedOutTxnIds(txnId);
+                }
+            }
+            done.run(response.build());
+        }catch(IOException ioe){
+            ResponseConverter.setControllerException(controller,ioe);
+        }
+    }
+
     @Override
     public void getActiveTransactionIds(RpcController controller,TxnMessage.ActiveTxnRequest request,RpcCallback<TxnMessage.ActiveTxnIdResponse> done){
         long endTxnId=request.getEndTxnId();
@@ -35,6 +35,7 @@ import com.splicemachine.si.impl.txn.InheritingTxnView;
 import com.splicemachine.timestamp.api.TimestampSource;
 import com.splicemachine.utils.ByteSlice;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -51,6 +52,7 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @ThreadSafe
 public class CoprocessorTxnStore implements TxnStore {
+    private static final Logger LOG=Logger.getLogger(CoprocessorTxnStore.class);
     private final TxnNetworkLayerFactory tableFactory;
     private TxnSupplier cache; //a transaction store which uses a global cache for us
     @ThreadSafe
@@ -144,6 +146,66 @@ public class CoprocessorTxnStore implements TxnStore {
         }
     }
 
+    @Override
+    public Txn.State[] keepAlive(long[] txnIds) throws IOException{
+        Txn.State[] states=new Txn.State[txnIds.length];
+        if(txnIds.length==0) return states;
+
+        /*
+         * Group the transactions by the bucket (and hence the region) of the transaction table which
+         * holds them, and send a single call to each bucket.
+         */
+        Map<Byte,TxnMessage.MultiTxnRequest.Builder> requests=new HashMap<>();
+        Map<Long,Integer> positions=new HashMap<>(txnIds.length);
+        for(int i=0;i<txnIds.length;i++){
+            long txnId=txnIds[i];
+            positions.put(txnId,i);
+            Byte bucket=getTransactionRowKey(txnId)[0];
+            TxnMessage.MultiTxnRequest.Builder request=requests.get(bucket);
+            if(request==null){
+                request=TxnMessage.MultiTxnRequest.newBuilder();
+                requests.put(bucket,request);
+            }
+            request.addTxnIds(txnId);
+        }
+
+        try(TxnNetworkLayer table=tableFactory.accessTxnNetwork()){
+            for(TxnMessage.MultiTxnRequest.Builder request : requests.values()){
+                byte[] rowKey=getTransactionRowKey(request.getTxnIds(0));
+                TxnMessage.KeepAliveResponse response;
+                try{
+                    response=table.keepAlive(rowKey,request.build());
+                }catch(IOException e){
+                    /*
+                     * The region may be on a server which doesn't support keeping transactions alive in bulk
+                     * (e.g. during a rolling upgrade), or the call may have failed for some other reason; either
+                     * way, keep this batch alive one transaction at a time, as older versions did
+                     */
+                    LOG.warn("Unable to keep "+request.getTxnIdsCount()+" transactions alive in a single call, "+
+                            "falling back to keeping them alive individually",e);
+                    response=null;
+                }
+                if(response==null){
+                    for(long txnId : request.getTxnIdsList()){
+                        keepAliveIndividually(txnId,states,positions.get(txnId));
+                    }
+                    continue;
+                }
+                for(long txnId : response.getAliveTxnIdsList()){
+                    states[positions.get(txnId)]=Txn.State.ACTIVE;
+                }
+                for(long txnId : response.getTimedOutTxnIdsList()){
+                    states[positions.get(txnId)]=Txn.State.ROLLEDBACK;
+                }
+                for(long txnId : response.getMisdirectedTxnIdsList()){
+                    //the bucket spans more than one region, so fall back to keeping this one alive on its own
+                    keepAliveIndividually(txnId,states,positions.get(txnId));
+                }
+            }
+        }
+        return states;
+    }
+
     @Override
     public void elevateTransaction(Txn txn,byte[] newDestinationTable) throws IOException{
         byte[] rowKey=getTransactionRowKey(txn.getTxnId());
@@ -242,6 +304,49 @@ public class CoprocessorTxnStore implements TxnStore {
         }
     }
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        if(txnIds.length==0) return txns;
+        lookups.addAndGet(txnIds.length);
+
+        /*
+         * Send the ids to every transaction region between the lowest and highest row key; each
+         * region only answers for the ids that it holds, so we make one call per region, regardless
+         * of how many transactions are requested.
+         */
+        TxnMessage.MultiTxnRequest.Builder request=TxnMessage.MultiTxnRequest.newBuilder();
+        byte[] startRow=null;
+        byte[] endRow=null;
+        for(long txnId : txnIds){
+            request.addTxnIds(txnId);
+            byte[] rowKey=getTransactionRowKey(txnId);
+            if(startRow==null || Bytes.compareTo(rowKey,startRow)<0)
+                startRow=rowKey;
+            if(endRow==null || Bytes.compareTo(rowKey,endRow)>0)
+                endRow=rowKey;
+        }
+
+        try(TxnNetworkLayer table=tableFactory.accessTxnNetwork()){
+            Collection<TxnMessage.MultiTxnResponse> data=table.getTxns(startRow,endRow,request.build());
+            Map<Long,TxnView> found=new HashMap<>(txnIds.length);
+            for(TxnMessage.MultiTxnResponse response : data){
+                int size=response.getTxnsCount();
+                for(int i=0;i<size;i++){
+                    TxnView txn=decode(response.getTxns(i));
+                    if(txn!=null)
+                        found.put(txn.getTxnId(),txn);
+                }
+            }
+            for(int i=0;i<txnIds.length;i++){
+                txns[i]=found.get(txnIds[i]);
+            }
+            return txns;
+        }catch(Throwable throwable){
+            throw new IOException(throwable);
+        }
+    }
+
     /*caching methods--since we don't have a cache, these are no-ops*/
     @Override
     public boolean transactionCached(long txnId){
@@ -294,6 +399,14 @@ public class CoprocessorTxnStore implements TxnStore {
      * **************************************************************************************************************
      */
         /*private helper methods*/
+    private void keepAliveIndividually(long txnId,Txn.State[] states,int position) throws IOException{
+        try{
+            states[position]=keepAlive(txnId)?Txn.State.ACTIVE:null;
+        }catch(HTransactionTimeout htt){
+            states[position]=Txn.State.ROLLEDBACK;
+        }
+    }
+
     private TxnView decode(TxnMessage.Txn message) throws IOException{
         TxnMessage.TxnInfo info=message.getInfo();
         if(info.getTxnId()<0) return null; //we didn't find it
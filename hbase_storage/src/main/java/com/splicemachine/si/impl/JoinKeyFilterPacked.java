@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl;
+
+import com.splicemachine.storage.CellType;
+import com.splicemachine.storage.HCell;
+import com.splicemachine.storage.JoinKeyBloomFilter;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterBase;
+
+import java.io.IOException;
+
+/**
+ * An HBase filter which removes rows whose join key cannot match the other side of a join, according
+ * to a {@link JoinKeyBloomFilter} built over that side.
+ *
+ * Every cell is included; the decision is made for the whole row in {@link #filterRow()}. Because the scan
+ * may return more than one version of the row, the row is only removed if <em>no</em> version of the user
+ * data might match, so that whichever version is visible to the reader is kept.
+ */
+public class JoinKeyFilterPacked extends FilterBase{
+    private final JoinKeyBloomFilter bloomFilter;
+
+    private transient HCell wrapper = new HCell();
+    private boolean sawUserData;
+    private boolean mightMatch;
+
+    public JoinKeyFilterPacked(JoinKeyBloomFilter bloomFilter){
+        this.bloomFilter=bloomFilter;
+    }
+
+    @Override
+    public Filter.ReturnCode filterKeyValue(Cell keyValue){
+        if(mightMatch) return Filter.ReturnCode.INCLUDE;
+        wrapper.set(keyValue);
+        if(wrapper.dataType()==CellType.USER_DATA){
+            sawUserData=true;
+            try{
+                mightMatch=bloomFilter.mightMatch(keyValue.getValueArray(),keyValue.getValueOffset(),keyValue.getValueLength());
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+        }
+        return Filter.ReturnCode.INCLUDE;
+    }
+
+    @Override
+    public boolean filterRow(){
+        return sawUserData && !mightMatch;
+    }
+
+    @Override
+    public boolean hasFilterRow(){
+        return true;
+    }
+
+    @Override
+    public void reset(){
+        sawUserData=false;
+        mightMatch=false;
+    }
+}
@@ -12,33 +12,49 @@
  * CONDITIONS OF ANY KIND, either express or implied. See the License for the
  * specific language governing permissions and limitations under the License.
  */
-
 package com.splicemachine.si.impl;
 
+import com.carrotsearch.hppc.LongArrayList;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import com.splicemachine.annotations.ThreadSafe;
-import com.splicemachine.concurrent.ThreadLocalRandom;
 import com.splicemachine.si.api.txn.KeepAliveScheduler;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnStore;
+import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Keeps transactions alive in batches.
+ *
+ * Rather than sending a keep alive for each transaction separately, every active transaction is
+ * registered with this scheduler, and on each tick (once every keep alive interval) the registered
+ * transactions are grouped by the transaction table bucket which holds them. Each group is then
+ * kept alive with a single call (see {@link TxnStore#keepAlive(long[])}), so the number of keep alive
+ * calls depends on the number of buckets, rather than the number of open transactions.
+ *
  * @author Scott Fines
  *         Date: 6/25/14
  */
 public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
     private static final Logger LOG=Logger.getLogger(QueuedKeepAliveScheduler.class);
+    /*the maximum number of transactions to keep alive in a single call*/
+    private static final int MAX_BATCH_SIZE=1024;
+
     private final long maxWaitIntervalMs;
     private final long maxKeepAliveIntervalMs;
     private final ScheduledExecutorService threadPool;
-    private final com.splicemachine.concurrent.ThreadLocalRandom random;
+    private final ConcurrentMap<Long,KeepAlive> activeTxns=new ConcurrentHashMap<>();
 
     private final
     @ThreadSafe
@@ -46,6 +62,11 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
 
     private volatile boolean shutdown=false;
 
+    /*monitoring fields*/
+    private final AtomicLong batches=new AtomicLong(0l);
+    private final AtomicLong keepAlives=new AtomicLong(0l);
+    private final AtomicLong totalBatchLatencyMs=new AtomicLong(0l);
+    private final AtomicLong maxBatchLatencyMs=new AtomicLong(0l);
 
     public QueuedKeepAliveScheduler(long maxWaitIntervalMs,long maxKeepAliveIntervalMs,
                                     int numKeepers,TxnStore txnStore){
@@ -53,17 +74,16 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
         ThreadFactory factory=new ThreadFactoryBuilder().setNameFormat("keepAlive-thread-%d").setDaemon(true).build();
 
         this.threadPool=Executors.newScheduledThreadPool(numKeepers,factory);
-        this.random=ThreadLocalRandom.current();
         this.txnStore=txnStore;
         this.maxKeepAliveIntervalMs=maxKeepAliveIntervalMs;
+        this.threadPool.scheduleWithFixedDelay(new Tick(),maxWaitIntervalMs,maxWaitIntervalMs,TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void scheduleKeepAlive(Txn txn){
         if(shutdown) return;
 
-//				activeTxns.add(txn);
-        threadPool.schedule(new KeepAlive(txn),random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
+        activeTxns.putIfAbsent(txn.getTxnId(),new KeepAlive(txn));
     }
 
     @Override
@@ -74,79 +94,182 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
     public void stop(){
         shutdown=true;
         threadPool.shutdownNow();
+        activeTxns.clear();
     }
 
-    private class KeepAlive implements Runnable{
+    /**
+     * @return the number of batched keep alive calls made
+     */
+    public long getBatchCount(){
+        return batches.get();
+    }
+
+    /**
+     * @return the number of transactions kept alive across all batches
+     */
+    public long getKeepAliveCount(){
+        return keepAlives.get();
+    }
+
+    /**
+     * @return the average latency (in milliseconds) of a batched keep alive call
+     */
+    public double getAverageBatchLatency(){
+        long b=batches.get();
+        return b==0?0d:((double)totalBatchLatencyMs.get())/b;
+    }
+
+    /**
+     * @return the largest latency (in milliseconds) of any batched keep alive call
+     */
+    public long getMaxBatchLatency(){
+        return maxBatchLatencyMs.get();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods and classes*/
+    private void recordLatency(long latency){
+        totalBatchLatencyMs.addAndGet(latency);
+        long max;
+        while((max=maxBatchLatencyMs.get())<latency && !maxBatchLatencyMs.compareAndSet(max,latency));
+    }
+
+    private static class KeepAlive{
         private final Txn txn;
-        private long lastKeepAliveTime;
+        private volatile long lastKeepAliveTime;
+        private volatile boolean inFlight;
 
-        public KeepAlive(Txn txn){
+        KeepAlive(Txn txn){
             this.txn=txn;
             this.lastKeepAliveTime=System.currentTimeMillis();
         }
+    }
 
+    private class Tick implements Runnable{
         @Override
         public void run(){
-            if(txn.getEffectiveState()!=Txn.State.ACTIVE){
-                return; //nothing to do, we no longer need to keep anything alive
-            }
-            long keepAliveTime=System.currentTimeMillis()-lastKeepAliveTime;
-
-            if(keepAliveTime>2*maxKeepAliveIntervalMs){
-                SpliceLogUtils.warn(LOG,"It has been %d ms since the last time we tried to perform"+
-                        "a keep alive, which is longer than the maximum interval");
-                                /*
-								 * We are the only ones trying to keep this transaction alive. If we know
-								 * for a fact that we had to wait longer than the transaction timeout, then
-								 * we don't need to keep trying--just roll back the transaction and return.
-								 *
-								 * However, we want to leave some room for network slop here, so we err
-								 * on the side of caution, and only use this if we exceed twice the actual
-								 * keep alive window. That way, we probably never need this, but it's available
-								 * if we do.
-								 */
-                try{
-                    txn.rollback();
-                }catch(IOException e){
-                    LOG.info("Unable to roll back transaction "+txn.getTxnId()
-                            +" but nothing to be concerned with, since it has already timed out",e);
+            if(shutdown) return;
+            try{
+                @SuppressWarnings("unchecked") List<KeepAlive>[] buckets=new List[SIConstants.TRANSACTION_TABLE_BUCKET_COUNT];
+                long now=System.currentTimeMillis();
+                for(KeepAlive keepAlive : activeTxns.values()){
+                    if(keepAlive.inFlight) continue; //the previous keep alive for this transaction is still running
+                    Txn txn=keepAlive.txn;
+                    if(txn.getEffectiveState()!=Txn.State.ACTIVE){
+                        activeTxns.remove(txn.getTxnId());
+                        continue; //nothing to do, we no longer need to keep anything alive
+                    }
+                    if(now-keepAlive.lastKeepAliveTime>2*maxKeepAliveIntervalMs){
+                        SpliceLogUtils.warn(LOG,"It has been %d ms since the last time we tried to perform"+
+                                "a keep alive, which is longer than the maximum interval",now-keepAlive.lastKeepAliveTime);
+                        /*
+                         * We are the only ones trying to keep this transaction alive. If we know
+                         * for a fact that we had to wait longer than the transaction timeout, then
+                         * we don't need to keep trying--just roll back the transaction and return.
+                         *
+                         * However, we want to leave some room for network slop here, so we err
+                         * on the side of caution, and only use this if we exceed twice the actual
+                         * keep alive window. That way, we probably never need this, but it's available
+                         * if we do.
+                         */
+                        activeTxns.remove(txn.getTxnId());
+                        rollback(txn);
+                        continue;
+                    }
+                    int bucket=(int)(txn.getTxnId()&(SIConstants.TRANSACTION_TABLE_BUCKET_COUNT-1));
+                    List<KeepAlive> batch=buckets[bucket];
+                    if(batch==null || batch.size()>=MAX_BATCH_SIZE){
+                        if(batch!=null)
+                            submit(batch);
+                        batch=buckets[bucket]=new ArrayList<>();
+                    }
+                    keepAlive.inFlight=true;
+                    batch.add(keepAlive);
                 }
-                return;
+                for(List<KeepAlive> batch : buckets){
+                    if(batch!=null)
+                        submit(batch);
+                }
+            }catch(Throwable t){
+                //don't let an unexpected error stop all future ticks
+                LOG.error("Unexpected error scheduling keep alives",t);
             }
+        }
+
+        private void submit(List<KeepAlive> batch){
+            if(shutdown) return;
+            threadPool.execute(new KeepAliveBatch(batch));
+        }
+    }
 
+    private class KeepAliveBatch implements Runnable{
+        private final List<KeepAlive> batch;
+
+        KeepAliveBatch(List<KeepAlive> batch){
+            this.batch=batch;
+        }
+
+        @Override
+        public void run(){
+            long[] txnIds=new long[batch.size()];
+            for(int i=0;i<txnIds.length;i++){
+                txnIds[i]=batch.get(i).txn.getTxnId();
+            }
             try{
                 long time=System.currentTimeMillis();
-                boolean reschedule=txnStore.keepAlive(txn.getTxnId());
-                time=System.currentTimeMillis()-time; //measure our latency
-                if(reschedule){
-                    //use a random slop factor to load-balance our keep alive requests.
-                    threadPool.schedule(this,random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
-                    lastKeepAliveTime=System.currentTimeMillis(); //include network latency in our wait period
-                }
+                Txn.State[] states=txnStore.keepAlive(txnIds);
+                long end=System.currentTimeMillis();
+                time=end-time; //measure our latency
+                batches.incrementAndGet();
+                keepAlives.addAndGet(txnIds.length);
+                recordLatency(time);
+                if(LOG.isTraceEnabled())
+                    SpliceLogUtils.trace(LOG,"Kept alive %d transactions in %d ms",txnIds.length,time);
                 if(time>0.1*maxKeepAliveIntervalMs)
-                    SpliceLogUtils.warn(LOG,"It took longer than 10% of the keep-alive interval to perform"+
-                            "keep alive for transaction %d. This may be a sign that load will begin interfering"+
-                            "with the transaction system",txn.getTxnId());
-            }catch(HTransactionTimeout tte){
-                LOG.error("Transaction "+txn.getTxnId()+" has timed out");
-									/*
-									 * We attempted to keep alive a transaction that has already timed out for a different
-									 * reason. Ensure that the transaction is rolled back
-									 */
-                try{
-                    txn.rollback();
-                }catch(IOException e){
-                    LOG.info("Unable to roll back transaction "+
-                            txn.getTxnId()+" but nothing to be concerned with, since it has already timed out",e);
+                    SpliceLogUtils.warn(LOG,"It took longer than 10%% of the keep-alive interval (%d ms) to perform"+
+                            "keep alive for %d transactions. This may be a sign that load will begin interfering"+
+                            "with the transaction system",time,txnIds.length);
+
+                LongArrayList timedOut=null;
+                for(int i=0;i<states.length;i++){
+                    KeepAlive keepAlive=batch.get(i);
+                    if(states[i]==Txn.State.ACTIVE){
+                        keepAlive.lastKeepAliveTime=end; //include network latency in our wait period
+                        keepAlive.inFlight=false;
+                        continue;
+                    }
+                    activeTxns.remove(txnIds[i]);
+                    if(states[i]==Txn.State.ROLLEDBACK){
+                        if(timedOut==null) timedOut=new LongArrayList();
+                        timedOut.add(txnIds[i]);
+                        /*
+                         * We attempted to keep alive a transaction that has already timed out for a different
+                         * reason. Ensure that the transaction is rolled back
+                         */
+                        rollback(keepAlive.txn);
+                    }
+                }
+                if(timedOut!=null)
+                    LOG.error("Transactions "+timedOut+" have timed out");
+            }catch(Exception e){
+                /*
+                 * This could be a real problem, but we don't have anything that we can really do about this,
+                 * so we just log the error and hope it resolves itself on the next tick.
+                 */
+                LOG.error("Unable to keep "+txnIds.length+" transactions alive. Will try again in a bit",e);
+                for(KeepAlive keepAlive : batch){
+                    keepAlive.inFlight=false;
                 }
-            }catch(IOException e){
-								/*
-								 * This could be a real problem, but we don't have anything that we can really do about this,
-								 * so we just log the error and hope it resolves itself.
-								 */
-                LOG.error("Unable to keep transaction "+txn.getTxnId()+" alive. Will try again in a bit",e);
-                threadPool.schedule(this,random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
             }
         }
     }
+
+    private static void rollback(Txn txn){
+        try{
+            txn.rollback();
+        }catch(IOException e){
+            LOG.info("Unable to roll back transaction "+txn.getTxnId()
+                    +" but nothing to be concerned with, since it has already timed out",e);
+        }
+    }
 }
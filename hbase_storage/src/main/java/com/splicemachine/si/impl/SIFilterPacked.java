@@ -15,12 +15,15 @@
 
 package com.splicemachine.si.impl;
 
+import com.carrotsearch.hppc.LongOpenHashSet;
 import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.storage.*;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterBase;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,6 +33,15 @@ public class SIFilterPacked extends FilterBase implements HasPredicateFilter{
     public TxnFilter filterState=null;
 
     private transient HCell wrapper = new HCell();
+    /*
+     * Cells of the current row which are waiting for their writers to be fetched. Once we reach
+     * a cell whose writer we do not know, we hold it and the rest of the row back, so that all the
+     * unknown writers of the row can be fetched with one bulk lookup when the row completes
+     * (in filterRowCells()), rather than with one lookup per cell.
+     */
+    private transient List<Cell> deferredCells = new ArrayList<>();
+    private transient LongOpenHashSet deferredWriters = new LongOpenHashSet();
+    private transient boolean cellIncluded = false;
 
     public SIFilterPacked(){ }
 
@@ -47,13 +59,18 @@ public class SIFilterPacked extends FilterBase implements HasPredicateFilter{
         try{
             initFilterStateIfNeeded();
             wrapper.set(keyValue);
+            if(!deferredCells.isEmpty() || filterState.requiresLookup(wrapper)){
+                return defer(keyValue);
+            }
             DataFilter.ReturnCode code=filterState.filterCell(wrapper);
             switch(code){
                 case NEXT_ROW:
                     return Filter.ReturnCode.NEXT_ROW;
                 case INCLUDE:
+                    cellIncluded=true;
                     return Filter.ReturnCode.INCLUDE;
                 case INCLUDE_AND_NEXT_COL:
+                    cellIncluded=true;
                     return Filter.ReturnCode.INCLUDE_AND_NEXT_COL;
                 case NEXT_COL:
                     return Filter.ReturnCode.NEXT_COL;
@@ -74,6 +91,8 @@ public class SIFilterPacked extends FilterBase implements HasPredicateFilter{
         // FIXME: this is scary
         try{
             initFilterStateIfNeeded();
+            if(!deferredCells.isEmpty())
+                filterDeferredCells();
         }catch(IOException e){
             throw new RuntimeException(e);
         }
@@ -86,6 +105,39 @@ public class SIFilterPacked extends FilterBase implements HasPredicateFilter{
         }
     }
 
+    /*
+     * Hold back a cell until the row completes. HBase discards a row for which no cell
+     * was included, so the first cell we hold back is included as a placeholder (as
+     * the first accumulated cell is), and is removed again in filterRowCells().
+     */
+    private Filter.ReturnCode defer(Cell keyValue){
+        deferredCells.add(keyValue);
+        if(filterState.requiresLookup(wrapper))
+            deferredWriters.add(keyValue.getTimestamp());
+        if(cellIncluded)
+            return Filter.ReturnCode.SKIP;
+        cellIncluded=true;
+        return Filter.ReturnCode.INCLUDE;
+    }
+
+    private void filterDeferredCells() throws IOException{
+        filterState.prefetch(deferredWriters.toArray());
+        Cell skipColumn=null;
+        for(Cell cell:deferredCells){
+            if(skipColumn!=null && CellUtil.matchingColumn(skipColumn,cell))
+                continue;
+            skipColumn=null;
+            wrapper.set(cell);
+            DataFilter.ReturnCode code=filterState.filterCell(wrapper);
+            if(code==DataFilter.ReturnCode.NEXT_ROW)
+                break;
+            if(code==DataFilter.ReturnCode.NEXT_COL || code==DataFilter.ReturnCode.INCLUDE_AND_NEXT_COL)
+                skipColumn=cell;
+        }
+        deferredCells.clear();
+        deferredWriters.clear();
+    }
+
     public void initFilterStateIfNeeded() throws IOException{
         if(filterState==null){
             throw new UnsupportedOperationException("IMPLEMENT");
@@ -101,6 +153,10 @@ public class SIFilterPacked extends FilterBase implements HasPredicateFilter{
     }
 
     public void reset(){
+        deferredCells.clear();
+        if(!deferredWriters.isEmpty())
+            deferredWriters.clear();
+        cellIncluded=false;
         if(filterState!=null)
             filterState.nextRow();
     }
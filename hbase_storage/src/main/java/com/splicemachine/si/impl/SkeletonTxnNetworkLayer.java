@@ -117,6 +117,33 @@ public abstract class SkeletonTxnNetworkLayer implements TxnNetworkLayer{
         return done.get();
     }
 
+    @Override
+    public Collection<TxnMessage.MultiTxnResponse> getTxns(byte[] startRow,byte[] endRow,final TxnMessage.MultiTxnRequest request) throws IOException{
+        Map<byte[], TxnMessage.MultiTxnResponse> data=coprocessorService(TxnMessage.TxnLifecycleService.class,
+                startRow,endRow,new Batch.Call<TxnMessage.TxnLifecycleService, TxnMessage.MultiTxnResponse>(){
+                    @Override
+                    public TxnMessage.MultiTxnResponse call(TxnMessage.TxnLifecycleService instance) throws IOException{
+                        ServerRpcController controller=new ServerRpcController();
+                        BlockingRpcCallback<TxnMessage.MultiTxnResponse> response=new BlockingRpcCallback<>();
+
+                        instance.getTransactions(controller,request,response);
+                        dealWithError(controller);
+                        return response.get();
+                    }
+                });
+        return data.values();
+    }
+
+    @Override
+    public TxnMessage.KeepAliveResponse keepAlive(byte[] rowKey,TxnMessage.MultiTxnRequest request) throws IOException{
+        TxnMessage.TxnLifecycleService service=getLifecycleService(rowKey);
+        ServerRpcController controller=new ServerRpcController();
+        BlockingRpcCallback<TxnMessage.KeepAliveResponse> done=new BlockingRpcCallback<>();
+        service.keepAliveTransactions(controller,request,done);
+        dealWithError(controller);
+        return done.get();
+    }
+
     protected abstract TxnMessage.TxnLifecycleService getLifecycleService(byte[] rowKey) throws IOException;
 
     protected abstract <C> Map<byte[],C> coprocessorService(Class<TxnMessage.TxnLifecycleService> txnLifecycleServiceClass,
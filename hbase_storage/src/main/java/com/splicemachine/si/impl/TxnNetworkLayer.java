@@ -38,5 +38,18 @@ public interface TxnNetworkLayer extends AutoCloseable{
 
     TxnMessage.Txn getTxn(byte[] rowKey,TxnMessage.TxnRequest request) throws IOException;
 
+    /**
+     * Fetch many transactions with a single call to each transaction table region
+     * between {@code startRow} and {@code endRow} (inclusive).
+     *
+     * @return the responses of each region contacted. Transactions which do not exist are absent
+     */
+    Collection<TxnMessage.MultiTxnResponse> getTxns(byte[] startRow,byte[] endRow,TxnMessage.MultiTxnRequest request) throws IOException;
+
+    /**
+     * Keep alive many transactions with a single call to the transaction table region holding {@code rowKey}.
+     */
+    TxnMessage.KeepAliveResponse keepAlive(byte[] rowKey,TxnMessage.MultiTxnRequest request) throws IOException;
+
     void close() throws IOException;
 }
@@ -17,6 +17,7 @@ package com.splicemachine.si.impl.region;
 
 import com.carrotsearch.hppc.LongArrayList;
 import com.splicemachine.concurrent.Clock;
+import com.splicemachine.concurrent.GroupCommitter;
 import com.splicemachine.encoding.Encoding;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.txn.Txn;
@@ -32,14 +33,17 @@ import com.splicemachine.utils.Source;
 import com.splicemachine.utils.SpliceLogUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Uses an HRegion to access Txn information.
@@ -59,17 +63,34 @@ public class RegionTxnStore implements TxnPartition{
     private final HRegion region;
     private final long keepAliveTimeoutMs;
     private final Clock clock;
+    /*
+     * Commits and rollbacks are terminal state changes which every writer must wait on, so we
+     * group them together, and write each group with a single batch mutation (and thus a single WAL sync).
+     */
+    private final GroupCommitter<Put> stateChanges;
 
     public RegionTxnStore(HRegion region,
                           TxnSupplier txnSupplier,
                           TransactionResolver resolver,
                           long keepAliveTimeoutMs,
                           Clock keepAliveClock){
+        this(region,txnSupplier,resolver,keepAliveTimeoutMs,keepAliveClock,1,0l);
+    }
+
+    public RegionTxnStore(HRegion region,
+                          TxnSupplier txnSupplier,
+                          TransactionResolver resolver,
+                          long keepAliveTimeoutMs,
+                          Clock keepAliveClock,
+                          int groupCommitMaxBatchSize,
+                          long groupCommitMaxWaitMicros){
         this.txnSupplier=txnSupplier;
         this.region=region;
         this.resolver=resolver;
         this.keepAliveTimeoutMs = keepAliveTimeoutMs;
         this.clock = keepAliveClock;
+        this.stateChanges = new GroupCommitter<>(new StateChangeWriter(),
+                groupCommitMaxBatchSize,groupCommitMaxWaitMicros,TimeUnit.MICROSECONDS);
     }
 
     @Override
@@ -197,7 +218,7 @@ public class RegionTxnStore implements TxnPartition{
         Put put=new Put(getRowKey(txnId));
         put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(commitTs));
         put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.COMMITTED.encode());
-        region.put(put);
+        stateChanges.write(put);
     }
 
     @Override
@@ -231,7 +252,7 @@ public class RegionTxnStore implements TxnPartition{
         put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.ROLLEDBACK.encode());
         put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
         put.add(FAMILY,V2TxnDecoder.GLOBAL_COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
-        region.put(put);
+        stateChanges.write(put);
     }
 
     @Override
@@ -403,6 +424,28 @@ public class RegionTxnStore implements TxnPartition{
         return (clock.currentTimeMillis()-txn.getLastKeepAliveTime())>keepAliveTimeoutMs;
     }
 
+    private class StateChangeWriter implements GroupCommitter.BatchWriter<Put>{
+        @Override
+        public IOException[] write(List<Put> batch) throws IOException{
+            if(batch.size()==1){
+                region.put(batch.get(0));
+                return null;
+            }
+            if(LOG.isTraceEnabled())
+                SpliceLogUtils.trace(LOG,"writing %d transaction state changes as a group",batch.size());
+            OperationStatus[] statuses=region.batchMutate(batch.toArray(new Mutation[batch.size()]));
+            IOException[] errors=null;
+            for(int i=0;i<statuses.length;i++){
+                if(statuses[i].getOperationStatusCode()==HConstants.OperationStatusCode.SUCCESS) continue;
+                if(errors==null)
+                    errors=new IOException[batch.size()];
+                errors[i]=new IOException("Unable to record state change for row "+
+                        Bytes.toStringBinary(batch.get(i).getRow())+": "+statuses[i].getExceptionMsg());
+            }
+            return errors;
+        }
+    }
+
     private class ScanIterator implements Source<TxnMessage.Txn>{
         private final RegionScanner regionScanner;
         protected TxnMessage.Txn next;
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.rollforward;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.concurrent.traffic.TrafficController;
+import com.splicemachine.concurrent.traffic.TrafficShaping;
+import com.splicemachine.si.api.readresolve.RollForward;
+import com.splicemachine.si.api.readresolve.RollForwardAction;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.readresolve.RegionSegmentContext;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.storage.RegionPartition;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.NotServingRegionException;
+import org.apache.hadoop.hbase.RegionTooBusyException;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background engine which rolls forward entire region segments at a time.
+ * <p/>
+ * Each region gets its own {@link SegmentedRollForward}, which counts the rows that still need to be rolled
+ * forward in each of its segments. Once a segment crosses its thresholds (or periodically, or when the region
+ * flushes), it is submitted to this engine. The engine then scans the segment once, finds every data and
+ * tombstone version which has no commit timestamp, looks up the writing transactions in bulk, and writes
+ * the commit timestamps (or deletes rolled back versions) in batches. Later reads of those rows then never
+ * need to look up the transaction at all.
+ * <p/>
+ * All batches written by the engine are throttled through a single token bucket, so that background roll
+ * forward is limited to a fixed number of rows per second for the whole server.
+ */
+public class RollForwardEngine implements RollForwardAction{
+    private static final Logger LOG=Logger.getLogger(RollForwardEngine.class);
+
+    private final TxnSupplier txnSupplier;
+    private final TrafficController throttle;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentMap<String,SegmentedRollForward> regionRollForwards=new ConcurrentHashMap<>();
+    private final RollForwardStatus status=new RollForwardStatus();
+
+    private final int numSegments;
+    private final long rowThreshold;
+    private final long txnThreshold;
+    private final long intervalMs;
+    private final int batchSize;
+
+    public RollForwardEngine(SConfiguration config,TxnSupplier txnSupplier){
+        this(config,txnSupplier,TrafficShaping.fixedRateTrafficShaper(config.getRollForwardMaxRowsPerSecond(),
+                config.getRollForwardMaxRowsPerSecond(),TimeUnit.SECONDS));
+    }
+
+    RollForwardEngine(SConfiguration config,TxnSupplier txnSupplier,TrafficController throttle){
+        this.txnSupplier=txnSupplier;
+        this.numSegments=config.getRollForwardSegments();
+        this.rowThreshold=config.getRollForwardRowThreshold();
+        this.txnThreshold=config.getRollForwardTxnThreshold();
+        this.intervalMs=config.getRollForwardInterval();
+        this.batchSize=config.getRollForwardBatchSize();
+        this.throttle=throttle;
+        this.scheduler=Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("rollForward-scheduler").setDaemon(true).build());
+        this.workers=new ThreadPoolExecutor(1,1,60,TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("rollForward-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @param region the region to roll forward
+     * @return the RollForward which tracks writes to {@code region}
+     */
+    public RollForward rollForward(Partition region){
+        String name=region.getName();
+        SegmentedRollForward rollForward=regionRollForwards.get(name);
+        if(rollForward!=null && !rollForward.getRegion().isClosed())
+            return rollForward;
+
+        SegmentedRollForward newRollForward=new SegmentedRollForward(region,scheduler,numSegments,
+                rowThreshold,txnThreshold,intervalMs,this,status);
+        if(rollForward==null){
+            rollForward=regionRollForwards.putIfAbsent(name,newRollForward);
+            if(rollForward==null) return newRollForward;
+        }else if(regionRollForwards.replace(name,rollForward,newRollForward))
+            return newRollForward;
+        //someone else registered a roll forward for this region first
+        return regionRollForwards.get(name);
+    }
+
+    /**
+     * Stop tracking writes for the specified region (e.g. because it is closing).
+     */
+    public void unregister(Partition region){
+        regionRollForwards.remove(region.getName());
+    }
+
+    /**
+     * Notify the roll forward for {@code region} that it has just been flushed.
+     */
+    public void regionFlushed(Partition region){
+        SegmentedRollForward rollForward=regionRollForwards.get(region.getName());
+        if(rollForward!=null)
+            rollForward.checkSegments();
+    }
+
+    public void shutdown(){
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @Override
+    public void submitAction(final Partition region,final byte[] startKey,final byte[] stopKey,final RegionSegmentContext context){
+        try{
+            workers.execute(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        rollForwardSegment(region,startKey,stopKey,context);
+                    }catch(InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }catch(Exception e){
+                        if(!(e instanceof RegionTooBusyException) && !(e instanceof NotServingRegionException))
+                            LOG.info("Unable to roll forward segment ["+Bytes.toStringBinary(startKey)+","+Bytes.toStringBinary(stopKey)+")",e);
+                    }finally{
+                        context.complete();
+                    }
+                }
+            });
+        }catch(RejectedExecutionException ree){
+            context.complete(); //we are shutting down, so there is nothing to do
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void rollForwardSegment(Partition region,byte[] startKey,byte[] stopKey,RegionSegmentContext context) throws IOException, InterruptedException{
+        assert region instanceof RegionPartition: "Not on a region!";
+        HRegion hregion=((RegionPartition)region).unwrapDelegate();
+        if(LOG.isDebugEnabled())
+            SpliceLogUtils.debug(LOG,"Rolling forward segment [%s,%s) of region %s",
+                    Bytes.toStringBinary(startKey),Bytes.toStringBinary(stopKey),region.getName());
+
+        Scan scan=new Scan(startKey,stopKey);
+        scan.setMaxVersions();
+        scan.addFamily(SIConstants.DEFAULT_FAMILY_BYTES);
+        scan.setCacheBlocks(false);
+
+        List<byte[]> rows=new ArrayList<>(batchSize);
+        LongArrayList versions=new LongArrayList(batchSize);
+        List<Cell> cells=new ArrayList<>();
+        LongOpenHashSet committedVersions=new LongOpenHashSet();
+        LongOpenHashSet unresolvedVersions=new LongOpenHashSet();
+        try(RegionScanner scanner=hregion.getScanner(scan)){
+            boolean more;
+            do{
+                cells.clear();
+                more=scanner.next(cells);
+                if(cells.isEmpty()) continue;
+                if(region.isClosing() || region.isClosed()) return;
+
+                /*
+                 * Cells within a row are sorted by qualifier, so the commit timestamps ("0") are always
+                 * seen before the tombstones ("1") and the user data ("7")
+                 */
+                committedVersions.clear();
+                unresolvedVersions.clear();
+                byte[] row=null;
+                for(Cell cell : cells){
+                    long version=cell.getTimestamp();
+                    if(CellUtil.matchingQualifier(cell,SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES))
+                        committedVersions.add(version);
+                    else if(CellUtil.matchingQualifier(cell,SIConstants.PACKED_COLUMN_BYTES)
+                            || CellUtil.matchingQualifier(cell,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES)){
+                        if(!committedVersions.contains(version) && unresolvedVersions.add(version)){
+                            if(row==null)
+                                row=CellUtil.cloneRow(cell);
+                            rows.add(row);
+                            versions.add(version);
+                        }
+                    }
+                }
+                if(rows.size()>=batchSize){
+                    writeBatch(hregion,rows,versions,context);
+                }
+            }while(more);
+        }
+        if(!rows.isEmpty())
+            writeBatch(hregion,rows,versions,context);
+    }
+
+    private void writeBatch(HRegion region,List<byte[]> rows,LongArrayList versions,RegionSegmentContext context) throws IOException, InterruptedException{
+        LongObjectOpenHashMap<TxnView> txns=fetchTransactions(versions);
+        List<Mutation> mutations=new ArrayList<>(rows.size());
+        for(int i=0;i<rows.size();i++){
+            long txnId=versions.get(i);
+            TxnView txn=txns.get(txnId);
+            if(txn==null) continue;
+            Mutation mutation=resolve(rows.get(i),txnId,txn);
+            if(mutation!=null)
+                mutations.add(mutation);
+        }
+        rows.clear();
+        versions.clear();
+        if(mutations.isEmpty()) return;
+
+        throttle.acquire(mutations.size());
+        region.batchMutate(mutations.toArray(new Mutation[mutations.size()]));
+        for(int i=0;i<mutations.size();i++){
+            context.rowResolved();
+            status.rowResolved();
+        }
+    }
+
+    private LongObjectOpenHashMap<TxnView> fetchTransactions(LongArrayList versions) throws IOException{
+        LongOpenHashSet unique=new LongOpenHashSet(versions.size());
+        LongArrayList toFetch=new LongArrayList();
+        for(int i=0;i<versions.size();i++){
+            long txnId=versions.get(i);
+            if(unique.add(txnId))
+                toFetch.add(txnId);
+        }
+        long[] ids=toFetch.toArray();
+        TxnView[] fetched=txnSupplier.getTransactions(ids);
+        LongObjectOpenHashMap<TxnView> txns=new LongObjectOpenHashMap<>(ids.length);
+        for(int i=0;i<ids.length;i++){
+            if(fetched[i]!=null)
+                txns.put(ids[i],fetched[i]);
+        }
+        return txns;
+    }
+
+    /**
+     * @return the mutation which resolves version {@code txnId} of {@code row}, or {@code null} if
+     * that version cannot be resolved yet.
+     */
+    private static Mutation resolve(byte[] row,long txnId,TxnView txn){
+        if(txn.getEffectiveState()==Txn.State.ROLLEDBACK){
+            Delete delete=new Delete(row,txnId)
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId)
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES,txnId)
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_ANTI_TOMBSTONE_VALUE_BYTES,txnId);
+            delete.setDurability(Durability.SKIP_WAL);
+            delete.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+            return delete;
+        }
+        //we can only write a commit timestamp once the entire transaction hierarchy has committed
+        TxnView t=txn;
+        while(t.getState()==Txn.State.COMMITTED){
+            t=t.getParentTxnView();
+        }
+        if(t!=Txn.ROOT_TRANSACTION) return null;
+
+        Put put=new Put(row);
+        put.add(SIConstants.DEFAULT_FAMILY_BYTES,
+                SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,
+                Bytes.toBytes(txn.getEffectiveCommitTimestamp()));
+        put.setAttribute(SIConstants.SI_EXEMPT,SIConstants.TRUE_BYTES);
+        put.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+        put.setDurability(Durability.SKIP_WAL);
+        return put;
+    }
+}
@@ -205,6 +205,23 @@ public class SegmentedRollForward implements RollForward {
         regionSegment.rowResolved(); //mark it resolved so that we keep track
     }
 
+    /**
+     * Check every segment against the roll forward thresholds, and submit those which exceed them.
+     *
+     * This is called when the region flushes, since that is when a large number of rows have
+     * just been written to disk without a commit timestamp.
+     */
+    public void checkSegments(){
+        if(region.isClosed() || region.isClosing()) return;
+        for(RegionSegment segment : segments){
+            checkAndSubmit(segment);
+        }
+    }
+
+    public Partition getRegion(){
+        return region;
+    }
+
     /*****************************************************************************************************************/
 		/*private helper methods*/
     private static List<Pair<byte[], byte[]>> split(byte[] start,byte[] stop,int numSegments){
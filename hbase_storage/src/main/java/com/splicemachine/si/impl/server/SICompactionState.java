@@ -15,6 +15,10 @@
 
 package com.splicemachine.si.impl.server;
 
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.carrotsearch.hppc.cursors.LongCursor;
 import com.splicemachine.hbase.CellUtils;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.readresolve.RollForward;
@@ -26,13 +30,17 @@ import com.splicemachine.si.impl.store.ActiveTxnCacheSupplier;
 import com.splicemachine.si.impl.txn.CommittedTxn;
 import com.splicemachine.si.impl.txn.RolledBackTxn;
 import com.splicemachine.storage.CellType;
+import com.splicemachine.storage.EntryDecoder;
+import com.splicemachine.storage.index.BitIndex;
 import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -50,10 +58,59 @@ public class SICompactionState {
     private final RollForward rollForward;
     private ByteSlice rowSlice = new ByteSlice();
 
+    /*version purging state*/
+    private final TxnLowWatermark watermark;
+    private final long lowWatermark;
+    private final boolean purgeDeletes;
+    private final EntryDecoder entryDecoder = new EntryDecoder();
+    private final BitSet visibleColumns = new BitSet();
+    private byte[] currentRow;
+    private long deleteTimestamp;
+    private boolean visibleDataSeen;
+    private long purgedCells;
+    private long purgedBytes;
+
     public SICompactionState(TxnSupplier transactionStore,RollForward rollForward,int activeTransactionCacheSize) {
         this.rollForward = rollForward;
         this.transactionStore = new ActiveTxnCacheSupplier(transactionStore,activeTransactionCacheSize);
         this.dataToReturn  =new TreeSet<>(KeyValue.COMPARATOR);
+        this.watermark = null;
+        this.lowWatermark = 0l;
+        this.purgeDeletes = false;
+    }
+
+    /**
+     * Create a compaction state which also removes versions that no transaction can see any longer--that is,
+     * versions which are shadowed by a newer version (or tombstone) whose transaction committed before
+     * the low-watermark.
+     *
+     * @param watermark the low-watermark to purge below
+     * @param purgeDeletes whether tombstones below the watermark can be removed as well. This is only safe when
+     *                     every store file is being compacted (i.e. during a major compaction), otherwise the
+     *                     versions the tombstone hides in the other files would reappear.
+     */
+    public SICompactionState(TxnSupplier transactionStore,RollForward rollForward,int activeTransactionCacheSize,
+                             TxnLowWatermark watermark,boolean purgeDeletes) throws IOException {
+        this.rollForward = rollForward;
+        this.transactionStore = new ActiveTxnCacheSupplier(transactionStore,activeTransactionCacheSize);
+        this.dataToReturn  =new TreeSet<>(KeyValue.COMPARATOR);
+        this.watermark = watermark;
+        this.lowWatermark = watermark.purgeWatermark();
+        this.purgeDeletes = purgeDeletes;
+    }
+
+    /**
+     * @return the number of cells removed because no transaction could see them
+     */
+    public long getPurgedCells() {
+        return purgedCells;
+    }
+
+    /**
+     * @return the total size (in bytes) of the cells removed because no transaction could see them
+     */
+    public long getPurgedBytes() {
+        return purgedBytes;
     }
 
     /**
@@ -64,6 +121,7 @@ public class SICompactionState {
      */
     public void mutate(List<Cell> rawList, List<Cell> results) throws IOException {
         dataToReturn.clear();
+        prefetchTransactions(rawList);
         for (Cell aRawList : rawList) {
             mutate(aRawList);
         }
@@ -90,7 +148,12 @@ public class SICompactionState {
             case TOMBSTONE:
             case ANTI_TOMBSTONE:
             case USER_DATA:
-                if(mutateCommitTimestamp(timestamp,element))
+                TxnView transaction = transactionStore.getTransaction(timestamp);
+                if(isPurgeable(cellType,element,transaction)){
+                    recordPurged(element);
+                    return;
+                }
+                if(mutateCommitTimestamp(transaction,element))
                     dataToReturn.add(element);
                 return;
             default:
@@ -104,6 +167,44 @@ public class SICompactionState {
         }
     }
 
+    /**
+     * Look up every transaction which wrote to {@code rawList} and is not yet cached with a single
+     * bulk call, rather than resolving each version with its own remote lookup.
+     */
+    private void prefetchTransactions(List<Cell> rawList) throws IOException {
+        LongOpenHashSet writers = null;
+        for (Cell element : rawList) {
+            switch (getKeyValueType(element)) {
+                case COMMIT_TIMESTAMP:
+                    ensureTransactionCached(element.getTimestamp(),element);
+                    break;
+                case TOMBSTONE:
+                case ANTI_TOMBSTONE:
+                case USER_DATA:
+                    if(writers==null)
+                        writers = LongOpenHashSet.newInstance();
+                    writers.add(element.getTimestamp());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if(writers==null) return;
+
+        LongArrayList unresolved = LongArrayList.newInstance();
+        for (LongCursor writer : writers) {
+            if(!transactionStore.transactionCached(writer.value))
+                unresolved.add(writer.value);
+        }
+        if(unresolved.size()<2) return; //nothing to gain over a single lookup
+
+        TxnView[] txns = transactionStore.getTransactions(unresolved.toArray());
+        for (TxnView txn : txns) {
+            if(txn!=null)
+                transactionStore.cache(txn);
+        }
+    }
+
     private void ensureTransactionCached(long timestamp,Cell element) {
         if(!transactionStore.transactionCached(timestamp)){
             if(isFailedCommitTimestamp(element)){
@@ -118,8 +219,7 @@ public class SICompactionState {
     /**
      * Replace unknown commit timestamps with actual commit times.
      */
-    private boolean mutateCommitTimestamp(long timestamp,Cell element) throws IOException {
-        TxnView transaction = transactionStore.getTransaction(timestamp);
+    private boolean mutateCommitTimestamp(TxnView transaction,Cell element) throws IOException {
         if(transaction.getEffectiveState()== Txn.State.ROLLEDBACK){
             /*
              * This transaction has been rolled back, so just remove the data
@@ -144,6 +244,67 @@ public class SICompactionState {
         return true;
     }
 
+    /**
+     * Determine whether no transaction can see this version any longer.
+     *
+     * Within a row, the tombstone column sorts before the data column, and versions of a column
+     * are seen newest first. So by the time we see a version, we have already seen every newer
+     * tombstone and every newer version of the same column.
+     */
+    private boolean isPurgeable(CellType cellType,Cell element,TxnView transaction) throws IOException {
+        if(lowWatermark<=0) return false;
+        if(currentRow==null || !Bytes.equals(currentRow,0,currentRow.length,
+                element.getRowArray(),element.getRowOffset(),element.getRowLength())){
+            currentRow = Arrays.copyOfRange(element.getRowArray(),element.getRowOffset(),element.getRowOffset()+element.getRowLength());
+            deleteTimestamp = -1l;
+            visibleDataSeen = false;
+            visibleColumns.clear();
+        }
+        long timestamp = element.getTimestamp();
+        if(timestamp<=deleteTimestamp){
+            //hidden by a tombstone which every transaction can see (including one written by the same transaction)
+            return true;
+        }
+        if(!isVisibleToAll(transaction)) return false;
+
+        switch(cellType){
+            case TOMBSTONE:
+                deleteTimestamp = timestamp;
+                return purgeDeletes;
+            case USER_DATA:
+                /*
+                 * Updates only write the columns which changed, so an older version is only shadowed if
+                 * every column it holds is held by a newer version which everyone can see.
+                 */
+                entryDecoder.set(element.getValueArray(),element.getValueOffset(),element.getValueLength());
+                BitIndex index = entryDecoder.getCurrentIndex();
+                boolean shadowed = visibleDataSeen;
+                for(int i=index.nextSetBit(0);i>=0;i=index.nextSetBit(i+1)){
+                    if(!visibleColumns.get(i)){
+                        shadowed = false;
+                        visibleColumns.set(i);
+                    }
+                }
+                visibleDataSeen = true;
+                return shadowed;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isVisibleToAll(TxnView transaction) {
+        if(transaction==null || transaction.getEffectiveState()!=Txn.State.COMMITTED) return false;
+        long commitTimestamp = transaction.getEffectiveCommitTimestamp();
+        return commitTimestamp>=0 && commitTimestamp<lowWatermark;
+    }
+
+    private void recordPurged(Cell element) {
+        long size = KeyValueUtil.length(element);
+        purgedCells++;
+        purgedBytes+=size;
+        watermark.recordPurged(size);
+    }
+
     private void recordResolved(Cell element, TxnView transaction) {
         rowSlice.set(element.getRowArray(),element.getRowOffset(),element.getRowLength());
         rollForward.recordResolved(rowSlice,transaction.getTxnId());
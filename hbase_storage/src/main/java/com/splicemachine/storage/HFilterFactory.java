@@ -39,4 +39,9 @@ public class HFilterFactory implements DataFilterFactory{
     public DataFilter allocatedFilter(byte[] localAddress){
         return new HFilterWrapper(new AllocatedFilter(localAddress));
     }
+
+    @Override
+    public DataFilter prefixSkipScanFilter(byte[][] sortedPrefixes){
+        return new HFilterWrapper(new PrefixSkipScanFilter(sortedPrefixes));
+    }
 }
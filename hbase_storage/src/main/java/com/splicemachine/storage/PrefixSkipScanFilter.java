@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.storage;
+
+import com.splicemachine.primitives.Bytes;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An HBase filter which only returns rows whose key starts with one of a sorted list of prefixes, and
+ * seeks directly from the end of one prefix to the start of the next, rather than reading the rows in between.
+ *
+ * Because the prefixes are sorted, and the scan is ascending, the filter only ever moves forward through the
+ * prefixes. Once the scan has passed the last prefix, the remainder of the scan is filtered.
+ */
+public class PrefixSkipScanFilter extends FilterBase{
+    private byte[][] prefixes;
+
+    private int current;
+    private boolean seeking;
+
+    public PrefixSkipScanFilter(byte[][] sortedPrefixes){
+        this.prefixes=sortedPrefixes;
+    }
+
+    @Override
+    public boolean filterRowKey(byte[] buffer,int offset,int length){
+        seeking=false;
+        while(current<prefixes.length){
+            byte[] prefix=prefixes[current];
+            if(length>=prefix.length && Bytes.equals(prefix,0,prefix.length,buffer,offset,prefix.length))
+                return false; //the row is in the current prefix
+            if(Bytes.BASE_COMPARATOR.compare(buffer,offset,length,prefix,0,prefix.length)<0){
+                //the row is before the current prefix, so seek ahead to it
+                seeking=true;
+                return false;
+            }
+            current++;
+        }
+        return true;
+    }
+
+    @Override
+    public ReturnCode filterKeyValue(Cell ignored){
+        return seeking? ReturnCode.SEEK_NEXT_USING_HINT: ReturnCode.INCLUDE;
+    }
+
+    @Override
+    public Cell getNextCellHint(Cell currentKV){
+        return KeyValueUtil.createFirstOnRow(prefixes[current]);
+    }
+
+    @Override
+    public boolean filterAllRemaining(){
+        return current>=prefixes.length;
+    }
+
+    public byte[] toByteArray(){
+        int size=4;
+        for(byte[] prefix : prefixes){
+            size+=4+prefix.length;
+        }
+        ByteBuffer buffer=ByteBuffer.allocate(size);
+        buffer.putInt(prefixes.length);
+        for(byte[] prefix : prefixes){
+            buffer.putInt(prefix.length);
+            buffer.put(prefix);
+        }
+        return buffer.array();
+    }
+
+    @SuppressWarnings("unused") //Deserialization method-- REQUIRED
+    public static PrefixSkipScanFilter parseFrom(final byte[] bytes) throws DeserializationException{
+        try{
+            ByteBuffer buffer=ByteBuffer.wrap(bytes);
+            byte[][] prefixes=new byte[buffer.getInt()][];
+            for(int i=0;i<prefixes.length;i++){
+                prefixes[i]=new byte[buffer.getInt()];
+                buffer.get(prefixes[i]);
+            }
+            return new PrefixSkipScanFilter(prefixes);
+        }catch(BufferUnderflowException|NegativeArraySizeException e){
+            throw new DeserializationException(e);
+        }
+    }
+}
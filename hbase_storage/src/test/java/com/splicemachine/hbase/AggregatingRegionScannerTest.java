@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.hbase;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.Encoding;
+import com.splicemachine.hbase.util.IteratorRegionScanner;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.EntryEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AggregatingRegionScannerTest{
+    private static final KryoPool defaultPool=new KryoPool(100);
+    private static final Scan SCAN=new Scan(new byte[]{0},new byte[]{(byte)0xFF});
+
+    @Test
+    public void testReturnsPartialsAcrossSeveralCalls() throws Exception{
+        EntryAggregator counter=new EntryAggregator(null,
+                new EntryAggregator.Function[]{EntryAggregator.Function.COUNT_STAR},new int[]{0});
+        AggregatingRegionScanner scanner=new AggregatingRegionScanner(
+                new IteratorRegionScanner(rows(25,1).iterator(),SCAN),counter,10,100);
+
+        List<Cell> result=new ArrayList<>();
+        long[] expectedCounts={10L,10L,5L};
+        byte[] lastRow=null;
+        for(int call=0;call<expectedCounts.length;call++){
+            result.clear();
+            boolean more=scanner.nextRaw(result);
+            Assert.assertEquals("Only the last call should report the end of the region",call<expectedCounts.length-1,more);
+            Assert.assertEquals("Scalar aggregate should have a single partial per call",1,result.size());
+            Cell cell=result.get(0);
+            Assert.assertTrue("Not a partial aggregate",
+                    CellUtil.matchingColumn(cell,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.AGGREGATE_COLUMN_BYTES));
+            Assert.assertEquals("Incorrect count for call "+call,expectedCounts[call],
+                    counter.decodePartial(CellUtil.cloneValue(cell)).getCount(0));
+
+            byte[] row=CellUtil.cloneRow(cell);
+            if(lastRow!=null)
+                Assert.assertTrue("Partials should be returned in row order",Bytes.compareTo(lastRow,row)<0);
+            lastRow=row;
+        }
+        Assert.assertArrayEquals("Last partial should have the key of the last row",Bytes.toBytes(24),lastRow);
+        Assert.assertTrue("Scanner should be done",scanner.isFilterDone());
+
+        result.clear();
+        Assert.assertFalse("Scanner should be exhausted",scanner.nextRaw(result));
+        Assert.assertTrue("Exhausted scanner should return nothing",result.isEmpty());
+    }
+
+    @Test
+    public void testFlushesPartialsOnceTheGroupLimitIsReached() throws Exception{
+        EntryAggregator grouped=new EntryAggregator(new int[]{0},
+                new EntryAggregator.Function[]{EntryAggregator.Function.COUNT_STAR},new int[]{0});
+        //20 rows in 10 groups, so every group shows up in two batches
+        AggregatingRegionScanner scanner=new AggregatingRegionScanner(
+                new IteratorRegionScanner(rows(20,10).iterator(),SCAN),grouped,1000,4);
+
+        List<Cell> result=new ArrayList<>();
+        Set<Long> groups=new HashSet<>();
+        long totalCount=0L;
+        int calls=0;
+        boolean more;
+        do{
+            result.clear();
+            more=scanner.nextRaw(result);
+            calls++;
+            Assert.assertTrue("Too many groups returned by a single call: "+result.size(),result.size()<=4);
+            for(Cell cell : result){
+                EntryAggregator.Partial partial=grouped.decodePartial(CellUtil.cloneValue(cell));
+                groups.add(Encoding.decodeLong(partial.getGroupValue(0)));
+                totalCount+=partial.getCount(0);
+            }
+        }while(more);
+        //five calls fill up the group limit, and a last one finds the end of the region
+        Assert.assertEquals("Incorrect number of calls",6,calls);
+        Assert.assertEquals("Incorrect number of groups",10,groups.size());
+        Assert.assertEquals("Incorrect total count",20L,totalCount);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static List<Set<Cell>> rows(int numRows,int numGroups) throws Exception{
+        List<Set<Cell>> rows=new ArrayList<>(numRows);
+        for(int i=0;i<numRows;i++){
+            byte[] value=encode(i%numGroups);
+            Cell cell=new KeyValue(Bytes.toBytes(i),SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,1L,value);
+            rows.add(Collections.singleton(cell));
+        }
+        return rows;
+    }
+
+    private static byte[] encode(long group) throws Exception{
+        BitSet setCols=new BitSet();
+        BitSet scalarFields=new BitSet();
+        setCols.set(0);
+        scalarFields.set(0);
+        EntryEncoder encoder=EntryEncoder.create(defaultPool,1,setCols,scalarFields,null,null);
+        encoder.getEntryEncoder().encodeNext(group);
+        return encoder.encode();
+    }
+}
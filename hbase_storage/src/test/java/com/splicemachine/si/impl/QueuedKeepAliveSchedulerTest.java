@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl;
+
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnStore;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.coprocessor.TxnMessage;
+import com.splicemachine.timestamp.api.TimestampSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around batching keep alives by transaction table bucket.
+ */
+public class QueuedKeepAliveSchedulerTest{
+    private static final long BUCKETS=SIConstants.TRANSACTION_TABLE_BUCKET_COUNT;
+
+    private final List<long[]> keepAliveCalls=Collections.synchronizedList(new ArrayList<long[]>());
+    private QueuedKeepAliveScheduler scheduler;
+
+    @After
+    public void tearDown() throws Exception{
+        if(scheduler!=null)
+            scheduler.stop();
+    }
+
+    @Test
+    public void testOneKeepAlivePerBucketPerTick() throws Exception{
+        TxnStore store=recordingStore(Txn.State.ACTIVE);
+        scheduler=new QueuedKeepAliveScheduler(200l,TimeUnit.HOURS.toMillis(1),2,store);
+        scheduler.scheduleKeepAlive(txn(1l,Txn.State.ACTIVE));
+        scheduler.scheduleKeepAlive(txn(1l+BUCKETS,Txn.State.ACTIVE));
+        scheduler.scheduleKeepAlive(txn(1l+2*BUCKETS,Txn.State.ACTIVE));
+        scheduler.scheduleKeepAlive(txn(2l,Txn.State.ACTIVE));
+
+        waitForCalls(2);
+
+        //the first tick sends one call for each of the two buckets
+        List<long[]> firstTick=new ArrayList<>(keepAliveCalls.subList(0,2));
+        long[] bucketOne=null;
+        long[] bucketTwo=null;
+        for(long[] call:firstTick){
+            if((call[0]&(BUCKETS-1))==1l) bucketOne=call;
+            else bucketTwo=call;
+        }
+        Assert.assertNotNull("No keep alive for the first bucket!",bucketOne);
+        Assert.assertNotNull("No keep alive for the second bucket!",bucketTwo);
+        Arrays.sort(bucketOne);
+        Assert.assertArrayEquals("Incorrect transactions in the first bucket!",new long[]{1l,1l+BUCKETS,1l+2*BUCKETS},bucketOne);
+        Assert.assertArrayEquals("Incorrect transactions in the second bucket!",new long[]{2l},bucketTwo);
+        Assert.assertTrue("Incorrect batch count!",scheduler.getBatchCount()>=2l);
+    }
+
+    @Test
+    public void testFinishedTransactionsAreRemoved() throws Exception{
+        final AtomicReference<Txn.State> committedState=new AtomicReference<>(Txn.State.ACTIVE);
+        Txn committed=txn(1l,Txn.State.ACTIVE);
+        when(committed.getEffectiveState()).thenAnswer(new Answer<Txn.State>(){
+            @Override
+            public Txn.State answer(InvocationOnMock invocation) throws Throwable{
+                return committedState.get();
+            }
+        });
+        Txn timedOut=txn(2l,Txn.State.ACTIVE);
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                keepAliveCalls.add(txnIds);
+                Txn.State[] states=new Txn.State[txnIds.length];
+                for(int i=0;i<txnIds.length;i++){
+                    //the second transaction has already timed out on the server
+                    states[i]=txnIds[i]==2l?Txn.State.ROLLEDBACK:Txn.State.ACTIVE;
+                }
+                return states;
+            }
+        });
+        scheduler=new QueuedKeepAliveScheduler(20l,TimeUnit.HOURS.toMillis(1),1,store);
+        scheduler.scheduleKeepAlive(committed);
+        scheduler.scheduleKeepAlive(timedOut);
+
+        waitForCalls(2);
+        verify(timedOut,timeout(10000)).rollback();
+        committedState.set(Txn.State.COMMITTED);
+        //let a tick notice the commit, then make sure nothing is kept alive any longer
+        Thread.sleep(200);
+        int calls=keepAliveCalls.size();
+        Thread.sleep(200);
+        Assert.assertEquals("Finished transactions are still kept alive!",calls,keepAliveCalls.size());
+        synchronized(keepAliveCalls){
+            int timedOutCalls=0;
+            for(long[] call:keepAliveCalls){
+                for(long txnId:call){
+                    if(txnId==2l) timedOutCalls++;
+                }
+            }
+            Assert.assertEquals("Timed out transaction was kept alive after it timed out!",1,timedOutCalls);
+        }
+    }
+
+    @Test
+    public void testFallsBackToSingleKeepAlivesAfterSplit() throws Exception{
+        TxnNetworkLayer network=mock(TxnNetworkLayer.class);
+        TxnNetworkLayerFactory networkFactory=mock(TxnNetworkLayerFactory.class);
+        when(networkFactory.accessTxnNetwork()).thenReturn(network);
+        when(network.keepAlive(any(byte[].class),any(TxnMessage.MultiTxnRequest.class))).thenAnswer(new Answer<TxnMessage.KeepAliveResponse>(){
+            @Override
+            public TxnMessage.KeepAliveResponse answer(InvocationOnMock invocation) throws Throwable{
+                TxnMessage.MultiTxnRequest request=(TxnMessage.MultiTxnRequest)invocation.getArguments()[1];
+                long[] txnIds=new long[request.getTxnIdsCount()];
+                for(int i=0;i<txnIds.length;i++){
+                    txnIds[i]=request.getTxnIds(i);
+                }
+                keepAliveCalls.add(txnIds);
+                //the bucket has split, so this region only holds the first transaction
+                TxnMessage.KeepAliveResponse.Builder response=TxnMessage.KeepAliveResponse.newBuilder();
+                response.addAliveTxnIds(txnIds[0]);
+                for(int i=1;i<txnIds.length;i++){
+                    response.addMisdirectedTxnIds(txnIds[i]);
+                }
+                return response.build();
+            }
+        });
+        when(network.lifecycleAction(any(byte[].class),any(TxnMessage.TxnLifecycleMessage.class)))
+                .thenReturn(TxnMessage.ActionResponse.newBuilder().setContinue(true).build());
+        TxnStore store=new CoprocessorTxnStore(networkFactory,mock(TimestampSource.class),null);
+
+        scheduler=new QueuedKeepAliveScheduler(20l,TimeUnit.HOURS.toMillis(1),1,store);
+        scheduler.scheduleKeepAlive(txn(1l,Txn.State.ACTIVE));
+        scheduler.scheduleKeepAlive(txn(1l+BUCKETS,Txn.State.ACTIVE));
+
+        //the misdirected transaction is kept alive on its own, and stays registered for the next tick
+        waitForCalls(2);
+        verify(network,atLeastOnce()).lifecycleAction(any(byte[].class),any(TxnMessage.TxnLifecycleMessage.class));
+        synchronized(keepAliveCalls){
+            for(long[] call:keepAliveCalls){
+                Assert.assertEquals("Both transactions should be batched on each tick!",2,call.length);
+            }
+        }
+    }
+
+    @Test
+    public void testFallsBackToSingleKeepAlivesWhenBatchCallFails() throws Exception{
+        TxnNetworkLayer network=mock(TxnNetworkLayer.class);
+        TxnNetworkLayerFactory networkFactory=mock(TxnNetworkLayerFactory.class);
+        when(networkFactory.accessTxnNetwork()).thenReturn(network);
+        //one region fails the call, the other is on a server which doesn't know about it
+        when(network.keepAlive(any(byte[].class),any(TxnMessage.MultiTxnRequest.class)))
+                .thenThrow(new IOException("keepAliveTransactions failed"))
+                .thenReturn(null);
+        when(network.lifecycleAction(any(byte[].class),any(TxnMessage.TxnLifecycleMessage.class)))
+                .thenReturn(TxnMessage.ActionResponse.newBuilder().setContinue(true).build());
+        TxnStore store=new CoprocessorTxnStore(networkFactory,mock(TimestampSource.class),null);
+
+        Txn.State[] states=store.keepAlive(new long[]{1l,1l+BUCKETS,2l});
+        Assert.assertArrayEquals("Transactions were not kept alive individually!",
+                new Txn.State[]{Txn.State.ACTIVE,Txn.State.ACTIVE,Txn.State.ACTIVE},states);
+        verify(network,times(2)).keepAlive(any(byte[].class),any(TxnMessage.MultiTxnRequest.class));
+        verify(network,times(3)).lifecycleAction(any(byte[].class),any(TxnMessage.TxnLifecycleMessage.class));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private TxnStore recordingStore(final Txn.State state) throws Exception{
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                keepAliveCalls.add(txnIds.clone());
+                Txn.State[] states=new Txn.State[txnIds.length];
+                Arrays.fill(states,state);
+                return states;
+            }
+        });
+        return store;
+    }
+
+    private void waitForCalls(int count) throws InterruptedException{
+        long deadline=System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+        while(keepAliveCalls.size()<count){
+            Assert.assertTrue("Keep alives were not sent in time!",System.nanoTime()<deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Txn txn(long txnId,Txn.State state){
+        Txn txn=mock(Txn.class);
+        when(txn.getTxnId()).thenReturn(txnId);
+        when(txn.getEffectiveState()).thenReturn(state);
+        return txn;
+    }
+}
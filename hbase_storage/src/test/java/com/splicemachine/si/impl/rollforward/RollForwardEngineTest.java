@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.rollforward;
+
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.concurrent.traffic.TrafficController;
+import com.splicemachine.hbase.util.IteratorRegionScanner;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.readresolve.RegionSegmentContext;
+import com.splicemachine.si.impl.txn.CommittedTxn;
+import com.splicemachine.si.impl.txn.InheritingTxnView;
+import com.splicemachine.si.impl.txn.RolledBackTxn;
+import com.splicemachine.storage.RegionPartition;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around rolling forward region segments in the background.
+ */
+public class RollForwardEngineTest{
+    private final Map<byte[], Set<Cell>> rowMap=new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    private final List<Mutation> mutations=Collections.synchronizedList(new ArrayList<Mutation>());
+    private HRegion region;
+    private TxnSupplier txnSupplier;
+    private TrafficController throttle;
+    private RollForwardEngine engine;
+
+    @Before
+    public void setUp() throws Exception{
+        rowMap.clear();
+        mutations.clear();
+        region=mock(HRegion.class);
+        HRegionInfo info=mock(HRegionInfo.class);
+        when(info.getStartKey()).thenReturn(HConstants.EMPTY_BYTE_ARRAY);
+        when(info.getEndKey()).thenReturn(HConstants.EMPTY_BYTE_ARRAY);
+        when(info.getRegionNameAsString()).thenReturn("region");
+        when(region.getRegionInfo()).thenReturn(info);
+        when(region.getScanner(any(Scan.class))).thenAnswer(new Answer<RegionScanner>(){
+            @Override
+            public RegionScanner answer(InvocationOnMock invocation) throws Throwable{
+                return new IteratorRegionScanner(rowMap.values().iterator(),(Scan)invocation.getArguments()[0]);
+            }
+        });
+        when(region.batchMutate(any(Mutation[].class))).thenAnswer(new Answer<Object>(){
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable{
+                mutations.addAll(Arrays.asList((Mutation[])invocation.getArguments()[0]));
+                return null;
+            }
+        });
+        txnSupplier=mock(TxnSupplier.class);
+        throttle=mock(TrafficController.class);
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        if(engine!=null)
+            engine.shutdown();
+    }
+
+    @Test
+    public void testResolvesCommittedAndRolledBackWriters() throws Exception{
+        TxnView committed=new CommittedTxn(1l,2l);
+        TxnView rolledBack=new RolledBackTxn(3l);
+        TxnView active=new InheritingTxnView(Txn.ROOT_TRANSACTION,4l,4l,true,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ACTIVE);
+        transactions(committed,rolledBack,active);
+        addData("a",1l);
+        addData("b",3l);
+        addData("c",4l);
+
+        submitAndWait(10);
+
+        Assert.assertEquals("Incorrect number of mutations!",2,mutations.size());
+        Mutation commit=findMutation("a");
+        Assert.assertTrue("Committed row should get a commit timestamp!",commit instanceof Put);
+        List<Cell> commitCells=commit.getFamilyCellMap().get(SIConstants.DEFAULT_FAMILY_BYTES);
+        Assert.assertEquals("Incorrect number of commit cells!",1,commitCells.size());
+        Cell commitCell=commitCells.get(0);
+        Assert.assertTrue("Incorrect commit column!",
+                CellUtil.matchingQualifier(commitCell,SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES));
+        Assert.assertEquals("Incorrect commit version!",1l,commitCell.getTimestamp());
+        Assert.assertEquals("Incorrect commit timestamp!",2l,Bytes.toLong(CellUtil.cloneValue(commitCell)));
+
+        Mutation rollback=findMutation("b");
+        Assert.assertTrue("Rolled back row should be deleted!",rollback instanceof Delete);
+        Assert.assertEquals("Incorrect delete version!",3l,rollback.getTimeStamp());
+
+        Assert.assertNull("Active row should not be resolved!",findMutation("c"));
+        //every writer is looked up in a single batch
+        verify(txnSupplier,times(1)).getTransactions(any(long[].class));
+    }
+
+    @Test
+    public void testDoesNotResolveChildOfUncommittedParent() throws Exception{
+        TxnView parent=new InheritingTxnView(Txn.ROOT_TRANSACTION,5l,5l,true,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ACTIVE);
+        TxnView child=new InheritingTxnView(parent,6l,6l,Txn.IsolationLevel.SNAPSHOT_ISOLATION,
+                false,false,true,true,7l,-1l,Txn.State.COMMITTED);
+        transactions(child);
+        addData("a",6l);
+
+        submitAndWait(10);
+
+        Assert.assertTrue("Child of an active parent should not be resolved!",mutations.isEmpty());
+        verify(throttle,never()).acquire(anyInt());
+    }
+
+    @Test
+    public void testSkipsAlreadyResolvedVersions() throws Exception{
+        transactions(new CommittedTxn(1l,2l));
+        addData("a",1l);
+        addCommitTimestamp("a",1l,2l);
+
+        submitAndWait(10);
+
+        Assert.assertTrue("Resolved row should not be resolved again!",mutations.isEmpty());
+        verify(txnSupplier,never()).getTransactions(any(long[].class));
+    }
+
+    @Test
+    public void testBatchesAreThrottled() throws Exception{
+        transactions(new CommittedTxn(1l,2l));
+        for(int i=0;i<5;i++){
+            addData("row"+i,1l);
+        }
+
+        submitAndWait(2);
+
+        Assert.assertEquals("Incorrect number of mutations!",5,mutations.size());
+        InOrder inOrder=inOrder(throttle,region);
+        inOrder.verify(throttle).acquire(2);
+        inOrder.verify(region).batchMutate(any(Mutation[].class));
+        inOrder.verify(throttle).acquire(2);
+        inOrder.verify(region).batchMutate(any(Mutation[].class));
+        inOrder.verify(throttle).acquire(1);
+        inOrder.verify(region).batchMutate(any(Mutation[].class));
+    }
+
+    @Test
+    public void testStopsWhenRegionCloses() throws Exception{
+        transactions(new CommittedTxn(1l,2l));
+        addData("a",1l);
+        addData("b",1l);
+        when(region.isClosing()).thenReturn(true);
+
+        submitAndWait(1);
+
+        Assert.assertTrue("Closing region should not be written to!",mutations.isEmpty());
+        verify(region,never()).batchMutate(any(Mutation[].class));
+        verify(txnSupplier,never()).getTransactions(any(long[].class));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void submitAndWait(int batchSize) throws Exception{
+        SConfiguration config=mock(SConfiguration.class);
+        when(config.getRollForwardSegments()).thenReturn(1);
+        when(config.getRollForwardRowThreshold()).thenReturn(Long.MAX_VALUE);
+        when(config.getRollForwardTxnThreshold()).thenReturn(Long.MAX_VALUE);
+        when(config.getRollForwardInterval()).thenReturn(TimeUnit.HOURS.toMillis(1));
+        when(config.getRollForwardBatchSize()).thenReturn(batchSize);
+        engine=new RollForwardEngine(config,txnSupplier,throttle);
+
+        final CountDownLatch completed=new CountDownLatch(1);
+        RegionSegmentContext context=mock(RegionSegmentContext.class);
+        doAnswer(new Answer<Void>(){
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable{
+                completed.countDown();
+                return null;
+            }
+        }).when(context).complete();
+
+        engine.submitAction(new RegionPartition(region),HConstants.EMPTY_START_ROW,HConstants.EMPTY_END_ROW,context);
+        Assert.assertTrue("Segment was not rolled forward!",completed.await(10,TimeUnit.SECONDS));
+    }
+
+    private void transactions(final TxnView... txns) throws Exception{
+        when(txnSupplier.getTransactions(any(long[].class))).thenAnswer(new Answer<TxnView[]>(){
+            @Override
+            public TxnView[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                TxnView[] found=new TxnView[txnIds.length];
+                for(int i=0;i<txnIds.length;i++){
+                    for(TxnView txn:txns){
+                        if(txn.getTxnId()==txnIds[i])
+                            found[i]=txn;
+                    }
+                }
+                return found;
+            }
+        });
+    }
+
+    private void addData(String row,long txnId){
+        add(new KeyValue(Bytes.toBytes(row),SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId,Bytes.toBytes(row)));
+    }
+
+    private void addCommitTimestamp(String row,long txnId,long commitTs){
+        add(new KeyValue(Bytes.toBytes(row),SIConstants.DEFAULT_FAMILY_BYTES,
+                SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,Bytes.toBytes(commitTs)));
+    }
+
+    private void add(Cell cell){
+        byte[] row=CellUtil.cloneRow(cell);
+        Set<Cell> cells=rowMap.get(row);
+        if(cells==null){
+            cells=new TreeSet<Cell>(KeyValue.COMPARATOR);
+            rowMap.put(row,cells);
+        }
+        cells.add(cell);
+    }
+
+    private Mutation findMutation(String row){
+        synchronized(mutations){
+            for(Mutation mutation:mutations){
+                if(Bytes.equals(mutation.getRow(),Bytes.toBytes(row)))
+                    return mutation;
+            }
+        }
+        return null;
+    }
+}
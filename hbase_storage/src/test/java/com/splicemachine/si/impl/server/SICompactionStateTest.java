@@ -0,0 +1,274 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.server;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.splicemachine.si.api.readresolve.RollForward;
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.txn.CommittedTxn;
+import com.splicemachine.si.impl.txn.RolledBackTxn;
+import com.splicemachine.storage.EntryEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests around purging versions below the low-watermark during compaction.
+ */
+public class SICompactionStateTest{
+    private static final KryoPool defaultPool=new KryoPool(100);
+    private static final byte[] ROW=Bytes.toBytes("row");
+    private static final long WATERMARK=100l;
+
+    private final LongObjectOpenHashMap<TxnView> txns=new LongObjectOpenHashMap<>();
+    private TxnSupplier txnSupplier;
+    private TxnLowWatermark watermark;
+
+    @Before
+    public void setUp() throws Exception{
+        txns.clear();
+        txnSupplier=mock(TxnSupplier.class);
+        when(txnSupplier.getTransaction(anyLong())).thenAnswer(new Answer<TxnView>(){
+            @Override
+            public TxnView answer(InvocationOnMock invocation) throws Throwable{
+                return txns.get((Long)invocation.getArguments()[0]);
+            }
+        });
+        when(txnSupplier.getTransaction(anyLong(),anyBoolean())).thenAnswer(new Answer<TxnView>(){
+            @Override
+            public TxnView answer(InvocationOnMock invocation) throws Throwable{
+                return txns.get((Long)invocation.getArguments()[0]);
+            }
+        });
+        when(txnSupplier.getTransactions(any(long[].class))).thenAnswer(new Answer<TxnView[]>(){
+            @Override
+            public TxnView[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                TxnView[] found=new TxnView[txnIds.length];
+                for(int i=0;i<txnIds.length;i++){
+                    found[i]=txns.get(txnIds[i]);
+                }
+                return found;
+            }
+        });
+        watermark=mock(TxnLowWatermark.class);
+        when(watermark.purgeWatermark()).thenReturn(WATERMARK);
+    }
+
+    @Test
+    public void testTombstoneBelowWatermarkKeptInMinorCompaction() throws Exception{
+        committed(10l,11l);
+        committed(20l,21l);
+        Cell tombstone=tombstone(20l);
+        Cell data=data(10l,0);
+
+        SICompactionState state=newState(false);
+        List<Cell> results=compact(state,tombstone,data);
+        Assert.assertTrue("Tombstone should be kept in a minor compaction!",results.contains(tombstone));
+        Assert.assertFalse("Deleted version should be purged!",results.contains(data));
+        Assert.assertEquals("Incorrect number of purged cells!",1l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testTombstoneBelowWatermarkDroppedInMajorCompaction() throws Exception{
+        committed(10l,11l);
+        committed(20l,21l);
+        Cell tombstone=tombstone(20l);
+        Cell data=data(10l,0);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,tombstone,data);
+        Assert.assertFalse("Tombstone should be dropped in a major compaction!",results.contains(tombstone));
+        Assert.assertFalse("Deleted version should be purged!",results.contains(data));
+        Assert.assertEquals("Incorrect number of purged cells!",2l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testInsertDeletedInSameTransactionIsPurged() throws Exception{
+        committed(10l,11l);
+        //the version and its tombstone share a timestamp
+        Cell tombstone=tombstone(10l);
+        Cell data=data(10l,0);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,tombstone,data);
+        Assert.assertFalse("Tombstone should be dropped in a major compaction!",results.contains(tombstone));
+        Assert.assertFalse("Version deleted by its own transaction should be purged!",results.contains(data));
+        Assert.assertEquals("Incorrect number of purged cells!",2l,state.getPurgedCells());
+
+        state=newState(false);
+        results=compact(state,tombstone,data);
+        Assert.assertTrue("Tombstone should be kept in a minor compaction!",results.contains(tombstone));
+        Assert.assertFalse("Version deleted by its own transaction should be purged!",results.contains(data));
+    }
+
+    @Test
+    public void testOlderVersionKeptWhileAnyColumnIsNotShadowed() throws Exception{
+        committed(10l,11l);
+        committed(20l,21l);
+        Cell insert=data(10l,0,1);
+        Cell update=data(20l,0);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,update,insert);
+        Assert.assertTrue("Newer version should be kept!",results.contains(update));
+        Assert.assertTrue("Older version still holds an unshadowed column!",results.contains(insert));
+        Assert.assertEquals("Incorrect number of purged cells!",0l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testOlderVersionPurgedOnceEveryColumnIsShadowed() throws Exception{
+        committed(10l,11l);
+        committed(20l,21l);
+        committed(30l,31l);
+        Cell insert=data(10l,0,1);
+        Cell firstUpdate=data(20l,0);
+        Cell secondUpdate=data(30l,1);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,secondUpdate,firstUpdate,insert);
+        Assert.assertTrue("Newest version should be kept!",results.contains(secondUpdate));
+        Assert.assertTrue("Update holds the newest value of column 0!",results.contains(firstUpdate));
+        Assert.assertFalse("Every column of the oldest version is shadowed!",results.contains(insert));
+        Assert.assertEquals("Incorrect number of purged cells!",1l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testAntiTombstoneAfterTombstone() throws Exception{
+        committed(5l,6l);
+        committed(10l,11l);
+        committed(20l,21l);
+        Cell antiTombstone=antiTombstone(20l);
+        Cell tombstone=tombstone(10l);
+        Cell reinsert=data(20l,0);
+        Cell deleted=data(5l,0);
+
+        SICompactionState state=newState(false);
+        List<Cell> results=compact(state,antiTombstone,tombstone,reinsert,deleted);
+        Assert.assertTrue("Anti-tombstone should be kept!",results.contains(antiTombstone));
+        Assert.assertTrue("Tombstone should be kept in a minor compaction!",results.contains(tombstone));
+        Assert.assertTrue("Version written after the delete should be kept!",results.contains(reinsert));
+        Assert.assertFalse("Version written before the delete should be purged!",results.contains(deleted));
+        Assert.assertEquals("Incorrect number of purged cells!",1l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testVersionsCommittedAtOrAboveWatermarkAreKept() throws Exception{
+        committed(10l,11l);
+        committed(90l,WATERMARK);
+        committed(150l,151l);
+        Cell tombstone=tombstone(150l);
+        Cell update=data(90l,0);
+        Cell insert=data(10l,0);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,tombstone,update,insert);
+        Assert.assertTrue("Tombstone above the watermark should be kept!",results.contains(tombstone));
+        Assert.assertTrue("Version committed at the watermark should be kept!",results.contains(update));
+        Assert.assertTrue("Version shadowed only at the watermark should be kept!",results.contains(insert));
+        Assert.assertEquals("Incorrect number of purged cells!",0l,state.getPurgedCells());
+    }
+
+    @Test
+    public void testRolledBackVersionsDoNotShadow() throws Exception{
+        committed(10l,11l);
+        txns.put(20l,new RolledBackTxn(20l));
+        txns.put(30l,new RolledBackTxn(30l));
+        Cell rolledBackTombstone=tombstone(30l);
+        Cell rolledBackUpdate=data(20l,0);
+        Cell insert=data(10l,0);
+
+        SICompactionState state=newState(true);
+        List<Cell> results=compact(state,rolledBackTombstone,rolledBackUpdate,insert);
+        Assert.assertFalse("Rolled back tombstone should be removed!",results.contains(rolledBackTombstone));
+        Assert.assertFalse("Rolled back version should be removed!",results.contains(rolledBackUpdate));
+        Assert.assertTrue("Version shadowed only by rolled back writes should be kept!",results.contains(insert));
+        Assert.assertEquals("Rolled back versions are not purged versions!",0l,state.getPurgedCells());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private SICompactionState newState(boolean purgeDeletes) throws IOException{
+        return new SICompactionState(txnSupplier,mock(RollForward.class),1024,watermark,purgeDeletes);
+    }
+
+    private void committed(long txnId,long commitTs){
+        txns.put(txnId,new CommittedTxn(txnId,commitTs));
+    }
+
+    private static List<Cell> compact(SICompactionState state,Cell... cells) throws IOException{
+        List<Cell> rawList=new ArrayList<>(Arrays.asList(cells));
+        Collections.sort(rawList,KeyValue.COMPARATOR);
+        List<Cell> results=new ArrayList<>();
+        state.mutate(rawList,results);
+        //strip the commit timestamps the compaction adds, so that only the original versions remain
+        List<Cell> versions=new ArrayList<>(results.size());
+        for(Cell cell:results){
+            if(!CellUtil.matchingQualifier(cell,SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES))
+                versions.add(cell);
+        }
+        return versions;
+    }
+
+    private static Cell tombstone(long txnId){
+        return new KeyValue(ROW,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES,
+                txnId,SIConstants.EMPTY_BYTE_ARRAY);
+    }
+
+    private static Cell antiTombstone(long txnId){
+        return new KeyValue(ROW,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES,
+                txnId,SIConstants.SNAPSHOT_ISOLATION_ANTI_TOMBSTONE_VALUE_BYTES);
+    }
+
+    private static Cell data(long txnId,int... columns){
+        BitSet setCols=new BitSet();
+        BitSet scalarFields=new BitSet();
+        for(int column:columns){
+            setCols.set(column);
+            scalarFields.set(column);
+        }
+        EntryEncoder encoder=EntryEncoder.create(defaultPool,columns[columns.length-1]+1,setCols,scalarFields,null,null);
+        for(int column:columns){
+            encoder.getEntryEncoder().encodeNext((long)column);
+        }
+        try{
+            return new KeyValue(ROW,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId,encoder.encode());
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests around seeking between the prefixes of a PrefixSkipScanFilter.
+ */
+public class PrefixSkipScanFilterTest{
+
+    @Test
+    public void testSeeksBetweenPrefixes() throws Exception{
+        PrefixSkipScanFilter filter=new PrefixSkipScanFilter(prefixes("b","d"));
+
+        assertSeeksTo(filter,"a","b");
+        assertIncluded(filter,"b");
+        assertIncluded(filter,"b1");
+        assertSeeksTo(filter,"c","d");
+        assertIncluded(filter,"d\u0000x");
+        Assert.assertFalse("Should not be done before passing the last prefix!",filter.filterAllRemaining());
+
+        Assert.assertTrue("Row after the last prefix should be filtered!",filterRowKey(filter,"e"));
+        Assert.assertTrue("Should be done after passing the last prefix!",filter.filterAllRemaining());
+    }
+
+    @Test
+    public void testPrefixOfLaterPrefix() throws Exception{
+        PrefixSkipScanFilter filter=new PrefixSkipScanFilter(prefixes("b","b1"));
+
+        assertIncluded(filter,"b");
+        assertIncluded(filter,"b0");
+        assertIncluded(filter,"b1");
+        Assert.assertTrue("Row after the last prefix should be filtered!",filterRowKey(filter,"c"));
+    }
+
+    @Test
+    public void testRegionStartingInsidePrefix() throws Exception{
+        //the region starts part way through the rows of the first prefix
+        PrefixSkipScanFilter filter=new PrefixSkipScanFilter(prefixes("b","d"));
+        assertIncluded(filter,"b\u0005");
+        assertSeeksTo(filter,"c","d");
+    }
+
+    @Test
+    public void testRegionStartingBetweenPrefixes() throws Exception{
+        //the region starts after the first prefix, so the filter must skip over it
+        PrefixSkipScanFilter filter=new PrefixSkipScanFilter(prefixes("b","d","f"));
+        assertSeeksTo(filter,"c","d");
+        assertIncluded(filter,"d");
+        assertSeeksTo(filter,"e","f");
+    }
+
+    @Test
+    public void testRegionStartingAfterAllPrefixes() throws Exception{
+        PrefixSkipScanFilter filter=new PrefixSkipScanFilter(prefixes("b","d"));
+        Assert.assertTrue("Row after every prefix should be filtered!",filterRowKey(filter,"z"));
+        Assert.assertTrue("Should be done after passing the last prefix!",filter.filterAllRemaining());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception{
+        byte[][] prefixes=prefixes("b","d\u0000\u0001");
+        PrefixSkipScanFilter filter=PrefixSkipScanFilter.parseFrom(new PrefixSkipScanFilter(prefixes).toByteArray());
+
+        Assert.assertArrayEquals("Incorrect serialized form!",new PrefixSkipScanFilter(prefixes).toByteArray(),filter.toByteArray());
+        assertSeeksTo(filter,"a","b");
+        assertSeeksTo(filter,"c","d\u0000\u0001");
+    }
+
+    @Test
+    public void testSerializationRoundTripWithoutPrefixes() throws Exception{
+        PrefixSkipScanFilter filter=PrefixSkipScanFilter.parseFrom(new PrefixSkipScanFilter(new byte[0][]).toByteArray());
+        Assert.assertTrue("A filter without prefixes filters everything!",filter.filterAllRemaining());
+    }
+
+    @Test(expected=DeserializationException.class)
+    public void testTruncatedSerializedFormIsRejected() throws Exception{
+        byte[] bytes=new PrefixSkipScanFilter(prefixes("b","d")).toByteArray();
+        byte[] truncated=new byte[bytes.length-1];
+        System.arraycopy(bytes,0,truncated,0,truncated.length);
+        PrefixSkipScanFilter.parseFrom(truncated);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static byte[][] prefixes(String... prefixes){
+        byte[][] bytes=new byte[prefixes.length][];
+        for(int i=0;i<prefixes.length;i++){
+            bytes[i]=Bytes.toBytes(prefixes[i]);
+        }
+        return bytes;
+    }
+
+    private static boolean filterRowKey(PrefixSkipScanFilter filter,String row){
+        byte[] key=Bytes.toBytes(row);
+        return filter.filterRowKey(key,0,key.length);
+    }
+
+    private static Cell cell(String row){
+        return new KeyValue(Bytes.toBytes(row),Bytes.toBytes("V"),Bytes.toBytes("7"),1l,Bytes.toBytes("value"));
+    }
+
+    private static void assertIncluded(PrefixSkipScanFilter filter,String row){
+        Assert.assertFalse("Row "+row+" should not be filtered!",filterRowKey(filter,row));
+        Assert.assertEquals("Row "+row+" should be included!",Filter.ReturnCode.INCLUDE,filter.filterKeyValue(cell(row)));
+    }
+
+    private static void assertSeeksTo(PrefixSkipScanFilter filter,String row,String nextPrefix){
+        Assert.assertFalse("Row "+row+" should not be filtered!",filterRowKey(filter,row));
+        Cell current=cell(row);
+        Assert.assertEquals("Row "+row+" should seek!",Filter.ReturnCode.SEEK_NEXT_USING_HINT,filter.filterKeyValue(current));
+        Assert.assertArrayEquals("Incorrect seek hint for row "+row+"!",Bytes.toBytes(nextPrefix),
+                CellUtil.cloneRow(filter.getNextCellHint(current)));
+    }
+}
@@ -42,6 +42,7 @@ import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.driver.SIEnvironment;
 import com.splicemachine.storage.DataFilterFactory;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.PartitionInfoCache;
 import com.splicemachine.timestamp.api.TimestampSource;
 
@@ -111,6 +112,11 @@ public class MPipelineEnv  implements PipelineEnvironment{
         return siEnv.rollForward();
     }
 
+    @Override
+    public RollForward rollForward(Partition partition){
+        return siEnv.rollForward(partition);
+    }
+
     @Override
     public TxnOperationFactory operationFactory(){
         return siEnv.operationFactory();
@@ -121,6 +121,11 @@ public class MemSIEnvironment implements SIEnvironment{
         return NoopRollForward.INSTANCE;
     }
 
+    @Override
+    public RollForward rollForward(Partition partition){
+        return NoopRollForward.INSTANCE;
+    }
+
     @Override
     public TxnOperationFactory operationFactory(){
         return txnOpFactory;
@@ -38,4 +38,9 @@ public class NoOpConstraintChecker implements ConstraintChecker{
     public MutationStatus checkConstraint(KVPair mutation,DataResult existingRow) throws IOException{
         return opFactory.success();
     }
+
+    @Override
+    public boolean appliesTo(KVPair.Type writeType){
+        return false;
+    }
 }
@@ -15,6 +15,8 @@
 
 package com.splicemachine.storage;
 
+import com.splicemachine.primitives.Bytes;
+
 import java.io.IOException;
 
 /**
@@ -51,4 +53,38 @@ public class MFilterFactory implements DataFilterFactory{
             }
         };
     }
+
+    @Override
+    public DataFilter prefixSkipScanFilter(final byte[][] sortedPrefixes){
+        //the in-memory store can't seek, so this just filters the rows between the prefixes
+        return new DataFilter(){
+            private int current;
+
+            @Override
+            public ReturnCode filterCell(DataCell keyValue) throws IOException{
+                byte[] key=keyValue.keyArray();
+                int offset=keyValue.keyOffset();
+                int length=keyValue.keyLength();
+                while(current<sortedPrefixes.length){
+                    byte[] prefix=sortedPrefixes[current];
+                    if(length>=prefix.length && Bytes.equals(prefix,0,prefix.length,key,offset,prefix.length))
+                        return ReturnCode.INCLUDE;
+                    if(Bytes.BASE_COMPARATOR.compare(key,offset,length,prefix,0,prefix.length)<0)
+                        return ReturnCode.NEXT_ROW;
+                    current++;
+                }
+                return ReturnCode.NEXT_ROW;
+            }
+
+            @Override
+            public boolean filterRow() throws IOException{
+                return false;
+            }
+
+            @Override
+            public void reset() throws IOException{
+
+            }
+        };
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.constants.SIConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests around the in-memory version of the prefix skip scan filter.
+ */
+public class MFilterFactoryTest{
+
+    @Test
+    public void testPrefixSkipScanFilterOnlyIncludesPrefixedRows() throws Exception{
+        DataFilter filter=MFilterFactory.INSTANCE.prefixSkipScanFilter(prefixes("b","d"));
+
+        assertFiltered(filter,"a");
+        assertIncluded(filter,"b");
+        assertIncluded(filter,"b1");
+        assertFiltered(filter,"c");
+        assertIncluded(filter,"d\u0000x");
+        assertFiltered(filter,"e");
+        //once the filter has passed the last prefix, nothing is included any longer
+        assertFiltered(filter,"e1");
+    }
+
+    @Test
+    public void testPrefixSkipScanFilterStartingBetweenPrefixes() throws Exception{
+        //as when a region starts after the first prefix
+        DataFilter filter=MFilterFactory.INSTANCE.prefixSkipScanFilter(prefixes("b","d","f"));
+
+        assertFiltered(filter,"c");
+        assertIncluded(filter,"d");
+        assertFiltered(filter,"e");
+        assertIncluded(filter,"f1");
+    }
+
+    @Test
+    public void testPrefixSkipScanFilterWithPrefixOfLaterPrefix() throws Exception{
+        DataFilter filter=MFilterFactory.INSTANCE.prefixSkipScanFilter(prefixes("b","b1"));
+
+        assertIncluded(filter,"b");
+        assertIncluded(filter,"b0");
+        assertIncluded(filter,"b1");
+        assertFiltered(filter,"c");
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static byte[][] prefixes(String... prefixes){
+        byte[][] bytes=new byte[prefixes.length][];
+        for(int i=0;i<prefixes.length;i++){
+            bytes[i]=Bytes.toBytes(prefixes[i]);
+        }
+        return bytes;
+    }
+
+    private static DataCell cell(String row){
+        return new MCell(Bytes.toBytes(row),SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,1l,
+                Bytes.toBytes("value"),CellType.USER_DATA);
+    }
+
+    private static void assertIncluded(DataFilter filter,String row) throws Exception{
+        Assert.assertEquals("Row "+row+" should be included!",DataFilter.ReturnCode.INCLUDE,filter.filterCell(cell(row)));
+    }
+
+    private static void assertFiltered(DataFilter filter,String row) throws Exception{
+        Assert.assertEquals("Row "+row+" should be filtered!",DataFilter.ReturnCode.NEXT_ROW,filter.filterCell(cell(row)));
+    }
+}
@@ -38,6 +38,7 @@ import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
 import com.splicemachine.pipeline.traffic.SpliceWriteControl;
 import com.splicemachine.pipeline.traffic.SynchronousWriteControl;
+import com.splicemachine.pipeline.traffic.WeightedFairWriteControl;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
 
 /**
@@ -94,7 +95,12 @@ public class PipelineDriver{
         int maxIndependentWrites = config.getMaxIndependentWrites();
         int maxDependentWrites = config.getMaxDependentWrites();
 
-        this.writeControl= new SynchronousWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites);
+        long writeQueueMaxWait = config.getWriteQueueMaxWait();
+        if(writeQueueMaxWait>0)
+            this.writeControl= new WeightedFairWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites,
+                    writeQueueMaxWait,config.getWriteQueueInteractiveSize(),config.getWriteQueueInteractiveWeight());
+        else
+            this.writeControl= new SynchronousWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites);
         this.pipelineWriter = new PipelineWriter(pef, writePipelineFactory,writeControl,pipelineMeter);
         channelFactory.setWriter(pipelineWriter);
         channelFactory.setPipeline(writePipelineFactory);
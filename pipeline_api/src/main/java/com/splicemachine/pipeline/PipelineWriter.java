@@ -23,6 +23,8 @@ import com.splicemachine.pipeline.client.*;
 import com.splicemachine.pipeline.exception.IndexNotSetUpException;
 import com.splicemachine.pipeline.traffic.SpliceWriteControl;
 import com.splicemachine.pipeline.writehandler.SharedCallBufferFactory;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.utils.Pair;
 import org.apache.log4j.Logger;
 
@@ -104,7 +106,8 @@ public class PipelineWriter{
         int numKVPairs = bulkWrites.numEntries();  // KVPairs are just Splice mutations.  You can think of this count as rows modified (written to).
         // Get the "permit" to write.  WriteControl does not perform the writes.  It just controls whether or not the write is allowed to proceed.
 
-        status = (dependent) ? writeControl.performDependentWrite(numKVPairs) : writeControl.performIndependentWrite(numKVPairs);
+        long flowId = flowId(bulkWrites.getTxn());
+        status = (dependent) ? writeControl.performDependentWrite(numKVPairs,flowId) : writeControl.performIndependentWrite(numKVPairs,flowId);
         if (status.equals(SpliceWriteControl.Status.REJECTED)) {
             if(LOG.isTraceEnabled())
                 LOG.trace("Rejecting "+numBulkWrites+" rows in "+ bws.size()+"writes because the pipeline is too busy");
@@ -213,6 +216,20 @@ public class PipelineWriter{
     }
     /* ****************************************************************************************************************/
     /*private helper methods*/
+    /*
+     * Writes are scheduled fairly between user transactions, so all the child transactions of a single
+     * user transaction share the same flow.
+     */
+    private static long flowId(TxnView txn){
+        if(txn==null) return 0l;
+        TxnView parent = txn.getParentTxnView();
+        while(parent!=null && parent!=Txn.ROOT_TRANSACTION){
+            txn = parent;
+            parent = txn.getParentTxnView();
+        }
+        return txn.getTxnId();
+    }
+
     private void rejectAll(Collection<BulkWrite> writes, Collection<BulkWriteResult> result, Code status,String msg) {
         for(BulkWrite write:writes){
             pipelineMeter.mark(0,write.getSize());
@@ -16,6 +16,7 @@
 package com.splicemachine.pipeline.api;
 
 import javax.management.MXBean;
+import java.util.Map;
 
 /**
  * @author Scott Fines
@@ -45,4 +46,19 @@ public interface WriteCoordinatorStatus {
     void setMaxFlushesPerRegion(int newMaxFlushesPerRegion);
 
     long getSynchronousFlushCount();
+
+    /**
+     * @return the current congestion window (in rows) of each destination server
+     */
+    Map<String,Integer> getCongestionWindows();
+
+    /**
+     * @return the number of rows currently in flight to each destination server
+     */
+    Map<String,Integer> getRowsInFlight();
+
+    /**
+     * @return the number of times any server's congestion window was decreased
+     */
+    long getCongestionWindowDecreases();
 }
@@ -15,6 +15,9 @@
 
 package com.splicemachine.pipeline.callbuffer;
 
+import com.splicemachine.pipeline.client.CongestionWindows;
+import com.splicemachine.storage.PartitionServer;
+
 /**
  * @author Scott Fines
  * Created on: 8/28/13
@@ -39,5 +42,12 @@ public interface BufferConfiguration {
      */
     int getMaxFlushesPerRegion();
 
+    /**
+     * @param server the destination server
+     * @return the congestion window for writes to {@code server}, or {@code null} if writes to it
+     * should only be limited by the other settings of this configuration.
+     */
+    CongestionWindows.Window congestionWindow(PartitionServer server);
+
     void writeRejected();
 }
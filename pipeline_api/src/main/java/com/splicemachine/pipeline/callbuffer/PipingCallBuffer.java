@@ -123,9 +123,21 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
             totalElementsAdded++;
             totalBytesAdded +=size;
         }
-        if(writer!=null && (currentHeapSize>=bufferConfiguration.getMaxHeapSize()
-                || currentKVPairSize >= bufferConfiguration.getMaxEntries())) {
-            flushLargestBuffer();
+        if(writer!=null) {
+            if (currentHeapSize >= bufferConfiguration.getMaxHeapSize()
+                    || currentKVPairSize >= bufferConfiguration.getMaxEntries()) {
+                flushLargestBuffer();
+            } else {
+                /*
+                 * The destination server's congestion window may only allow a smaller batch than
+                 * the buffer as a whole. Only count the server's rows if that's the case.
+                 */
+                ServerCallBuffer serverCB = serverNameToRegionServerCBMap.get(entry.getValue().getSecond());
+                int maxEntries = bufferConfiguration.getMaxEntries();
+                int batchSize = serverCB.getBatchSize(maxEntries);
+                if (batchSize < maxEntries && serverCB.getKVPairSize() >= batchSize)
+                    flush(serverCB);
+            }
         }
     }
 
@@ -139,7 +151,11 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
             }
         }
         assert bufferToFlush!=null;
-        currentHeapSize-=maxSize;
+        flush(bufferToFlush);
+    }
+
+    private void flush(ServerCallBuffer bufferToFlush) throws Exception {
+        currentHeapSize-=bufferToFlush.getHeapSize();
         currentKVPairSize-=bufferToFlush.getKVPairSize();
         if (LOG.isDebugEnabled())
             SpliceLogUtils.debug(LOG, "flushLargestBuffer {table=%s, size=%d, rows=%d}",table.getTableName(),bufferToFlush.getHeapSize(),bufferToFlush.getKVPairSize());
@@ -205,7 +221,8 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
                         writeConfiguration,
                         server,
                         (writer != null ? new RegulatedWriter(writer) : null),
-                        writeStats);
+                        writeStats,
+                        (writer != null && bufferConfiguration != null ? bufferConfiguration.congestionWindow(server) : null));
                 serverNameToRegionServerCBMap.put(server, regionServerCB);
             }
 
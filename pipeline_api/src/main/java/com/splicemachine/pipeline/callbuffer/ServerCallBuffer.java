@@ -19,6 +19,7 @@ import com.splicemachine.access.util.ByteComparisons;
 import com.splicemachine.pipeline.api.*;
 import com.splicemachine.pipeline.client.BulkWrite;
 import com.splicemachine.pipeline.client.BulkWrites;
+import com.splicemachine.pipeline.client.CongestionWindows;
 import com.splicemachine.pipeline.client.MergingWriteStats;
 import com.splicemachine.pipeline.config.WriteConfiguration;
 import com.splicemachine.primitives.Bytes;
@@ -62,6 +63,7 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
     private final WriteConfiguration writeConfiguration;
     private final byte[] tableName;
     private final TxnView txn;
+    private final CongestionWindows.Window congestionWindow;
     private Pair<byte[], PartitionBuffer> lastElement;
 
     public ServerCallBuffer(byte[] tableName,
@@ -69,13 +71,15 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
                             WriteConfiguration writeConfiguration,
                             PartitionServer server,
                             Writer writer,
-                            final MergingWriteStats writeStats) {
+                            final MergingWriteStats writeStats,
+                            CongestionWindows.Window congestionWindow) {
         this.txn = txn;
         this.writeConfiguration = writeConfiguration;
         this.tableName = tableName;
         this.writeStats = writeStats;
         this.server= server;
         this.writer = writer;
+        this.congestionWindow = congestionWindow;
         this.buffers = new TreeMap<>(ByteComparisons.comparator());
     }
 
@@ -116,7 +120,18 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
         flushBufferCheckPrevious();
         BulkWrites bulkWrites = getBulkWrites();
         if (bulkWrites!=null && bulkWrites.numEntries() != 0) {
-            Future<WriteStats> write = writer.write(tableName, bulkWrites, writeConfiguration);
+            if (congestionWindow != null) {
+                //wait for room in the server's congestion window before sending any more to it
+                bulkWrites.setCongestionPermit(congestionWindow.acquire(bulkWrites.numEntries()));
+            }
+            Future<WriteStats> write;
+            try {
+                write = writer.write(tableName, bulkWrites, writeConfiguration);
+            } catch (Exception e) {
+                if (bulkWrites.getCongestionPermit() != null)
+                    bulkWrites.getCongestionPermit().release();
+                throw e;
+            }
             outstandingRequests.add(write);
         }
     }
@@ -179,6 +194,14 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
         return size;
     }
 
+    /**
+     * @param maxEntries the configured maximum number of rows in a single write
+     * @return the number of rows to buffer for this server before flushing, as allowed by its congestion window
+     */
+    public int getBatchSize(int maxEntries) {
+        return congestionWindow == null ? maxEntries : congestionWindow.batchSize(maxEntries);
+    }
+
     public Writer getWriter() { return writer; }
     public PartitionServer getServer() { return server; }
 
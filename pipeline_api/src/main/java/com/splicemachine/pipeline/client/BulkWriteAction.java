@@ -81,6 +81,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
     private final Counter regionTooBusy;
     private final PartitionFactory partitionFactory;
     private PipingCallBuffer retryPipingCallBuffer=null; // retryCallBuffer
+    private final CongestionWindows.Permit congestionPermit;
 
 
     @SuppressFBWarnings(value = "EI_EXPOSE_REP2",justification = "Intentional")
@@ -95,6 +96,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
         assert writes!=null:"writes passed into BWA are null";
         this.tableName=tableName;
         this.bulkWrites=writes;
+        this.congestionPermit=writes.getCongestionPermit();
         this.writeConfiguration=writeConfiguration;
         this.statusReporter=statusReporter;
         this.writerFactory=writerFactory;
@@ -156,6 +158,8 @@ public class BulkWriteAction implements Callable<WriteStats>{
             long numRecords=bulkWrites.numEntries();
             writeConfiguration.writeComplete(timeTakenMs,numRecords);
             statusReporter.complete(timeTakenMs);
+            if(congestionPermit!=null)
+                congestionPermit.release();
             bulkWrites=null;
         }
     }
@@ -212,6 +216,8 @@ public class BulkWriteAction implements Callable<WriteStats>{
         do{
             if (!first) {
                 retryCounter.increment();
+                if(congestionPermit!=null)
+                    congestionPermit.retrying();
             }
             first = false;
             BulkWrites nextWrite=writesToPerform.removeFirst();
@@ -224,6 +230,8 @@ public class BulkWriteAction implements Callable<WriteStats>{
                 LOG.warn("Attempting bulk write "+nextWrite);
             }
             executeSingle(nextWrite,ctx);
+            if(congestionPermit!=null && !ctx.congested)
+                congestionPermit.written(nextWrite.numEntries());
 
             /*
              * We need to do an exponential backoff to ensure that our cache has a chance to invalidate, or
@@ -279,6 +287,9 @@ public class BulkWriteAction implements Callable<WriteStats>{
 		    			 * or because the region moved/split/something else.
 						 */
                         ctx.rejected();
+                        Code code=bulkWriteResult.getGlobalResult().getCode();
+                        if(code==Code.REGION_TOO_BUSY || code==Code.PIPELINE_TOO_BUSY)
+                            ctx.congested();
 
                         if(RETRY_LOG.isDebugEnabled())
                             SpliceLogUtils.debug(RETRY_LOG,
@@ -357,6 +368,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
             //noinspection ThrowableResultOfMethodCallIgnored
             if(pipelineExceptionFactory.processPipelineException(e) instanceof PipelineTooBusy){
                 ctx.rejected();
+                ctx.congested();
                 /*
                  * the pipeline has indicated that it is too busy to accept any writes just now. So we need
                  * to retry the entire BulkWrites that we were send. But since it's too busy (and not some other error),
@@ -484,6 +496,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
         boolean refreshCache = false;
         boolean sleep = false;
         boolean rejected= false;
+        boolean congested= false;
         /*
          * Either directRetrySet !=null or nextWriteSet !=null. Otherwise, it's an error (since nextWriteSet is
          * necessarily a subset of the rows contained in directWriteSet).
@@ -507,6 +520,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
             nextWriteSet = null;
             directRetry = false;
             rejected=false;
+            congested=false;
         }
 
         void addBulkWrites(Collection<KVPair> writes){
@@ -528,6 +542,15 @@ public class BulkWriteAction implements Callable<WriteStats>{
             statusReporter.rejectedCount.incrementAndGet();
         }
 
+        /*
+         * The destination server was too busy to accept the write, so shrink its congestion window
+         */
+        void congested(){
+            if(!congested && congestionPermit!=null)
+                congestionPermit.rejected();
+            congested=true;
+        }
+
         void failed(){
             failedCount++;
         }
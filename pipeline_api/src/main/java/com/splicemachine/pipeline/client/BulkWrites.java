@@ -35,6 +35,11 @@ public class BulkWrites{
      * any region which is present on the destination region server
      */
     private transient byte[] regionKey;
+    /*
+     * the rows of this write which are counted against the destination server's congestion window,
+     * or null if the write is not subject to congestion control
+     */
+    private transient CongestionWindows.Permit congestionPermit;
 
     public BulkWrites(){
         bulkWrites=new ArrayList<>(0);
@@ -56,6 +61,14 @@ public class BulkWrites{
         return regionKey;
     }
 
+    public CongestionWindows.Permit getCongestionPermit(){
+        return congestionPermit;
+    }
+
+    public void setCongestionPermit(CongestionWindows.Permit congestionPermit){
+        this.congestionPermit=congestionPermit;
+    }
+
     public Collection<BulkWrite> getBulkWrites(){
         return bulkWrites;
     }
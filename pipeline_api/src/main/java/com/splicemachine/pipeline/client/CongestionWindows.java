@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.storage.PartitionServer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-server congestion windows for the write pipeline (additive increase, multiplicative decrease).
+ *
+ * Each destination server has a window, measured in rows. The window bounds the size of each write which
+ * is sent to that server, and the number of rows which may be in flight to it at once. Every write which
+ * the server accepts grows the window by roughly {@code minWindow} rows per window's worth of rows written, and
+ * every rejection shrinks it by {@code decreaseFactor}. All writers in the JVM share the same window for a
+ * server, so a busy server makes every writer back off once, rather than each of them retrying against it
+ * in lock-step.
+ */
+public class CongestionWindows{
+    private final ConcurrentMap<String,Window> windows=new ConcurrentHashMap<>();
+    private final int minWindow;
+    private final int maxWindow;
+    private final double decreaseFactor;
+    private final long maxWaitMillis;
+    private final AtomicLong decreases=new AtomicLong(0l);
+
+    /**
+     * @param minWindow the smallest window a server can have
+     * @param maxWindow the largest window a server can have, and the window each server starts with
+     * @param decreaseFactor the factor to shrink the window by when a write is rejected
+     * @param maxWaitMillis the longest a writer will wait for room in a window, before sending its write anyway
+     */
+    public CongestionWindows(int minWindow,int maxWindow,double decreaseFactor,long maxWaitMillis){
+        assert minWindow>0 && minWindow<=maxWindow: "Invalid window bounds: ["+minWindow+","+maxWindow+"]";
+        assert decreaseFactor>0 && decreaseFactor<1: "Invalid decrease factor: "+decreaseFactor;
+        this.minWindow=minWindow;
+        this.maxWindow=maxWindow;
+        this.decreaseFactor=decreaseFactor;
+        this.maxWaitMillis=maxWaitMillis;
+    }
+
+    public Window window(PartitionServer server){
+        String key=server.getHostAndPort();
+        Window window=windows.get(key);
+        if(window==null){
+            window=new Window(key);
+            Window old=windows.putIfAbsent(key,window);
+            if(old!=null)
+                window=old;
+        }
+        return window;
+    }
+
+    /**
+     * @return the current window (in rows) of each server
+     */
+    public Map<String,Integer> getWindowSizes(){
+        Map<String,Integer> sizes=new TreeMap<>();
+        for(Window window : windows.values()){
+            sizes.put(window.server,window.size());
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the number of rows currently in flight to each server
+     */
+    public Map<String,Integer> getRowsInFlight(){
+        Map<String,Integer> inFlight=new TreeMap<>();
+        for(Window window : windows.values()){
+            inFlight.put(window.server,window.inFlight());
+        }
+        return inFlight;
+    }
+
+    /**
+     * @return the total number of times any window was decreased
+     */
+    public long getDecreases(){
+        return decreases.get();
+    }
+
+    public class Window{
+        private final String server;
+        /*
+         * The window, the rows in flight and the epoch are guarded by this. The epoch changes
+         * every time the window is decreased, so that several rejections of writes which were sent under
+         * the same window only shrink it once.
+         */
+        private double size=maxWindow;
+        private int inFlight;
+        private long epoch;
+
+        Window(String server){
+            this.server=server;
+        }
+
+        /**
+         * @param maxEntries the configured maximum number of rows in a single write
+         * @return the number of rows which should be sent to this server in a single write
+         */
+        public synchronized int batchSize(int maxEntries){
+            return Math.min(maxEntries,(int)size);
+        }
+
+        public synchronized int size(){
+            return (int)size;
+        }
+
+        public synchronized int inFlight(){
+            return inFlight;
+        }
+
+        /**
+         * Wait until there is room in the window to send {@code rows} rows to this server. A write is always
+         * allowed when there is nothing else in flight (so that a write larger than the window can proceed), or
+         * once the maximum wait time has elapsed.
+         *
+         * @return a permit which must be released once the write has completed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public synchronized Permit acquire(int rows) throws InterruptedException{
+            long remaining=maxWaitMillis;
+            long deadline=System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            while(inFlight>0 && inFlight+rows>size && remaining>0){
+                wait(remaining);
+                remaining=TimeUnit.NANOSECONDS.toMillis(deadline-System.nanoTime());
+            }
+            inFlight+=rows;
+            return new Permit(this,rows,epoch);
+        }
+
+        private synchronized void release(int rows){
+            inFlight-=rows;
+            notifyAll();
+        }
+
+        private synchronized void written(int rows){
+            size=Math.min(maxWindow,size+((double)minWindow)*rows/size);
+            notifyAll();
+        }
+
+        private synchronized void rejected(long sentEpoch){
+            if(sentEpoch==epoch){
+                size=Math.max(minWindow,size*decreaseFactor);
+                epoch++;
+                decreases.incrementAndGet();
+            }
+        }
+
+        private synchronized long epoch(){
+            return epoch;
+        }
+    }
+
+    /**
+     * The rows of a single write which are counted against a server's window.
+     */
+    public static class Permit{
+        private final Window window;
+        private final int rows;
+        private long epoch;
+        private boolean released;
+
+        Permit(Window window,int rows,long epoch){
+            this.window=window;
+            this.rows=rows;
+            this.epoch=epoch;
+        }
+
+        /**
+         * Record that the server accepted {@code rows} rows of this write.
+         */
+        public void written(int rows){
+            window.written(rows);
+        }
+
+        /**
+         * Record that the server rejected (some of) this write. The window is only decreased if it has not
+         * already been decreased since this write was (re)sent.
+         */
+        public void rejected(){
+            window.rejected(epoch);
+        }
+
+        /**
+         * Record that the write is being retried under the current window.
+         */
+        public void retrying(){
+            epoch=window.epoch();
+        }
+
+        public void release(){
+            if(released) return;
+            released=true;
+            window.release(rows);
+        }
+    }
+}
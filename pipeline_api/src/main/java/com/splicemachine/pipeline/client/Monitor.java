@@ -15,11 +15,14 @@
 
 package com.splicemachine.pipeline.client;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.splicemachine.pipeline.callbuffer.BufferConfiguration;
 import com.splicemachine.pipeline.api.WriteCoordinatorStatus;
+import com.splicemachine.storage.PartitionServer;
 
 public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
     public volatile long maxHeapSize;
@@ -29,13 +32,20 @@ public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
     public AtomicInteger outstandingBuffers = new AtomicInteger(0);
     public volatile long pauseTime;
     public AtomicLong writesRejected = new AtomicLong(0l);
+    private final CongestionWindows congestionWindows;
 
     public Monitor(long maxHeapSize, int maxEntries, int maxRetries,long pauseTime,int maxFlushesPerRegion) {
+        this(maxHeapSize,maxEntries,maxRetries,pauseTime,maxFlushesPerRegion,null);
+    }
+
+    public Monitor(long maxHeapSize, int maxEntries, int maxRetries,long pauseTime,int maxFlushesPerRegion,
+                   CongestionWindows congestionWindows) {
         this.maxHeapSize = maxHeapSize;
         this.maxEntries = maxEntries;
         this.maxRetries = maxRetries;
         this.pauseTime = pauseTime;
         this.maxFlushesPerRegion = maxFlushesPerRegion;
+        this.congestionWindows = congestionWindows;
     }
 
     @Override public long getMaxBufferHeapSize() { return maxHeapSize; }
@@ -61,5 +71,25 @@ public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
     public void writeRejected() {
         this.writesRejected.incrementAndGet();
     }
+
+    @Override
+    public CongestionWindows.Window congestionWindow(PartitionServer server) {
+        return congestionWindows==null? null : congestionWindows.window(server);
+    }
+
+    @Override
+    public Map<String, Integer> getCongestionWindows() {
+        return congestionWindows==null? Collections.<String,Integer>emptyMap() : congestionWindows.getWindowSizes();
+    }
+
+    @Override
+    public Map<String, Integer> getRowsInFlight() {
+        return congestionWindows==null? Collections.<String,Integer>emptyMap() : congestionWindows.getRowsInFlight();
+    }
+
+    @Override
+    public long getCongestionWindowDecreases() {
+        return congestionWindows==null? 0l : congestionWindows.getDecreases();
+    }
 }
 
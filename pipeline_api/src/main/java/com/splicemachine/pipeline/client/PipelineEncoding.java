@@ -15,9 +15,11 @@
 
 package com.splicemachine.pipeline.client;
 
+import com.splicemachine.encoding.Encoding;
 import com.splicemachine.encoding.ExpandedDecoder;
 import com.splicemachine.encoding.ExpandingEncoder;
 import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.pipeline.utils.EncodingBufferPool;
 import com.splicemachine.si.api.data.TxnOperationFactory;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.utils.ByteSlice;
@@ -54,8 +56,55 @@ public class PipelineEncoding {
          */
         byte[] txnBytes = operationFactory.encode(bulkWrites.getTxn());
 
-        int heapSize = bulkWrites.getBufferHeapSize();
-        ExpandingEncoder buffer = new ExpandingEncoder(heapSize+txnBytes.length);
+        ExpandingEncoder buffer = new ExpandingEncoder(encodedLength(txnBytes,bulkWrites));
+        encode(txnBytes,bulkWrites,buffer);
+        return buffer.getBuffer();
+    }
+
+    /**
+     * Encode {@code bulkWrites} into a buffer taken from {@code bufferPool}, rather than into a freshly
+     * allocated array. The encoded length is computed up front, so the data is copied exactly once.
+     *
+     * @return the encoded BulkWrites. The caller is responsible for releasing the buffer once it is done with it.
+     */
+    public static EncodingBufferPool.Buffer encode(TxnOperationFactory operationFactory,BulkWrites bulkWrites,EncodingBufferPool bufferPool){
+        byte[] txnBytes = operationFactory.encode(bulkWrites.getTxn());
+
+        int length = encodedLength(txnBytes,bulkWrites);
+        EncodingBufferPool.Buffer pooled = bufferPool.acquire(length);
+        ExpandingEncoder buffer = new ExpandingEncoder(pooled.array());
+        encode(txnBytes,bulkWrites,buffer);
+        if(buffer.getRawBuffer()!=pooled.array()){
+            //we had to expand, so the data no longer lives in the pooled buffer
+            pooled.release();
+            return EncodingBufferPool.unpooled(buffer.getRawBuffer(),buffer.getLength());
+        }
+        pooled.setLength(buffer.getLength());
+        return pooled;
+    }
+
+
+    public static BulkWrites decode(TxnOperationFactory operationFactory,byte[] data){
+        ExpandedDecoder decoder = new ExpandedDecoder(data);
+        byte[] txnBytes = decoder.rawBytes();
+        TxnView txn = operationFactory.decode(txnBytes,0,txnBytes.length);
+        int bwSize = decoder.decodeInt();
+        List<String> stringNames = new ArrayList<>(bwSize);
+        for(int i=0;i<bwSize;i++) {
+            stringNames.add(decoder.decodeString());
+        }
+        byte[] skipIndexWrites = new byte[bwSize];
+        for (int i=0; i<bwSize; i++) {
+            skipIndexWrites[i] = decoder.decodeByte();
+        }
+
+        return new BulkWrites(new BulkWriteCol(skipIndexWrites,data,decoder.currentOffset(),stringNames),txn);
+    }
+
+
+    /***********************************************************************************************************/
+    /*private helper methods*/
+    private static void encode(byte[] txnBytes,BulkWrites bulkWrites,ExpandingEncoder buffer){
         buffer.rawEncode(txnBytes);
 
         //encode BulkWrite metadata
@@ -79,27 +128,32 @@ public class PipelineEncoding {
                 buffer.rawEncode(kvPair.valueSlice());
             }
         }
-        return buffer.getBuffer();
     }
 
-
-    public static BulkWrites decode(TxnOperationFactory operationFactory,byte[] data){
-        ExpandedDecoder decoder = new ExpandedDecoder(data);
-        byte[] txnBytes = decoder.rawBytes();
-        TxnView txn = operationFactory.decode(txnBytes,0,txnBytes.length);
-        int bwSize = decoder.decodeInt();
-        List<String> stringNames = new ArrayList<>(bwSize);
-        for(int i=0;i<bwSize;i++) {
-            stringNames.add(decoder.decodeString());
-        }
-        byte[] skipIndexWrites = new byte[bwSize];
-        for (int i=0; i<bwSize; i++) {
-            skipIndexWrites[i] = decoder.decodeByte();
+    /*
+     * The exact number of bytes that encode() will write, so that we never have to expand (or trim) the buffer
+     */
+    private static int encodedLength(byte[] txnBytes,BulkWrites bulkWrites){
+        long length = rawLength(txnBytes.length);
+        Collection<BulkWrite> bws = bulkWrites.getBulkWrites();
+        length+=Encoding.encodedLength(bws.size());
+        for(BulkWrite bw:bws){
+            length+=bw.getEncodedStringName().length()+1;
+            length+=Encoding.encodedLength(bw.getSkipIndexWrite());
+            Collection<KVPair> mutations = bw.getMutations();
+            length+=Encoding.encodedLength(mutations.size());
+            for(KVPair kvPair:mutations){
+                length+=1+rawLength(kvPair.rowKeySlice().length())+rawLength(kvPair.valueSlice().length());
+            }
         }
-
-        return new BulkWrites(new BulkWriteCol(skipIndexWrites,data,decoder.currentOffset(),stringNames),txn);
+        if(length>Integer.MAX_VALUE)
+            throw new IllegalArgumentException("BulkWrites too large to encode: "+length+" bytes");
+        return (int)length;
     }
 
+    private static int rawLength(int length){
+        return Encoding.encodedLength(length)+length;
+    }
 
     /***********************************************************************************************************/
     /*private helper classes*/
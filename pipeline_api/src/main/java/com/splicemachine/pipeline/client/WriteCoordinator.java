@@ -47,6 +47,7 @@ import com.splicemachine.pipeline.writer.SynchronousBucketingWriter;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.storage.Partition;
+import com.splicemachine.storage.PartitionServer;
 
 /**
  * Entry point for classes that want to write. Use this class to get CallBuffer<KVPair> for a given table.
@@ -80,7 +81,14 @@ public class WriteCoordinator {
         int numRetries = config.getMaxRetries();
         long pause = config.getClientPause();
         int maxFlushesPerRegion = config.getWriteMaxFlushesPerRegion();
-        Monitor monitor = new Monitor(maxBufferHeapSize, maxEntries, numRetries, pause, maxFlushesPerRegion);
+        CongestionWindows congestionWindows = null;
+        if (config.getCongestionMaxWindow() > 0) {
+            congestionWindows = new CongestionWindows(config.getCongestionMinWindow(),
+                    config.getCongestionMaxWindow(),
+                    config.getCongestionDecreaseFactor(),
+                    pause);
+        }
+        Monitor monitor = new Monitor(maxBufferHeapSize, maxEntries, numRetries, pause, maxFlushesPerRegion,congestionWindows);
 
         return new WriteCoordinator(writer, syncWriter, monitor,partitionFactory,exceptionFactory,writerPool);
     }
@@ -196,6 +204,7 @@ public class WriteCoordinator {
             @Override public int getMaxEntries() { return maxEntries; }
             @Override public int getMaxFlushesPerRegion() { return monitor.getMaxFlushesPerRegion(); }
             @Override public void writeRejected() { monitor.writeRejected(); }
+            @Override public CongestionWindows.Window congestionWindow(PartitionServer server) { return monitor.congestionWindow(server); }
         };
         monitor.outstandingBuffers.incrementAndGet();
         return new MonitoredPipingCallBuffer(partition, txn, asynchronousWriter, PipelineUtils.noOpFlushHook, defaultWriteConfiguration, config, false);
@@ -218,6 +227,7 @@ public class WriteCoordinator {
             @Override public int getMaxEntries() { return maxEntries; }
             @Override public int getMaxFlushesPerRegion() { return monitor.getMaxFlushesPerRegion(); }
             @Override public void writeRejected() { monitor.writeRejected(); }
+            @Override public CongestionWindows.Window congestionWindow(PartitionServer server) { return monitor.congestionWindow(server); }
         };
         monitor.outstandingBuffers.incrementAndGet();
         return new MonitoredPipingCallBuffer(partition, txn, synchronousWriter, flushHook, writeConfiguration, config, false);
@@ -47,6 +47,15 @@ public class ChainConstraintChecker implements BatchConstraintChecker {
         return status;
     }
 
+    @Override
+    public boolean appliesTo(KVPair.Type writeType) {
+        for (ConstraintChecker delegate : delegates) {
+            if (delegate.appliesTo(writeType))
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public WriteResult asWriteResult(MutationStatus status) {
         for (BatchConstraintChecker checker : delegates) {
@@ -52,6 +52,11 @@ public class UniqueConstraintChecker implements BatchConstraintChecker {
         return mutation.getType() == KVPair.Type.INSERT ? failure : SUCCESS;
     }
 
+    @Override
+    public boolean appliesTo(KVPair.Type writeType) {
+        return writeType == KVPair.Type.INSERT;
+    }
+
     @Override
     public WriteResult asWriteResult(MutationStatus opStatus) {
         return result;
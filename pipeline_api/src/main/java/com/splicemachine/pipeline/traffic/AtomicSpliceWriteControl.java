@@ -104,6 +104,16 @@ public class AtomicSpliceWriteControl implements SpliceWriteControl{
         }
     }
 
+    @Override
+    public Status performDependentWrite(int writes, long flowId) {
+        return performDependentWrite(writes);
+    }
+
+    @Override
+    public Status performIndependentWrite(int writes, long flowId) {
+        return performIndependentWrite(writes);
+    }
+
     @Override
     public WriteStatus getWriteStatus() {
         return writeStatus.get();
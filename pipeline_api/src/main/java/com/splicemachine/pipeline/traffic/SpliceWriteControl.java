@@ -30,6 +30,25 @@ public interface SpliceWriteControl{
 
     Status performIndependentWrite(int writes);
 
+    /**
+     * Acquire a permit for a dependent write on behalf of a flow of writes (e.g. all the writes
+     * of a single user transaction). Implementations which do not distinguish between flows treat
+     * this the same as {@link #performDependentWrite(int)}.
+     *
+     * @param writes the number of rows in the write
+     * @param flowId the identifier of the flow the write belongs to
+     */
+    Status performDependentWrite(int writes,long flowId);
+
+    /**
+     * Acquire a permit for an independent write on behalf of a flow of writes. Implementations which do not
+     * distinguish between flows treat this the same as {@link #performIndependentWrite(int)}.
+     *
+     * @param writes the number of rows in the write
+     * @param flowId the identifier of the flow the write belongs to
+     */
+    Status performIndependentWrite(int writes,long flowId);
+
     boolean finishIndependentWrite(int writes);
 
     WriteStatus getWriteStatus();
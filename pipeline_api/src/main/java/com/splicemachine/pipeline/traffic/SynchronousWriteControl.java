@@ -87,6 +87,16 @@ public class SynchronousWriteControl implements SpliceWriteControl{
         }
     }
 
+    @Override
+    public Status performDependentWrite(int writes,long flowId){
+        return performDependentWrite(writes);
+    }
+
+    @Override
+    public Status performIndependentWrite(int writes,long flowId){
+        return performIndependentWrite(writes);
+    }
+
     @Override
     public WriteStatus getWriteStatus(){
         return currStatus;
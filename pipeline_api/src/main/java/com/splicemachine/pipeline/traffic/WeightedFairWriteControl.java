@@ -0,0 +1,361 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.traffic;
+
+import org.apache.log4j.Logger;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A WriteControl which queues writes for a short while when the server is out of permits, rather
+ * than rejecting them immediately.
+ *
+ * Queued writes are admitted in weighted fair order (start-time fair queuing). Each write belongs to a flow (usually
+ * the user transaction which performs it), and is tagged with a virtual finish time of
+ * {@code max(virtualTime, flow's last finish) + rows/weight}; writes are admitted in order of their finish
+ * time as permits are released. Small (interactive) writes carry a higher weight than bulk writes, so a
+ * single large import cannot starve interactive inserts of permits, while concurrent bulk flows share the
+ * remaining capacity evenly. A write which is not admitted within the maximum wait time is rejected, as
+ * it would have been by {@link SynchronousWriteControl}.
+ *
+ * Dependent and independent writes are queued separately, against their own limits. As with the other controls,
+ * an independent write may use a dependent permit when the independent permits are exhausted, but only
+ * when no dependent write is waiting for one.
+ */
+public class WeightedFairWriteControl implements SpliceWriteControl{
+    private static final Logger LOG = Logger.getLogger(WeightedFairWriteControl.class);
+    /*
+     * The number of flows we remember before forgetting those which have no outstanding work
+     */
+    private static final int MAX_IDLE_FLOWS = 1024;
+
+    private volatile WriteStatus currStatus = new WriteStatus(0,0,0,0);
+
+    private volatile int maxDependentWriteThreads;
+    private volatile int maxIndependentWriteThreads;
+    private volatile int maxDependentWriteCount;
+    private volatile int maxIndependentWriteCount;
+
+    private final long maxWaitMillis;
+    private final int interactiveWriteSize;
+    private final int interactiveWeight;
+
+    //all guarded by this
+    private final FairQueue dependentQueue = new FairQueue(true);
+    private final FairQueue independentQueue = new FairQueue(false);
+    private long sequence;
+    private long queuedWrites;
+    private long timedOutWrites;
+
+    /**
+     * @param maxWaitMillis the longest a write may wait for a permit before it is rejected
+     * @param interactiveWriteSize writes of at most this many rows are weighted as interactive
+     * @param interactiveWeight the weight of interactive writes (other writes have a weight of 1)
+     */
+    public WeightedFairWriteControl(int maxDependentWriteThreads,
+                                    int maxIndependentWriteThreads,int maxDependentWriteCount,int maxIndependentWriteCount,
+                                    long maxWaitMillis,int interactiveWriteSize,int interactiveWeight) {
+        assert (maxDependentWriteThreads >= 0 &&
+                maxIndependentWriteThreads >= 0 &&
+                maxDependentWriteCount >= 0 &&
+                maxIndependentWriteCount >= 0);
+        assert interactiveWeight>=1: "Interactive weight must be at least 1";
+        this.maxIndependentWriteThreads = maxIndependentWriteThreads;
+        this.maxDependentWriteThreads = maxDependentWriteThreads;
+        this.maxDependentWriteCount = maxDependentWriteCount;
+        this.maxIndependentWriteCount = maxIndependentWriteCount;
+        this.maxWaitMillis = maxWaitMillis;
+        this.interactiveWriteSize = interactiveWriteSize;
+        this.interactiveWeight = interactiveWeight;
+    }
+
+    @Override
+    public Status performDependentWrite(int writes){
+        return performDependentWrite(writes,0l);
+    }
+
+    @Override
+    public Status performIndependentWrite(int writes){
+        return performIndependentWrite(writes,0l);
+    }
+
+    @Override
+    public Status performDependentWrite(int writes,long flowId){
+        return admit(dependentQueue,writes,flowId);
+    }
+
+    @Override
+    public Status performIndependentWrite(int writes,long flowId){
+        return admit(independentQueue,writes,flowId);
+    }
+
+    @Override
+    public boolean finishDependentWrite(int writes){
+        synchronized(this){
+            currStatus = WriteStatus.decrementDependentWriteStatus(currStatus,writes);
+            dispatch();
+            return true;
+        }
+    }
+
+    @Override
+    public boolean finishIndependentWrite(int writes){
+        synchronized(this){
+            currStatus = WriteStatus.decrementIndependentWriteStatus(currStatus,writes);
+            dispatch();
+            return true;
+        }
+    }
+
+    @Override
+    public WriteStatus getWriteStatus(){
+        return currStatus;
+    }
+
+    /**
+     * @return the number of writes which had to wait for a permit
+     */
+    public synchronized long getQueuedWrites(){
+        return queuedWrites;
+    }
+
+    /**
+     * @return the number of writes which were rejected after waiting for a permit
+     */
+    public synchronized long getTimedOutWrites(){
+        return timedOutWrites;
+    }
+
+    @Override
+    public int maxDependendentWriteThreads(){
+        return maxDependentWriteThreads;
+    }
+
+    @Override
+    public int maxIndependentWriteThreads(){
+        return maxIndependentWriteThreads;
+    }
+
+    @Override
+    public int maxDependentWriteCount(){
+        return maxDependentWriteCount;
+    }
+
+    @Override
+    public int maxIndependentWriteCount(){
+        return maxIndependentWriteCount;
+    }
+
+    @Override
+    public void setMaxIndependentWriteThreads(int newMaxIndependentWriteThreads){
+        synchronized(this){
+            this.maxIndependentWriteThreads = newMaxIndependentWriteThreads;
+            dispatch();
+        }
+    }
+
+    @Override
+    public void setMaxDependentWriteThreads(int newMaxDependentWriteThreads){
+        synchronized(this){
+            this.maxDependentWriteThreads = newMaxDependentWriteThreads;
+            dispatch();
+        }
+    }
+
+    @Override
+    public void setMaxIndependentWriteCount(int newMaxIndependentWriteCount){
+        synchronized(this){
+            this.maxIndependentWriteCount = newMaxIndependentWriteCount;
+            dispatch();
+        }
+    }
+
+    @Override
+    public void setMaxDependentWriteCount(int newMaxDependentWriteCount){
+        synchronized(this){
+            this.maxDependentWriteCount = newMaxDependentWriteCount;
+            dispatch();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private synchronized Status admit(FairQueue queue,int writes,long flowId){
+        Request request = queue.newRequest(flowId,writes);
+        if(queue.isEmpty()){
+            Status status = tryAcquire(request);
+            if(status!=null){
+                queue.started(request);
+                return status;
+            }
+        }
+        if(maxWaitMillis<=0)
+            return Status.REJECTED;
+
+        queue.add(request);
+        queuedWrites++;
+        long remaining = maxWaitMillis;
+        long deadline = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        try{
+            while(request.status==null && remaining>0){
+                wait(remaining);
+                remaining = TimeUnit.NANOSECONDS.toMillis(deadline-System.nanoTime());
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        if(request.status==null){
+            queue.remove(request);
+            timedOutWrites++;
+            if(LOG.isTraceEnabled())
+                LOG.trace(String.format("Rejected %s write of %d rows after waiting %d ms: %s",
+                        queue.dependent? "dependent" : "independent",writes,maxWaitMillis,currStatus));
+            //removing the request may allow the writes queued behind it to proceed
+            dispatch();
+            return Status.REJECTED;
+        }
+        return request.status;
+    }
+
+    /*
+     * Acquire a permit for the request if there is room for it. Must be called under the lock
+     */
+    private Status tryAcquire(Request request){
+        WriteStatus state = currStatus;
+        if(!request.dependent
+                && state.independentWriteThreads<=maxIndependentWriteThreads
+                && state.independentWriteCount<=maxIndependentWriteCount){
+            currStatus = WriteStatus.incrementIndependentWriteStatus(state,request.writes);
+            return Status.INDEPENDENT;
+        }
+        if(state.dependentWriteThreads<=maxDependentWriteThreads
+                && state.dependentWriteCount<=maxDependentWriteCount){
+            //don't let independent writes steal a dependent permit ahead of a waiting dependent write
+            if(!request.dependent && !dependentQueue.isEmpty())
+                return null;
+            currStatus = WriteStatus.incrementDependentWriteStatus(state,request.writes);
+            return Status.DEPENDENT;
+        }
+        return null;
+    }
+
+    /*
+     * Admit as many queued writes as the current permits allow. Must be called under the lock
+     */
+    private void dispatch(){
+        boolean admitted = dependentQueue.dispatch();
+        admitted = independentQueue.dispatch() || admitted;
+        if(admitted)
+            notifyAll();
+    }
+
+    private double weight(int writes){
+        return writes<=interactiveWriteSize? interactiveWeight : 1d;
+    }
+
+    private static class Request{
+        private final boolean dependent;
+        private final int writes;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private Status status;
+
+        Request(boolean dependent,int writes,double startTag,double finishTag,long sequence){
+            this.dependent=dependent;
+            this.writes=writes;
+            this.startTag=startTag;
+            this.finishTag=finishTag;
+            this.sequence=sequence;
+        }
+    }
+
+    private static final Comparator<Request> FINISH_ORDER = new Comparator<Request>(){
+        @Override
+        public int compare(Request o1,Request o2){
+            int c = Double.compare(o1.finishTag,o2.finishTag);
+            if(c!=0) return c;
+            return Long.compare(o1.sequence,o2.sequence);
+        }
+    };
+
+    /*
+     * The waiting writes of one kind (dependent or independent), in virtual finish order. Guarded by the
+     * enclosing control's lock
+     */
+    private class FairQueue{
+        private final boolean dependent;
+        private final PriorityQueue<Request> requests = new PriorityQueue<>(16,FINISH_ORDER);
+        private final Map<Long,Double> flowFinishTags = new HashMap<>();
+        private double virtualTime;
+
+        FairQueue(boolean dependent){
+            this.dependent=dependent;
+        }
+
+        Request newRequest(long flowId,int writes){
+            Double lastFinish = flowFinishTags.get(flowId);
+            double start = lastFinish==null? virtualTime : Math.max(virtualTime,lastFinish);
+            double finish = start+writes/weight(writes);
+            flowFinishTags.put(flowId,finish);
+            if(flowFinishTags.size()>MAX_IDLE_FLOWS)
+                forgetIdleFlows();
+            return new Request(dependent,writes,start,finish,sequence++);
+        }
+
+        boolean isEmpty(){
+            return requests.isEmpty();
+        }
+
+        void add(Request request){
+            requests.add(request);
+        }
+
+        void remove(Request request){
+            requests.remove(request);
+        }
+
+        void started(Request request){
+            virtualTime = Math.max(virtualTime,request.startTag);
+        }
+
+        boolean dispatch(){
+            boolean admitted = false;
+            Request next;
+            while((next = requests.peek())!=null){
+                Status status = tryAcquire(next);
+                if(status==null) break;
+                requests.poll();
+                next.status = status;
+                started(next);
+                admitted = true;
+            }
+            return admitted;
+        }
+
+        private void forgetIdleFlows(){
+            Iterator<Map.Entry<Long,Double>> flows = flowFinishTags.entrySet().iterator();
+            while(flows.hasNext()){
+                if(flows.next().getValue()<=virtualTime)
+                    flows.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.utils;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of byte buffers which write requests are encoded into, so that a buffer can be re-used
+ * by many writes instead of being allocated (and collected) for each one.
+ *
+ * Buffers are held in power-of-two size classes, and the pool holds at most {@code maxPooledBytes} of idle
+ * buffers; anything released beyond that is left to the garbage collector. Buffers are reference-counted: a
+ * buffer is returned to the pool when the last holder calls {@link Buffer#release()}, so it must not be
+ * touched after that.
+ */
+public class EncodingBufferPool{
+    private static final int MIN_SIZE_SHIFT = 12; //4 KB
+    private static final int MAX_SIZE_SHIFT = 30; //1 GB
+
+    private final Queue<byte[]>[] sizeClasses;
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0l);
+
+    @SuppressWarnings("unchecked")
+    public EncodingBufferPool(long maxPooledBytes){
+        this.maxPooledBytes = maxPooledBytes;
+        this.sizeClasses = new Queue[MAX_SIZE_SHIFT-MIN_SIZE_SHIFT+1];
+        for(int i=0;i<sizeClasses.length;i++){
+            sizeClasses[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @param size the minimum size of the buffer
+     * @return a buffer of at least {@code size} bytes, with a reference count of 1.
+     */
+    public Buffer acquire(int size){
+        int sizeClass = sizeClass(size);
+        if(sizeClass<0 || maxPooledBytes<=0)
+            return new Buffer(new byte[size],null);
+
+        byte[] array = sizeClasses[sizeClass].poll();
+        if(array!=null)
+            pooledBytes.addAndGet(-array.length);
+        else
+            array = new byte[1<<(sizeClass+MIN_SIZE_SHIFT)];
+        return new Buffer(array,this);
+    }
+
+    /**
+     * @return a buffer over {@code array} which does not belong to any pool.
+     */
+    public static Buffer unpooled(byte[] array,int length){
+        Buffer buffer = new Buffer(array,null);
+        buffer.setLength(length);
+        return buffer;
+    }
+
+    public long pooledBytes(){
+        return pooledBytes.get();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int sizeClass(int size){
+        int shift = size<=1? 0 : 32-Integer.numberOfLeadingZeros(size-1);
+        if(shift>MAX_SIZE_SHIFT) return -1;
+        return Math.max(shift,MIN_SIZE_SHIFT)-MIN_SIZE_SHIFT;
+    }
+
+    private void release(byte[] array){
+        int sizeClass = sizeClass(array.length);
+        if(sizeClass<0) return;
+        if(pooledBytes.addAndGet(array.length)>maxPooledBytes){
+            //the pool is full, so let this one be collected
+            pooledBytes.addAndGet(-array.length);
+            return;
+        }
+        sizeClasses[sizeClass].offer(array);
+    }
+
+    /**
+     * A (possibly pooled) buffer, of which the first {@link #length()} bytes are valid.
+     */
+    public static final class Buffer{
+        private final byte[] array;
+        private final EncodingBufferPool pool;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+        private int length;
+
+        private Buffer(byte[] array,EncodingBufferPool pool){
+            this.array=array;
+            this.pool=pool;
+        }
+
+        @SuppressFBWarnings(value = "EI_EXPOSE_REP",justification = "Intentional")
+        public byte[] array(){
+            return array;
+        }
+
+        public int length(){
+            return length;
+        }
+
+        public void setLength(int length){
+            assert length<=array.length: "Length "+length+" exceeds the buffer size";
+            this.length=length;
+        }
+
+        public Buffer retain(){
+            int refs = refCount.getAndIncrement();
+            assert refs>0: "Cannot retain a buffer which has already been released";
+            return this;
+        }
+
+        public void release(){
+            int refs = refCount.decrementAndGet();
+            assert refs>=0: "Buffer released too many times";
+            if(refs==0 && pool!=null)
+                pool.release(array);
+        }
+    }
+}
@@ -31,5 +31,13 @@ public interface PipelineCompressor{
 
    byte[] compress(Object o) throws IOException;
 
+   /**
+    * Compress {@code o} into a (possibly pooled) buffer, avoiding the intermediate copies of {@link #compress(Object)}
+    * where possible.
+    *
+    * @return the compressed form of {@code o}. The caller must release the buffer once it is done with it.
+    */
+   EncodingBufferPool.Buffer compressToBuffer(Object o) throws IOException;
+
    <T> T decompress(byte[] bytes, Class<T> clazz) throws IOException;
 }
@@ -35,10 +35,16 @@ import java.io.OutputStream;
 public class SimplePipelineCompressor implements PipelineCompressor{
     private final TxnOperationFactory txnOperationFactory;
     private final KryoPool kp;
+    private final EncodingBufferPool bufferPool;
 
     public SimplePipelineCompressor(KryoPool kp,TxnOperationFactory txnOperationFactory){
+        this(kp,txnOperationFactory,new EncodingBufferPool(0l));
+    }
+
+    public SimplePipelineCompressor(KryoPool kp,TxnOperationFactory txnOperationFactory,EncodingBufferPool bufferPool){
         this.txnOperationFactory = txnOperationFactory;
         this.kp = kp;
+        this.bufferPool = bufferPool;
     }
 
     @Override
@@ -69,6 +75,16 @@ public class SimplePipelineCompressor implements PipelineCompressor{
         }
     }
 
+    @Override
+    public EncodingBufferPool.Buffer compressToBuffer(Object o) throws IOException{
+        if(o instanceof BulkWrites){
+            return PipelineEncoding.encode(txnOperationFactory,(BulkWrites)o,bufferPool);
+        }else{
+            byte[] data = compress(o);
+            return EncodingBufferPool.unpooled(data,data.length);
+        }
+    }
+
     @Override
     public <T> T decompress(byte[] bytes,Class<T> clazz) throws IOException{
         if(clazz.isAssignableFrom(BulkWrites.class))
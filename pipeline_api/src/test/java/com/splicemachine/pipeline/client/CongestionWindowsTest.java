@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.PartitionServer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class CongestionWindowsTest{
+
+    @Test
+    public void rejectionsUnderTheSameWindowOnlyDecreaseOnce() throws Exception{
+        CongestionWindows windows=new CongestionWindows(100,1000,0.5d,0l);
+        CongestionWindows.Window window=windows.window(server("rs1:16020"));
+        Assert.assertEquals("Window should start at the maximum",1000,window.size());
+
+        CongestionWindows.Permit first=window.acquire(200);
+        CongestionWindows.Permit second=window.acquire(200);
+        first.rejected();
+        second.rejected();
+        Assert.assertEquals("Window should only be halved once",500,window.size());
+        Assert.assertEquals("Incorrect number of decreases",1,windows.getDecreases());
+
+        //a retry is sent under the new window, so it can decrease it again
+        first.retrying();
+        first.rejected();
+        Assert.assertEquals("Window should be halved again",250,window.size());
+
+        second.release();
+        first.release();
+        Assert.assertEquals("Rows should no longer be in flight",0,window.inFlight());
+    }
+
+    @Test
+    public void windowStaysWithinBounds() throws Exception{
+        CongestionWindows windows=new CongestionWindows(100,1000,0.5d,0l);
+        CongestionWindows.Window window=windows.window(server("rs1:16020"));
+        for(int i=0;i<10;i++){
+            CongestionWindows.Permit permit=window.acquire(100);
+            permit.rejected();
+            permit.release();
+        }
+        Assert.assertEquals("Window should not drop below the minimum",100,window.size());
+        Assert.assertEquals("Batch size should follow the window",100,window.batchSize(1000));
+
+        for(int i=0;i<1000;i++){
+            CongestionWindows.Permit permit=window.acquire(100);
+            permit.written(100);
+            permit.release();
+        }
+        Assert.assertEquals("Window should not grow past the maximum",1000,window.size());
+        Assert.assertEquals("Batch size should not exceed the configured maximum",500,window.batchSize(500));
+    }
+
+    @Test
+    public void serversHaveIndependentWindows() throws Exception{
+        CongestionWindows windows=new CongestionWindows(100,1000,0.5d,0l);
+        CongestionWindows.Permit permit=windows.window(server("rs1:16020")).acquire(10);
+        permit.rejected();
+        Assert.assertSame("Should share a window for the same server",
+                windows.window(server("rs1:16020")),windows.window(server("rs1:16020")));
+        Assert.assertEquals(500,windows.getWindowSizes().get("rs1:16020").intValue());
+        Assert.assertEquals(1000,windows.window(server("rs2:16020")).size());
+        Assert.assertEquals(10,windows.getRowsInFlight().get("rs1:16020").intValue());
+    }
+
+    private static PartitionServer server(String hostAndPort){
+        PartitionServer server=mock(PartitionServer.class);
+        when(server.getHostAndPort()).thenReturn(hostAndPort);
+        return server;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.traffic;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Category(ArchitectureIndependent.class)
+public class WeightedFairWriteControlTest{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() throws Exception{
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void rejectsImmediatelyWithoutWaitTime() throws Exception{
+        WeightedFairWriteControl control = new WeightedFairWriteControl(0,0,0,0,0l,10,8);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,control.performDependentWrite(1000,1l));
+        Assert.assertEquals(SpliceWriteControl.Status.REJECTED,control.performDependentWrite(1,2l));
+        Assert.assertEquals("Should not have queued",0l,control.getQueuedWrites());
+    }
+
+    @Test
+    public void queuedWriteIsAdmittedWhenPermitIsReleased() throws Exception{
+        WeightedFairWriteControl control = new WeightedFairWriteControl(0,0,0,0,10000l,10,8);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,control.performDependentWrite(1000,1l));
+
+        Future<SpliceWriteControl.Status> waiting = write(control,1,2l);
+        awaitQueued(control,1);
+        Assert.assertFalse("Write should be waiting for a permit",waiting.isDone());
+
+        control.finishDependentWrite(1000);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,waiting.get(10,TimeUnit.SECONDS));
+        Assert.assertEquals("{ dependentWriteThreads=1, independentWriteThreads=0, dependentWriteCount=1, independentWriteCount=0 }",
+                control.getWriteStatus().toString());
+    }
+
+    @Test
+    public void interactiveWriteIsAdmittedAheadOfBulkWrite() throws Exception{
+        WeightedFairWriteControl control = new WeightedFairWriteControl(0,0,0,0,10000l,10,8);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,control.performDependentWrite(1000,1l));
+
+        //a second bulk write from the import queues first, then an interactive insert from another transaction
+        Future<SpliceWriteControl.Status> bulk = write(control,1000,1l);
+        awaitQueued(control,1);
+        Future<SpliceWriteControl.Status> interactive = write(control,1,2l);
+        awaitQueued(control,2);
+
+        control.finishDependentWrite(1000);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,interactive.get(10,TimeUnit.SECONDS));
+        Assert.assertFalse("Bulk write should still be waiting",bulk.isDone());
+
+        control.finishDependentWrite(1);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,bulk.get(10,TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queuedWriteIsRejectedAfterMaxWait() throws Exception{
+        WeightedFairWriteControl control = new WeightedFairWriteControl(0,0,0,0,50l,10,8);
+        Assert.assertEquals(SpliceWriteControl.Status.DEPENDENT,control.performDependentWrite(1000,1l));
+        Assert.assertEquals(SpliceWriteControl.Status.REJECTED,control.performDependentWrite(1,2l));
+        Assert.assertEquals("Incorrect timed out count",1l,control.getTimedOutWrites());
+
+        control.finishDependentWrite(1000);
+        Assert.assertEquals("Timed out write should not hold a permit",new WriteStatus(0,0,0,0),control.getWriteStatus());
+    }
+
+    private Future<SpliceWriteControl.Status> write(final WeightedFairWriteControl control,final int writes,final long flowId){
+        return executor.submit(new Callable<SpliceWriteControl.Status>(){
+            @Override
+            public SpliceWriteControl.Status call() throws Exception{
+                return control.performDependentWrite(writes,flowId);
+            }
+        });
+    }
+
+    private static void awaitQueued(WeightedFairWriteControl control,long queued) throws InterruptedException{
+        long deadline = System.currentTimeMillis()+10000;
+        while(control.getQueuedWrites()<queued){
+            Assert.assertTrue("Write was never queued",System.currentTimeMillis()<deadline);
+            Thread.sleep(5);
+        }
+    }
+}
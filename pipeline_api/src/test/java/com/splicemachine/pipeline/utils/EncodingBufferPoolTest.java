@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.utils;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.pipeline.client.BulkWrite;
+import com.splicemachine.pipeline.client.BulkWrites;
+import com.splicemachine.pipeline.client.PipelineEncoding;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+@Category(ArchitectureIndependent.class)
+public class EncodingBufferPoolTest{
+
+    @Test
+    public void reusesReleasedBuffers() throws Exception{
+        EncodingBufferPool pool = new EncodingBufferPool(1<<20);
+        EncodingBufferPool.Buffer buffer = pool.acquire(5000);
+        byte[] array = buffer.array();
+        Assert.assertEquals("Buffer should be rounded up to its size class",8192,array.length);
+
+        buffer.retain();
+        buffer.release();
+        Assert.assertEquals("Buffer should not be pooled while it is still referenced",0l,pool.pooledBytes());
+        buffer.release();
+        Assert.assertEquals("Buffer was not returned to the pool",8192l,pool.pooledBytes());
+
+        Assert.assertSame("Did not re-use the pooled buffer",array,pool.acquire(6000).array());
+        Assert.assertEquals(0l,pool.pooledBytes());
+    }
+
+    @Test
+    public void doesNotPoolBeyondLimit() throws Exception{
+        EncodingBufferPool pool = new EncodingBufferPool(4096);
+        EncodingBufferPool.Buffer first = pool.acquire(4096);
+        EncodingBufferPool.Buffer second = pool.acquire(4096);
+        first.release();
+        second.release();
+        Assert.assertEquals("Pool exceeded its limit",4096l,pool.pooledBytes());
+    }
+
+    @Test
+    public void pooledEncodingMatchesUnpooledEncoding() throws Exception{
+        TxnView txn = Mockito.mock(TxnView.class);
+        TxnOperationFactory operationFactory = Mockito.mock(TxnOperationFactory.class);
+        Mockito.when(operationFactory.encode(txn)).thenReturn(Bytes.toBytes(12345l));
+        Mockito.when(operationFactory.decode(Matchers.any(byte[].class),Matchers.anyInt(),Matchers.anyInt())).thenReturn(txn);
+
+        EncodingBufferPool pool = new EncodingBufferPool(1<<20);
+        //dirty a pooled buffer, so that we know encoding doesn't depend on a zeroed buffer
+        EncodingBufferPool.Buffer dirty = pool.acquire(4096);
+        Arrays.fill(dirty.array(),(byte)0xFF);
+        dirty.release();
+
+        BulkWrites bulkWrites = new BulkWrites(generateBulkWrites(10),txn);
+        byte[] expected = PipelineEncoding.encode(operationFactory,bulkWrites);
+        EncodingBufferPool.Buffer buffer = PipelineEncoding.encode(operationFactory,bulkWrites,pool);
+        Assert.assertSame("Did not encode into the pooled buffer",dirty.array(),buffer.array());
+        Assert.assertArrayEquals("Incorrect encoding",expected,Arrays.copyOf(buffer.array(),buffer.length()));
+
+        BulkWrites decoded = PipelineEncoding.decode(operationFactory,Arrays.copyOf(buffer.array(),buffer.length()));
+        buffer.release();
+        Iterator<BulkWrite> correctIter = bulkWrites.getBulkWrites().iterator();
+        for(BulkWrite actual : decoded.getBulkWrites()){
+            BulkWrite correct = correctIter.next();
+            Assert.assertEquals("Incorrect encodedStringName",correct.getEncodedStringName(),actual.getEncodedStringName());
+            Assert.assertEquals("Incorrect skipIndexWrite",correct.getSkipIndexWrite(),actual.getSkipIndexWrite());
+            Iterator<KVPair> cKvIter = correct.getMutations().iterator();
+            for(KVPair aKv : actual.getMutations()){
+                KVPair cKv = cKvIter.next();
+                Assert.assertEquals("KVPair row not correct",cKv.rowKeySlice(),aKv.rowKeySlice());
+                Assert.assertEquals("KVPair value not correct",cKv.valueSlice(),aKv.valueSlice());
+                Assert.assertEquals("KVPair type not correct",cKv.getType(),aKv.getType());
+            }
+            Assert.assertFalse("Missing KVPairs",cKvIter.hasNext());
+        }
+        Assert.assertFalse("Missing BulkWrites",correctIter.hasNext());
+    }
+
+    private Collection<BulkWrite> generateBulkWrites(int size){
+        List<BulkWrite> bws = new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            Collection<KVPair> kvPairs = new ArrayList<>(Arrays.asList(
+                    new KVPair(Bytes.toBytes(i),Bytes.toBytes(i+2),KVPair.Type.INSERT),
+                    new KVPair(Bytes.toBytes(i+1),Bytes.toBytes(Integer.toString(2*i)),KVPair.Type.DELETE),
+                    new KVPair(Bytes.toBytes(i+2),Bytes.toBytes(i/.2f),KVPair.Type.UPDATE)
+            ));
+            bws.add(new BulkWrite(kvPairs,Integer.toString(i),(byte)(i%2)));
+        }
+        return bws;
+    }
+}
@@ -110,6 +110,12 @@ public interface SConfiguration {
 
     int getMaxDependentWrites();
 
+    long getWriteQueueMaxWait();
+
+    int getWriteQueueInteractiveSize();
+
+    int getWriteQueueInteractiveWeight();
+
     int getMaxIndependentWrites();
 
     int getMaxRetries();
@@ -118,8 +124,16 @@ public interface SConfiguration {
 
     int getPipelineKryoPoolSize();
 
+    long getEncodingBufferPoolBytes();
+
     int getWriteMaxFlushesPerRegion();
 
+    int getCongestionMinWindow();
+
+    int getCongestionMaxWindow();
+
+    double getCongestionDecreaseFactor();
+
     long getClientPause();
 
     long getMaxBufferHeapSize();
@@ -136,6 +150,12 @@ public interface SConfiguration {
     // SIConfigurations
     int getActiveTransactionCacheSize();
 
+    boolean isCompactionPurgeVersions();
+
+    long getCompactionWatermarkRetention();
+
+    long getCompactionWatermarkRefreshInterval();
+
     int getCompletedTxnCacheSize();
 
     int getCompletedTxnConcurrency();
@@ -144,6 +164,34 @@ public interface SConfiguration {
 
     int getReadResolverThreads();
 
+    String getReadResolverWaitStrategy();
+
+    boolean isRollForwardSegmented();
+
+    int getRollForwardSegments();
+
+    long getRollForwardRowThreshold();
+
+    long getRollForwardTxnThreshold();
+
+    long getRollForwardInterval();
+
+    int getRollForwardBatchSize();
+
+    int getRollForwardMaxRowsPerSecond();
+
+    int getGroupCommitMaxBatchSize();
+
+    long getGroupCommitMaxWait();
+
+    String getReadOnlyTimestampSource();
+
+    long getHlcMaxClockSkew();
+
+    int getRecentWritersSize();
+
+    long getRecentWritersMaxAge();
+
     int getOlapClientWaitTime();
 
     int getOlapClientTickTime();
@@ -154,6 +202,10 @@ public interface SConfiguration {
 
     int getTimestampClientWaitTime();
 
+    int getTimestampClientMaxInFlight();
+
+    int getTimestampClientMaxBatchSize();
+
     int getTimestampServerBindPort();
 
     int getTransactionKeepAliveThreads();
@@ -197,6 +249,12 @@ public interface SConfiguration {
 
     long getBroadcastRegionRowThreshold();
 
+    boolean getBroadcastOffHeap();
+
+    long getBroadcastCacheMemory();
+
+    long getBroadcastAdmissionTimeout();
+
     long getOptimizerPlanMaximumTimeout();
 
     long getOptimizerPlanMinimumTimeout();
@@ -209,6 +267,30 @@ public interface SConfiguration {
 
     int getNestedLoopJoinBatchSize();
 
+    boolean getControlSpill();
+
+    long getControlHashMemoryBudget();
+
+    int getControlHashPartitions();
+
+    String getControlSpillDirectory();
+
+    boolean getControlBatchExecution();
+
+    int getControlBatchSize();
+
+    boolean getControlAggregatePushdown();
+
+    double getSparkJoinSkewSampleFraction();
+
+    double getSparkJoinSkewFactor();
+
+    int getSparkJoinMaxSalts();
+
+    long getJoinKeyFilterMaxKeys();
+
+    int getUpdateBaseRowPrefetch();
+
     // StatsConfiguration
     double getFallbackNullFraction();
 
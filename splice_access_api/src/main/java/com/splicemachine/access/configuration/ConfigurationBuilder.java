@@ -27,11 +27,30 @@ import com.splicemachine.access.api.SConfiguration;
 public class ConfigurationBuilder {
     // SIConfigurations
     public int activeTransactionCacheSize;
+    public boolean compactionPurgeVersions;
+    public long compactionWatermarkRetention;
+    public long compactionWatermarkRefreshInterval;
     public int completedTxnCacheSize;
     public int completedTxnConcurrency;
     public int readResolverQueueSize;
     public int readResolverThreads;
+    public String readResolverWaitStrategy;
+    public boolean rollForwardSegmented;
+    public int rollForwardSegments;
+    public long rollForwardRowThreshold;
+    public long rollForwardTxnThreshold;
+    public long rollForwardInterval;
+    public int rollForwardBatchSize;
+    public int rollForwardMaxRowsPerSecond;
+    public int groupCommitMaxBatchSize;
+    public long groupCommitMaxWait;
+    public String readOnlyTimestampSource;
+    public long hlcMaxClockSkew;
+    public int recentWritersSize;
+    public long recentWritersMaxAge;
     public int timestampClientWaitTime;
+    public int timestampClientMaxInFlight;
+    public int timestampClientMaxBatchSize;
     public int timestampServerBindPort;
     public int transactionKeepAliveThreads;
     public int transactionLockStripes;
@@ -111,23 +130,45 @@ public class ConfigurationBuilder {
     public int partitionserverPort;
     public long broadcastRegionMbThreshold;
     public long broadcastRegionRowThreshold;
+    public boolean broadcastOffHeap;
+    public long broadcastCacheMemory;
+    public long broadcastAdmissionTimeout;
     public long optimizerPlanMaximumTimeout;
     public long optimizerPlanMinimumTimeout;
     public String networkBindAddress;
     public String upgradeForcedFrom;
     public String storageFactoryHome;
     public int nestedLoopJoinBatchSize;
+    public boolean controlSpill;
+    public long controlHashMemoryBudget;
+    public int controlHashPartitions;
+    public String controlSpillDirectory;
+    public boolean controlBatchExecution;
+    public int controlBatchSize;
+    public boolean controlAggregatePushdown;
+    public double sparkJoinSkewSampleFraction;
+    public double sparkJoinSkewFactor;
+    public int sparkJoinMaxSalts;
+    public long joinKeyFilterMaxKeys;
+    public int updateBaseRowPrefetch;
 
     // PipelineConfiguration
     public int coreWriterThreads;
     public int ipcThreads;
     public int maxBufferEntries;
     public int maxDependentWrites;
+    public long writeQueueMaxWait;
+    public int writeQueueInteractiveSize;
+    public int writeQueueInteractiveWeight;
     public int maxIndependentWrites;
     public int maxRetries;
     public int maxWriterThreads;
     public int pipelineKryoPoolSize;
+    public long encodingBufferPoolBytes;
     public int writeMaxFlushesPerRegion;
+    public int congestionMinWindow;
+    public int congestionMaxWindow;
+    public double congestionDecreaseFactor;
     public long clientPause;
     public long maxBufferHeapSize;
     public long startupLockWaitPeriod;
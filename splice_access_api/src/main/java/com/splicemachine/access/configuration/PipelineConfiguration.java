@@ -90,6 +90,36 @@ public class PipelineConfiguration implements ConfigurationDefault {
     public static final String WRITE_MAX_FLUSHES_PER_REGION = "splice.writer.maxFlushesPerRegion";
     public static final int WRITE_DEFAULT_MAX_FLUSHES_PER_REGION = 5;
 
+    /**
+     * The smallest congestion window (in rows) allowed for a single region server. Each successful write to a
+     * server grows its window additively, and every rejection (RegionTooBusy, PipelineTooBusy) shrinks it
+     * multiplicatively, down to this floor. The window bounds both the size of each write sent to that server,
+     * and the number of rows which may be in flight to it at once.
+     *
+     * Defaults to 100
+     */
+    public static final String CONGESTION_MIN_WINDOW = "splice.client.write.congestion.minWindow";
+    public static final int DEFAULT_CONGESTION_MIN_WINDOW = 100;
+
+    /**
+     * The largest congestion window (in rows) allowed for a single region server, and the window a server
+     * starts with. Set to 0 to disable congestion control, in which case buffers are sized only by
+     * splice.client.write.buffer.maxentries and splice.client.write.buffer.
+     *
+     * Defaults to 5000
+     */
+    public static final String CONGESTION_MAX_WINDOW = "splice.client.write.congestion.maxWindow";
+    public static final int DEFAULT_CONGESTION_MAX_WINDOW = 5000;
+
+    /**
+     * The factor a region server's congestion window is multiplied by when a write to it is rejected. A server
+     * which rejects several writes sent under the same window only has its window reduced once.
+     *
+     * Defaults to 0.5
+     */
+    public static final String CONGESTION_DECREASE_FACTOR = "splice.client.write.congestion.decreaseFactor";
+    public static final double DEFAULT_CONGESTION_DECREASE_FACTOR = 0.5D;
+
     /**
      * The amount of time (in milliseconds) to wait during index initialization before
      * forcing a write to return. This setting prevents deadlocks during startup in small clusters,
@@ -147,23 +177,70 @@ public class PipelineConfiguration implements ConfigurationDefault {
     public static final String MAX_DEPENDENT_WRITES = "splice.client.write.maxDependentWrites";
     public static final int DEFAULT_MAX_DEPENDENT_WRITES = 40000;
 
+    /**
+     * The longest time (in milliseconds) a write may wait on the server for write permits to become
+     * available, before it is rejected as PipelineTooBusy. Waiting writes are admitted in weighted fair order, so
+     * that small interactive writes are not starved by large bulk writes. Waiting writes hold an IPC handler
+     * while they wait, so this is disabled by default: with 0, writes are rejected as soon as the server is out
+     * of permits.
+     *
+     * Defaults to 0
+     */
+    public static final String WRITE_QUEUE_MAX_WAIT = "splice.writer.queue.maxWait";
+    public static final long DEFAULT_WRITE_QUEUE_MAX_WAIT = 0L;
+
+    /**
+     * Writes of at most this many rows are considered interactive when write permits are queued, and are
+     * scheduled with splice.writer.queue.interactiveWeight rather than a weight of 1.
+     *
+     * Defaults to 100
+     */
+    public static final String WRITE_QUEUE_INTERACTIVE_SIZE = "splice.writer.queue.interactiveSize";
+    public static final int DEFAULT_WRITE_QUEUE_INTERACTIVE_SIZE = 100;
+
+    /**
+     * The weight of interactive writes, relative to a weight of 1 for all other writes, when write permits
+     * are queued. Under contention, an interactive transaction receives this many times the share of write
+     * permits of a bulk transaction.
+     *
+     * Defaults to 8
+     */
+    public static final String WRITE_QUEUE_INTERACTIVE_WEIGHT = "splice.writer.queue.interactiveWeight";
+    public static final int DEFAULT_WRITE_QUEUE_INTERACTIVE_WEIGHT = 8;
+
     public static final String IPC_THREADS="hbase.regionserver.handler.count";
     public static final int DEFAULT_IPC_THREADS = 200;
 
     public static final String PIPELINE_KRYO_POOL_SIZE= "splice.writer.kryoPoolSize";
     private static final int DEFAULT_PIPELINE_KRYO_POOL_SIZE=1024;
 
+    /**
+     * The maximum number of bytes held in the pool of buffers which write requests are encoded into.
+     * Buffers are re-used across writes rather than allocated (and garbage collected) for each one. Set
+     * to 0 to disable pooling.
+     * Defaults to 32 MB
+     */
+    public static final String ENCODING_BUFFER_POOL_BYTES = "splice.writer.encodingBufferPoolBytes";
+    private static final long DEFAULT_ENCODING_BUFFER_POOL_BYTES = 32*1024*1024;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.ipcThreads = configurationSource.getInt(IPC_THREADS, DEFAULT_IPC_THREADS);
         builder.maxIndependentWrites = configurationSource.getInt(MAX_INDEPENDENT_WRITES, DEFAULT_MAX_INDEPENDENT_WRITES);
         builder.maxDependentWrites = configurationSource.getInt(MAX_DEPENDENT_WRITES, DEFAULT_MAX_DEPENDENT_WRITES);
+        builder.writeQueueMaxWait = configurationSource.getLong(WRITE_QUEUE_MAX_WAIT, DEFAULT_WRITE_QUEUE_MAX_WAIT);
+        builder.writeQueueInteractiveSize = configurationSource.getInt(WRITE_QUEUE_INTERACTIVE_SIZE, DEFAULT_WRITE_QUEUE_INTERACTIVE_SIZE);
+        builder.writeQueueInteractiveWeight = configurationSource.getInt(WRITE_QUEUE_INTERACTIVE_WEIGHT, DEFAULT_WRITE_QUEUE_INTERACTIVE_WEIGHT);
         builder.coreWriterThreads = configurationSource.getInt(CORE_WRITER_THREADS, DEFAULT_WRITE_THREADS_CORE);
         builder.maxWriterThreads = configurationSource.getInt(MAX_WRITER_THREADS, DEFAULT_MAX_WRITER_THREADS);
         builder.writeMaxFlushesPerRegion = configurationSource.getInt(WRITE_MAX_FLUSHES_PER_REGION, WRITE_DEFAULT_MAX_FLUSHES_PER_REGION);
+        builder.congestionMinWindow = configurationSource.getInt(CONGESTION_MIN_WINDOW, DEFAULT_CONGESTION_MIN_WINDOW);
+        builder.congestionMaxWindow = configurationSource.getInt(CONGESTION_MAX_WINDOW, DEFAULT_CONGESTION_MAX_WINDOW);
+        builder.congestionDecreaseFactor = configurationSource.getDouble(CONGESTION_DECREASE_FACTOR, DEFAULT_CONGESTION_DECREASE_FACTOR);
         builder.maxRetries = configurationSource.getInt(MAX_RETRIES, DEFAULT_HBASE_CLIENT_RETRIES_NUMBER);
         builder.maxBufferEntries = configurationSource.getInt(MAX_BUFFER_ENTRIES, DEFAULT_MAX_BUFFER_ENTRIES);
         builder.pipelineKryoPoolSize = configurationSource.getInt(PIPELINE_KRYO_POOL_SIZE, DEFAULT_PIPELINE_KRYO_POOL_SIZE);
+        builder.encodingBufferPoolBytes = configurationSource.getLong(ENCODING_BUFFER_POOL_BYTES, DEFAULT_ENCODING_BUFFER_POOL_BYTES);
 
         builder.threadKeepaliveTime = configurationSource.getLong(THREAD_KEEPALIVE_TIME, DEFAULT_THREAD_KEEPALIVE_TIME);
         builder.clientPause = configurationSource.getLong(CLIENT_PAUSE, DEFAULT_CLIENT_PAUSE);
@@ -84,11 +84,18 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int ipcThreads;
     private final  int maxBufferEntries;
     private final  int maxDependentWrites;
+    private final long writeQueueMaxWait;
+    private final int writeQueueInteractiveSize;
+    private final int writeQueueInteractiveWeight;
     private final  int maxIndependentWrites;
     private final  int maxRetries;
     private final  int maxWriterThreads;
     private final  int pipelineKryoPoolSize;
+    private final long encodingBufferPoolBytes;
     private final  int writeMaxFlushesPerRegion;
+    private final int congestionMinWindow;
+    private final int congestionMaxWindow;
+    private final double congestionDecreaseFactor;
     private final  long clientPause;
     private final  long maxBufferHeapSize;
     private final  long startupLockWaitPeriod;
@@ -101,6 +108,9 @@ public final class SConfigurationImpl implements SConfiguration {
 
     // SIConfigurations
     private final  int activeTransactionCacheSize;
+    private final boolean compactionPurgeVersions;
+    private final long compactionWatermarkRetention;
+    private final long compactionWatermarkRefreshInterval;
     private final  int completedTxnCacheSize;
     private final  int completedTxnConcurrency;
     private final int olapClientWaitTime;
@@ -110,7 +120,23 @@ public final class SConfigurationImpl implements SConfiguration {
     private final int olapServerTickLimit;
     private final  int readResolverQueueSize;
     private final  int readResolverThreads;
+    private final String readResolverWaitStrategy;
+    private final boolean rollForwardSegmented;
+    private final int rollForwardSegments;
+    private final long rollForwardRowThreshold;
+    private final long rollForwardTxnThreshold;
+    private final long rollForwardInterval;
+    private final int rollForwardBatchSize;
+    private final int rollForwardMaxRowsPerSecond;
+    private final int groupCommitMaxBatchSize;
+    private final long groupCommitMaxWait;
+    private final String readOnlyTimestampSource;
+    private final long hlcMaxClockSkew;
+    private final int recentWritersSize;
+    private final long recentWritersMaxAge;
     private final  int timestampClientWaitTime;
+    private final int timestampClientMaxInFlight;
+    private final int timestampClientMaxBatchSize;
     private final  int timestampServerBindPort;
     private final  int transactionKeepAliveThreads;
     private final  int transactionLockStripes;
@@ -134,12 +160,27 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int partitionserverPort;
     private final  long broadcastRegionMbThreshold;
     private final  long broadcastRegionRowThreshold;
+    private final  boolean broadcastOffHeap;
+    private final  long broadcastCacheMemory;
+    private final  long broadcastAdmissionTimeout;
     private final  long optimizerPlanMaximumTimeout;
     private final  long optimizerPlanMinimumTimeout;
     private final  String networkBindAddress;
     private final  String upgradeForcedFrom;
     private final String storageFactoryHome;
     private final int nestedLoopJoinBatchSize;
+    private final boolean controlSpill;
+    private final long controlHashMemoryBudget;
+    private final int controlHashPartitions;
+    private final String controlSpillDirectory;
+    private final boolean controlBatchExecution;
+    private final int controlBatchSize;
+    private final boolean controlAggregatePushdown;
+    private final double sparkJoinSkewSampleFraction;
+    private final double sparkJoinSkewFactor;
+    private final int sparkJoinMaxSalts;
+    private final long joinKeyFilterMaxKeys;
+    private final int updateBaseRowPrefetch;
 
     // StatsConfiguration
     private final  double fallbackNullFraction;
@@ -301,6 +342,18 @@ public final class SConfigurationImpl implements SConfiguration {
         return maxDependentWrites;
     }
     @Override
+    public long getWriteQueueMaxWait() {
+        return writeQueueMaxWait;
+    }
+    @Override
+    public int getWriteQueueInteractiveSize() {
+        return writeQueueInteractiveSize;
+    }
+    @Override
+    public int getWriteQueueInteractiveWeight() {
+        return writeQueueInteractiveWeight;
+    }
+    @Override
     public int getMaxIndependentWrites() {
         return maxIndependentWrites;
     }
@@ -317,10 +370,26 @@ public final class SConfigurationImpl implements SConfiguration {
         return pipelineKryoPoolSize;
     }
     @Override
+    public long getEncodingBufferPoolBytes() {
+        return encodingBufferPoolBytes;
+    }
+    @Override
     public int getWriteMaxFlushesPerRegion() {
         return writeMaxFlushesPerRegion;
     }
     @Override
+    public int getCongestionMinWindow() {
+        return congestionMinWindow;
+    }
+    @Override
+    public int getCongestionMaxWindow() {
+        return congestionMaxWindow;
+    }
+    @Override
+    public double getCongestionDecreaseFactor() {
+        return congestionDecreaseFactor;
+    }
+    @Override
     public long getClientPause() {
         return clientPause;
     }
@@ -357,6 +426,18 @@ public final class SConfigurationImpl implements SConfiguration {
         return activeTransactionCacheSize;
     }
     @Override
+    public boolean isCompactionPurgeVersions() {
+        return compactionPurgeVersions;
+    }
+    @Override
+    public long getCompactionWatermarkRetention() {
+        return compactionWatermarkRetention;
+    }
+    @Override
+    public long getCompactionWatermarkRefreshInterval() {
+        return compactionWatermarkRefreshInterval;
+    }
+    @Override
     public int getCompletedTxnCacheSize() {
         return completedTxnCacheSize;
     }
@@ -373,6 +454,62 @@ public final class SConfigurationImpl implements SConfiguration {
         return readResolverThreads;
     }
     @Override
+    public String getReadResolverWaitStrategy() {
+        return readResolverWaitStrategy;
+    }
+    @Override
+    public boolean isRollForwardSegmented() {
+        return rollForwardSegmented;
+    }
+    @Override
+    public int getRollForwardSegments() {
+        return rollForwardSegments;
+    }
+    @Override
+    public long getRollForwardRowThreshold() {
+        return rollForwardRowThreshold;
+    }
+    @Override
+    public long getRollForwardTxnThreshold() {
+        return rollForwardTxnThreshold;
+    }
+    @Override
+    public long getRollForwardInterval() {
+        return rollForwardInterval;
+    }
+    @Override
+    public int getRollForwardBatchSize() {
+        return rollForwardBatchSize;
+    }
+    @Override
+    public int getRollForwardMaxRowsPerSecond() {
+        return rollForwardMaxRowsPerSecond;
+    }
+    @Override
+    public int getGroupCommitMaxBatchSize() {
+        return groupCommitMaxBatchSize;
+    }
+    @Override
+    public long getGroupCommitMaxWait() {
+        return groupCommitMaxWait;
+    }
+    @Override
+    public String getReadOnlyTimestampSource() {
+        return readOnlyTimestampSource;
+    }
+    @Override
+    public long getHlcMaxClockSkew() {
+        return hlcMaxClockSkew;
+    }
+    @Override
+    public int getRecentWritersSize() {
+        return recentWritersSize;
+    }
+    @Override
+    public long getRecentWritersMaxAge() {
+        return recentWritersMaxAge;
+    }
+    @Override
     public int getOlapClientWaitTime() {
         return olapClientWaitTime;
     }
@@ -393,6 +530,14 @@ public final class SConfigurationImpl implements SConfiguration {
         return timestampClientWaitTime;
     }
     @Override
+    public int getTimestampClientMaxInFlight() {
+        return timestampClientMaxInFlight;
+    }
+    @Override
+    public int getTimestampClientMaxBatchSize() {
+        return timestampClientMaxBatchSize;
+    }
+    @Override
     public int getTimestampServerBindPort() {
         return timestampServerBindPort;
     }
@@ -479,6 +624,18 @@ public final class SConfigurationImpl implements SConfiguration {
         return broadcastRegionRowThreshold;
     }
     @Override
+    public boolean getBroadcastOffHeap() {
+        return broadcastOffHeap;
+    }
+    @Override
+    public long getBroadcastCacheMemory() {
+        return broadcastCacheMemory;
+    }
+    @Override
+    public long getBroadcastAdmissionTimeout() {
+        return broadcastAdmissionTimeout;
+    }
+    @Override
     public long getOptimizerPlanMaximumTimeout() {
         return optimizerPlanMaximumTimeout;
     }
@@ -498,6 +655,54 @@ public final class SConfigurationImpl implements SConfiguration {
     public int getNestedLoopJoinBatchSize() {
         return nestedLoopJoinBatchSize;
     }
+    @Override
+    public boolean getControlSpill() {
+        return controlSpill;
+    }
+    @Override
+    public long getControlHashMemoryBudget() {
+        return controlHashMemoryBudget;
+    }
+    @Override
+    public int getControlHashPartitions() {
+        return controlHashPartitions;
+    }
+    @Override
+    public String getControlSpillDirectory() {
+        return controlSpillDirectory;
+    }
+    @Override
+    public boolean getControlBatchExecution() {
+        return controlBatchExecution;
+    }
+    @Override
+    public int getControlBatchSize() {
+        return controlBatchSize;
+    }
+    @Override
+    public boolean getControlAggregatePushdown() {
+        return controlAggregatePushdown;
+    }
+    @Override
+    public double getSparkJoinSkewSampleFraction() {
+        return sparkJoinSkewSampleFraction;
+    }
+    @Override
+    public double getSparkJoinSkewFactor() {
+        return sparkJoinSkewFactor;
+    }
+    @Override
+    public int getSparkJoinMaxSalts() {
+        return sparkJoinMaxSalts;
+    }
+    @Override
+    public long getJoinKeyFilterMaxKeys() {
+        return joinKeyFilterMaxKeys;
+    }
+    @Override
+    public int getUpdateBaseRowPrefetch() {
+        return updateBaseRowPrefetch;
+    }
 
     // StatsConfiguration
     @Override
@@ -582,11 +787,30 @@ public final class SConfigurationImpl implements SConfiguration {
     SConfigurationImpl(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         configSource = configurationSource;
         activeTransactionCacheSize = builder.activeTransactionCacheSize;
+        compactionPurgeVersions = builder.compactionPurgeVersions;
+        compactionWatermarkRetention = builder.compactionWatermarkRetention;
+        compactionWatermarkRefreshInterval = builder.compactionWatermarkRefreshInterval;
         completedTxnCacheSize = builder.completedTxnCacheSize;
         completedTxnConcurrency = builder.completedTxnConcurrency;
         readResolverQueueSize = builder.readResolverQueueSize;
         readResolverThreads = builder.readResolverThreads;
+        readResolverWaitStrategy = builder.readResolverWaitStrategy;
+        rollForwardSegmented = builder.rollForwardSegmented;
+        rollForwardSegments = builder.rollForwardSegments;
+        rollForwardRowThreshold = builder.rollForwardRowThreshold;
+        rollForwardTxnThreshold = builder.rollForwardTxnThreshold;
+        rollForwardInterval = builder.rollForwardInterval;
+        rollForwardBatchSize = builder.rollForwardBatchSize;
+        rollForwardMaxRowsPerSecond = builder.rollForwardMaxRowsPerSecond;
+        groupCommitMaxBatchSize = builder.groupCommitMaxBatchSize;
+        groupCommitMaxWait = builder.groupCommitMaxWait;
+        readOnlyTimestampSource = builder.readOnlyTimestampSource;
+        hlcMaxClockSkew = builder.hlcMaxClockSkew;
+        recentWritersSize = builder.recentWritersSize;
+        recentWritersMaxAge = builder.recentWritersMaxAge;
         timestampClientWaitTime = builder.timestampClientWaitTime;
+        timestampClientMaxInFlight = builder.timestampClientMaxInFlight;
+        timestampClientMaxBatchSize = builder.timestampClientMaxBatchSize;
         timestampServerBindPort = builder.timestampServerBindPort;
         transactionKeepAliveThreads = builder.transactionKeepAliveThreads;
         transactionLockStripes = builder.transactionLockStripes;
@@ -645,6 +869,9 @@ public final class SConfigurationImpl implements SConfiguration {
         partitionserverPort = builder.partitionserverPort;
         broadcastRegionMbThreshold = builder.broadcastRegionMbThreshold;
         broadcastRegionRowThreshold = builder.broadcastRegionRowThreshold;
+        broadcastOffHeap = builder.broadcastOffHeap;
+        broadcastCacheMemory = builder.broadcastCacheMemory;
+        broadcastAdmissionTimeout = builder.broadcastAdmissionTimeout;
         optimizerPlanMaximumTimeout = builder.optimizerPlanMaximumTimeout;
         optimizerPlanMinimumTimeout = builder.optimizerPlanMinimumTimeout;
         networkBindAddress = builder.networkBindAddress;
@@ -653,11 +880,18 @@ public final class SConfigurationImpl implements SConfiguration {
         ipcThreads = builder.ipcThreads;
         maxBufferEntries = builder.maxBufferEntries;
         maxDependentWrites = builder.maxDependentWrites;
+        writeQueueMaxWait = builder.writeQueueMaxWait;
+        writeQueueInteractiveSize = builder.writeQueueInteractiveSize;
+        writeQueueInteractiveWeight = builder.writeQueueInteractiveWeight;
         maxIndependentWrites = builder.maxIndependentWrites;
         maxRetries = builder.maxRetries;
         maxWriterThreads = builder.maxWriterThreads;
         pipelineKryoPoolSize = builder.pipelineKryoPoolSize;
+        encodingBufferPoolBytes = builder.encodingBufferPoolBytes;
         writeMaxFlushesPerRegion = builder.writeMaxFlushesPerRegion;
+        congestionMinWindow = builder.congestionMinWindow;
+        congestionMaxWindow = builder.congestionMaxWindow;
+        congestionDecreaseFactor = builder.congestionDecreaseFactor;
         clientPause = builder.clientPause;
         maxBufferHeapSize = builder.maxBufferHeapSize;
         startupLockWaitPeriod = builder.startupLockWaitPeriod;
@@ -676,6 +910,18 @@ public final class SConfigurationImpl implements SConfiguration {
         reservedSlotsTimeout = builder.reservedSlotsTimeout;
         storageFactoryHome = builder.storageFactoryHome;
         nestedLoopJoinBatchSize = builder.nestedLoopJoinBatchSize;
+        controlSpill = builder.controlSpill;
+        controlHashMemoryBudget = builder.controlHashMemoryBudget;
+        controlHashPartitions = builder.controlHashPartitions;
+        controlSpillDirectory = builder.controlSpillDirectory;
+        controlBatchExecution = builder.controlBatchExecution;
+        controlBatchSize = builder.controlBatchSize;
+        controlAggregatePushdown = builder.controlAggregatePushdown;
+        sparkJoinSkewSampleFraction = builder.sparkJoinSkewSampleFraction;
+        sparkJoinSkewFactor = builder.sparkJoinSkewFactor;
+        sparkJoinMaxSalts = builder.sparkJoinMaxSalts;
+        joinKeyFilterMaxKeys = builder.joinKeyFilterMaxKeys;
+        updateBaseRowPrefetch = builder.updateBaseRowPrefetch;
 
     }
 
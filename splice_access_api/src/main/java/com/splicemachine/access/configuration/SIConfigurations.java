@@ -48,6 +48,141 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String READ_RESOLVER_THREADS = "splice.txn.readresolver.threads";
     private static final int DEFAULT_READ_RESOLVER_THREADS = 4;
 
+    /**
+     * The strategy which the read-resolver threads use to wait for new resolve events. One of
+     *
+     * "blocking": park on a lock until events arrive. Uses the least CPU, but has the highest latency
+     * "phased": spin, then yield, then fall back to blocking. Low latency when busy, low CPU when idle
+     * "yielding": spin and yield. Lowest latency, but burns a core per resolver thread even when idle
+     *
+     * Defaults to "blocking"
+     */
+    public static final String READ_RESOLVER_WAIT_STRATEGY = "splice.txn.readresolver.waitStrategy";
+    private static final String DEFAULT_READ_RESOLVER_WAIT_STRATEGY = "blocking";
+
+    /**
+     * If true, each region tracks the rows which still need to be rolled forward in a number of
+     * segments, and a background engine rolls forward a whole segment in a single scan once enough
+     * unresolved rows accumulate in it.
+     *
+     * Defaults to false
+     */
+    public static final String ROLL_FORWARD_SEGMENTED = "splice.txn.rollforward.segmented";
+    private static final boolean DEFAULT_ROLL_FORWARD_SEGMENTED = false;
+
+    /**
+     * The number of segments into which each region is divided for segmented roll forward.
+     *
+     * Defaults to 16
+     */
+    public static final String ROLL_FORWARD_SEGMENTS = "splice.txn.rollforward.segments";
+    private static final int DEFAULT_ROLL_FORWARD_SEGMENTS = 16;
+
+    /**
+     * The number of unresolved rows a segment must accumulate before it is rolled forward.
+     *
+     * Defaults to 16384
+     */
+    public static final String ROLL_FORWARD_ROW_THRESHOLD = "splice.txn.rollforward.rowThreshold";
+    private static final long DEFAULT_ROLL_FORWARD_ROW_THRESHOLD = 1l<<14;
+
+    /**
+     * The (estimated) number of distinct transactions which must have written to a segment before
+     * it is rolled forward. Segments which were written by a single, long-running transaction are not worth
+     * rolling forward until that transaction completes.
+     *
+     * Defaults to 1
+     */
+    public static final String ROLL_FORWARD_TXN_THRESHOLD = "splice.txn.rollforward.txnThreshold";
+    private static final long DEFAULT_ROLL_FORWARD_TXN_THRESHOLD = 1l;
+
+    /**
+     * The interval (in milliseconds) at which each region rolls forward its segment with the most unresolved
+     * rows, regardless of the thresholds.
+     *
+     * Defaults to 10000 (10 seconds)
+     */
+    public static final String ROLL_FORWARD_INTERVAL = "splice.txn.rollforward.interval";
+    private static final long DEFAULT_ROLL_FORWARD_INTERVAL = 10000l;
+
+    /**
+     * The maximum number of rows to write in a single batch when rolling forward a segment.
+     *
+     * Defaults to 1024
+     */
+    public static final String ROLL_FORWARD_BATCH_SIZE = "splice.txn.rollforward.batchSize";
+    private static final int DEFAULT_ROLL_FORWARD_BATCH_SIZE = 1024;
+
+    /**
+     * The maximum rate (in rows per second) at which each server rolls rows forward. This keeps background
+     * roll forward from competing too heavily with user writes.
+     *
+     * Defaults to 100000
+     */
+    public static final String ROLL_FORWARD_MAX_ROWS_PER_SECOND = "splice.txn.rollforward.maxRowsPerSecond";
+    private static final int DEFAULT_ROLL_FORWARD_MAX_ROWS_PER_SECOND = 100000;
+
+    /**
+     * The maximum number of commits and rollbacks which may be written to a region of the transaction table
+     * as a single batch (i.e. with a single WAL sync).
+     *
+     * Setting this to 1 disables group commit. Defaults to 64
+     */
+    public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "splice.txn.groupCommit.maxBatchSize";
+    private static final int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * The maximum amount of time (in microseconds) that a commit or rollback will wait for others to join its
+     * batch before the batch is written.
+     *
+     * Even when this is 0, commits which arrive while another batch is being written are grouped together
+     * into the next batch, so this only needs to be raised when there are many concurrent, but rarely
+     * overlapping, commits. Defaults to 0
+     */
+    public static final String GROUP_COMMIT_MAX_WAIT = "splice.txn.groupCommit.maxWaitMicros";
+    private static final long DEFAULT_GROUP_COMMIT_MAX_WAIT = 0L;
+
+    /**
+     * Where read-only transactions take their begin timestamps from. One of
+     *
+     * "oracle": a new timestamp is fetched from the timestamp oracle for every read-only transaction
+     * "hlc": the most recent timestamp this server has seen from the oracle is reused, as long as the local
+     * hybrid logical clock says that it is no older than splice.txn.hlc.maxClockSkewMs. This saves a round trip
+     * to the oracle, at the cost of read-only transactions possibly not seeing commits made on other servers
+     * within that window.
+     *
+     * Defaults to "oracle"
+     */
+    public static final String READ_ONLY_TIMESTAMP_SOURCE = "splice.txn.readOnly.timestampSource";
+    private static final String DEFAULT_READ_ONLY_TIMESTAMP_SOURCE = "oracle";
+
+    /**
+     * When read-only transactions take their begin timestamps from the local hybrid logical clock, the longest
+     * time (in milliseconds) that a timestamp may be reused before a fresh one is fetched from the oracle.
+     *
+     * Defaults to 50
+     */
+    public static final String HLC_MAX_CLOCK_SKEW = "splice.txn.hlc.maxClockSkewMs";
+    private static final long DEFAULT_HLC_MAX_CLOCK_SKEW = 50L;
+
+    /**
+     * The number of rows (per region) whose most recent writer is remembered, so that write-write conflict detection
+     * can skip reading rows which are written repeatedly. Set to 0 to always read the row.
+     *
+     * Defaults to 1024
+     */
+    public static final String RECENT_WRITERS_SIZE = "splice.txn.conflict.recentWritersSize";
+    private static final int DEFAULT_RECENT_WRITERS_SIZE = 1024;
+
+    /**
+     * The longest time (in milliseconds) that the most recent writer of a row is remembered for write-write
+     * conflict detection.
+     *
+     * Defaults to 60000 (1 minute)
+     */
+    public static final String RECENT_WRITERS_MAX_AGE = "splice.txn.conflict.recentWritersMaxAgeMs";
+    private static final long DEFAULT_RECENT_WRITERS_MAX_AGE = 60000L;
+
     public static final String READ_RESOLVER_QUEUE_SIZE = "splice.txn.readresolver.queueSize";
     private static final int DEFAULT_READ_RESOLVER_QUEUE_SIZE=1<<16;
 
@@ -105,6 +240,23 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String TIMESTAMP_CLIENT_WAIT_TIME = "splice.timestamp_server.clientWaitTime";
     private static final int DEFAULT_TIMESTAMP_CLIENT_WAIT_TIME = 60000;
 
+    /**
+     * The maximum number of batched timestamp requests the timestamp client keeps outstanding on its connection
+     * to the timestamp server. Requests made while this many batches are in flight are queued, and sent together
+     * in the next batch.
+     * Defaults to 4
+     */
+    public static final String TIMESTAMP_CLIENT_MAX_IN_FLIGHT = "splice.timestamp_server.clientMaxInFlight";
+    private static final int DEFAULT_TIMESTAMP_CLIENT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * The maximum number of timestamps the timestamp client requests in a single batch. The count is sent to
+     * the timestamp server as a short, so values above 32767 are treated as 32767.
+     * Defaults to 1024
+     */
+    public static final String TIMESTAMP_CLIENT_MAX_BATCH_SIZE = "splice.timestamp_server.clientMaxBatchSize";
+    private static final int DEFAULT_TIMESTAMP_CLIENT_MAX_BATCH_SIZE = 1024;
+
     /**
      * The Port to bind the Timestamp Server connection to
      * Defaults to 60012
@@ -149,17 +301,65 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String ACTIVE_TRANSACTION_CACHE_SIZE="splice.txn.activeCacheSize";
     private static final int DEFAULT_ACTIVE_TRANSACTION_CACHE_SIZE = 1<<12;
 
+    /**
+     * Whether compactions should remove versions which are shadowed by a newer version committed
+     * below the low-watermark (i.e. versions which no transaction can see any longer).
+     *
+     * Defaults to false
+     */
+    public static final String COMPACTION_PURGE_VERSIONS = "splice.txn.compaction.purgeVersions";
+    private static final boolean DEFAULT_COMPACTION_PURGE_VERSIONS = false;
+
+    /**
+     * The minimum time (in ms) that a snapshot is retained for, regardless of the low-watermark.
+     *
+     * Read-only transactions are not recorded in the transaction table, so they cannot hold back
+     * the low-watermark. Instead, the watermark never passes any timestamp which was handed out more recently
+     * than this, so read-only transactions which run for less than this long will always see a consistent snapshot.
+     *
+     * Defaults to 1 hour
+     */
+    public static final String COMPACTION_WATERMARK_RETENTION = "splice.txn.compaction.watermarkRetention";
+    private static final long DEFAULT_COMPACTION_WATERMARK_RETENTION = 60*60*1000L;
+
+    /**
+     * The minimum time (in ms) between refreshes of the low-watermark on each server.
+     *
+     * Defaults to 1 minute
+     */
+    public static final String COMPACTION_WATERMARK_REFRESH_INTERVAL = "splice.txn.compaction.watermarkRefreshInterval";
+    private static final long DEFAULT_COMPACTION_WATERMARK_REFRESH_INTERVAL = 60*1000L;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.completedTxnConcurrency  = configurationSource.getInt(completedTxnConcurrency, DEFAULT_COMPLETED_TRANSACTION_CONCURRENCY);
         builder.completedTxnCacheSize  = configurationSource.getInt(completedTxnCacheSize, DEFAULT_COMPLETED_TRANSACTION_CACHE_SIZE);
         builder.transactionKeepAliveThreads  = configurationSource.getInt(TRANSACTION_KEEP_ALIVE_THREADS, DEFAULT_KEEP_ALIVE_THREADS);
         builder.readResolverThreads  = configurationSource.getInt(READ_RESOLVER_THREADS, DEFAULT_READ_RESOLVER_THREADS);
+        builder.readResolverWaitStrategy = configurationSource.getString(READ_RESOLVER_WAIT_STRATEGY, DEFAULT_READ_RESOLVER_WAIT_STRATEGY);
+        builder.rollForwardSegmented = configurationSource.getBoolean(ROLL_FORWARD_SEGMENTED, DEFAULT_ROLL_FORWARD_SEGMENTED);
+        builder.rollForwardSegments = configurationSource.getInt(ROLL_FORWARD_SEGMENTS, DEFAULT_ROLL_FORWARD_SEGMENTS);
+        builder.rollForwardRowThreshold = configurationSource.getLong(ROLL_FORWARD_ROW_THRESHOLD, DEFAULT_ROLL_FORWARD_ROW_THRESHOLD);
+        builder.rollForwardTxnThreshold = configurationSource.getLong(ROLL_FORWARD_TXN_THRESHOLD, DEFAULT_ROLL_FORWARD_TXN_THRESHOLD);
+        builder.rollForwardInterval = configurationSource.getLong(ROLL_FORWARD_INTERVAL, DEFAULT_ROLL_FORWARD_INTERVAL);
+        builder.rollForwardBatchSize = configurationSource.getInt(ROLL_FORWARD_BATCH_SIZE, DEFAULT_ROLL_FORWARD_BATCH_SIZE);
+        builder.rollForwardMaxRowsPerSecond = configurationSource.getInt(ROLL_FORWARD_MAX_ROWS_PER_SECOND, DEFAULT_ROLL_FORWARD_MAX_ROWS_PER_SECOND);
+        builder.groupCommitMaxBatchSize = configurationSource.getInt(GROUP_COMMIT_MAX_BATCH_SIZE, DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE);
+        builder.groupCommitMaxWait = configurationSource.getLong(GROUP_COMMIT_MAX_WAIT, DEFAULT_GROUP_COMMIT_MAX_WAIT);
+        builder.readOnlyTimestampSource = configurationSource.getString(READ_ONLY_TIMESTAMP_SOURCE, DEFAULT_READ_ONLY_TIMESTAMP_SOURCE);
+        builder.hlcMaxClockSkew = configurationSource.getLong(HLC_MAX_CLOCK_SKEW, DEFAULT_HLC_MAX_CLOCK_SKEW);
+        builder.recentWritersSize = configurationSource.getInt(RECENT_WRITERS_SIZE, DEFAULT_RECENT_WRITERS_SIZE);
+        builder.recentWritersMaxAge = configurationSource.getLong(RECENT_WRITERS_MAX_AGE, DEFAULT_RECENT_WRITERS_MAX_AGE);
         builder.readResolverQueueSize  = configurationSource.getInt(READ_RESOLVER_QUEUE_SIZE, -1); //TODO -sf- reset to DEFAULT once ReadResolution works
 //        builder.readResolverQueueSize  = configurationSource.getInt(READ_RESOLVER_QUEUE_SIZE, DEFAULT_READ_RESOLVER_QUEUE_SIZE);
         builder.timestampClientWaitTime  = configurationSource.getInt(TIMESTAMP_CLIENT_WAIT_TIME, DEFAULT_TIMESTAMP_CLIENT_WAIT_TIME);
+        builder.timestampClientMaxInFlight = configurationSource.getInt(TIMESTAMP_CLIENT_MAX_IN_FLIGHT, DEFAULT_TIMESTAMP_CLIENT_MAX_IN_FLIGHT);
+        builder.timestampClientMaxBatchSize = configurationSource.getInt(TIMESTAMP_CLIENT_MAX_BATCH_SIZE, DEFAULT_TIMESTAMP_CLIENT_MAX_BATCH_SIZE);
         builder.timestampServerBindPort  = configurationSource.getInt(TIMESTAMP_SERVER_BIND_PORT, DEFAULT_TIMESTAMP_SERVER_BIND_PORT);
         builder.activeTransactionCacheSize  = configurationSource.getInt(ACTIVE_TRANSACTION_CACHE_SIZE, DEFAULT_ACTIVE_TRANSACTION_CACHE_SIZE);
+        builder.compactionPurgeVersions = configurationSource.getBoolean(COMPACTION_PURGE_VERSIONS, DEFAULT_COMPACTION_PURGE_VERSIONS);
+        builder.compactionWatermarkRetention = configurationSource.getLong(COMPACTION_WATERMARK_RETENTION, DEFAULT_COMPACTION_WATERMARK_RETENTION);
+        builder.compactionWatermarkRefreshInterval = configurationSource.getLong(COMPACTION_WATERMARK_REFRESH_INTERVAL, DEFAULT_COMPACTION_WATERMARK_REFRESH_INTERVAL);
         builder.olapServerBindPort  = configurationSource.getInt(OLAP_SERVER_BIND_PORT, DEFAULT_OLAP_SERVER_BIND_PORT);
         builder.olapClientWaitTime  = configurationSource.getInt(OLAP_CLIENT_WAIT_TIME, DEFAULT_OLAP_CLIENT_WAIT_TIME);
         builder.olapClientTickTime  = configurationSource.getInt(OLAP_CLIENT_TICK_TIME, DEFAULT_OLAP_CLIENT_TICK_TIME);
@@ -72,6 +72,118 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String CONTROL_SIDE_ROWCOUNT_THRESHOLD = "splice.dataset.control.rowCountThreshold";
     private static final double DEFAULT_CONTROL_SIDE_ROWCOUNT_THRESHOLD = 100000D;
 
+    /**
+     * Whether control-side hash tables (used for grouping, hash joins, subtraction and cogroup operations)
+     * spill partitions to local disk once they exceed their memory budget. When disabled, they are held
+     * entirely on the heap.
+     *
+     * Defaults to false
+     */
+    public static final String CONTROL_SPILL = "splice.dataset.control.spill";
+    private static final boolean DEFAULT_CONTROL_SPILL = false;
+
+    /**
+     * The maximum number of bytes that a single control-side hash table may hold on the heap before it
+     * begins spilling partitions to local disk, when spilling is enabled.
+     *
+     * Defaults to 1/20th of the maximum heap size
+     */
+    public static final String CONTROL_HASH_MEMORY_BUDGET = "splice.dataset.control.hashMemoryBudget";
+    private static final long DEFAULT_CONTROL_HASH_MEMORY_BUDGET = Runtime.getRuntime().maxMemory()/20;
+
+    /**
+     * The number of partitions a control-side hash table splits its data into. When the memory budget
+     * is exceeded, entire partitions are spilled to disk, so a larger number of partitions results
+     * in finer-grained spilling (and smaller partitions to be reloaded), at the cost of more spill files.
+     *
+     * Defaults to 16
+     */
+    public static final String CONTROL_HASH_PARTITIONS = "splice.dataset.control.hashPartitions";
+    private static final int DEFAULT_CONTROL_HASH_PARTITIONS = 16;
+
+    /**
+     * The local directory in which control-side hash tables write their spilled partitions.
+     *
+     * Defaults to the value of java.io.tmpdir
+     */
+    public static final String CONTROL_SPILL_DIRECTORY = "splice.dataset.control.spillDirectory";
+
+    /**
+     * Whether control-side scalar and grouped aggregations (and the projections beneath them) are evaluated
+     * over column vectors of rows in batches, rather than one row at a time. Only COUNT, MIN, MAX and
+     * SUM (over integral, DOUBLE and DECIMAL columns) are evaluated in batches; all other aggregations
+     * use row-at-a-time evaluation regardless of this setting.
+     *
+     * Defaults to false
+     */
+    public static final String CONTROL_BATCH_EXECUTION = "splice.dataset.control.batchExecution";
+    private static final boolean DEFAULT_CONTROL_BATCH_EXECUTION = false;
+
+    /**
+     * The number of rows in each column batch when control-side batch execution is enabled.
+     *
+     * Defaults to 1024
+     */
+    public static final String CONTROL_BATCH_SIZE = "splice.dataset.control.batchSize";
+    private static final int DEFAULT_CONTROL_BATCH_SIZE = 1024;
+
+    /**
+     * Whether control-side batch aggregations over a table scan are partially computed by each region, so
+     * that only one row per group per region is returned, rather than every row. This only applies when
+     * control-side batch execution is enabled, and the scan has no qualifiers and reads no primary key columns.
+     *
+     * Defaults to false
+     */
+    public static final String CONTROL_AGGREGATE_PUSHDOWN = "splice.dataset.control.aggregatePushdown";
+    private static final boolean DEFAULT_CONTROL_AGGREGATE_PUSHDOWN = false;
+
+    /**
+     * The fraction of the left side of a Spark hash join which is sampled to detect skewed join keys.
+     * Sampling costs an extra pass over the left side. Set to 0 to disable skew detection.
+     *
+     * Defaults to 0.01
+     */
+    public static final String SPARK_JOIN_SKEW_SAMPLE_FRACTION = "splice.dataset.spark.joinSkewSampleFraction";
+    private static final double DEFAULT_SPARK_JOIN_SKEW_SAMPLE_FRACTION = 0.01D;
+
+    /**
+     * A join key is considered skewed when its share of the sampled left side is at least this many times
+     * the share of a single partition. The rows of a skewed key are spread over several partitions, and the
+     * matching right side rows are replicated to each of them.
+     *
+     * Defaults to 4
+     */
+    public static final String SPARK_JOIN_SKEW_FACTOR = "splice.dataset.spark.joinSkewFactor";
+    private static final double DEFAULT_SPARK_JOIN_SKEW_FACTOR = 4D;
+
+    /**
+     * The maximum number of partitions the rows of a single skewed join key are spread over (and hence
+     * the maximum number of copies made of each matching right side row).
+     *
+     * Defaults to 32
+     */
+    public static final String SPARK_JOIN_MAX_SALTS = "splice.dataset.spark.joinMaxSalts";
+    private static final int DEFAULT_SPARK_JOIN_MAX_SALTS = 32;
+
+    /**
+     * The maximum estimated number of rows on the build side of an inner join for which a bloom filter over
+     * the join keys is built and pushed into the scan of the probe side. Set to 0 to disable.
+     *
+     * Defaults to 100000
+     */
+    public static final String JOIN_KEY_FILTER_MAX_KEYS = "splice.execution.joinKeyFilterMaxKeys";
+    private static final long DEFAULT_JOIN_KEY_FILTER_MAX_KEYS = 100000L;
+
+    /**
+     * The number of rows an UPDATE which modifies the primary key reads ahead of the writer, so that
+     * the current versions of those rows can be fetched from the base table with a single multi-get
+     * rather than with one get per row. Set to 1 to fetch each row individually.
+     *
+     * Defaults to 256
+     */
+    public static final String UPDATE_BASE_ROW_PREFETCH = "splice.update.baseRowPrefetch";
+    private static final int DEFAULT_UPDATE_BASE_ROW_PREFETCH = 256;
+
     //debug options
     /**
      * For debugging an operation, this will force the query parser to dump any generated
@@ -110,6 +222,35 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String BROADCAST_REGION_ROW_THRESHOLD = "splice.optimizer.broadcastRegionRowThreshold";
     private static final int DEFAULT_BROADCAST_REGION_ROW_THRESHOLD = 1000000;
 
+    /**
+     * Whether broadcast joins keep the inner table in direct (off-heap) memory as encoded rows, instead
+     * of as a map of rows on the heap. Off-heap tables are several times smaller, and do not contribute to
+     * GC pressure while they are cached, but require sufficient direct memory (-XX:MaxDirectMemorySize).
+     *
+     * Defaults to false
+     */
+    public static final String BROADCAST_OFF_HEAP = "splice.dataset.broadcast.offHeap";
+    private static final boolean DEFAULT_BROADCAST_OFF_HEAP = false;
+
+    /**
+     * The maximum number of bytes that all broadcast join tables loaded on a single server may hold
+     * at the same time. When a new table would be loaded while this budget is exhausted, the load waits
+     * for other tables to be released (up to splice.dataset.broadcast.admissionTimeout).
+     *
+     * Defaults to 1/10th of the maximum heap size
+     */
+    public static final String BROADCAST_CACHE_MEMORY = "splice.dataset.broadcast.cacheMemory";
+    private static final long DEFAULT_BROADCAST_CACHE_MEMORY = Runtime.getRuntime().maxMemory()/10;
+
+    /**
+     * The maximum time (in milliseconds) that a broadcast join will wait for memory to become available
+     * in the broadcast join cache before loading its table anyway.
+     *
+     * Defaults to 10000 (10 seconds)
+     */
+    public static final String BROADCAST_ADMISSION_TIMEOUT = "splice.dataset.broadcast.admissionTimeout";
+    private static final long DEFAULT_BROADCAST_ADMISSION_TIMEOUT = 10000L;
+
     /**
      * Minimum fixed duration (in millisecomds) that should be allowed to lapse
      * before the optimizer can determine that it should stop trying to find
@@ -216,6 +357,18 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.partitionserverJmxPort = configurationSource.getInt(PARTITIONSERVER_JMX_PORT, DEFAULT_PARTITIONSERVER_JMX_PORT);
         builder.partitionserverPort = configurationSource.getInt(PARTITIONSERVER_PORT, DEFAULT_PARTITIONSERVER_PORT);
         builder.nestedLoopJoinBatchSize = configurationSource.getInt(NESTEDLOOPJOIN_BATCH_SIZE, DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE);
+        builder.controlSpill = configurationSource.getBoolean(CONTROL_SPILL, DEFAULT_CONTROL_SPILL);
+        builder.controlHashMemoryBudget = configurationSource.getLong(CONTROL_HASH_MEMORY_BUDGET, DEFAULT_CONTROL_HASH_MEMORY_BUDGET);
+        builder.controlHashPartitions = configurationSource.getInt(CONTROL_HASH_PARTITIONS, DEFAULT_CONTROL_HASH_PARTITIONS);
+        builder.controlSpillDirectory = configurationSource.getString(CONTROL_SPILL_DIRECTORY, System.getProperty("java.io.tmpdir"));
+        builder.controlBatchExecution = configurationSource.getBoolean(CONTROL_BATCH_EXECUTION, DEFAULT_CONTROL_BATCH_EXECUTION);
+        builder.controlBatchSize = configurationSource.getInt(CONTROL_BATCH_SIZE, DEFAULT_CONTROL_BATCH_SIZE);
+        builder.controlAggregatePushdown = configurationSource.getBoolean(CONTROL_AGGREGATE_PUSHDOWN, DEFAULT_CONTROL_AGGREGATE_PUSHDOWN);
+        builder.sparkJoinSkewSampleFraction = configurationSource.getDouble(SPARK_JOIN_SKEW_SAMPLE_FRACTION, DEFAULT_SPARK_JOIN_SKEW_SAMPLE_FRACTION);
+        builder.sparkJoinSkewFactor = configurationSource.getDouble(SPARK_JOIN_SKEW_FACTOR, DEFAULT_SPARK_JOIN_SKEW_FACTOR);
+        builder.sparkJoinMaxSalts = configurationSource.getInt(SPARK_JOIN_MAX_SALTS, DEFAULT_SPARK_JOIN_MAX_SALTS);
+        builder.joinKeyFilterMaxKeys = configurationSource.getLong(JOIN_KEY_FILTER_MAX_KEYS, DEFAULT_JOIN_KEY_FILTER_MAX_KEYS);
+        builder.updateBaseRowPrefetch = configurationSource.getInt(UPDATE_BASE_ROW_PREFETCH, DEFAULT_UPDATE_BASE_ROW_PREFETCH);
 
         // Where to place jar files...
         String defaultStorageFactoryHome;
@@ -228,6 +381,9 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.optimizerPlanMinimumTimeout = configurationSource.getLong(OPTIMIZER_PLAN_MINIMUM_TIMEOUT, DEFAULT_OPTIMIZER_PLAN_MINIMUM_TIMEOUT);
         builder.broadcastRegionMbThreshold = configurationSource.getLong(BROADCAST_REGION_MB_THRESHOLD, DEFAULT_BROADCAST_REGION_MB_THRESHOLD);
         builder.broadcastRegionRowThreshold = configurationSource.getLong(BROADCAST_REGION_ROW_THRESHOLD, DEFAULT_BROADCAST_REGION_ROW_THRESHOLD);
+        builder.broadcastOffHeap = configurationSource.getBoolean(BROADCAST_OFF_HEAP, DEFAULT_BROADCAST_OFF_HEAP);
+        builder.broadcastCacheMemory = configurationSource.getLong(BROADCAST_CACHE_MEMORY, DEFAULT_BROADCAST_CACHE_MEMORY);
+        builder.broadcastAdmissionTimeout = configurationSource.getLong(BROADCAST_ADMISSION_TIMEOUT, DEFAULT_BROADCAST_ADMISSION_TIMEOUT);
 
         //always disable debug statements by default
         builder.debugLogStatementContext = configurationSource.getBoolean(DEBUG_LOG_STATEMENT_CONTEXT, DEFAULT_LOG_STATEMENT_CONTEXT);
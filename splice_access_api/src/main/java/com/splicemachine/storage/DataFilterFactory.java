@@ -35,4 +35,13 @@ public interface DataFilterFactory{
     DataFilter singleColumnEqualsValueFilter(byte[] family,byte[] qualifier,byte[] value);
 
     DataFilter allocatedFilter(byte[] localAddress);
+
+    /**
+     * Filter rows based on whether or not their key starts with one of the specified prefixes. Where the
+     * architecture supports it, the rows between two prefixes are skipped without being read.
+     *
+     * @param sortedPrefixes the prefixes to keep, in ascending (unsigned) order
+     * @return a DataFilter which keeps only the rows within one of the prefixes
+     */
+    DataFilter prefixSkipScanFilter(byte[][] sortedPrefixes);
 }
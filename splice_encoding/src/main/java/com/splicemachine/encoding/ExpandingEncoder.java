@@ -46,6 +46,17 @@ public class ExpandingEncoder {
         this(10,resizeFactor);
     }
 
+    /**
+     * Encode into {@code buffer}, starting at the beginning. If the buffer turns out to be too small, it
+     * is replaced with a larger copy, so callers should use {@link #getRawBuffer()} to fetch the data.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2",justification = "Intentional")
+    public ExpandingEncoder(byte[] buffer){
+        this.buffer = buffer;
+        this.resizeFactor = 1.5f;
+        this.currentOffset = 0;
+    }
+
     public ExpandingEncoder encode(byte value){
         ensureCapacity(Encoding.encodedLength(value));
         currentOffset+=Encoding.encode(value,buffer,currentOffset);
@@ -72,12 +83,14 @@ public class ExpandingEncoder {
     }
 
     public ExpandingEncoder encode(String value){
-        ensureCapacity(value.length());
+        ensureCapacity(value.length()+1);
         /*
          * We add an extra 0x00 here to delimit the end of a String, so that
          * we can easily parse  list of Strings easily.
          */
-        currentOffset+=Encoding.encode(value,buffer,currentOffset)+1;
+        currentOffset+=Encoding.encode(value,buffer,currentOffset);
+        buffer[currentOffset] = 0x00; //the buffer may be re-used, so don't assume it's zeroed
+        currentOffset++;
         return this;
     }
 
@@ -111,12 +124,24 @@ public class ExpandingEncoder {
             return buffer;
     }
 
+    /**
+     * @return the underlying buffer, without trimming it. Only the first {@link #getLength()} bytes are valid.
+     */
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP",justification = "Intentional")
+    public byte[] getRawBuffer(){
+        return buffer;
+    }
+
+    public int getLength(){
+        return currentOffset;
+    }
+
     /****************************************************************************************************************/
     /*private helper methods*/
     private void ensureCapacity(int requiredLength) {
-        if(buffer.length-currentOffset>requiredLength) return; //we have enough space, no worries!
+        if(buffer.length-currentOffset>=requiredLength) return; //we have enough space, no worries!
 
-        long len = buffer.length;
+        long len = Math.max(buffer.length,10);
         do {
             len = (long)(resizeFactor * len);
         }while(len-currentOffset<requiredLength);
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.Encoding;
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.storage.index.BitIndex;
+import com.splicemachine.utils.ByteSlice;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partial (per-region) aggregation of packed rows.
+ *
+ * An aggregator describes a set of group fields and a set of aggregate functions over the fields of
+ * the packed row. It is serialized with {@link #toBytes()} and shipped with the scan, so that the region
+ * can fold each visible row into one {@link Partial} per distinct group, and return only those partials
+ * to the client (see {@link Partial#encode()} and {@link #decodePartial(byte[])}). The client is responsible
+ * for merging partials from different regions.
+ *
+ * Fields are only ever compared and summed in their encoded form, so only the following are supported:
+ * <ul>
+ *     <li>group fields of any type (grouped by the encoded bytes)</li>
+ *     <li>{@link Function#SUM_LONG} over scalar fields, {@link Function#SUM_DOUBLE} over double fields,
+ *     and {@link Function#SUM_DECIMAL} over decimal fields</li>
+ *     <li>{@link Function#MIN} and {@link Function#MAX} over fields whose encoding is order-preserving
+ *     (the numeric types)</li>
+ * </ul>
+ */
+public class EntryAggregator{
+    public enum Function{COUNT_STAR,COUNT,SUM_LONG,SUM_DOUBLE,SUM_DECIMAL,MIN,MAX}
+
+    private static final int[] NO_FIELDS=new int[0];
+
+    private final int[] groupFields;
+    private final Function[] functions;
+    private final int[] inputFields;
+
+    /*runtime state*/
+    private final int[] slotByField;
+    private final int[] slotOffsets;
+    private final int[] slotLengths;
+    private final boolean needsFields;
+    private final EntryDecoder entryDecoder=new EntryDecoder();
+    private final Map<ByteSlice,Partial> groups=new HashMap<>();
+    private final ByteSlice lookupKey=new ByteSlice();
+    private byte[] keyBuffer=new byte[32];
+    private byte[] currentData;
+    private long rowsAggregated;
+
+    /**
+     * @param groupFields the positions of the group fields in the packed row. Empty for a scalar aggregate
+     * @param functions the aggregate functions to compute
+     * @param inputFields the position of the input field of each function in the packed row. Ignored
+     *                    for {@link Function#COUNT_STAR}
+     */
+    public EntryAggregator(int[] groupFields,Function[] functions,int[] inputFields){
+        assert functions.length==inputFields.length: "Every function must have an input field";
+        this.groupFields=groupFields==null?NO_FIELDS:groupFields;
+        this.functions=functions;
+        this.inputFields=inputFields;
+
+        int maxField=-1;
+        for(int field : this.groupFields){
+            maxField=Math.max(maxField,field);
+        }
+        for(int i=0;i<functions.length;i++){
+            if(functions[i]!=Function.COUNT_STAR)
+                maxField=Math.max(maxField,inputFields[i]);
+        }
+        this.needsFields=maxField>=0;
+        this.slotByField=new int[maxField+1];
+        Arrays.fill(slotByField,-1);
+        int slots=0;
+        for(int field : this.groupFields){
+            if(slotByField[field]<0)
+                slotByField[field]=slots++;
+        }
+        for(int i=0;i<functions.length;i++){
+            if(functions[i]!=Function.COUNT_STAR && slotByField[inputFields[i]]<0)
+                slotByField[inputFields[i]]=slots++;
+        }
+        this.slotOffsets=new int[slots];
+        this.slotLengths=new int[slots];
+    }
+
+    public int[] getGroupFields(){
+        return groupFields;
+    }
+
+    public Function[] getFunctions(){
+        return functions;
+    }
+
+    public int[] getInputFields(){
+        return inputFields;
+    }
+
+    /**
+     * @return the fields of the packed row which must be returned by the scan for this aggregator
+     */
+    public BitSet getFieldsToReturn(){
+        BitSet fields=new BitSet(slotByField.length);
+        for(int i=0;i<slotByField.length;i++){
+            if(slotByField[i]>=0)
+                fields.set(i);
+        }
+        return fields;
+    }
+
+    /**
+     * @return true if this aggregator never looks at the contents of the rows (i.e. it only counts them)
+     */
+    public boolean isCountOnly(){
+        return !needsFields;
+    }
+
+    /**
+     * Fold a single row into its group.
+     *
+     * @param data the packed row, including its index. Ignored if {@link #isCountOnly()}
+     */
+    public void aggregate(byte[] data,int offset,int length) throws IOException{
+        rowsAggregated++;
+        if(!needsFields){
+            Partial partial=groups.get(lookupKey(0));
+            if(partial==null)
+                partial=newGroup(0);
+            partial.countRow();
+            return;
+        }
+        Arrays.fill(slotLengths,-1);
+        entryDecoder.set(data,offset,length);
+        currentData=data;
+        BitIndex index=entryDecoder.getCurrentIndex();
+        MultiFieldDecoder decoder=entryDecoder.getEntryDecoder();
+        for(int pos=index.nextSetBit(0);pos>=0 && pos<slotByField.length;pos=index.nextSetBit(pos+1)){
+            int fieldOffset=decoder.offset();
+            boolean isNull=entryDecoder.seekForward(decoder,pos);
+            int slot=slotByField[pos];
+            if(slot<0) continue;
+            int fieldLength=decoder.offset()-1-fieldOffset;
+            if(isNull || fieldLength<=0) continue;
+            slotOffsets[slot]=fieldOffset;
+            slotLengths[slot]=fieldLength;
+        }
+
+        int keyLength=buildGroupKey();
+        Partial partial=groups.get(lookupKey(keyLength));
+        if(partial==null)
+            partial=newGroup(keyLength);
+        partial.accumulate(this);
+    }
+
+    public int numGroups(){
+        return groups.size();
+    }
+
+    public long getRowsAggregated(){
+        return rowsAggregated;
+    }
+
+    /**
+     * @return the encoded partial of every group seen since the last {@link #reset()}
+     */
+    public List<byte[]> encodePartials(){
+        List<byte[]> partials=new ArrayList<>(groups.size());
+        for(Partial partial : groups.values()){
+            partials.add(partial.encode());
+        }
+        return partials;
+    }
+
+    public void reset(){
+        groups.clear();
+        rowsAggregated=0;
+        currentData=null;
+    }
+
+    public Partial decodePartial(byte[] data){
+        MultiFieldDecoder decoder=MultiFieldDecoder.wrap(data);
+        Partial partial=new Partial(functions,new byte[groupFields.length][]);
+        for(int i=0;i<groupFields.length;i++){
+            partial.groupValues[i]=decoder.nextIsNull()?skipNull(decoder):decoder.decodeNextBytesUnsorted();
+        }
+        for(int i=0;i<functions.length;i++){
+            partial.counts[i]=decoder.decodeNextLong();
+            partial.nullCounts[i]=decoder.decodeNextLong();
+            if(decoder.nextIsNull()){
+                decoder.skip();
+                continue;
+            }
+            switch(functions[i]){
+                case SUM_LONG:
+                case SUM_DECIMAL:
+                    partial.decimalSums[i]=decoder.decodeNextBigDecimal();
+                    break;
+                case SUM_DOUBLE:
+                    partial.doubleSums[i]=decoder.decodeNextDouble();
+                    break;
+                case MIN:
+                case MAX:
+                    partial.values[i]=decoder.decodeNextBytesUnsorted();
+                    break;
+                default:
+                    decoder.skip();
+            }
+        }
+        return partial;
+    }
+
+    public byte[] toBytes(){
+        /*
+         * Format is as follows:
+         * numGroupFields groupField... numFunctions (function inputField)...
+         */
+        MultiFieldEncoder encoder=MultiFieldEncoder.create(2+groupFields.length+2*functions.length);
+        encoder.encodeNext(groupFields.length);
+        for(int field : groupFields){
+            encoder.encodeNext(field);
+        }
+        encoder.encodeNext(functions.length);
+        for(int i=0;i<functions.length;i++){
+            encoder.encodeNext(functions[i].ordinal());
+            encoder.encodeNext(inputFields[i]);
+        }
+        return encoder.build();
+    }
+
+    public static EntryAggregator fromBytes(byte[] data){
+        MultiFieldDecoder decoder=MultiFieldDecoder.wrap(data);
+        int[] groupFields=new int[decoder.decodeNextInt()];
+        for(int i=0;i<groupFields.length;i++){
+            groupFields[i]=decoder.decodeNextInt();
+        }
+        Function[] values=Function.values();
+        Function[] functions=new Function[decoder.decodeNextInt()];
+        int[] inputFields=new int[functions.length];
+        for(int i=0;i<functions.length;i++){
+            functions[i]=values[decoder.decodeNextInt()];
+            inputFields[i]=decoder.decodeNextInt();
+        }
+        return new EntryAggregator(groupFields,functions,inputFields);
+    }
+
+    /**
+     * The partial aggregate of a single group.
+     */
+    public static class Partial{
+        private final Function[] functions;
+        private final byte[][] groupValues;
+        private final long[] counts;
+        private final long[] nullCounts;
+        private final long[] longSums;
+        private final BigDecimal[] decimalSums;
+        private final double[] doubleSums;
+        private final byte[][] values;
+
+        private Partial(Function[] functions,byte[][] groupValues){
+            this.functions=functions;
+            this.groupValues=groupValues;
+            this.counts=new long[functions.length];
+            this.nullCounts=new long[functions.length];
+            this.longSums=new long[functions.length];
+            this.decimalSums=new BigDecimal[functions.length];
+            this.doubleSums=new double[functions.length];
+            this.values=new byte[functions.length][];
+        }
+
+        /**
+         * @return the encoded value of the group field at {@code position}, or {@code null} if it is null
+         */
+        public byte[] getGroupValue(int position){
+            return groupValues[position];
+        }
+
+        /**
+         * @return the number of rows with a non-null input (all rows, for {@link Function#COUNT_STAR})
+         */
+        public long getCount(int function){
+            return counts[function];
+        }
+
+        /**
+         * @return the number of rows whose input was null
+         */
+        public long getNullCount(int function){
+            return nullCounts[function];
+        }
+
+        /**
+         * @return the sum of a {@link Function#SUM_LONG} or {@link Function#SUM_DECIMAL}, or {@code null}
+         * if there were no non-null inputs
+         */
+        public BigDecimal getDecimalSum(int function){
+            if(counts[function]==0) return null;
+            if(functions[function]==Function.SUM_LONG && decimalSums[function]==null)
+                return BigDecimal.valueOf(longSums[function]);
+            return decimalSums[function];
+        }
+
+        public double getDoubleSum(int function){
+            return doubleSums[function];
+        }
+
+        /**
+         * @return the encoded result of a {@link Function#MIN} or {@link Function#MAX}, or {@code null}
+         * if there were no non-null inputs
+         */
+        public byte[] getValue(int function){
+            return values[function];
+        }
+
+        public byte[] encode(){
+            MultiFieldEncoder encoder=MultiFieldEncoder.create(groupValues.length+3*functions.length);
+            for(byte[] groupValue : groupValues){
+                if(groupValue==null)
+                    encoder.encodeEmpty();
+                else
+                    encoder.encodeNextUnsorted(groupValue);
+            }
+            for(int i=0;i<functions.length;i++){
+                encoder.encodeNext(counts[i]).encodeNext(nullCounts[i]);
+                if(counts[i]==0){
+                    encoder.encodeEmpty();
+                    continue;
+                }
+                switch(functions[i]){
+                    case SUM_LONG:
+                    case SUM_DECIMAL:
+                        encoder.encodeNext(getDecimalSum(i));
+                        break;
+                    case SUM_DOUBLE:
+                        encoder.encodeNext(doubleSums[i]);
+                        break;
+                    case MIN:
+                    case MAX:
+                        encoder.encodeNextUnsorted(values[i]);
+                        break;
+                    default:
+                        encoder.encodeEmpty();
+                }
+            }
+            return encoder.build();
+        }
+
+        private void countRow(){
+            for(int i=0;i<functions.length;i++){
+                counts[i]++;
+            }
+        }
+
+        private void accumulate(EntryAggregator aggregator){
+            byte[] data=aggregator.currentData;
+            for(int i=0;i<functions.length;i++){
+                Function function=functions[i];
+                if(function==Function.COUNT_STAR){
+                    counts[i]++;
+                    continue;
+                }
+                int slot=aggregator.slotByField[aggregator.inputFields[i]];
+                int length=aggregator.slotLengths[slot];
+                if(length<=0){
+                    nullCounts[i]++;
+                    continue;
+                }
+                int offset=aggregator.slotOffsets[slot];
+                switch(function){
+                    case SUM_LONG:
+                        addLong(i,Encoding.decodeLong(data,offset,false));
+                        break;
+                    case SUM_DOUBLE:
+                        doubleSums[i]+=Encoding.decodeDouble(data,offset,false);
+                        break;
+                    case SUM_DECIMAL:
+                        BigDecimal value=Encoding.decodeBigDecimal(data,offset,length,false);
+                        decimalSums[i]=decimalSums[i]==null?value:decimalSums[i].add(value);
+                        break;
+                    case MIN:
+                    case MAX:
+                        byte[] current=values[i];
+                        int compare=current==null?0:Bytes.BASE_COMPARATOR.compare(data,offset,length,current,0,current.length);
+                        if(current==null || (function==Function.MIN?compare<0:compare>0))
+                            values[i]=Arrays.copyOfRange(data,offset,offset+length);
+                        break;
+                    default:
+                        break;
+                }
+                counts[i]++;
+            }
+        }
+
+        private void addLong(int function,long value){
+            BigDecimal overflow=decimalSums[function];
+            if(overflow!=null){
+                decimalSums[function]=overflow.add(BigDecimal.valueOf(value));
+                return;
+            }
+            long sum=longSums[function];
+            long result=sum+value;
+            if(((sum^result)&(value^result))<0){
+                //overflowed a long, so carry on as a decimal
+                decimalSums[function]=BigDecimal.valueOf(sum).add(BigDecimal.valueOf(value));
+            }else
+                longSums[function]=result;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /*
+     * The group key is the length-prefixed encoded value of each group field, with a length of -1 for null
+     */
+    private int buildGroupKey(){
+        int keyLength=0;
+        for(int field : groupFields){
+            int slot=slotByField[field];
+            int length=slotLengths[slot];
+            ensureKeyCapacity(keyLength+4+Math.max(length,0));
+            Bytes.toBytes(length,keyBuffer,keyLength);
+            keyLength+=4;
+            if(length>0){
+                System.arraycopy(currentData,slotOffsets[slot],keyBuffer,keyLength,length);
+                keyLength+=length;
+            }
+        }
+        return keyLength;
+    }
+
+    private ByteSlice lookupKey(int keyLength){
+        lookupKey.set(keyBuffer,0,keyLength);
+        return lookupKey;
+    }
+
+    private Partial newGroup(int keyLength){
+        byte[][] groupValues=new byte[groupFields.length][];
+        for(int i=0;i<groupFields.length;i++){
+            int slot=slotByField[groupFields[i]];
+            int length=slotLengths[slot];
+            if(length>0)
+                groupValues[i]=Arrays.copyOfRange(currentData,slotOffsets[slot],slotOffsets[slot]+length);
+        }
+        Partial partial=new Partial(functions,groupValues);
+        groups.put(ByteSlice.wrap(Arrays.copyOf(keyBuffer,keyLength)),partial);
+        return partial;
+    }
+
+    private void ensureKeyCapacity(int capacity){
+        if(keyBuffer.length<capacity)
+            keyBuffer=Arrays.copyOf(keyBuffer,Math.max(capacity,2*keyBuffer.length));
+    }
+
+    private static byte[] skipNull(MultiFieldDecoder decoder){
+        decoder.skip();
+        return null;
+    }
+}
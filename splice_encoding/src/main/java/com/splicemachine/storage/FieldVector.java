@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.storage;
+
+/**
+ * The destination of a single column, for a block of rows decoded directly from the packed
+ * row format by a {@link VectorEntryAccumulator}.
+ *
+ * Scalar fields are delivered as longs, float and double fields as doubles, and all other fields
+ * as their encoded bytes, so numeric columns can be stored in primitive arrays without
+ * creating any intermediate objects.
+ */
+public interface FieldVector{
+
+    void setNull(int row);
+
+    void setLong(int row,long value);
+
+    void setDouble(int row,double value);
+
+    /**
+     * @param data the encoded field. This is only valid for the duration of the call, so the
+     *             field must be copied or decoded before returning.
+     */
+    void setBytes(int row,byte[] data,int offset,int length);
+}
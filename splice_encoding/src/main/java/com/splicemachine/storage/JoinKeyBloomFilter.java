@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.storage.index.BitIndex;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+/**
+ * A bloom filter over the (integral) values of a join key, used to drop the rows of one side of an inner join
+ * which cannot possibly match the other side, before they are decoded.
+ *
+ * Keys are added as arrays of longs. Once bound to the positions of the key columns in a packed row
+ * (see {@link #onColumns(int[])}), the filter can test packed rows directly. A row is only rejected when
+ * every key column is present and scalar-encoded; if that can't be determined the row is assumed to match.
+ */
+public class JoinKeyBloomFilter implements Externalizable{
+    private static final double LN2=Math.log(2);
+
+    private long[] bits;
+    private int numHashes;
+    private int[] columns;
+
+    private transient EntryDecoder entryDecoder;
+    private transient long[] keyBuffer;
+
+    public JoinKeyBloomFilter(){
+    }
+
+    /**
+     * @param expectedKeys the number of distinct keys expected to be added
+     * @param falsePositiveRate the desired probability that a key which was not added is reported as present
+     */
+    public JoinKeyBloomFilter(long expectedKeys,double falsePositiveRate){
+        long n=Math.max(expectedKeys,1L);
+        long numBits=(long)Math.ceil(-n*Math.log(falsePositiveRate)/(LN2*LN2));
+        int numWords=(int)Math.min(Integer.MAX_VALUE/64,Math.max(1L,(numBits+63)/64));
+        this.bits=new long[numWords];
+        this.numHashes=(int)Math.max(1L,Math.round((double)numWords*64/n*LN2));
+    }
+
+    private JoinKeyBloomFilter(long[] bits,int numHashes,int[] columns){
+        this.bits=bits;
+        this.numHashes=numHashes;
+        this.columns=columns;
+    }
+
+    public void add(long[] key){
+        long hash=hash(key);
+        int h1=(int)hash;
+        int h2=(int)(hash>>>32);
+        long numBits=(long)bits.length*64;
+        for(int i=1;i<=numHashes;i++){
+            int combined=h1+i*h2;
+            if(combined<0)
+                combined=~combined;
+            long bit=combined%numBits;
+            bits[(int)(bit>>>6)]|=1L<<bit;
+        }
+    }
+
+    public boolean mightContain(long[] key){
+        long hash=hash(key);
+        int h1=(int)hash;
+        int h2=(int)(hash>>>32);
+        long numBits=(long)bits.length*64;
+        for(int i=1;i<=numHashes;i++){
+            int combined=h1+i*h2;
+            if(combined<0)
+                combined=~combined;
+            long bit=combined%numBits;
+            if((bits[(int)(bit>>>6)]&(1L<<bit))==0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add every key of {@code other}, which must have been created with the same size.
+     */
+    public void merge(JoinKeyBloomFilter other){
+        assert other.bits.length==bits.length && other.numHashes==numHashes: "Cannot merge bloom filters of different sizes";
+        for(int i=0;i<bits.length;i++){
+            bits[i]|=other.bits[i];
+        }
+    }
+
+    /**
+     * @param columns the position of each key column in the packed rows to be tested
+     * @return a filter sharing the keys of this one, which tests packed rows with {@link #mightMatch(byte[], int, int)}
+     */
+    public JoinKeyBloomFilter onColumns(int[] columns){
+        return new JoinKeyBloomFilter(bits,numHashes,columns);
+    }
+
+    /**
+     * @param data a packed row, including its index
+     * @return false if the row's key is null or cannot be in this filter, true otherwise (including whenever the key
+     * cannot be read from the row)
+     */
+    public boolean mightMatch(byte[] data,int offset,int length) throws IOException{
+        assert columns!=null: "Programmer error: filter is not bound to any columns";
+        if(entryDecoder==null){
+            entryDecoder=new EntryDecoder();
+            keyBuffer=new long[columns.length];
+        }
+        entryDecoder.set(data,offset,length);
+        BitIndex index=entryDecoder.getCurrentIndex();
+        for(int column : columns){
+            if(!index.isSet(column) || !index.isScalarType(column))
+                return true;
+        }
+        MultiFieldDecoder decoder=entryDecoder.getEntryDecoder();
+        int found=0;
+        for(int pos=index.nextSetBit(0);pos>=0 && found<columns.length;pos=index.nextSetBit(pos+1)){
+            int slot=slotOf(pos);
+            if(slot<0){
+                entryDecoder.seekForward(decoder,pos);
+                continue;
+            }
+            if(decoder.nextIsNull())
+                return false;
+            keyBuffer[slot]=decoder.decodeNextLong();
+            found++;
+        }
+        return found<columns.length || mightContain(keyBuffer);
+    }
+
+    public long sizeInBytes(){
+        return 8L*bits.length;
+    }
+
+    public byte[] toBytes(){
+        /*
+         * Format is as follows:
+         * numHashes numColumns column... numWords word...
+         */
+        int numColumns=columns==null?0:columns.length;
+        MultiFieldEncoder encoder=MultiFieldEncoder.create(3+numColumns+bits.length);
+        encoder.encodeNext(numHashes);
+        encoder.encodeNext(numColumns);
+        for(int i=0;i<numColumns;i++){
+            encoder.encodeNext(columns[i]);
+        }
+        encoder.encodeNext(bits.length);
+        for(long word : bits){
+            encoder.encodeNext(word);
+        }
+        return encoder.build();
+    }
+
+    public static JoinKeyBloomFilter fromBytes(byte[] data){
+        if(data==null || data.length==0) return null;
+        MultiFieldDecoder decoder=MultiFieldDecoder.wrap(data);
+        int numHashes=decoder.decodeNextInt();
+        int[] columns=new int[decoder.decodeNextInt()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=decoder.decodeNextInt();
+        }
+        long[] bits=new long[decoder.decodeNextInt()];
+        for(int i=0;i<bits.length;i++){
+            bits[i]=decoder.decodeNextLong();
+        }
+        return new JoinKeyBloomFilter(bits,numHashes,columns.length==0?null:columns);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        byte[] data=toBytes();
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        byte[] data=new byte[in.readInt()];
+        in.readFully(data);
+        JoinKeyBloomFilter filter=fromBytes(data);
+        this.bits=filter.bits;
+        this.numHashes=filter.numHashes;
+        this.columns=filter.columns;
+    }
+
+    @Override
+    public String toString(){
+        return "JoinKeyBloomFilter{numBits="+(64L*bits.length)+",numHashes="+numHashes+",columns="+Arrays.toString(columns)+"}";
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int slotOf(int position){
+        for(int i=0;i<columns.length;i++){
+            if(columns[i]==position)
+                return i;
+        }
+        return -1;
+    }
+
+    private static long hash(long[] key){
+        long h=0x9E3779B97F4A7C15L;
+        for(long value : key){
+            h=mix(h^mix(value));
+        }
+        return h;
+    }
+
+    private static long mix(long k){
+        k^=k>>>33;
+        k*=0xff51afd7ed558ccdL;
+        k^=k>>>33;
+        k*=0xc4ceb9fe1a85ec53L;
+        k^=k>>>33;
+        return k;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.Encoding;
+
+/**
+ * An accumulator which decodes the fields of each row straight into a set of {@link FieldVector}s,
+ * one row of a block at a time.
+ *
+ * Values are decoded as they are accumulated, and {@link #finish()} marks every collected field which
+ * was not present in the row as null, so the caller only needs to move to the next row (see
+ * {@link #setRow(int)}) once a row has been accepted. A row which is rejected is simply overwritten
+ * by the next one.
+ */
+public class VectorEntryAccumulator extends ByteEntryAccumulator{
+    private static final byte[] EMPTY=new byte[0];
+
+    private final BitSet fieldsToCollect;
+    private FieldVector[] vectors;
+    private int row;
+
+    /**
+     * @param predicateFilter the predicates to apply to each row
+     * @param fieldsToCollect the fields to decode
+     * @param vectors the destination of each field, by position in the packed row
+     */
+    public VectorEntryAccumulator(EntryPredicateFilter predicateFilter,BitSet fieldsToCollect,FieldVector[] vectors){
+        super(predicateFilter,false,fieldsToCollect);
+        this.fieldsToCollect=fieldsToCollect;
+        this.vectors=vectors;
+    }
+
+    /**
+     * @param vectors the destination of each field for all subsequent rows. Must have the same
+     *                shape as the vectors this accumulator was created with
+     */
+    public void setVectors(FieldVector[] vectors){
+        this.vectors=vectors;
+    }
+
+    public void setRow(int row){
+        this.row=row;
+    }
+
+    public int getRow(){
+        return row;
+    }
+
+    @Override
+    protected void occupy(int position,byte[] data,int offset,int length){
+        super.occupy(position,data,offset,length);
+        FieldVector vector=vector(position);
+        if(vector==null) return;
+        if(length<=0)
+            vector.setNull(row);
+        else
+            vector.setBytes(row,data,offset,length);
+    }
+
+    @Override
+    protected void occupyScalar(int position,byte[] data,int offset,int length){
+        super.occupyScalar(position,data,offset,length);
+        FieldVector vector=vector(position);
+        if(vector==null) return;
+        if(length<=0)
+            vector.setNull(row);
+        else
+            vector.setLong(row,Encoding.decodeLong(data,offset,false));
+    }
+
+    @Override
+    protected void occupyFloat(int position,byte[] data,int offset,int length){
+        super.occupyFloat(position,data,offset,length);
+        FieldVector vector=vector(position);
+        if(vector==null) return;
+        if(length<=0 || Encoding.isNullFloat(data,offset,length))
+            vector.setNull(row);
+        else
+            vector.setDouble(row,Encoding.decodeFloat(data,offset,false));
+    }
+
+    @Override
+    protected void occupyDouble(int position,byte[] data,int offset,int length){
+        super.occupyDouble(position,data,offset,length);
+        FieldVector vector=vector(position);
+        if(vector==null) return;
+        if(length<=0 || Encoding.isNullDOuble(data,offset,length))
+            vector.setNull(row);
+        else
+            vector.setDouble(row,Encoding.decodeDouble(data,offset,false));
+    }
+
+    @Override
+    public byte[] finish(){
+        finishCount++;
+        if(fieldsToCollect!=null){
+            BitSet occupiedFields=accumulationSet.occupiedFields;
+            for(int n=fieldsToCollect.nextSetBit(0);n>=0;n=fieldsToCollect.nextSetBit(n+1)){
+                FieldVector vector=vector(n);
+                if(vector!=null && !occupiedFields.get(n))
+                    vector.setNull(row);
+            }
+        }
+        return EMPTY;
+    }
+
+    private FieldVector vector(int position){
+        return position<vectors.length?vectors[position]:null;
+    }
+}
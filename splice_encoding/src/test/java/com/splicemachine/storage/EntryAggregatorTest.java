@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.Encoding;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EntryAggregatorTest{
+    private static KryoPool defaultPool=new KryoPool(100);
+
+    @Test
+    public void testGroupedAggregatesSurviveSerialization() throws Exception{
+        EntryAggregator.Function[] functions={
+                EntryAggregator.Function.COUNT_STAR,
+                EntryAggregator.Function.COUNT,
+                EntryAggregator.Function.SUM_LONG,
+                EntryAggregator.Function.SUM_DOUBLE,
+                EntryAggregator.Function.MIN,
+                EntryAggregator.Function.MAX};
+        EntryAggregator aggregator=EntryAggregator.fromBytes(
+                new EntryAggregator(new int[]{0},functions,new int[]{0,1,1,2,1,1}).toBytes());
+
+        aggregate(aggregator,row(1L,5L,1.5d));
+        aggregate(aggregator,row(1L,null,2.5d));
+        aggregate(aggregator,row(1L,-3L,null));
+        aggregate(aggregator,row(2L,Long.MAX_VALUE,1d));
+        aggregate(aggregator,row(2L,1L,1d));
+        Assert.assertEquals("Incorrect number of groups",2,aggregator.numGroups());
+        Assert.assertEquals("Incorrect number of rows",5L,aggregator.getRowsAggregated());
+
+        Map<Long,EntryAggregator.Partial> partials=new HashMap<>();
+        List<byte[]> encoded=aggregator.encodePartials();
+        for(byte[] bytes : encoded){
+            EntryAggregator.Partial partial=aggregator.decodePartial(bytes);
+            partials.put(Encoding.decodeLong(partial.getGroupValue(0)),partial);
+        }
+
+        EntryAggregator.Partial first=partials.get(1L);
+        Assert.assertEquals(3L,first.getCount(0));
+        Assert.assertEquals(2L,first.getCount(1));
+        Assert.assertEquals(1L,first.getNullCount(1));
+        Assert.assertEquals(BigDecimal.valueOf(2L),first.getDecimalSum(2));
+        Assert.assertEquals(4d,first.getDoubleSum(3),0d);
+        Assert.assertEquals(1L,first.getNullCount(3));
+        Assert.assertEquals(-3L,Encoding.decodeLong(first.getValue(4)));
+        Assert.assertEquals(5L,Encoding.decodeLong(first.getValue(5)));
+
+        EntryAggregator.Partial second=partials.get(2L);
+        Assert.assertEquals("Sum did not carry past a long",
+                BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE),second.getDecimalSum(2));
+        Assert.assertEquals(1L,Encoding.decodeLong(second.getValue(4)));
+        Assert.assertEquals(Long.MAX_VALUE,Encoding.decodeLong(second.getValue(5)));
+    }
+
+    @Test
+    public void testCountOnlyAndNullGroups() throws Exception{
+        EntryAggregator counter=new EntryAggregator(null,
+                new EntryAggregator.Function[]{EntryAggregator.Function.COUNT_STAR},new int[]{0});
+        Assert.assertTrue("Should not need any fields",counter.isCountOnly());
+        for(int i=0;i<10;i++){
+            counter.aggregate(null,0,0);
+        }
+        List<byte[]> partials=counter.encodePartials();
+        Assert.assertEquals("Scalar aggregate should have a single group",1,partials.size());
+        Assert.assertEquals(10L,counter.decodePartial(partials.get(0)).getCount(0));
+
+        EntryAggregator grouped=new EntryAggregator(new int[]{1},
+                new EntryAggregator.Function[]{EntryAggregator.Function.MIN},new int[]{0});
+        aggregate(grouped,row(4L,null,null));
+        aggregate(grouped,row(null,null,null));
+        aggregate(grouped,row(2L,null,null));
+        partials=grouped.encodePartials();
+        Assert.assertEquals("Null should form a single group",1,partials.size());
+        EntryAggregator.Partial partial=grouped.decodePartial(partials.get(0));
+        Assert.assertNull("Group value should be null",partial.getGroupValue(0));
+        Assert.assertEquals(2L,Encoding.decodeLong(partial.getValue(0)));
+        Assert.assertEquals(1L,partial.getNullCount(0));
+    }
+
+    private static void aggregate(EntryAggregator aggregator,byte[] row) throws Exception{
+        aggregator.aggregate(row,0,row.length);
+    }
+
+    private static byte[] row(Long group,Long value,Double d) throws Exception{
+        BitSet setCols=new BitSet();
+        BitSet scalarFields=new BitSet();
+        BitSet doubleFields=new BitSet();
+        scalarFields.set(0);
+        scalarFields.set(1);
+        doubleFields.set(2);
+        if(group!=null) setCols.set(0);
+        if(value!=null) setCols.set(1);
+        if(d!=null) setCols.set(2);
+        EntryEncoder encoder=EntryEncoder.create(defaultPool,3,setCols,scalarFields,null,doubleFields);
+        MultiFieldEncoder fields=encoder.getEntryEncoder();
+        if(group!=null) fields.encodeNext(group);
+        if(value!=null) fields.encodeNext(value);
+        if(d!=null) fields.encodeNext(d);
+        return encoder.encode();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JoinKeyBloomFilterTest{
+    private static KryoPool defaultPool=new KryoPool(100);
+
+    @Test
+    public void testNoFalseNegatives() throws Exception{
+        JoinKeyBloomFilter filter=new JoinKeyBloomFilter(1000,0.01d);
+        for(long i=0;i<1000;i++){
+            filter.add(new long[]{i*7});
+        }
+        int falsePositives=0;
+        for(long i=0;i<10000;i++){
+            boolean present=filter.mightContain(new long[]{i});
+            if(i%7==0 && i<7000)
+                Assert.assertTrue("Missing key "+i,present);
+            else if(present)
+                falsePositives++;
+        }
+        Assert.assertTrue("Too many false positives: "+falsePositives,falsePositives<9000*0.03);
+    }
+
+    @Test
+    public void testMergedFilterSurvivesSerialization() throws Exception{
+        JoinKeyBloomFilter first=new JoinKeyBloomFilter(100,0.01d);
+        JoinKeyBloomFilter second=new JoinKeyBloomFilter(100,0.01d);
+        first.add(new long[]{1L,10L});
+        second.add(new long[]{2L,20L});
+        first.merge(second);
+
+        JoinKeyBloomFilter copy=JoinKeyBloomFilter.fromBytes(first.onColumns(new int[]{0,2}).toBytes());
+        Assert.assertTrue(copy.mightContain(new long[]{1L,10L}));
+        Assert.assertTrue(copy.mightContain(new long[]{2L,20L}));
+        Assert.assertTrue("Key should match packed row",copy.mightMatch(row(1L,5d,10L),0,row(1L,5d,10L).length));
+        Assert.assertTrue("Key should match packed row",copy.mightMatch(row(2L,null,20L),0,row(2L,null,20L).length));
+    }
+
+    @Test
+    public void testRejectsPackedRowsWithoutMatchingKey() throws Exception{
+        JoinKeyBloomFilter filter=new JoinKeyBloomFilter(10,0.0001d);
+        for(long i=0;i<10;i++){
+            filter.add(new long[]{i,-i});
+        }
+        filter=filter.onColumns(new int[]{0,2});
+        byte[] match=row(3L,1d,-3L);
+        byte[] swapped=row(-3L,1d,3L);
+        byte[] nullKey=row(null,1d,-3L);
+        Assert.assertTrue(filter.mightMatch(match,0,match.length));
+        Assert.assertFalse("Row should have been rejected",filter.mightMatch(swapped,0,swapped.length));
+        Assert.assertTrue("Rows which can't be checked must be kept",filter.mightMatch(nullKey,0,nullKey.length));
+    }
+
+    private static byte[] row(Long a,Double b,Long c) throws Exception{
+        BitSet setCols=new BitSet();
+        BitSet scalarFields=new BitSet();
+        BitSet doubleFields=new BitSet();
+        scalarFields.set(0);
+        doubleFields.set(1);
+        scalarFields.set(2);
+        if(a!=null) setCols.set(0);
+        if(b!=null) setCols.set(1);
+        if(c!=null) setCols.set(2);
+        EntryEncoder encoder=EntryEncoder.create(defaultPool,3,setCols,scalarFields,null,doubleFields);
+        MultiFieldEncoder fields=encoder.getEntryEncoder();
+        if(a!=null) fields.encodeNext(a);
+        if(b!=null) fields.encodeNext(b);
+        if(c!=null) fields.encodeNext(c);
+        return encoder.encode();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.Encoding;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+public class VectorEntryAccumulatorTest{
+
+    @Test
+    public void testDecodesTypedFieldsIntoVectors() throws Exception{
+        BitSet fields=new BitSet();
+        fields.set(0);
+        fields.set(1);
+        fields.set(2);
+        TestVector[] vectors={new TestVector(2),new TestVector(2),new TestVector(2)};
+        VectorEntryAccumulator accumulator=new VectorEntryAccumulator(new EntryPredicateFilter(fields),fields,vectors);
+
+        accumulator.setRow(0);
+        addScalar(accumulator,0,Encoding.encode(-12L));
+        addDouble(accumulator,1,Encoding.encode(1.5d));
+        byte[] decimal=Encoding.encode(new BigDecimal("3.25"));
+        accumulator.add(2,decimal,0,decimal.length);
+        accumulator.finish();
+        accumulator.reset();
+
+        accumulator.setRow(1);
+        addScalar(accumulator,0,Encoding.encode(7));
+        addFloat(accumulator,1,Encoding.encode(2.5f));
+        accumulator.finish();
+
+        Assert.assertEquals(-12L,vectors[0].longs[0]);
+        Assert.assertEquals(7L,vectors[0].longs[1]);
+        Assert.assertEquals(1.5d,vectors[1].doubles[0],0d);
+        Assert.assertEquals(2.5d,vectors[1].doubles[1],0d);
+        Assert.assertEquals(new BigDecimal("3.25"),Encoding.decodeBigDecimal(vectors[2].bytes[0]));
+        Assert.assertFalse("Field was incorrectly null",vectors[2].nulls[0]);
+        Assert.assertTrue("Missing field was not marked null",vectors[2].nulls[1]);
+    }
+
+    @Test
+    public void testEmptyFieldsAreNull() throws Exception{
+        BitSet fields=new BitSet();
+        fields.set(0);
+        fields.set(1);
+        TestVector[] vectors={new TestVector(1),new TestVector(1)};
+        VectorEntryAccumulator accumulator=new VectorEntryAccumulator(new EntryPredicateFilter(fields),fields,vectors);
+
+        accumulator.setRow(0);
+        accumulator.addScalar(0,new byte[]{},0,0);
+        accumulator.addDouble(1,new byte[]{},0,0);
+        accumulator.finish();
+
+        Assert.assertTrue("Scalar was not null",vectors[0].nulls[0]);
+        Assert.assertTrue("Double was not null",vectors[1].nulls[0]);
+    }
+
+    private static void addScalar(EntryAccumulator accumulator,int position,byte[] data){
+        accumulator.addScalar(position,data,0,data.length);
+    }
+
+    private static void addFloat(EntryAccumulator accumulator,int position,byte[] data){
+        accumulator.addFloat(position,data,0,data.length);
+    }
+
+    private static void addDouble(EntryAccumulator accumulator,int position,byte[] data){
+        accumulator.addDouble(position,data,0,data.length);
+    }
+
+    private static class TestVector implements FieldVector{
+        private final boolean[] nulls;
+        private final long[] longs;
+        private final double[] doubles;
+        private final byte[][] bytes;
+
+        TestVector(int size){
+            this.nulls=new boolean[size];
+            this.longs=new long[size];
+            this.doubles=new double[size];
+            this.bytes=new byte[size][];
+        }
+
+        @Override
+        public void setNull(int row){
+            nulls[row]=true;
+        }
+
+        @Override
+        public void setLong(int row,long value){
+            nulls[row]=false;
+            longs[row]=value;
+        }
+
+        @Override
+        public void setDouble(int row,double value){
+            nulls[row]=false;
+            doubles[row]=value;
+        }
+
+        @Override
+        public void setBytes(int row,byte[] data,int offset,int length){
+            nulls[row]=false;
+            bytes[row]=Arrays.copyOfRange(data,offset,offset+length);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import java.util.List;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
 import com.splicemachine.derby.impl.sql.execute.operations.TriggerHandler;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.OperationInformation;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
 import com.splicemachine.db.iapi.error.StandardException;
@@ -32,6 +34,8 @@ import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.RowLocation;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 
 /**
  * Interface for Parallel Operations in the Splice Machine.
@@ -83,6 +87,52 @@ public interface SpliceOperation extends StandardCloseable, NoPutResultSet, Conv
      */
     DataSet<LocatedRow> getResultDataSet(DataSetProcessor dsp) throws StandardException;
 
+    /**
+     * Dataset of this operation's rows in columnar batches, holding only the requested columns.
+     *
+     * @see ColumnarBatch
+     *
+     * @param dsp
+     * @param columns the (1-based) positions of the columns needed by the caller
+     * @param batchSize the maximum number of rows in each batch
+     * @return Dataset of batches
+     * @throws StandardException
+     */
+    DataSet<ColumnarBatch> getBatchDataSet(DataSetProcessor dsp,int[] columns,int batchSize) throws StandardException;
+
+    /**
+     * Dataset of the partial aggregates of this operation's rows, computed where the rows are stored.
+     *
+     * @see PartialAggregate
+     *
+     * @param dsp
+     * @param groupColumns the (1-based) positions of the columns to group by. Empty for a scalar aggregate
+     * @param functions the aggregates to compute
+     * @param inputColumns the (1-based) position of the input column of each aggregate
+     * @return Dataset of partial aggregates, or {@code null} if this operation's rows cannot be aggregated
+     * where they are stored
+     * @throws StandardException
+     */
+    DataSet<PartialAggregate> getPartialAggregateDataSet(DataSetProcessor dsp,int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException;
+
+    /**
+     * @param columns the (1-based) positions of the join key columns
+     * @return true if a {@link JoinKeyBloomFilter} over these columns can be applied where this operation's
+     * rows are stored
+     * @throws StandardException
+     */
+    boolean canPushJoinKeyFilter(int[] columns) throws StandardException;
+
+    /**
+     * Drop any row whose key does not (probably) occur in {@code filter} before it is returned
+     * by this operation. Only valid if {@link #canPushJoinKeyFilter(int[])} is true for the same columns.
+     *
+     * @param columns the (1-based) positions of the join key columns, in the order of the filter's keys
+     * @param filter bloom filter over the join keys of the other side of the join
+     * @throws StandardException
+     */
+    void pushJoinKeyFilter(int[] columns,JoinKeyBloomFilter filter) throws StandardException;
+
     /**
      *
      * Retrieve the operation context.  This context provides startup context for the different execution
@@ -29,6 +29,17 @@ public interface JoinTable extends AutoCloseable{
 
     interface Factory{
         JoinTable newTable();
+
+        /**
+         * @return an estimate of the number of bytes held by the rows backing the tables of this factory.
+         */
+        long estimatedSizeInBytes();
+
+        /**
+         * Release the memory held by this factory. This must only be called once no table created
+         * by this factory is still in use.
+         */
+        void close();
     }
 
     Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException;
@@ -15,13 +15,17 @@
 
 package com.splicemachine.derby.impl.sql.execute.operations;
 
+import com.splicemachine.EngineDriver;
+import org.apache.log4j.Logger;
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
+import org.spark_project.guava.cache.RemovalListener;
+import org.spark_project.guava.cache.RemovalNotification;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.impl.sql.JoinTable;
 import com.splicemachine.pipeline.Exceptions;
-import com.splicemachine.primitives.Bytes;
 import com.splicemachine.stream.Stream;
 
 import java.io.IOException;
@@ -29,48 +33,121 @@ import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a Cache of records for use in a Broadcast Join.
  *
+ * Every loaded table is weighed by its estimated size, and the sum of the sizes of all tables which
+ * have been loaded but not yet released is bounded by a per-server memory budget. Before a table is
+ * loaded, its size is estimated from the optimizer's row count and reserved against the budget (so that
+ * concurrent loads cannot overshoot it); the reservation is corrected to the actual size once the load
+ * completes. When the budget is exhausted, joins which run on this server are planned as a shuffled (merge-sort)
+ * join instead (see {@link #hasRoomFor}), and loads which slip past that check wait (up to an admission timeout)
+ * for other tables to be released before they are admitted.
+ *
  * @author Scott Fines
  *         Date: 10/27/15
  */
-public class BroadcastJoinCache{
+public class BroadcastJoinCache implements BroadcastJoinCacheStatus{
+    private static final Logger LOG=Logger.getLogger(BroadcastJoinCache.class);
+    private static volatile BroadcastJoinCache INSTANCE;
+    /*Rough estimate of the memory held by each row beyond its data, used before a table has been loaded*/
+    private static final int ROW_OVERHEAD = 96;
+
     private final Cache<Long,ReferenceCountingFactory> cache;
     private final JoinTableLoader tableLoader;
+    private final long memoryBudget;
+    private final long admissionTimeoutMs;
+
+    private final Object memoryLock=new Object();
+    private long reservedBytes; //guarded by memoryLock
+    private final AtomicLong admissionWaits=new AtomicLong(0L);
+    private final AtomicLong admissionTimeouts=new AtomicLong(0L);
+    private final AtomicLong fallbacks=new AtomicLong(0L);
 
     interface JoinTableLoader{
         JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
                                int[] innerHashKeys,
                                int[] outerHashKeys,
-                               ExecRow outerTemplateRow) throws ExecutionException;
+                               ExecRow outerTemplateRow,
+                               long estimatedInnerRows) throws ExecutionException;
+    }
+
+    /**
+     * @return the cache shared by all broadcast joins on this server.
+     */
+    public static BroadcastJoinCache instance(){
+        BroadcastJoinCache bjc=INSTANCE;
+        if(bjc==null){
+            synchronized(BroadcastJoinCache.class){
+                bjc=INSTANCE;
+                if(bjc==null)
+                    bjc=INSTANCE=new BroadcastJoinCache();
+            }
+        }
+        return bjc;
     }
 
     public BroadcastJoinCache(){
-       this(ByteBufferMapTableLoader.INSTANCE);
+       this(defaultTableLoader());
     }
 
     public BroadcastJoinCache(JoinTableLoader tableLoader){
+        this(tableLoader,defaultMemoryBudget(),defaultAdmissionTimeout());
+    }
+
+    public BroadcastJoinCache(JoinTableLoader tableLoader,long memoryBudget,long admissionTimeoutMs){
         this.tableLoader = tableLoader;
+        this.memoryBudget = memoryBudget;
+        this.admissionTimeoutMs = admissionTimeoutMs;
+        /*
+         * No soft values here: a value collected by the GC is handed to the removal listener as null, so its
+         * memory would never be released from the budget, and most of an off-heap table's memory is invisible
+         * to the GC anyway. The budget bounds the memory held by the cache instead.
+         */
         this.cache =CacheBuilder.newBuilder()
                 .maximumSize(1000)
                 .expireAfterAccess(2,TimeUnit.SECONDS)
-                .softValues()
+                .removalListener(new RemovalListener<Long, ReferenceCountingFactory>(){
+                    @Override
+                    public void onRemoval(RemovalNotification<Long, ReferenceCountingFactory> notification){
+                        ReferenceCountingFactory factory=notification.getValue();
+                        if(factory!=null)
+                            factory.markRemoved();
+                    }
+                })
+                .recordStats()
                 .build();
     }
 
+    /**
+     * Get the table for {@code operationId}, loading it if necessary. The returned factory holds a reference
+     * to the table until a table created from it is closed.
+     *
+     * @param rightTemplateRow a template of the rows to be loaded, used to estimate the size of the table
+     * @param estimatedRightRows the number of rows the optimizer expects to be loaded
+     */
     public JoinTable.Factory get(Long operationId,
                          Callable<Stream<ExecRow>> loader,
                          int[] rightHashKeys,
                          int[] leftHashKeys,
-                         ExecRow leftTemplateRow) throws IOException, StandardException{
+                         ExecRow leftTemplateRow,
+                         ExecRow rightTemplateRow,
+                         long estimatedRightRows) throws IOException, StandardException{
         try{
-            Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
-            ReferenceCountingFactory joinTable=cache.get(operationId,callable);
-            joinTable.refCount.incrementAndGet();
-            return joinTable;
+            Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader,
+                    estimatedRightRows,estimateSize(rightTemplateRow,estimatedRightRows));
+            while(true){
+                ReferenceCountingFactory joinTable=cache.get(operationId,callable);
+                if(joinTable.acquire())
+                    return joinTable;
+                /*
+                 * The table left the cache (and may have released its memory) between the lookup and
+                 * our taking a reference to it, so look it up (or load it) again
+                 */
+                cache.asMap().remove(operationId,joinTable);
+            }
         }catch(ExecutionException e){
             Throwable c = e.getCause();
             if(c instanceof StandardException)
@@ -81,12 +158,135 @@ public class BroadcastJoinCache{
         }
     }
 
+    /**
+     * Determine whether a table of the given shape could be loaded without going over the memory budget. When it
+     * can't, the caller should join without broadcasting the table, as the load would otherwise have to wait for
+     * other tables to be released (and would be admitted over budget if none are released in time).
+     *
+     * @param rightTemplateRow a template of the rows to be loaded
+     * @param estimatedRightRows the number of rows the optimizer expects to be loaded
+     * @return true if the table fits in the memory which is not yet reserved
+     */
+    public boolean hasRoomFor(ExecRow rightTemplateRow,long estimatedRightRows){
+        long bytes=estimateSize(rightTemplateRow,estimatedRightRows);
+        synchronized(memoryLock){
+            if(fits(bytes)) return true;
+        }
+        fallbacks.incrementAndGet();
+        return false;
+    }
+
+    @Override public long getHitCount(){ return cache.stats().hitCount(); }
+    @Override public long getMissCount(){ return cache.stats().missCount(); }
+    @Override public double getHitRate(){ return cache.stats().hitRate(); }
+    @Override public long getLoadCount(){ return cache.stats().loadCount(); }
+    @Override public long getTotalLoadTimeMs(){ return TimeUnit.NANOSECONDS.toMillis(cache.stats().totalLoadTime()); }
+    @Override public long getEvictionCount(){ return cache.stats().evictionCount(); }
+    @Override public long getCachedTables(){ return cache.size(); }
+    @Override public long getMemoryBudget(){ return memoryBudget; }
+    @Override public long getAdmissionWaitCount(){ return admissionWaits.get(); }
+    @Override public long getAdmissionTimeoutCount(){ return admissionTimeouts.get(); }
+    @Override public long getFallbackCount(){ return fallbacks.get(); }
+
+    @Override
+    public long getReservedBytes(){
+        synchronized(memoryLock){
+            return reservedBytes;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * Wait until there is room in the memory budget for a new table of (an estimated) {@code bytes}, and reserve
+     * them. A table is always admitted when nothing else is reserved, and if no room becomes available within
+     * the admission timeout, the table is admitted anyway, rather than failing the query.
+     */
+    private void reserveForLoad(long bytes) throws InterruptedException{
+        synchronized(memoryLock){
+            if(!fits(bytes)){
+                admissionWaits.incrementAndGet();
+                long remainingNanos=TimeUnit.MILLISECONDS.toNanos(admissionTimeoutMs);
+                long deadline=System.nanoTime()+remainingNanos;
+                while(!fits(bytes)){
+                    if(remainingNanos<=0){
+                        admissionTimeouts.incrementAndGet();
+                        LOG.warn("Broadcast join cache is over its memory budget of "+memoryBudget+" bytes ("+
+                                reservedBytes+" bytes reserved, "+bytes+" requested), admitting new table anyway");
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(memoryLock,remainingNanos);
+                    remainingNanos=deadline-System.nanoTime();
+                }
+            }
+            reservedBytes+=bytes;
+        }
+    }
+
+    private boolean fits(long bytes){
+        return reservedBytes<=0 || reservedBytes+bytes<=memoryBudget;
+    }
+
+    /*
+     * Correct a reservation once the actual size of a table is known
+     */
+    private void adjust(long delta){
+        synchronized(memoryLock){
+            reservedBytes+=delta;
+            if(delta<0)
+                memoryLock.notifyAll();
+        }
+    }
+
+    private void release(long bytes){
+        synchronized(memoryLock){
+            reservedBytes-=bytes;
+            memoryLock.notifyAll();
+        }
+    }
+
+    private long estimateSize(ExecRow templateRow,long estimatedRows){
+        long rowSize=ROW_OVERHEAD;
+        if(templateRow!=null){
+            for(DataValueDescriptor dvd : templateRow.getRowArray()){
+                if(dvd!=null)
+                    rowSize+=dvd.estimateMemoryUsage();
+            }
+        }
+        long rows=Math.max(estimatedRows,1L);
+        if(rows>memoryBudget/rowSize) //a single table never needs more than the whole budget to be admitted
+            return memoryBudget;
+        return rows*rowSize;
+    }
+
+    private static JoinTableLoader defaultTableLoader(){
+        EngineDriver driver=EngineDriver.driver();
+        if(driver!=null && driver.getConfiguration().getBroadcastOffHeap())
+            return OffHeapTableLoader.INSTANCE;
+        return ByteBufferMapTableLoader.INSTANCE;
+    }
+
+    private static long defaultMemoryBudget(){
+        EngineDriver driver=EngineDriver.driver();
+        if(driver==null) return Long.MAX_VALUE;
+        return driver.getConfiguration().getBroadcastCacheMemory();
+    }
+
+    private static long defaultAdmissionTimeout(){
+        EngineDriver driver=EngineDriver.driver();
+        if(driver==null) return 0L;
+        return driver.getConfiguration().getBroadcastAdmissionTimeout();
+    }
+
     private class Loader implements Callable<ReferenceCountingFactory>{
         private final JoinTableLoader loader;
         private final int[] innerHashKeys;
         private final int[] outerHashKeys;
         private final ExecRow outerTemplateRow;
         private final Callable<Stream<ExecRow>> streamLoader;
+        private final long estimatedRows;
+        private final long estimatedSize;
 
         private final Long operationId;
 
@@ -95,19 +295,33 @@ public class BroadcastJoinCache{
                       int[] innerHashKeys,
                       int[] outerHashKeys,
                       ExecRow outerTemplateRow,
-                      Callable<Stream<ExecRow>> streamLoader){
+                      Callable<Stream<ExecRow>> streamLoader,
+                      long estimatedRows,
+                      long estimatedSize){
             this.loader=loader;
             this.operationId=operationId;
             this.innerHashKeys=innerHashKeys;
             this.outerHashKeys=outerHashKeys;
             this.outerTemplateRow=outerTemplateRow;
             this.streamLoader=streamLoader;
+            this.estimatedRows=estimatedRows;
+            this.estimatedSize=estimatedSize;
         }
 
         @Override
         public ReferenceCountingFactory call() throws Exception{
-            JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow);
-            return new ReferenceCountingFactory(load,operationId);
+            reserveForLoad(estimatedSize);
+            long reserved=estimatedSize;
+            try{
+                JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow,estimatedRows);
+                long size=load.estimatedSizeInBytes();
+                adjust(size-estimatedSize);
+                reserved=size;
+                return new ReferenceCountingFactory(load,operationId,size);
+            }catch(Exception|Error e){
+                release(reserved);
+                throw e;
+            }
         }
     }
 
@@ -136,11 +350,19 @@ public class BroadcastJoinCache{
     private class ReferenceCountingFactory implements JoinTable.Factory{
         private final JoinTable.Factory delegate;
         private final Long id;
-        private AtomicInteger refCount = new AtomicInteger(0);
+        private final long size;
+        /*
+         * Taking a reference is mutually exclusive with the removal of the table from the cache, so that
+         * a table can never be handed out after its memory has been released
+         */
+        private int refCount = 0; //guarded by this
+        private boolean removed = false; //guarded by this
+        private boolean released = false; //guarded by this
 
-        public ReferenceCountingFactory(JoinTable.Factory delegate,Long id){
+        public ReferenceCountingFactory(JoinTable.Factory delegate,Long id,long size){
             this.delegate=delegate;
             this.id=id;
+            this.size=size;
         }
 
         @Override
@@ -148,10 +370,53 @@ public class BroadcastJoinCache{
             return new ReferenceCountedJoinTable(delegate.newTable(),this);
         }
 
+        @Override
+        public long estimatedSizeInBytes(){
+            return size;
+        }
+
+        @Override
+        public void close(){
+            //no-op, the table is released by the cache once it has left the cache and its last user has closed it
+        }
+
+        /**
+         * @return true if a reference was taken, false if the table has already left the cache
+         */
+        synchronized boolean acquire(){
+            if(removed) return false;
+            refCount++;
+            return true;
+        }
+
         public void markClosed(){
-            int refC=refCount.decrementAndGet();
-            if(refC<=0)
-                cache.invalidate(id);
+            boolean unused;
+            synchronized(this){
+                unused=--refCount<=0;
+                if(unused && removed)
+                    releaseMemory();
+            }
+            if(unused)
+                cache.asMap().remove(id,this);
+        }
+
+        /*
+         * Called once the table has left the cache. If it is still in use,
+         * its memory is released when the last user closes it instead.
+         */
+        synchronized void markRemoved(){
+            removed=true;
+            if(refCount<=0)
+                releaseMemory();
+        }
+
+        private void releaseMemory(){
+            assert Thread.holdsLock(this);
+            if(!released){
+                released=true;
+                delegate.close();
+                release(size);
+            }
         }
     }
 }
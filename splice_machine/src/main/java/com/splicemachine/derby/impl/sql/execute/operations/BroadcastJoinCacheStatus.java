@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import javax.management.MXBean;
+
+/**
+ * JMX view of the {@link BroadcastJoinCache} on a single server.
+ */
+@MXBean
+public interface BroadcastJoinCacheStatus{
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getLoadCount();
+
+    long getTotalLoadTimeMs();
+
+    long getEvictionCount();
+
+    long getCachedTables();
+
+    /**
+     * @return the estimated number of bytes held by all loaded broadcast tables which have not yet been released.
+     */
+    long getReservedBytes();
+
+    long getMemoryBudget();
+
+    /**
+     * @return the number of loads which had to wait for memory to be released before they could proceed.
+     */
+    long getAdmissionWaitCount();
+
+    /**
+     * @return the number of loads which were admitted over budget, because not enough memory was released
+     * within the admission timeout.
+     */
+    long getAdmissionTimeoutCount();
+
+    /**
+     * @return the number of joins which were performed without broadcasting, because their table did not fit in
+     * the memory budget.
+     */
+    long getFallbackCount();
+}
@@ -176,6 +176,7 @@ public class BroadcastJoinOperation extends JoinOperation{
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
+        pushJoinKeyFilter(dsp);
         OperationContext operationContext = dsp.createOperationContext(this);
         DataSet<LocatedRow> leftDataSet = leftResultSet.getDataSet(dsp);
         DataSet<LocatedRow> rightDataSet = rightResultSet.getDataSet(dsp);
@@ -195,6 +196,22 @@ public class BroadcastJoinOperation extends JoinOperation{
             else
                 result = leftDataSet.join(operationContext,rightDataSet, DataSet.JoinType.INNER,true);
         }
+        else if (dsp.getType().equals(DataSetProcessor.Type.LOCAL) &&
+                !BroadcastJoinCache.instance().hasRoomFor(rightResultSet.getExecRowDefinition(),(long)rightResultSet.getEstimatedRowCount())) {
+            /*
+             * The broadcast functions load the right side into this server's broadcast cache, which has no room for
+             * it right now, so shuffle both sides on their join keys instead, as a merge-sort join does
+             */
+            if (LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG, "getDataSet broadcast cache is full, performing MergeSortJoin instead");
+            if (!isOuterJoin)
+                leftDataSet = leftDataSet.filter(new InnerJoinNullFilterFunction(operationContext,this.leftHashKeys));
+            rightDataSet = rightDataSet.map(new CountJoinedRightFunction(operationContext))
+                    .filter(new InnerJoinNullFilterFunction(operationContext,this.rightHashKeys));
+            result = getJoinedDataset(operationContext,
+                    leftDataSet.keyBy(new KeyerFunction<LocatedRow,JoinOperation>(operationContext, leftHashKeys)),
+                    rightDataSet.keyBy(new KeyerFunction(operationContext, rightHashKeys)));
+        }
         else {
             if (isOuterJoin) { // Outer Join with and without restriction
                 result = leftDataSet.mapPartitions(new CogroupBroadcastJoinFunction(operationContext))
@@ -16,6 +16,7 @@
 package com.splicemachine.derby.impl.sql.execute.operations;
 
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.impl.sql.JoinTable;
 import com.splicemachine.derby.utils.marshall.BareKeyHash;
 import com.splicemachine.derby.utils.marshall.KeyEncoder;
@@ -40,16 +41,20 @@ import java.util.concurrent.ExecutionException;
  */
 @ThreadSafe
 class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
+    /*Rough estimate of the heap held by each key/row beyond its data (map entry, wrapper, list, row object)*/
+    private static final int ENTRY_OVERHEAD = 96;
+
     public static BroadcastJoinCache.JoinTableLoader INSTANCE = new ByteBufferMapTableLoader();
 
     private ByteBufferMapTableLoader(){} //singleton class
 
     @Override
-    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys, ExecRow outerTemplateRow) throws ExecutionException{
+    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys, ExecRow outerTemplateRow,long estimatedInnerRows) throws ExecutionException{
         Map<ByteBuffer, List<ExecRow>> table=new HashMap<>();
 
         DescriptorSerializer[] innerSerializers=null;
         KeyEncoder innerKeyEncoder=null;
+        long estimatedSize=0L;
 
         try(Stream<ExecRow> innerRows=streamLoader.call()){
             ExecRow right;
@@ -65,8 +70,14 @@ class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
                 if(rows==null){
                     rows=new ArrayList<>(1);
                     table.put(key,rows);
+                    estimatedSize+=ENTRY_OVERHEAD+key.capacity();
                 }
                 rows.add(right.getClone());
+                estimatedSize+=ENTRY_OVERHEAD;
+                for(DataValueDescriptor dvd : right.getRowArray()){
+                    if(dvd!=null)
+                        estimatedSize+=dvd.estimateMemoryUsage();
+                }
             }
         }catch(StreamException e){
            throw new ExecutionException(e.getCause());
@@ -75,6 +86,6 @@ class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
             else throw new ExecutionException(e);
         }
 
-        return new ByteBufferMappedJoinTable.Factory(table,outerHashKeys,outerTemplateRow);
+        return new ByteBufferMappedJoinTable.Factory(table,outerHashKeys,outerTemplateRow,estimatedSize);
     }
 }
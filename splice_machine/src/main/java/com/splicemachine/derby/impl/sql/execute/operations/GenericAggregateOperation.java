@@ -20,7 +20,11 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import org.spark_project.guava.base.Strings;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.loader.GeneratedMethod;
 import com.splicemachine.db.iapi.sql.Activation;
@@ -32,6 +36,14 @@ import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
 import com.splicemachine.derby.impl.sql.execute.operations.framework.DerbyAggregateContext;
 import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
+import com.splicemachine.derby.stream.function.PartialAggregateFunction;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.storage.EntryAggregator;
 import com.splicemachine.utils.SpliceLogUtils;
 
 public abstract class GenericAggregateOperation extends SpliceBaseOperation {
@@ -159,6 +171,63 @@ public abstract class GenericAggregateOperation extends SpliceBaseOperation {
         return true;
     }
 
+    /**
+     * @return the aggregators to use to evaluate this operation over {@link ColumnarBatch}es of its input, or
+     * {@code null} if it should be evaluated row by row. Batches are only used on the control side, when
+     * enabled, and when every aggregate supports it.
+     */
+    protected BatchAggregator[] getBatchAggregators(DataSetProcessor dsp) throws StandardException{
+        EngineDriver driver=EngineDriver.driver();
+        if(dsp.getType()!=DataSetProcessor.Type.LOCAL || driver==null || !driver.getConfiguration().getControlBatchExecution())
+            return null;
+        return BatchAggregator.create(aggregates,source.getExecRowDefinition());
+    }
+
+    /**
+     * @return this operation's input, in batches holding the input columns of {@code batchAggregators}
+     * as well as {@code extraColumns}.
+     */
+    protected DataSet<ColumnarBatch> getSourceBatches(DataSetProcessor dsp,BatchAggregator[] batchAggregators,int... extraColumns) throws StandardException{
+        SortedSet<Integer> columns=new TreeSet<>();
+        for(int column : extraColumns){
+            columns.add(column);
+        }
+        for(BatchAggregator batchAggregator : batchAggregators){
+            if(batchAggregator.getInputColumnId()>0)
+                columns.add(batchAggregator.getInputColumnId());
+        }
+        int[] batchColumns=new int[columns.size()];
+        int i=0;
+        for(Integer column : columns){
+            batchColumns[i++]=column;
+        }
+        SConfiguration config=EngineDriver.driver().getConfiguration();
+        return source.getBatchDataSet(dsp,batchColumns,config.getControlBatchSize());
+    }
+
+    /**
+     * @return this operation's input, partially aggregated where the rows are stored, or {@code null} if
+     * that is disabled or the source cannot compute {@code batchAggregators} there.
+     */
+    protected DataSet<LocatedRow> getPartialAggregates(DataSetProcessor dsp,OperationContext operationContext,
+                                                       BatchAggregator[] batchAggregators,int... groupColumns) throws StandardException{
+        if(!EngineDriver.driver().getConfiguration().getControlAggregatePushdown())
+            return null;
+        ExecRow template=source.getExecRowDefinition();
+        EntryAggregator.Function[] functions=new EntryAggregator.Function[batchAggregators.length];
+        int[] inputColumns=new int[batchAggregators.length];
+        for(int i=0;i<batchAggregators.length;i++){
+            functions[i]=batchAggregators[i].getPartialFunction(template);
+            if(functions[i]==null)
+                return null;
+            inputColumns[i]=Math.max(batchAggregators[i].getInputColumnId(),0);
+        }
+        DataSet<PartialAggregate> partials=source.getPartialAggregateDataSet(dsp,groupColumns,functions,inputColumns);
+        if(partials==null)
+            return null;
+        return partials.mapPartitions(new PartialAggregateFunction<>(operationContext,groupColumns),false,/*pushScope=*/true,"First Aggregation");
+    }
+
     public void finishAggregation(ExecRow row) throws StandardException {
         for(SpliceGenericAggregator aggregator:aggregates){
             aggregator.finish(row);
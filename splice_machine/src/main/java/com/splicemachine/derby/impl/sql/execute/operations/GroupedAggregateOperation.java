@@ -17,6 +17,8 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
 import com.splicemachine.derby.stream.function.*;
 import com.splicemachine.derby.impl.sql.execute.operations.groupedaggregate.*;
 import com.splicemachine.derby.stream.iapi.DataSet;
@@ -130,14 +132,32 @@ public class GroupedAggregateOperation extends GenericAggregateOperation {
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
         OperationContext<GroupedAggregateOperation> operationContext = dsp.createOperationContext(this);
         
-        DataSet set = source.getDataSet(dsp);
-
-        operationContext.pushScope();
-        set = set.map(new CountReadFunction(operationContext));
-        operationContext.popScope();
+        boolean hasDistinctAggregates = groupedAggregateContext.getNonGroupedUniqueColumns() != null &&
+            groupedAggregateContext.getNonGroupedUniqueColumns().length > 0;
+        BatchAggregator[] batchAggregators = hasDistinctAggregates || isRollup ? null : getBatchAggregators(dsp);
+
+        DataSet set;
+        if (batchAggregators != null) {
+            // Partially aggregate each batch of the input, the partial results are merged below like any other row
+            int[] groupingKeys = groupedAggregateContext.getGroupingKeys();
+            int[] groupingColumns = new int[groupingKeys.length];
+            for (int i = 0; i < groupingKeys.length; i++) {
+                groupingColumns[i] = groupingKeys[i] + 1;
+            }
+            set = getPartialAggregates(dsp, operationContext, batchAggregators, groupingColumns);
+            if (set == null) {
+                DataSet<ColumnarBatch> batches = getSourceBatches(dsp, batchAggregators, groupingColumns);
+                set = batches.mapPartitions(new BatchGroupedAggregateFunction(operationContext), false, /*pushScope=*/true, "Batch Aggregation");
+            }
+        } else {
+            set = source.getDataSet(dsp);
+
+            operationContext.pushScope();
+            set = set.map(new CountReadFunction(operationContext));
+            operationContext.popScope();
+        }
 
-        if (groupedAggregateContext.getNonGroupedUniqueColumns() != null &&
-            groupedAggregateContext.getNonGroupedUniqueColumns().length > 0) {
+        if (hasDistinctAggregates) {
             // Distinct Aggregate Path
             int[] allKeys = ArrayUtils.addAll(groupedAggregateContext.getGroupingKeys(), groupedAggregateContext.getNonGroupedUniqueColumns());
 
@@ -75,6 +75,7 @@ public class HalfMergeSortJoinOperation extends MergeJoinOperation {
 
     @Override
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
+        pushJoinKeyFilter(dsp);
         OperationContext<JoinOperation> operationContext = dsp.<JoinOperation>createOperationContext(this);
         DataSet<LocatedRow> left = leftResultSet.getDataSet(dsp);
 
@@ -20,15 +20,23 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.List;
+import com.splicemachine.EngineDriver;
 import com.splicemachine.derby.iapi.sql.execute.*;
 import com.splicemachine.derby.impl.SpliceMethod;
+import com.splicemachine.derby.stream.function.*;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.stream.iapi.PairDataSet;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.FormatableIntHolder;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
 import com.splicemachine.db.iapi.services.loader.GeneratedMethod;
 import com.splicemachine.db.iapi.sql.Activation;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 import org.apache.log4j.Logger;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.spark_project.guava.base.Strings;
@@ -82,6 +90,7 @@ public abstract class JoinOperation extends SpliceBaseOperation {
 		private static final long serialVersionUID = 2l;
 
 		private static Logger LOG = Logger.getLogger(JoinOperation.class);
+		private static final double JOIN_KEY_FILTER_FPP = 0.01d;
 		protected int leftNumCols;
 		protected int rightNumCols;
 		public boolean oneRowRightSide;
@@ -346,6 +355,110 @@ public abstract class JoinOperation extends SpliceBaseOperation {
 		return keyRow;
 	}
 
+    /**
+     * For an inner join whose right (build) side is small, read the right side's join keys into a bloom filter
+     * and push it into the left side, so that left rows which cannot match are dropped where they are stored,
+     * before they are decoded or shuffled.
+     *
+     * This costs an extra pass over the right side, so it is only done for right sides estimated to be no larger
+     * than the configured limit. The filter compares encoded values, so it is only used when every join key
+     * on both sides is an integral type.
+     */
+    protected void pushJoinKeyFilter(DataSetProcessor dsp) throws StandardException {
+        if (isOuterJoin || notExistsRightSide)
+            return;
+        EngineDriver driver = EngineDriver.driver();
+        long maxKeys = driver == null ? 0L : driver.getConfiguration().getJoinKeyFilterMaxKeys();
+        double estimatedKeys = rightResultSet.getEstimatedRowCount();
+        if (estimatedKeys > maxKeys || estimatedKeys <= 0)
+            return;
+        int[] leftKeys = getLeftHashKeys();
+        int[] rightKeys = getRightHashKeys();
+        if (!isIntegral(leftResultSet.getExecRowDefinition(), leftKeys) || !isIntegral(rightResultSet.getExecRowDefinition(), rightKeys))
+            return;
+        int[] leftColumns = new int[leftKeys.length];
+        for (int i = 0; i < leftKeys.length; i++) {
+            leftColumns[i] = leftKeys[i] + 1;
+        }
+        if (!leftResultSet.canPushJoinKeyFilter(leftColumns))
+            return;
+
+        OperationContext<JoinOperation> operationContext = dsp.createOperationContext(this);
+        JoinKeyBloomFilter filter = null;
+        for (JoinKeyBloomFilter partitionFilter : rightResultSet.getDataSet(dsp)
+                .mapPartitions(new JoinKeyFilterFunction<JoinOperation>(operationContext, rightKeys, (long) estimatedKeys, JOIN_KEY_FILTER_FPP))
+                .collect()) {
+            if (filter == null)
+                filter = partitionFilter;
+            else
+                filter.merge(partitionFilter);
+        }
+        if (filter == null)
+            return;
+        if (LOG.isDebugEnabled())
+            SpliceLogUtils.debug(LOG, "pushing %s into %s", filter, leftResultSet.getName());
+        leftResultSet.pushJoinKeyFilter(leftColumns, filter);
+    }
+
+    private static boolean isIntegral(ExecRow template, int[] keys) throws StandardException {
+        for (int key : keys) {
+            DataValueDescriptor dvd = template.getColumn(key + 1);
+            if (dvd == null)
+                return false;
+            switch (dvd.getTypeFormatId()) {
+                case StoredFormatIds.SQL_TINYINT_ID:
+                case StoredFormatIds.SQL_SMALLINT_ID:
+                case StoredFormatIds.SQL_INTEGER_ID:
+                case StoredFormatIds.SQL_LONGINT_ID:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Join the two sides once both have been keyed by their hash keys, by shuffling them on those keys
+     * (i.e. the way a merge-sort join is performed).
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected DataSet<LocatedRow> getJoinedDataset(
+        OperationContext operationContext,
+        PairDataSet<ExecRow, LocatedRow> leftDataSet,
+        PairDataSet<ExecRow, LocatedRow> rightDataSet) {
+
+        if (isOuterJoin) { // Outer Join
+            return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right")
+                        .flatmap(new CogroupOuterJoinRestrictionFlatMapFunction<SpliceOperation>(operationContext))
+                        .map(new SetCurrentLocatedRowFunction<>(operationContext));
+        }
+        else {
+            if (this.notExistsRightSide) { // antijoin
+                if (restriction !=null) { // with restriction
+                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
+                        .flatMap(new CogroupAntiJoinRestrictionFlatMapFunction(operationContext));
+                } else { // No Restriction
+                    return leftDataSet.subtractByKey(rightDataSet)
+                            .map(new AntiJoinFunction(operationContext));
+                }
+            } else { // Inner Join
+                if (isOneRowRightSide()) {
+                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
+                        .flatMap(new CogroupInnerJoinRestrictionFlatMapFunction(operationContext));
+                }
+                if (restriction !=null) { // with restriction
+                    return leftDataSet.hashJoin(rightDataSet, "Hash Join", operationContext)
+                            .map(new InnerJoinFunction<SpliceOperation>(operationContext))
+                            .filter(new JoinRestrictionPredicateFunction(operationContext));
+                } else { // No Restriction
+                    return leftDataSet.hashJoin(rightDataSet, "Hash Join", operationContext)
+                            .map(new InnerJoinFunction<SpliceOperation>(operationContext));
+                }
+            }
+        }
+    }
+
 	public int[] getLeftHashKeys() {
 		throw new UnsupportedOperationException();
 	}
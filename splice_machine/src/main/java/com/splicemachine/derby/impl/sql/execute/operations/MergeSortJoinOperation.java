@@ -177,6 +177,7 @@ public class MergeSortJoinOperation extends JoinOperation {
 
     @Override
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
+        pushJoinKeyFilter(dsp);
         OperationContext<JoinOperation> operationContext = dsp.<JoinOperation>createOperationContext(this);
 
         // Prepare Left
@@ -223,43 +224,6 @@ public class MergeSortJoinOperation extends JoinOperation {
             return joined.map(new CountProducedFunction(operationContext), true);
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    private DataSet<LocatedRow> getJoinedDataset(
-        OperationContext operationContext,
-        PairDataSet<ExecRow, LocatedRow> leftDataSet,
-        PairDataSet<ExecRow, LocatedRow> rightDataSet) {
-
-        if (isOuterJoin) { // Outer Join
-            return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right")
-                        .flatmap(new CogroupOuterJoinRestrictionFlatMapFunction<SpliceOperation>(operationContext))
-                        .map(new SetCurrentLocatedRowFunction<>(operationContext));
-        }
-        else {
-            if (this.notExistsRightSide) { // antijoin
-                if (restriction !=null) { // with restriction
-                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
-                        .flatMap(new CogroupAntiJoinRestrictionFlatMapFunction(operationContext));
-                } else { // No Restriction
-                    return leftDataSet.subtractByKey(rightDataSet)
-                            .map(new AntiJoinFunction(operationContext));
-                }
-            } else { // Inner Join
-                if (isOneRowRightSide()) {
-                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
-                        .flatMap(new CogroupInnerJoinRestrictionFlatMapFunction(operationContext));
-                }
-                if (restriction !=null) { // with restriction
-                    return leftDataSet.hashJoin(rightDataSet)
-                            .map(new InnerJoinFunction<SpliceOperation>(operationContext))
-                            .filter(new JoinRestrictionPredicateFunction(operationContext));
-                } else { // No Restriction
-                    return leftDataSet.hashJoin(rightDataSet)
-                            .map(new InnerJoinFunction<SpliceOperation>(operationContext));
-                }
-            }
-        }
-    }
-
     @Override
     public int[] getLeftHashKeys() {
         return leftHashKeys;
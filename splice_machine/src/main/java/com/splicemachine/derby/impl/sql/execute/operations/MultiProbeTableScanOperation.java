@@ -218,6 +218,12 @@ public class MultiProbeTableScanOperation extends TableScanOperation  {
         return "MultiProbe"+super.toString();
     }
 
+    @Override
+    protected boolean canDecodeBatches(int[] columns) throws StandardException{
+        //each probe value needs its own scan, which the batch path doesn't support
+        return false;
+    }
+
     @Override
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
         TxnView txn = getCurrentTransaction();
@@ -226,6 +232,7 @@ public class MultiProbeTableScanOperation extends TableScanOperation  {
         int i = 0;
         for (DataScan scan: scans) {
             deSiify(scan);
+            addJoinKeyFilter(scan);
             DataSet<LocatedRow> ds = dsp.<MultiProbeTableScanOperation,LocatedRow>newScanSet(this,tableName)
                     .tableDisplayName(tableDisplayName)
                     .activation(activation)
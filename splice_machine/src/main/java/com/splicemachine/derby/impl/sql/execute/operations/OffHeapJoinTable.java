@@ -0,0 +1,449 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.KeyEncoder;
+import com.splicemachine.derby.utils.marshall.KeyHashDecoder;
+import com.splicemachine.derby.utils.marshall.NoOpPostfix;
+import com.splicemachine.derby.utils.marshall.NoOpPrefix;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.Hash64;
+import com.splicemachine.hash.HashFunctions;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.collect.AbstractIterator;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A JoinTable which keeps the encoded inner rows in direct (off-heap) memory, rather than
+ * as a map of {@link ExecRow} objects.
+ *
+ * Encoded keys and rows are appended contiguously to a series of direct slabs, and indexed
+ * by an open-addressing (linear probing) table of primitive longs, keyed by a 64-bit hash of the
+ * encoded key. Rows sharing the same key are chained together through their slab records, so there is
+ * no per-key or per-row object on the heap. Rows are only decoded when they are returned from
+ * {@link #fetchInner(ExecRow)}.
+ */
+class OffHeapJoinTable implements JoinTable{
+    private final Storage storage;
+    private final ByteBuffer[] slabs;
+    private final KeyEncoder outerKeyEncoder;
+    private final KeyHashDecoder rowDecoder;
+    private byte[] rowBuffer = new byte[64];
+
+    OffHeapJoinTable(Storage storage,int[] outerHashkeys,ExecRow outerTemplateRow){
+        this.storage=storage;
+        this.slabs=storage.slabViews();
+        DescriptorSerializer[] serializers = VersionedSerializers.latestVersion(false).getSerializers(outerTemplateRow);
+        this.outerKeyEncoder = new KeyEncoder(NoOpPrefix.INSTANCE,
+                BareKeyHash.encoder(outerHashkeys,null,serializers),NoOpPostfix.INSTANCE);
+        if(storage.innerTemplateRow!=null){
+            DescriptorSerializer[] innerSerializers=VersionedSerializers.latestVersion(false).getSerializers(storage.innerTemplateRow);
+            this.rowDecoder=BareKeyHash.decoder(null,null,innerSerializers);
+        }else
+            this.rowDecoder=null;
+    }
+
+    @Override
+    public Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException{
+        byte[] outerKey=outerKeyEncoder.getKey(outer);
+        assert outerKey!=null: "Programmer error: outer row does not have row key";
+        final long head=storage.find(outerKey,slabs);
+        if(head<0)
+            return Collections.emptyIterator();
+        return new AbstractIterator<ExecRow>(){
+            private long next=head;
+
+            @Override
+            protected ExecRow computeNext(){
+                if(next<0)
+                    return endOfData();
+                try{
+                    ExecRow row=decode(next);
+                    next=slabs[Storage.slab(next)].getLong(Storage.offset(next));
+                    return row;
+                }catch(StandardException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close(){
+        try{
+            outerKeyEncoder.close();
+            if(rowDecoder!=null)
+                rowDecoder.close();
+        }catch(IOException ignored){ }
+    }
+
+    private ExecRow decode(long address) throws StandardException{
+        ByteBuffer slab=slabs[Storage.slab(address)];
+        int offset=Storage.offset(address);
+        int keyLength=slab.getInt(offset+Storage.KEY_LENGTH_OFFSET);
+        int rowLength=slab.getInt(offset+Storage.ROW_LENGTH_OFFSET);
+        if(rowBuffer.length<rowLength)
+            rowBuffer=new byte[Math.max(rowLength,2*rowBuffer.length)];
+        slab.position(offset+Storage.HEADER_SIZE+keyLength);
+        slab.get(rowBuffer,0,rowLength);
+
+        ExecRow row=storage.innerTemplateRow.getNewNullRow();
+        rowDecoder.set(rowBuffer,0,rowLength);
+        rowDecoder.decode(row);
+        return row;
+    }
+
+    /**
+     * The encoded rows and hash index for a single inner table. Once built, this is read-only
+     * and may be shared by any number of {@link OffHeapJoinTable}s, until it is {@link #free() freed}.
+     *
+     * Slabs start small and double in size (up to a maximum) as they fill, so that small inner tables
+     * do not pin a large amount of direct memory each.
+     */
+    static class Storage{
+        private static final Logger LOG=Logger.getLogger(Storage.class);
+        /*
+         * Each record in a slab has the layout
+         *
+         * [next record address (8 bytes)][key length (4 bytes)][row length (4 bytes)][key][row]
+         *
+         * where the address of a record is the slab index in the upper 32 bits, and the offset within
+         * the slab in the lower 32 bits. -1 marks the end of a chain (or an empty index slot).
+         */
+        static final int KEY_LENGTH_OFFSET=8;
+        static final int ROW_LENGTH_OFFSET=12;
+        static final int HEADER_SIZE=16;
+        private static final int MIN_SLAB_SIZE=1<<12;
+        private static final int MAX_SLAB_SIZE=1<<20;
+        /*Rough size of an encoded record, used to size the first slab before any row is seen*/
+        private static final int ESTIMATED_RECORD_SIZE=HEADER_SIZE+48;
+        /*Don't trust the row estimate with more than this many index slots up front*/
+        private static final int MAX_INITIAL_CAPACITY=1<<16;
+        private static final float LOAD_FACTOR=0.75f;
+        private static final Hash64 HASH=HashFunctions.murmur2_64(0);
+        /*
+         * Direct buffers are otherwise only freed once they are garbage collected, which may not happen
+         * for a long time (cached tables are long-lived, and so likely to be in the old generation). There is
+         * no public API for freeing them, so we look for one of the JVM's internal ones once, up front; null
+         * if this JVM doesn't offer one that we can use
+         */
+        private static final DirectFreer FREER=findFreer();
+
+        private final List<ByteBuffer> slabs=new ArrayList<>();
+        private final int maxSlabSize;
+        private int nextSlabSize;
+        private ExecRow innerTemplateRow;
+        private boolean freed;
+
+        private long[] hashes;
+        private long[] heads;
+        private int mask;
+        private int numKeys;
+        private long numRows;
+
+        Storage(){
+            this(MIN_SLAB_SIZE,MAX_SLAB_SIZE,16);
+        }
+
+        Storage(int slabSize,int initialCapacity){
+            this(slabSize,slabSize,initialCapacity);
+        }
+
+        Storage(int initialSlabSize,int maxSlabSize,int initialCapacity){
+            this.nextSlabSize=initialSlabSize;
+            this.maxSlabSize=maxSlabSize;
+            int capacity=Integer.highestOneBit(Math.max(initialCapacity,2)-1)<<1;
+            this.hashes=new long[capacity];
+            this.heads=new long[capacity];
+            Arrays.fill(heads,-1L);
+            this.mask=capacity-1;
+        }
+
+        /**
+         * @param estimatedRows the number of rows the optimizer expects to be added
+         * @return storage whose first slab and index are sized for {@code estimatedRows}
+         */
+        static Storage forEstimatedRows(long estimatedRows){
+            long rows=Math.max(estimatedRows,0L);
+            int slabSize=(int)Math.min(MAX_SLAB_SIZE,Math.max(MIN_SLAB_SIZE,rows*ESTIMATED_RECORD_SIZE));
+            int capacity=(int)Math.min(MAX_INITIAL_CAPACITY,Math.max(16L,(long)(rows/LOAD_FACTOR)+1));
+            return new Storage(slabSize,MAX_SLAB_SIZE,capacity);
+        }
+
+        void setTemplateRow(ExecRow innerTemplateRow){
+            this.innerTemplateRow=innerTemplateRow;
+        }
+
+        void add(byte[] key,byte[] row){
+            long hash=HASH.hash(key,0,key.length);
+            int pos=position(hash);
+            while(heads[pos]>=0){
+                if(hashes[pos]==hash && keyEquals(heads[pos],key,slabs)){
+                    heads[pos]=append(heads[pos],key,row);
+                    numRows++;
+                    return;
+                }
+                pos=(pos+1)&mask;
+            }
+            hashes[pos]=hash;
+            heads[pos]=append(-1L,key,row);
+            numKeys++;
+            numRows++;
+            if(numKeys>LOAD_FACTOR*heads.length)
+                resize();
+        }
+
+        long find(byte[] key,ByteBuffer[] slabViews){
+            assert !freed: "Cannot read from freed storage";
+            long hash=HASH.hash(key,0,key.length);
+            int pos=position(hash);
+            while(heads[pos]>=0){
+                if(hashes[pos]==hash && keyEquals(heads[pos],key,slabViews))
+                    return heads[pos];
+                pos=(pos+1)&mask;
+            }
+            return -1L;
+        }
+
+        long numRows(){
+            return numRows;
+        }
+
+        /**
+         * @return a private view over each slab, so that the caller's relative reads don't interfere with
+         * any other reader of this storage.
+         */
+        ByteBuffer[] slabViews(){
+            ByteBuffer[] views=new ByteBuffer[slabs.size()];
+            for(int i=0;i<views.length;i++){
+                views[i]=slabs.get(i).duplicate();
+            }
+            return views;
+        }
+
+        /**
+         * @return the total number of bytes (on and off the heap) held by this storage.
+         */
+        long sizeInBytes(){
+            long size=16L*heads.length;
+            for(ByteBuffer slab : slabs){
+                size+=slab.capacity();
+            }
+            return size;
+        }
+
+        /**
+         * Release the direct memory held by this storage. No table reading from it may be used afterwards.
+         */
+        void free(){
+            if(freed) return;
+            freed=true;
+            for(ByteBuffer slab : slabs){
+                freeDirect(slab);
+            }
+            slabs.clear();
+            hashes=null;
+            heads=null;
+        }
+
+        int numSlabs(){
+            return slabs.size();
+        }
+
+        /**
+         * @return true if {@link #free()} releases direct memory immediately, rather than leaving it
+         * to the garbage collector.
+         */
+        static boolean canFreeDirect(){
+            return FREER!=null;
+        }
+
+        int slabCapacity(int slab){
+            return slabs.get(slab).capacity();
+        }
+
+        static int slab(long address){
+            return (int)(address>>>32);
+        }
+
+        static int offset(long address){
+            return (int)address;
+        }
+
+        /* ****************************************************************************************************/
+        /*private helper methods*/
+        private int position(long hash){
+            return (int)(hash^(hash>>>32))&mask;
+        }
+
+        private long append(long next,byte[] key,byte[] row){
+            int recordSize=HEADER_SIZE+key.length+row.length;
+            ByteBuffer slab=slabs.isEmpty()? null : slabs.get(slabs.size()-1);
+            if(slab==null || slab.remaining()<recordSize){
+                slab=ByteBuffer.allocateDirect(Math.max(nextSlabSize,recordSize));
+                slabs.add(slab);
+                nextSlabSize=Math.min(maxSlabSize,nextSlabSize<<1);
+            }
+            long address=((long)(slabs.size()-1)<<32)|slab.position();
+            slab.putLong(next);
+            slab.putInt(key.length);
+            slab.putInt(row.length);
+            slab.put(key);
+            slab.put(row);
+            return address;
+        }
+
+        private static void freeDirect(ByteBuffer slab){
+            if(FREER==null) return; //we've already warned that the garbage collector will have to do it
+            try{
+                FREER.free(slab);
+            }catch(Exception e){
+                LOG.warn("Unable to free direct slab, leaving it to the garbage collector",e);
+            }
+        }
+
+        private static DirectFreer findFreer(){
+            try{
+                return verify(unsafeFreer());
+            }catch(Throwable java9){
+                try{
+                    return verify(cleanerFreer());
+                }catch(Throwable java8){
+                    LOG.warn("Direct memory cannot be freed explicitly on this JVM, so off-heap join tables will "+
+                            "hold on to it until they are garbage collected, which may exceed the configured "+
+                            "join cache size",java8);
+                    return null;
+                }
+            }
+        }
+
+        private static DirectFreer verify(DirectFreer freer) throws Exception{
+            freer.free(ByteBuffer.allocateDirect(1));
+            return freer;
+        }
+
+        /*Java 9 and later*/
+        private static DirectFreer unsafeFreer() throws Exception{
+            Class<?> unsafeClass=Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner=unsafeClass.getMethod("invokeCleaner",ByteBuffer.class);
+            Field theUnsafe=unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe=theUnsafe.get(null);
+            return new DirectFreer(){
+                @Override
+                public void free(ByteBuffer slab) throws Exception{
+                    invokeCleaner.invoke(unsafe,slab);
+                }
+            };
+        }
+
+        /*Java 8*/
+        private static DirectFreer cleanerFreer() throws Exception{
+            final Method cleanerMethod=Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method cleanMethod=Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return new DirectFreer(){
+                @Override
+                public void free(ByteBuffer slab) throws Exception{
+                    Object cleaner=cleanerMethod.invoke(slab);
+                    if(cleaner!=null)
+                        cleanMethod.invoke(cleaner);
+                }
+            };
+        }
+
+        private static boolean keyEquals(long address,byte[] key,List<ByteBuffer> slabs){
+            return keyEquals(slabs.get(slab(address)),offset(address),key);
+        }
+
+        private static boolean keyEquals(long address,byte[] key,ByteBuffer[] slabs){
+            return keyEquals(slabs[slab(address)],offset(address),key);
+        }
+
+        private static boolean keyEquals(ByteBuffer slab,int offset,byte[] key){
+            if(slab.getInt(offset+KEY_LENGTH_OFFSET)!=key.length)
+                return false;
+            int keyStart=offset+HEADER_SIZE;
+            for(int i=0;i<key.length;i++){
+                if(slab.get(keyStart+i)!=key[i])
+                    return false;
+            }
+            return true;
+        }
+
+        private void resize(){
+            long[] oldHashes=hashes;
+            long[] oldHeads=heads;
+            hashes=new long[oldHashes.length<<1];
+            heads=new long[oldHeads.length<<1];
+            Arrays.fill(heads,-1L);
+            mask=heads.length-1;
+            for(int i=0;i<oldHeads.length;i++){
+                if(oldHeads[i]<0) continue;
+                int pos=position(oldHashes[i]);
+                while(heads[pos]>=0){
+                    pos=(pos+1)&mask;
+                }
+                hashes[pos]=oldHashes[i];
+                heads[pos]=oldHeads[i];
+            }
+        }
+
+        private interface DirectFreer{
+            void free(ByteBuffer slab) throws Exception;
+        }
+    }
+
+    static class Factory implements JoinTable.Factory{
+        private final Storage storage;
+        private final int[] outerHashKeys;
+        private final ExecRow outerTemplateRow;
+
+        public Factory(Storage storage,int[] outerHashKeys,ExecRow outerTemplateRow){
+            this.storage=storage;
+            this.outerHashKeys=outerHashKeys;
+            this.outerTemplateRow=outerTemplateRow;
+        }
+
+        @Override
+        public JoinTable newTable(){
+            return new OffHeapJoinTable(storage,outerHashKeys,outerTemplateRow);
+        }
+
+        @Override
+        public long estimatedSizeInBytes(){
+            return storage.sizeInBytes();
+        }
+
+        @Override
+        public void close(){
+            storage.free();
+        }
+    }
+}
@@ -25,6 +25,9 @@ import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
 import com.splicemachine.db.impl.sql.execute.BaseActivation;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
+import com.splicemachine.derby.stream.function.ProjectBatchFunction;
 import com.splicemachine.derby.stream.function.ProjectRestrictFlatMapFunction;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
@@ -41,6 +44,8 @@ import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
 import com.splicemachine.derby.impl.SpliceMethod;
 import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 
 public class ProjectRestrictOperation extends SpliceBaseOperation {
 		private static Logger LOG = Logger.getLogger(ProjectRestrictOperation.class);
@@ -294,6 +299,71 @@ public class ProjectRestrictOperation extends SpliceBaseOperation {
         }
     }
 
+    @Override
+    public DataSet<ColumnarBatch> getBatchDataSet(DataSetProcessor dsp, int[] columns, int batchSize) throws StandardException {
+        if (alwaysFalse || restrictionMethodName != null || projectionMethodName != null)
+            return super.getBatchDataSet(dsp, columns, batchSize);
+        // no restriction or projection, just a column mapping, so re-arrange whole batches of the source's columns
+        int[] sourceColumns = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int mapped = columns[i] <= projectMapping.length ? projectMapping[columns[i] - 1] : -1;
+            if (mapped == -1)
+                return super.getBatchDataSet(dsp, columns, batchSize);
+            sourceColumns[i] = mapped;
+        }
+        OperationContext<ProjectRestrictOperation> operationContext = dsp.createOperationContext(this);
+        DataSet<ColumnarBatch> sourceSet = source.getBatchDataSet(dsp, sourceColumns, batchSize);
+        return sourceSet.map(new ProjectBatchFunction(operationContext, columns));
+    }
+
+    @Override
+    public DataSet<PartialAggregate> getPartialAggregateDataSet(DataSetProcessor dsp, int[] groupColumns, EntryAggregator.Function[] functions, int[] inputColumns) throws StandardException {
+        if (alwaysFalse || restrictionMethodName != null || projectionMethodName != null)
+            return null;
+        // partial aggregates are positional, so only the columns need to be mapped to the source's
+        int[] sourceGroupColumns = sourceColumns(groupColumns);
+        if (sourceGroupColumns == null)
+            return null;
+        int[] sourceInputColumns = new int[inputColumns.length];
+        for (int i = 0; i < inputColumns.length; i++) {
+            if (functions[i] == EntryAggregator.Function.COUNT_STAR)
+                continue;
+            int mapped = sourceColumn(inputColumns[i]);
+            if (mapped == -1)
+                return null;
+            sourceInputColumns[i] = mapped;
+        }
+        return source.getPartialAggregateDataSet(dsp, sourceGroupColumns, functions, sourceInputColumns);
+    }
+
+    @Override
+    public boolean canPushJoinKeyFilter(int[] columns) throws StandardException {
+        if (alwaysFalse || projectionMethodName != null)
+            return false;
+        // dropping rows early doesn't change the result of the restriction, so only the columns need mapping
+        int[] sourceColumns = sourceColumns(columns);
+        return sourceColumns != null && source.canPushJoinKeyFilter(sourceColumns);
+    }
+
+    @Override
+    public void pushJoinKeyFilter(int[] columns, JoinKeyBloomFilter filter) throws StandardException {
+        source.pushJoinKeyFilter(sourceColumns(columns), filter);
+    }
+
+    private int[] sourceColumns(int[] columns) {
+        int[] sourceColumns = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            sourceColumns[i] = sourceColumn(columns[i]);
+            if (sourceColumns[i] == -1)
+                return null;
+        }
+        return sourceColumns;
+    }
+
+    private int sourceColumn(int column) {
+        return column <= projectMapping.length ? projectMapping[column - 1] : -1;
+    }
+
 
     public static ExecRow copyProjectionToNewRow(ExecRow projectedRow, ExecRow newRow) {
         if (newRow == null) {
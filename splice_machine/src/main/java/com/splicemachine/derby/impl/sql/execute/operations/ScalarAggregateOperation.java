@@ -17,6 +17,9 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.function.BatchScalarAggregateFunction;
 import com.splicemachine.derby.stream.function.ScalarAggregateFlatMapFunction;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
@@ -120,8 +123,18 @@ public class ScalarAggregateOperation extends GenericAggregateOperation {
     @Override
     public DataSet<LocatedRow> getDataSet(DataSetProcessor dsp) throws StandardException {
         OperationContext<ScalarAggregateOperation> operationContext = dsp.createOperationContext(this);
-        DataSet<LocatedRow> dsSource = source.getDataSet(dsp);
-        DataSet<LocatedRow> ds = dsSource.mapPartitions(new ScalarAggregateFlatMapFunction(operationContext, false), false, /*pushScope=*/true, "First Aggregation");
+        DataSet<LocatedRow> ds;
+        BatchAggregator[] batchAggregators = getBatchAggregators(dsp);
+        if (batchAggregators != null) {
+            ds = getPartialAggregates(dsp, operationContext, batchAggregators);
+            if (ds == null) {
+                DataSet<ColumnarBatch> batches = getSourceBatches(dsp, batchAggregators);
+                ds = batches.mapPartitions(new BatchScalarAggregateFunction(operationContext), false, /*pushScope=*/true, "First Aggregation");
+            }
+        } else {
+            DataSet<LocatedRow> dsSource = source.getDataSet(dsp);
+            ds = dsSource.mapPartitions(new ScalarAggregateFlatMapFunction(operationContext, false), false, /*pushScope=*/true, "First Aggregation");
+        }
         DataSet<LocatedRow> ds2 = ds.coalesce(1, /*shuffle=*/true, /*isLast=*/false, operationContext, /*pushScope=*/true, "Coalesce");
         return ds2.mapPartitions(new ScalarAggregateFlatMapFunction(operationContext, true), /*isLast=*/true, /*pushScope=*/true, "Final Aggregation");
     }
@@ -28,6 +28,9 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
+import com.splicemachine.derby.stream.function.RowsToBatchesFunction;
 import com.splicemachine.derby.stream.iapi.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.lang3.StringUtils;
@@ -65,6 +68,8 @@ import com.splicemachine.derby.impl.store.access.SpliceTransaction;
 import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.impl.txn.ActiveWriteTxn;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 import com.splicemachine.utils.SpliceLogUtils;
 
 public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed, Externalizable{
@@ -809,4 +814,25 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
     public DataSet<LocatedRow> getResultDataSet(DataSetProcessor dsp) throws StandardException {
         return getDataSet(dsp);
     }
+
+    @Override
+    public DataSet<ColumnarBatch> getBatchDataSet(DataSetProcessor dsp,int[] columns,int batchSize) throws StandardException {
+        OperationContext operationContext = dsp.createOperationContext(this);
+        return getDataSet(dsp).mapPartitions(new RowsToBatchesFunction(operationContext,columns,batchSize));
+    }
+
+    @Override
+    public DataSet<PartialAggregate> getPartialAggregateDataSet(DataSetProcessor dsp,int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException {
+        return null;
+    }
+
+    @Override
+    public boolean canPushJoinKeyFilter(int[] columns) throws StandardException {
+        return false;
+    }
+
+    @Override
+    public void pushJoinKeyFilter(int[] columns,JoinKeyBloomFilter filter) throws StandardException {
+        throw new UnsupportedOperationException("Cannot push a join key filter into "+getName());
+    }
 }
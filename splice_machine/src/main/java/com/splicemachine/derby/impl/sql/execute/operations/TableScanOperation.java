@@ -25,17 +25,26 @@ import com.splicemachine.db.iapi.store.access.StaticCompiledOpenConglomInfo;
 import com.splicemachine.db.impl.sql.compile.ActivationClassBuilder;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
+import com.splicemachine.derby.stream.batch.ColumnVector;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.ScanSetBuilder;
 import com.splicemachine.derby.stream.output.WriteReadUtils;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.JoinKeyBloomFilter;
 import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import com.splicemachine.db.impl.sql.compile.FromTable;
@@ -53,6 +62,7 @@ public class TableScanOperation extends ScanOperation{
     public int rowsPerRead;
     public ByteSlice slice;
     protected int[] baseColumnMap;
+    protected JoinKeyBloomFilter joinKeyFilter;
     protected static final String NAME=TableScanOperation.class.getSimpleName().replaceAll("Operation","");
     protected byte[] tableNameBytes;
 
@@ -316,12 +326,124 @@ public class TableScanOperation extends ScanOperation{
      * @throws StandardException
      */
     public DataSet<LocatedRow> getTableScannerBuilder(DataSetProcessor dsp) throws StandardException{
+        return newScanSetBuilder(dsp).buildDataSet(this);
+    }
+
+    /**
+     *
+     * Decode the scanned rows directly into columnar batches, when every requested column can be decoded
+     * straight from the packed row (see {@link ColumnVector#isDirectlyDecodable}) and there is nothing
+     * to evaluate per row. Otherwise, rows are materialized and batched as usual.
+     *
+     */
+    @Override
+    public DataSet<ColumnarBatch> getBatchDataSet(DataSetProcessor dsp,int[] columns,int batchSize) throws StandardException{
+        if(canDecodeBatches(columns)){
+            DataSet<ColumnarBatch> batches=newScanSetBuilder(dsp).buildBatchDataSet(columns,batchSize);
+            if(batches!=null)
+                return batches;
+        }
+        return super.getBatchDataSet(dsp,columns,batchSize);
+    }
+
+    /**
+     *
+     * Aggregate the scanned rows in the regions which hold them, when the aggregates' inputs can be read
+     * straight from the packed row and there is nothing to evaluate per row. Group columns are only compared
+     * in their encoded form, so they may be of any type, but must not be part of the primary key.
+     *
+     */
+    @Override
+    public DataSet<PartialAggregate> getPartialAggregateDataSet(DataSetProcessor dsp,int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException{
+        int[] decodedColumns=new int[inputColumns.length];
+        int numDecoded=0;
+        for(int i=0;i<functions.length;i++){
+            switch(functions[i]){
+                case COUNT_STAR:
+                case COUNT:
+                    break;
+                default:
+                    decodedColumns[numDecoded++]=inputColumns[i];
+            }
+        }
+        if(!canDecodeBatches(Arrays.copyOf(decodedColumns,numDecoded)))
+            return null;
+        for(int column:groupColumns){
+            if(column>currentTemplate.nColumns() || currentTemplate.getColumn(column)==null)
+                return null;
+        }
+        return newScanSetBuilder(dsp).buildPartialAggregateDataSet(groupColumns,functions,inputColumns);
+    }
+
+    /**
+     * @return true if the requested columns can be decoded directly from the scanned rows. Scans with
+     * qualifiers, or which read any column from the primary key, must go through the row path.
+     */
+    protected boolean canDecodeBatches(int[] columns) throws StandardException{
+        if(scanInformation.getScanQualifiers()!=null)
+            return false;
+        FormatableBitSet accessedPks=scanInformation.getAccessedPkColumns();
+        if(accessedPks!=null && accessedPks.getNumBitsSet()>0)
+            return false;
+        for(int column:columns){
+            if(column>currentTemplate.nColumns() || !ColumnVector.isDirectlyDecodable(currentTemplate.getColumn(column)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Join key filters are only applied to the packed row, so every key column must be read from the row,
+     * rather than from the primary key.
+     *
+     */
+    @Override
+    public boolean canPushJoinKeyFilter(int[] columns) throws StandardException{
+        return storageColumns(columns)!=null;
+    }
+
+    @Override
+    public void pushJoinKeyFilter(int[] columns,JoinKeyBloomFilter filter) throws StandardException{
+        int[] storageColumns=storageColumns(columns);
+        assert storageColumns!=null: "Programmer error: cannot push join key filter over columns "+Arrays.toString(columns);
+        this.joinKeyFilter=filter.onColumns(storageColumns);
+    }
+
+    protected void addJoinKeyFilter(DataScan scan){
+        if(joinKeyFilter!=null)
+            scan.addAttribute(SIConstants.JOIN_KEY_FILTER_LABEL,joinKeyFilter.toBytes());
+    }
+
+    private int[] storageColumns(int[] columns) throws StandardException{
+        int[] decodingMap=getRowDecodingMap();
+        int[] storageColumns=new int[columns.length];
+        for(int i=0;i<columns.length;i++){
+            if(columns[i]>currentTemplate.nColumns())
+                return null;
+            int storagePos=-1;
+            for(int j=0;j<decodingMap.length;j++){
+                if(decodingMap[j]==columns[i]-1){
+                    storagePos=j;
+                    break;
+                }
+            }
+            if(storagePos<0)
+                return null;
+            storageColumns[i]=storagePos;
+        }
+        return storageColumns;
+    }
+
+    private ScanSetBuilder<LocatedRow> newScanSetBuilder(DataSetProcessor dsp) throws StandardException{
         TxnView txn=getCurrentTransaction();
+        DataScan scan=getNonSIScan();
+        addJoinKeyFilter(scan);
         return dsp.<TableScanOperation,LocatedRow>newScanSet(this,tableName)
                 .tableDisplayName(tableDisplayName)
                 .activation(activation)
                 .transaction(txn)
-                .scan(getNonSIScan())
+                .scan(scan)
                 .template(currentTemplate)
                 .tableVersion(tableVersion)
                 .indexName(indexName)
@@ -333,7 +455,6 @@ public class TableScanOperation extends ScanOperation{
                 .accessedKeyColumns(scanInformation.getAccessedPkColumns())
                 .keyDecodingMap(getKeyDecodingMap())
                 .rowDecodingMap(getRowDecodingMap())
-                .baseColumnMap(baseColumnMap)
-                .buildDataSet(this);
+                .baseColumnMap(baseColumnMap);
     }
 }
\ No newline at end of file
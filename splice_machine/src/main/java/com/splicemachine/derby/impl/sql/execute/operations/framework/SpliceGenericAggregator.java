@@ -202,4 +202,8 @@ public class SpliceGenericAggregator implements Serializable{
     public int getAggregatorColumnId() {
         return aggregatorColumnId;
     }
+
+    public int getInputColumnId() {
+        return inputColumnId;
+    }
 }
@@ -40,6 +40,7 @@ import com.splicemachine.si.impl.txn.DDLTxnView;
 import com.splicemachine.si.impl.filter.PackedTxnFilter;
 import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.storage.*;
+import com.carrotsearch.hppc.BitSet;
 import com.splicemachine.storage.EntryDecoder;
 import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.SpliceLogUtils;
@@ -65,6 +66,9 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
     private final String tableVersion;
     protected final int[] rowDecodingMap;
     private SIFilter siFilter;
+    private SIFilter blockFilter;
+    private EntryPredicateFilter blockPredicateFilter;
+    private VectorEntryAccumulator blockAccumulator;
     private EntryPredicateFilter predicateFilter;
     protected RowLocation currentRowLocation;
     private final boolean[] keyColumnSortOrder;
@@ -209,6 +213,46 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         }while(true); //TODO -sf- this doesn't seem quite right
     }
 
+    /**
+     * @return true if this scanner can decode rows directly into column vectors through
+     * {@link #nextBlock(FieldVector[], int)}. This requires that no column be read from the row key,
+     * since only the packed row value is decoded in blocks.
+     */
+    public boolean canDecodeBlocks(){
+        return !isKeyed && rowDecodingMap!=null && optionalProbeValue==null;
+    }
+
+    /**
+     * Decode the next block of visible rows straight into {@code vectors}, without materializing
+     * each row into the template.
+     *
+     * @param vectors the destination of each column, indexed by (0-based) position in the template. Columns
+     *                without a vector are skipped. Every call on the same scanner must supply vectors for the
+     *                same columns.
+     * @param maxRows the maximum number of rows to decode
+     * @return the number of rows decoded. Fewer than {@code maxRows} means that the scan is exhausted
+     */
+    public int nextBlock(FieldVector[] vectors,int maxRows) throws StandardException, IOException {
+        assert canDecodeBlocks(): "Cannot decode blocks from a keyed scan";
+        VectorEntryAccumulator accumulator = getBlockAccumulator(vectors);
+        SIFilter filter = getBlockFilter(accumulator);
+        int rows = 0;
+        while(rows<maxRows){
+            accumulator.setRow(rows);
+            List<DataCell> keyValues=regionScanner.next(-1);
+            if(keyValues.size()<=0)
+                break;
+            if(!filterRow(filter,keyValues)){
+                filterCounter.increment();
+                continue;
+            }
+            measureOutputSize(keyValues);
+            rows++;
+        }
+        currentRowLocation = null;
+        return rows;
+    }
+
     public long getBytesOutput(){
         return outputBytesCounter.getTotal();
     }
@@ -250,6 +294,8 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
             keyAccumulator.close();
         if(siFilter!=null)
             siFilter.getAccumulator().close();
+        if(blockFilter!=null)
+            blockFilter.getAccumulator().close();
         if (regionScanner != null)
             regionScanner.close();
     }
@@ -300,11 +346,18 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
                     HRowAccumulator hRowAccumulator =new HRowAccumulator(predicateFilter,
                             rowEntryDecoder,accumulator,
                             isCountStar);
+                    final JoinKeyBloomFilter joinKeyFilter = JoinKeyBloomFilter.fromBytes(scan.getAttribute(SIConstants.JOIN_KEY_FILTER_LABEL));
                     //noinspection unchecked
                     return new PackedTxnFilter(txnFilter, hRowAccumulator) {
                         @Override
                         public ReturnCode accumulate(DataCell data) throws IOException{
                             if (!accumulator.isFinished() && accumulator.isInteresting(data)) {
+                                /*
+                                 * Only visible cells reach this point, so we can drop rows which cannot join before
+                                 * we spend any time decoding them
+                                 */
+                                if (joinKeyFilter!=null && !joinKeyFilter.mightMatch(data.valueArray(),data.valueOffset(),data.valueLength()))
+                                    return DataFilter.ReturnCode.NEXT_ROW;
                                 if (!accumulator.accumulateCell(data)) {
                                     return DataFilter.ReturnCode.NEXT_ROW;
                                 }
@@ -350,6 +403,32 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         return siFilter;
     }
 
+    private VectorEntryAccumulator getBlockAccumulator(FieldVector[] vectorsByColumn) throws IOException {
+        FieldVector[] vectors = new FieldVector[rowDecodingMap.length];
+        BitSet fieldsToCollect = new BitSet(rowDecodingMap.length);
+        for(int i=0;i<rowDecodingMap.length;i++){
+            int pos = rowDecodingMap[i];
+            if(pos<0 || pos>=vectorsByColumn.length || vectorsByColumn[pos]==null) continue;
+            vectors[i] = vectorsByColumn[pos];
+            fieldsToCollect.set(i);
+        }
+        if(blockAccumulator==null){
+            blockPredicateFilter = buildInitialPredicateFilter();
+            blockAccumulator = new VectorEntryAccumulator(blockPredicateFilter,fieldsToCollect,vectors);
+        }else
+            blockAccumulator.setVectors(vectors);
+        return blockAccumulator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SIFilter getBlockFilter(VectorEntryAccumulator accumulator) throws IOException {
+        if(blockFilter==null) {
+            boolean isCountStar = scan.getAttribute(SIConstants.SI_COUNT_STAR)!=null;
+            blockFilter = filterFactory.newFilter(blockPredicateFilter,getRowEntryDecoder(),accumulator,isCountStar);
+        }
+        return blockFilter;
+    }
+
     protected EntryDecoder getRowEntryDecoder() {
         return new EntryDecoder();
     }
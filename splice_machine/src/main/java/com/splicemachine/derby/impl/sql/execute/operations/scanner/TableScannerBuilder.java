@@ -25,6 +25,8 @@ import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.impl.sql.execute.ValueRow;
 import com.splicemachine.db.shared.common.udt.UDTBase;
 import com.splicemachine.derby.impl.sql.execute.LazyDataValueFactory;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.ScanSetBuilder;
 import com.splicemachine.derby.stream.iapi.OperationContext;
@@ -36,6 +38,7 @@ import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.storage.DataScan;
 import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.EntryAggregator;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.SerializationUtils;
@@ -600,6 +603,29 @@ public abstract class TableScannerBuilder<V> implements Externalizable, ScanSetB
         return buildDataSet();
     }
 
+    @Override
+    public DataSet<ColumnarBatch> buildBatchDataSet(int[] columns,int batchSize) throws StandardException{
+        return null;
+    }
+
+    @Override
+    public DataSet<PartialAggregate> buildPartialAggregateDataSet(int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException{
+        return null;
+    }
+
+    public ExecRow getTemplate(){
+        return template;
+    }
+
+    public String getTableVersion(){
+        return tableVersion;
+    }
+
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP",justification = "Intentional")
+    public int[] getRowDecodingMap(){
+        return rowColumnMap;
+    }
+
     @Override
     public OperationContext getOperationContext() {
         return operationContext;
@@ -33,6 +33,7 @@ import com.splicemachine.db.impl.jdbc.EmbedConnection;
 import com.splicemachine.derby.ddl.DDLDriver;
 import com.splicemachine.derby.ddl.DDLEnvironmentLoader;
 import com.splicemachine.derby.impl.db.SpliceDatabase;
+import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.store.access.SpliceAccessManager;
 import com.splicemachine.lifecycle.DatabaseLifecycleService;
 import com.splicemachine.pipeline.ContextFactoryDriverService;
@@ -41,8 +42,12 @@ import com.splicemachine.pipeline.PipelineDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
 import com.splicemachine.pipeline.contextfactory.ReferenceCountingFactoryDriver;
+import com.splicemachine.si.api.readresolve.AsyncReadResolver;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
+import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.tools.EmbedConnectionMaker;
+import com.splicemachine.hbase.jmx.JMXUtils;
 import com.splicemachine.tools.version.ManifestReader;
 import com.splicemachine.utils.logging.LogManager;
 import com.splicemachine.utils.logging.Logging;
@@ -127,17 +132,15 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
     public void registerJMX(MBeanServer mbs) throws Exception{
         manifestReader.registerJMX(mbs);
 
-        try{
-            ObjectName on=new ObjectName("com.splicemachine.utils.logging:type=LogManager");
-            mbs.registerMBean(logging,on);
-        }catch(InstanceAlreadyExistsException ignored){
-            /*
-             * For most purposes, this should never happen. However, it's possible to happen
-             * when you are booting a regionserver and master in the same JVM (e.g. for testing purposes); Since
-             * we can only really have one version of the software on a single node at one time, we just ignore
-             * this exception and don't worry about it too much.
-             */
-        }
+        register(mbs,logging,"com.splicemachine.utils.logging:type=LogManager");
+        register(mbs,BroadcastJoinCache.instance(),JMXUtils.BROADCAST_JOIN_CACHE);
+        register(mbs,SIDriver.driver().getLowWatermark(),JMXUtils.LOW_WATERMARK_MANAGEMENT);
+        TxnSupplier txnSupplier=SIDriver.driver().getTxnSupplier();
+        if(txnSupplier instanceof TransactionCacheManagement)
+            register(mbs,txnSupplier,JMXUtils.TRANSACTION_CACHE_MANAGEMENT);
+        AsyncReadResolver readResolver=SIDriver.driver().getAsyncReadResolver();
+        if(readResolver!=null)
+            register(mbs,readResolver,JMXUtils.READ_RESOLVER_MANAGEMENT);
     }
 
     @Override
@@ -158,6 +161,22 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
         }
     }
 
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static void register(MBeanServer mbs,Object bean,String name) throws Exception{
+        try{
+            mbs.registerMBean(bean,new ObjectName(name));
+        }catch(InstanceAlreadyExistsException ignored){
+            /*
+             * For most purposes, this should never happen. However, it's possible to happen
+             * when you are booting a regionserver and master in the same JVM (e.g. for testing purposes); Since
+             * we can only really have one version of the software on a single node at one time, we just ignore
+             * this exception and don't worry about it too much. Each bean is registered on its own, so that
+             * one which is already registered doesn't keep the others from being registered.
+             */
+        }
+    }
+
     private void loadManifest(){
         manifestReader = new ManifestReader();
         spliceVersion = manifestReader.createVersion();
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecAggregator;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.impl.sql.execute.CountAggregator;
+import com.splicemachine.db.impl.sql.execute.DecimalBufferedSumAggregator;
+import com.splicemachine.db.impl.sql.execute.DoubleBufferedSumAggregator;
+import com.splicemachine.db.impl.sql.execute.LongBufferedSumAggregator;
+import com.splicemachine.db.impl.sql.execute.MaxMinAggregator;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.storage.EntryAggregator;
+
+import java.math.BigDecimal;
+
+/**
+ * Evaluates a single aggregate over a {@link ColumnarBatch}.
+ *
+ * The aggregate is first computed for each group directly over the batch's primitive arrays, and the
+ * result for each group is then folded into the group's {@link ExecAggregator} with a single call, so
+ * the regular aggregate machinery (merging, finishing, null elimination warnings) is unaffected.
+ *
+ * Only COUNT, COUNT(*), SUM and MIN/MAX are supported, and SUM only over integral, DOUBLE and DECIMAL
+ * columns; see {@link #create(SpliceGenericAggregator, ExecRow)}.
+ */
+public class BatchAggregator{
+    enum Kind{COUNT_STAR,COUNT,SUM,MIN,MAX}
+
+    private final SpliceGenericAggregator aggregator;
+    private final Kind kind;
+
+    private long[] counts=new long[0];
+    private boolean[] sawNull=new boolean[0];
+    private long[] longSums=new long[0];
+    private double[] doubleSums=new double[0];
+    private int[] best=new int[0];
+
+    BatchAggregator(SpliceGenericAggregator aggregator,Kind kind){
+        this.aggregator=aggregator;
+        this.kind=kind;
+    }
+
+    /**
+     * @param aggregator the aggregate to evaluate
+     * @param template a row of the same shape as the aggregate's input rows
+     * @return a batch aggregator for {@code aggregator}, or {@code null} if it cannot be evaluated in batches
+     */
+    public static BatchAggregator create(SpliceGenericAggregator aggregator,ExecRow template) throws StandardException{
+        if(aggregator.getAggregatorInfo()!=null && aggregator.isDistinct())
+            return null;
+        ExecAggregator ua=aggregator.getAggregatorInstance();
+        if(ua instanceof CountAggregator)
+            return new BatchAggregator(aggregator,((CountAggregator)ua).isCountStar()?Kind.COUNT_STAR:Kind.COUNT);
+
+        int input=aggregator.getInputColumnId();
+        if(input<1 || input>template.nColumns() || template.getColumn(input)==null)
+            return null;
+        ColumnVector vector=ColumnVector.newVector(template.getColumn(input),1);
+        if(ua instanceof MaxMinAggregator)
+            return new BatchAggregator(aggregator,((MaxMinAggregator)ua).isMax()?Kind.MAX:Kind.MIN);
+        if((ua instanceof LongBufferedSumAggregator && vector instanceof LongColumnVector)
+                || (ua instanceof DoubleBufferedSumAggregator && vector instanceof DoubleColumnVector)
+                || (ua instanceof DecimalBufferedSumAggregator && vector instanceof DecimalColumnVector))
+            return new BatchAggregator(aggregator,Kind.SUM);
+        return null;
+    }
+
+    /**
+     * @return a batch aggregator for each of {@code aggregates}, or {@code null} if any of them cannot be
+     * evaluated in batches
+     */
+    public static BatchAggregator[] create(SpliceGenericAggregator[] aggregates,ExecRow template) throws StandardException{
+        BatchAggregator[] batchAggregators=new BatchAggregator[aggregates.length];
+        for(int i=0;i<aggregates.length;i++){
+            batchAggregators[i]=create(aggregates[i],template);
+            if(batchAggregators[i]==null)
+                return null;
+        }
+        return batchAggregators;
+    }
+
+    /**
+     * @return the (1-based) input column this aggregate reads, or -1 if it does not read a column
+     */
+    public int getInputColumnId(){
+        return kind==Kind.COUNT_STAR?-1:aggregator.getInputColumnId();
+    }
+
+    /**
+     * @param template a row of the same shape as the aggregate's input rows
+     * @return the function which computes the partial result of this aggregate where the rows are stored, or
+     * {@code null} if it cannot be computed there. SUM, MIN and MAX are only computed over the encoded values of
+     * directly decodable columns, which are summed and ordered the same way as the values themselves.
+     */
+    public EntryAggregator.Function getPartialFunction(ExecRow template) throws StandardException{
+        switch(kind){
+            case COUNT_STAR:
+                return EntryAggregator.Function.COUNT_STAR;
+            case COUNT:
+                return EntryAggregator.Function.COUNT;
+            default:
+                break;
+        }
+        DataValueDescriptor input=template.getColumn(aggregator.getInputColumnId());
+        if(!ColumnVector.isDirectlyDecodable(input))
+            return null;
+        if(kind==Kind.MIN)
+            return EntryAggregator.Function.MIN;
+        if(kind==Kind.MAX)
+            return EntryAggregator.Function.MAX;
+        ColumnVector vector=ColumnVector.newVector(input,1);
+        if(vector instanceof LongColumnVector)
+            return EntryAggregator.Function.SUM_LONG;
+        if(vector instanceof DoubleColumnVector)
+            return EntryAggregator.Function.SUM_DOUBLE;
+        if(vector instanceof DecimalColumnVector)
+            return EntryAggregator.Function.SUM_DECIMAL;
+        return null;
+    }
+
+    /**
+     * Fold the partial result of this aggregate into a group.
+     *
+     * @param partial the partial results for the group
+     * @param position the position of this aggregate's result in {@code partial}
+     * @param groupRow the accumulator row of the group. The aggregate must already be initialized in the row
+     */
+    public void accumulatePartial(PartialAggregate partial,int position,ExecRow groupRow) throws StandardException{
+        ExecAggregator ua=(ExecAggregator)groupRow.getColumn(aggregator.getAggregatorColumnId()).getObject();
+        DataValueDescriptor result=partial.getResult(position);
+        long count=partial.getCount(position);
+        if(partial.getNullCount(position)>0)
+            ua.accumulate(result==null?new SQLLongint():result.getNewNull(),aggregator); //records that nulls were eliminated
+        if(count==0)
+            return;
+        switch(kind){
+            case COUNT_STAR:
+            case COUNT:
+                ((CountAggregator)ua).add(new SQLLongint(count));
+                break;
+            case SUM:
+                if(result instanceof SQLDecimal && ua instanceof LongBufferedSumAggregator)
+                    accumulateLongSum(ua,(BigDecimal)result.getObject());
+                else
+                    ua.accumulate(result,aggregator);
+                break;
+            case MIN:
+            case MAX:
+                ua.accumulate(result,aggregator);
+                break;
+        }
+    }
+
+    /**
+     * Aggregate every row of {@code batch} into its group.
+     *
+     * @param batch the rows to aggregate
+     * @param groupIds the group of each row in the batch, or {@code null} if all rows are in group 0
+     * @param groupRows the accumulator row of each group. The aggregate must already be initialized in each row
+     */
+    public void aggregate(ColumnarBatch batch,int[] groupIds,ExecRow[] groupRows) throws StandardException{
+        int numGroups=groupIds==null?1:groupRows.length;
+        ensureCapacity(numGroups);
+        ColumnVector vector=kind==Kind.COUNT_STAR?null:batch.getColumn(aggregator.getInputColumnId());
+        assert kind==Kind.COUNT_STAR || vector!=null: "Input column is not held by the batch";
+        int size=batch.size();
+        switch(kind){
+            case COUNT_STAR:
+                for(int r=0;r<size;r++){
+                    counts[group(groupIds,r)]++;
+                }
+                break;
+            case COUNT:
+                for(int r=0;r<size;r++){
+                    int g=group(groupIds,r);
+                    if(vector.isNull(r))
+                        sawNull[g]=true;
+                    else
+                        counts[g]++;
+                }
+                break;
+            case SUM:
+                try{
+                    sum(vector,groupIds,size);
+                }catch(ArithmeticException overflow){
+                    //the partial sum doesn't fit in a long, so let the aggregator deal with each row
+                    accumulateRows(vector,groupIds,groupRows,size);
+                    return;
+                }
+                break;
+            case MIN:
+            case MAX:
+                for(int r=0;r<size;r++){
+                    int g=group(groupIds,r);
+                    if(vector.isNull(r))
+                        sawNull[g]=true;
+                    else if(best[g]<0 || isBetter(vector,r,best[g]))
+                        best[g]=r;
+                }
+                break;
+        }
+        for(int g=0;g<numGroups;g++){
+            apply(vector,g,groupRows[g]);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int group(int[] groupIds,int row){
+        return groupIds==null?0:groupIds[row];
+    }
+
+    private void ensureCapacity(int numGroups){
+        if(counts.length<numGroups){
+            int size=Math.max(numGroups,2*counts.length);
+            counts=new long[size];
+            sawNull=new boolean[size];
+            longSums=new long[size];
+            doubleSums=new double[size];
+            best=new int[size];
+        }
+        for(int g=0;g<numGroups;g++){
+            counts[g]=0L;
+            sawNull[g]=false;
+            longSums[g]=0L;
+            doubleSums[g]=0d;
+            best[g]=-1;
+        }
+    }
+
+    private void sum(ColumnVector vector,int[] groupIds,int size){
+        if(vector instanceof LongColumnVector){
+            long[] values=((LongColumnVector)vector).values();
+            for(int r=0;r<size;r++){
+                int g=group(groupIds,r);
+                if(vector.isNull(r))
+                    sawNull[g]=true;
+                else{
+                    longSums[g]=Math.addExact(longSums[g],values[r]);
+                    counts[g]++;
+                }
+            }
+        }else if(vector instanceof DoubleColumnVector){
+            double[] values=((DoubleColumnVector)vector).values();
+            for(int r=0;r<size;r++){
+                int g=group(groupIds,r);
+                if(vector.isNull(r))
+                    sawNull[g]=true;
+                else{
+                    doubleSums[g]+=values[r];
+                    counts[g]++;
+                }
+            }
+        }else{
+            DecimalColumnVector decimals=(DecimalColumnVector)vector;
+            if(!decimals.isCompact())
+                throw new ArithmeticException("Decimal values are not all at the same scale");
+            for(int r=0;r<size;r++){
+                int g=group(groupIds,r);
+                if(vector.isNull(r))
+                    sawNull[g]=true;
+                else{
+                    longSums[g]=Math.addExact(longSums[g],decimals.getUnscaled(r));
+                    counts[g]++;
+                }
+            }
+        }
+    }
+
+    private boolean isBetter(ColumnVector vector,int row,int current) throws StandardException{
+        int compare;
+        if(vector instanceof LongColumnVector){
+            LongColumnVector longs=(LongColumnVector)vector;
+            compare=Long.compare(longs.getLong(row),longs.getLong(current));
+        }else if(vector instanceof DoubleColumnVector){
+            DoubleColumnVector doubles=(DoubleColumnVector)vector;
+            compare=Double.compare(doubles.getDouble(row),doubles.getDouble(current));
+        }else if(vector instanceof DecimalColumnVector){
+            DecimalColumnVector decimals=(DecimalColumnVector)vector;
+            if(decimals.isCompact(row) && decimals.isCompact(current))
+                compare=Long.compare(decimals.getUnscaled(row),decimals.getUnscaled(current));
+            else
+                compare=decimals.getBigDecimal(row).compareTo(decimals.getBigDecimal(current));
+        }else{
+            ObjectColumnVector objects=(ObjectColumnVector)vector;
+            compare=objects.getObject(row).compare(objects.getObject(current));
+        }
+        return kind==Kind.MAX?compare>0:compare<0;
+    }
+
+    private void apply(ColumnVector vector,int group,ExecRow groupRow) throws StandardException{
+        ExecAggregator ua=(ExecAggregator)groupRow.getColumn(aggregator.getAggregatorColumnId()).getObject();
+        if(sawNull[group])
+            ua.accumulate(vector.newNull(),aggregator); //records that nulls were eliminated
+        switch(kind){
+            case COUNT_STAR:
+            case COUNT:
+                if(counts[group]>0)
+                    ((CountAggregator)ua).add(new SQLLongint(counts[group]));
+                break;
+            case SUM:
+                if(counts[group]==0) break;
+                if(vector instanceof LongColumnVector)
+                    ua.accumulate(new SQLLongint(longSums[group]),aggregator);
+                else if(vector instanceof DoubleColumnVector)
+                    ua.accumulate(new SQLDouble(doubleSums[group]),aggregator);
+                else
+                    ua.accumulate(new SQLDecimal(BigDecimal.valueOf(longSums[group],((DecimalColumnVector)vector).scale())),aggregator);
+                break;
+            case MIN:
+            case MAX:
+                if(best[group]>=0){
+                    DataValueDescriptor value=vector.newNull();
+                    vector.get(best[group],value);
+                    ua.accumulate(value,aggregator);
+                }
+                break;
+        }
+    }
+
+    /*
+     * A partial sum of longs which doesn't fit in a long is fed to the aggregator in long-sized pieces, so that
+     * it can deal with the overflow exactly as it would have row by row
+     */
+    private void accumulateLongSum(ExecAggregator ua,BigDecimal sum) throws StandardException{
+        BigDecimal max=BigDecimal.valueOf(Long.MAX_VALUE);
+        BigDecimal min=BigDecimal.valueOf(Long.MIN_VALUE);
+        while(sum.compareTo(max)>0){
+            ua.accumulate(new SQLLongint(Long.MAX_VALUE),aggregator);
+            sum=sum.subtract(max);
+        }
+        while(sum.compareTo(min)<0){
+            ua.accumulate(new SQLLongint(Long.MIN_VALUE),aggregator);
+            sum=sum.subtract(min);
+        }
+        ua.accumulate(new SQLLongint(sum.longValue()),aggregator);
+    }
+
+    private void accumulateRows(ColumnVector vector,int[] groupIds,ExecRow[] groupRows,int size) throws StandardException{
+        DataValueDescriptor value=vector.newNull();
+        int aggColumn=aggregator.getAggregatorColumnId();
+        for(int r=0;r<size;r++){
+            vector.get(r,value);
+            ExecAggregator ua=(ExecAggregator)groupRows[group(groupIds,r)].getColumn(aggColumn).getObject();
+            ua.accumulate(value,aggregator);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.storage.FieldVector;
+
+import java.util.Arrays;
+
+/**
+ * A single column of a {@link ColumnarBatch}.
+ *
+ * Values are held in a type-specific (and, where possible, primitive) array indexed by row
+ * position within the batch, and nulls are tracked separately in a bitmap, so that
+ * batch-level operators can work directly on the arrays without touching a
+ * {@link DataValueDescriptor} per row.
+ *
+ * Vectors of integral, DOUBLE and DECIMAL columns can also be filled directly from the packed
+ * row format (see {@link #isDirectlyDecodable(DataValueDescriptor)}), without materializing
+ * a row at all.
+ */
+public abstract class ColumnVector implements FieldVector{
+    private final DataValueDescriptor template;
+    private final long[] nulls;
+    private boolean hasNulls;
+
+    protected ColumnVector(DataValueDescriptor template,int capacity){
+        this.template=template;
+        this.nulls=new long[(capacity+63)>>>6];
+    }
+
+    /**
+     * Create a vector suitable for holding values of the same type as {@code template}.
+     *
+     * @param template a value of the column's type
+     * @param capacity the maximum number of rows in the vector
+     * @return a new vector
+     */
+    public static ColumnVector newVector(DataValueDescriptor template,int capacity){
+        switch(template.getTypeFormatId()){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return new LongColumnVector(template,capacity);
+            case StoredFormatIds.SQL_DOUBLE_ID:
+                return new DoubleColumnVector(template,capacity);
+            case StoredFormatIds.SQL_DECIMAL_ID:
+                return new DecimalColumnVector(template,capacity);
+            default:
+                return new ObjectColumnVector(template,capacity);
+        }
+    }
+
+    /**
+     * @param template a value of the column's type
+     * @return true if a vector for {@code template}'s type can be filled directly from the packed
+     * row format, through the {@link FieldVector} methods.
+     */
+    public static boolean isDirectlyDecodable(DataValueDescriptor template){
+        switch(template.getTypeFormatId()){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+            case StoredFormatIds.SQL_DOUBLE_ID:
+            case StoredFormatIds.SQL_DECIMAL_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public boolean isNull(int row){
+        return (nulls[row>>>6]&(1L<<row))!=0;
+    }
+
+    /**
+     * @return true if at least one row in the vector is null
+     */
+    public boolean hasNulls(){
+        return hasNulls;
+    }
+
+    @Override
+    public void setNull(int row){
+        nulls[row>>>6]|=(1L<<row);
+        hasNulls=true;
+    }
+
+    @Override
+    public void setLong(int row,long value){
+        throw new UnsupportedOperationException("Cannot decode a scalar into a "+getClass().getSimpleName());
+    }
+
+    @Override
+    public void setDouble(int row,double value){
+        throw new UnsupportedOperationException("Cannot decode a floating point value into a "+getClass().getSimpleName());
+    }
+
+    @Override
+    public void setBytes(int row,byte[] data,int offset,int length){
+        throw new UnsupportedOperationException("Cannot decode an untyped value into a "+getClass().getSimpleName());
+    }
+
+    public void set(int row,DataValueDescriptor value) throws StandardException{
+        if(value==null || value.isNull())
+            setNull(row);
+        else{
+            clearNull(row);
+            setValue(row,value);
+        }
+    }
+
+    /**
+     * Copy the value at {@code row} into {@code into}, which must be of the same type as this vector.
+     */
+    public void get(int row,DataValueDescriptor into) throws StandardException{
+        if(isNull(row))
+            into.setToNull();
+        else
+            getValue(row,into);
+    }
+
+    /**
+     * @return a new null value of this vector's type
+     */
+    public DataValueDescriptor newNull(){
+        return template.getNewNull();
+    }
+
+    public void reset(){
+        if(hasNulls){
+            Arrays.fill(nulls,0L);
+            hasNulls=false;
+        }
+    }
+
+    protected void clearNull(int row){
+        nulls[row>>>6]&=~(1L<<row);
+    }
+
+    protected abstract void setValue(int row,DataValueDescriptor value) throws StandardException;
+
+    protected abstract void getValue(int row,DataValueDescriptor into) throws StandardException;
+}
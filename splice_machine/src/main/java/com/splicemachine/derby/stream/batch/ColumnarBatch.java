@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+
+/**
+ * A batch of rows held column-by-column.
+ *
+ * Only the columns requested by the consumer are held in the batch; each is stored in a
+ * {@link ColumnVector} of up to {@link #capacity()} rows. Rows can be rebuilt from the batch
+ * with {@link #materialize(int)}, in which case any column not held by the batch is null.
+ */
+public class ColumnarBatch{
+    private final ExecRow template;
+    private final int[] columns;
+    private final ColumnVector[] vectors;
+    private final int capacity;
+    private int size;
+
+    /**
+     * @param template a row of the same shape as the rows to be added
+     * @param columns the (1-based) positions of the columns to hold
+     * @param capacity the maximum number of rows in the batch
+     */
+    public ColumnarBatch(ExecRow template,int[] columns,int capacity) throws StandardException{
+        this.template=template;
+        this.columns=columns;
+        this.capacity=capacity;
+        this.vectors=new ColumnVector[columns.length];
+        for(int i=0;i<columns.length;i++){
+            vectors[i]=ColumnVector.newVector(template.getColumn(columns[i]),capacity);
+        }
+    }
+
+    private ColumnarBatch(ExecRow template,int[] columns,ColumnVector[] vectors,int capacity,int size){
+        this.template=template;
+        this.columns=columns;
+        this.vectors=vectors;
+        this.capacity=capacity;
+        this.size=size;
+    }
+
+    /**
+     * Append the held columns of {@code row} to this batch.
+     *
+     * @return true if the batch is full after adding the row
+     */
+    public boolean add(ExecRow row) throws StandardException{
+        assert size<capacity: "Cannot add to a full batch";
+        for(int i=0;i<columns.length;i++){
+            vectors[i].set(size,row.getColumn(columns[i]));
+        }
+        size++;
+        return size>=capacity;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Set the number of rows in the batch, for callers which fill the vectors directly rather
+     * than through {@link #add(ExecRow)}.
+     */
+    public void setSize(int size){
+        assert size<=capacity: "Size "+size+" exceeds the batch capacity";
+        this.size=size;
+    }
+
+    public int capacity(){
+        return capacity;
+    }
+
+    public boolean isEmpty(){
+        return size==0;
+    }
+
+    public boolean isFull(){
+        return size>=capacity;
+    }
+
+    public int[] getColumns(){
+        return columns;
+    }
+
+    public ExecRow getTemplate(){
+        return template;
+    }
+
+    /**
+     * @param position the (1-based) position of the column in the row
+     * @return the vector holding that column, or {@code null} if the column is not held by this batch
+     */
+    public ColumnVector getColumn(int position){
+        for(int i=0;i<columns.length;i++){
+            if(columns[i]==position)
+                return vectors[i];
+        }
+        return null;
+    }
+
+    /**
+     * @return a new row holding the values of row {@code row} in this batch.
+     */
+    public ExecRow materialize(int row) throws StandardException{
+        assert row<size: "Row "+row+" is not in the batch";
+        ExecRow r=template.getNewNullRow();
+        for(int i=0;i<columns.length;i++){
+            vectors[i].get(row,r.getColumn(columns[i]));
+        }
+        return r;
+    }
+
+    /**
+     * Re-arrange the columns of this batch without copying them, as a {@code ProjectRestrictOperation}
+     * with a pure column mapping would do to each row.
+     *
+     * @param projectMapping for each (1-based) output column, the source position at {@code index-1}
+     * @param newTemplate a row of the projected shape
+     * @param outputColumns the (1-based) output positions to keep. Each must map to a column held by this batch
+     * @return a batch sharing this batch's vectors
+     */
+    public ColumnarBatch project(int[] projectMapping,ExecRow newTemplate,int[] outputColumns){
+        ColumnVector[] projected=new ColumnVector[outputColumns.length];
+        for(int i=0;i<outputColumns.length;i++){
+            projected[i]=getColumn(projectMapping[outputColumns[i]-1]);
+            assert projected[i]!=null: "Column "+outputColumns[i]+" is not held by the batch";
+        }
+        return new ColumnarBatch(newTemplate,outputColumns,projected,capacity,size);
+    }
+
+    /**
+     * Empty the batch so that it may be filled again.
+     */
+    public void reset(){
+        for(ColumnVector vector:vectors){
+            vector.reset();
+        }
+        size=0;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.encoding.Encoding;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A vector of DECIMAL values.
+ *
+ * Values are stored as unscaled longs against a single scale for the whole vector (taken from the
+ * first value written), which covers the common case of a column declared with a fixed precision
+ * and scale. Any value which has a different scale, or whose unscaled value does not fit in a long,
+ * is kept as a {@link BigDecimal} instead; see {@link #isCompact(int)}.
+ */
+public class DecimalColumnVector extends ColumnVector{
+    private final long[] unscaled;
+    private int scale=-1;
+    private BigDecimal[] overflow;
+    private boolean hasOverflow;
+
+    public DecimalColumnVector(DataValueDescriptor template,int capacity){
+        super(template,capacity);
+        this.unscaled=new long[capacity];
+    }
+
+    /**
+     * @return the scale shared by all compact values in this vector, or -1 if no value has been written
+     */
+    public int scale(){
+        return scale;
+    }
+
+    /**
+     * @return true if the value at {@code row} is held as an unscaled long at {@link #scale()}
+     */
+    public boolean isCompact(int row){
+        return !hasOverflow || overflow[row]==null;
+    }
+
+    /**
+     * @return true if every value in this vector is compact
+     */
+    public boolean isCompact(){
+        return !hasOverflow;
+    }
+
+    public long getUnscaled(int row){
+        return unscaled[row];
+    }
+
+    public BigDecimal getBigDecimal(int row){
+        if(isCompact(row))
+            return BigDecimal.valueOf(unscaled[row],scale);
+        return overflow[row];
+    }
+
+    public void setBigDecimal(int row,BigDecimal value){
+        clearNull(row);
+        if(scale<0)
+            scale=Math.max(value.scale(),0);
+        BigInteger u=value.unscaledValue();
+        if(value.scale()==scale && u.bitLength()<64){
+            unscaled[row]=u.longValue();
+            if(hasOverflow)
+                overflow[row]=null;
+        }else{
+            if(overflow==null)
+                overflow=new BigDecimal[unscaled.length];
+            overflow[row]=value;
+            hasOverflow=true;
+        }
+    }
+
+    @Override
+    public void setBytes(int row,byte[] data,int offset,int length){
+        setBigDecimal(row,Encoding.decodeBigDecimal(data,offset,length,false));
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        if(hasOverflow){
+            Arrays.fill(overflow,null);
+            hasOverflow=false;
+        }
+    }
+
+    @Override
+    protected void setValue(int row,DataValueDescriptor value) throws StandardException{
+        setBigDecimal(row,(BigDecimal)value.getObject());
+    }
+
+    @Override
+    protected void getValue(int row,DataValueDescriptor into) throws StandardException{
+        into.setBigDecimal(getBigDecimal(row));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+/**
+ * A vector of cloned values, for any type which does not have a primitive representation.
+ */
+public class ObjectColumnVector extends ColumnVector{
+    private final DataValueDescriptor[] values;
+
+    public ObjectColumnVector(DataValueDescriptor template,int capacity){
+        super(template,capacity);
+        this.values=new DataValueDescriptor[capacity];
+    }
+
+    public DataValueDescriptor getObject(int row){
+        return values[row];
+    }
+
+    @Override
+    protected void setValue(int row,DataValueDescriptor value) throws StandardException{
+        values[row]=value.cloneValue(false);
+    }
+
+    @Override
+    protected void getValue(int row,DataValueDescriptor into) throws StandardException{
+        into.setValue(values[row]);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+/**
+ * The partial result of a set of aggregates over one group of one region, as computed where the
+ * rows are stored (see {@code com.splicemachine.storage.EntryAggregator}).
+ *
+ * Each aggregate carries the number of rows it counted, the number of null inputs it eliminated, and
+ * its partial result: the sum for a SUM, or the extreme value for a MIN or MAX. The result is {@code null}
+ * for COUNT and COUNT(*), and a null value if no rows contributed to it.
+ */
+public class PartialAggregate{
+    private final DataValueDescriptor[] groupValues;
+    private final long[] counts;
+    private final long[] nullCounts;
+    private final DataValueDescriptor[] results;
+
+    public PartialAggregate(DataValueDescriptor[] groupValues,long[] counts,long[] nullCounts,DataValueDescriptor[] results){
+        this.groupValues=groupValues;
+        this.counts=counts;
+        this.nullCounts=nullCounts;
+        this.results=results;
+    }
+
+    public int numGroupValues(){
+        return groupValues.length;
+    }
+
+    public DataValueDescriptor getGroupValue(int position){
+        return groupValues[position];
+    }
+
+    public long getCount(int aggregate){
+        return counts[aggregate];
+    }
+
+    public long getNullCount(int aggregate){
+        return nullCounts[aggregate];
+    }
+
+    public DataValueDescriptor getResult(int aggregate){
+        return results[aggregate];
+    }
+}
@@ -110,7 +110,7 @@ public class ControlDataSet<V> implements DataSet<V> {
                     throw new RuntimeException(e);
                 }
             }
-        }));
+        }),function.operationContext);
     }
 
     @Override
@@ -145,7 +145,7 @@ public class ControlDataSet<V> implements DataSet<V> {
 
     @Override
     public <Op extends SpliceOperation, K> PairDataSet<K, V> keyBy(final SpliceFunction<Op, V, K> function) {
-        return new ControlPairDataSet<>(entryToTuple(Multimaps.index(iterator,function).entries()));
+        return new ControlPairDataSet<>(entryToTuple(Multimaps.index(iterator,function).entries()),function.operationContext);
     }
 
     @Override
@@ -40,12 +40,16 @@ import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
 import com.splicemachine.derby.stream.function.Partitioner;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.iapi.PairDataSet;
 import com.splicemachine.derby.stream.iapi.ScanSetBuilder;
+import com.splicemachine.derby.stream.iterator.PartialAggregateIterator;
+import com.splicemachine.derby.stream.iterator.TableScannerBatchIterator;
 import com.splicemachine.derby.stream.iterator.TableScannerIterator;
 import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.si.api.data.TxnOperationFactory;
@@ -55,6 +59,7 @@ import com.splicemachine.si.impl.TxnRegion;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
 import com.splicemachine.si.impl.rollforward.NoopRollForward;
+import com.splicemachine.storage.EntryAggregator;
 import com.splicemachine.storage.Partition;
 
 /**
@@ -127,6 +132,49 @@ public class ControlDataSetProcessor implements DataSetProcessor{
                     throw Exceptions.parseException(e);
                 }
             }
+
+            @Override
+            public DataSet<ColumnarBatch> buildBatchDataSet(int[] columns,int batchSize) throws StandardException{
+                Partition p;
+                try{
+                    p =SIDriver.driver().getTableFactory().getTable(tableName);
+                    TxnRegion localRegion=new TxnRegion(p,NoopRollForward.INSTANCE,NoOpReadResolver.INSTANCE,
+                            txnSupplier,transactory,txnOperationFactory);
+
+                    this.region(localRegion).scanner(p.openScanner(getScan(),metricFactory)); //set the scanner
+                    TableScannerBatchIterator batchIterator=new TableScannerBatchIterator(this,spliceOperation,columns,batchSize);
+                    if(spliceOperation!=null){
+                        spliceOperation.registerCloseable(batchIterator);
+                        spliceOperation.registerCloseable(p);
+                    }
+                    return new ControlDataSet<>(batchIterator);
+                }catch(IOException e){
+                    throw Exceptions.parseException(e);
+                }
+            }
+
+            @Override
+            public DataSet<PartialAggregate> buildPartialAggregateDataSet(int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException{
+                EntryAggregator aggregator=PartialAggregateIterator.newAggregator(getRowDecodingMap(),groupColumns,functions,inputColumns);
+                if(aggregator==null)
+                    return null;
+                Partition p;
+                try{
+                    p =SIDriver.driver().getTableFactory().getTable(tableName);
+                    PartialAggregateIterator partials=new PartialAggregateIterator(this,aggregator,groupColumns,inputColumns);
+                    if(!partials.open(p,metricFactory)){
+                        p.close();
+                        return null;
+                    }
+                    if(spliceOperation!=null){
+                        spliceOperation.registerCloseable(partials);
+                        spliceOperation.registerCloseable(p);
+                    }
+                    return new ControlDataSet<>(partials);
+                }catch(IOException e){
+                    throw Exceptions.parseException(e);
+                }
+            }
         };
     }
 
@@ -240,6 +240,21 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         rowsJoinedRight++;
     }
 
+    @Override
+    public void recordSkewedJoinKeys(long keys) {
+
+    }
+
+    @Override
+    public void recordReplicatedJoinRows(long rows) {
+
+    }
+
+    @Override
+    public void recordBaseRowPrefetch(long rows) {
+
+    }
+
     @Override
     public void recordProduced() {
         rowsProduced++;
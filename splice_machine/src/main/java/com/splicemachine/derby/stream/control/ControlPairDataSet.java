@@ -39,19 +39,21 @@ import com.splicemachine.derby.stream.output.update.UpdatePipelineWriter;
 import com.splicemachine.derby.stream.output.update.UpdateTableWriterBuilder;
 import com.splicemachine.kvpair.KVPair;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import org.spark_project.guava.base.Predicate;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.stream.Stream;
-import static com.splicemachine.derby.stream.control.ControlUtils.entryToTuple;
-import static com.splicemachine.derby.stream.control.ControlUtils.multimapFromIterator;
-import static org.spark_project.guava.collect.Maps.*;
+import static com.splicemachine.derby.stream.control.ControlUtils.hashTableFromIterator;
 
 /**
  *
+ * Operations which need to materialize one side by key (grouping, hash joins, subtraction and cogroup)
+ * do so in a {@link SpillableHashTable}. When spilling is enabled, these tables spill to local disk rather
+ * than exhaust the heap when the data turns out to be larger than expected; only tables which belong to a known
+ * operation are spilled, so that their spill files are removed when that operation is closed.
  *
+ * @see SpillableHashTable
  * @see org.spark_project.guava.collect.Multimap
  * @see org.spark_project.guava.collect.Multimaps
  * @see org.spark_project.guava.collect.Iterables
@@ -59,12 +61,32 @@ import static org.spark_project.guava.collect.Maps.*;
  */
 public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     public Iterator<Tuple2<K,V>> source;
+    private final OperationContext context;
     public ControlPairDataSet(Iterator<Tuple2<K,V>> source) {
+        this(source,null);
+    }
+
+    /**
+     * @param context the context of the operation which produced this data set, if known. Hash tables
+     *                materialized from this data set are closed along with that operation.
+     */
+    public ControlPairDataSet(Iterator<Tuple2<K,V>> source, OperationContext context) {
         this.source = source;
+        this.context = context;
     }
 
 
 
+    /*
+     * The context to register tables built from this data set and {@code other} with: ours if we know
+     * it, otherwise theirs
+     */
+    private OperationContext contextWith(PairDataSet<K,?> other) {
+        if (context != null || !(other instanceof ControlPairDataSet))
+            return context;
+        return ((ControlPairDataSet<K,?>) other).context;
+    }
+
     @Override
     public DataSet<V> values() {
         return new ControlDataSet<>(Iterators.transform(source,new Function<Tuple2<K,V>, V>() {
@@ -100,22 +122,24 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public <Op extends SpliceOperation> PairDataSet<K, V> reduceByKey(final SpliceFunction2<Op,V, V, V> function2) {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(entryToTuple(Multimaps.<K,V>forMap(transformValues(newMap.asMap(),
-                new Function<Collection<V>, V>() {
+        OperationContext ctx = context!=null? context : function2.operationContext;
+        SpillableHashTable<K,V> table = hashTableFromIterator(source,ctx);
+        return new ControlPairDataSet<>(Iterators.transform(table.groups(),
+                new Function<Map.Entry<K, Collection<V>>, Tuple2<K, V>>() {
             @Override
-            public V apply(@Nullable Collection<V> vs) {
+            public Tuple2<K, V> apply(@Nullable Map.Entry<K, Collection<V>> e) {
+                assert e!=null: "E cannot be null";
                 try {
                     V returnValue = null;
-                    for (V v : vs) {
+                    for (V v : e.getValue()) {
                         returnValue = function2.call(returnValue, v);
                     }
-                    return returnValue;
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                    return new Tuple2<>(e.getKey(), returnValue);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
                 }
             }
-        })).entries()));
+        }),ctx);
     }
 
     @Override
@@ -141,7 +165,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
             public int compare(Tuple2<K, V> o1, Tuple2<K, V> o2) {
                 return comparator.compare(o1._1(), o2._1());
             }
-        }).immutableSortedCopy(() -> source).iterator());
+        }).immutableSortedCopy(() -> source).iterator(),context);
     }
 
     @Override
@@ -158,15 +182,15 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, Iterable<V>> groupByKey() {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(FluentIterable.from(newMap.asMap().entrySet()).transform(new Function<Map.Entry<K, Collection<V>>, Tuple2<K, Iterable<V>>>() {
+        SpillableHashTable<K,V> table = hashTableFromIterator(source,context);
+        return new ControlPairDataSet<>(Iterators.transform(table.groups(), new Function<Map.Entry<K, Collection<V>>, Tuple2<K, Iterable<V>>>() {
             @Nullable
             @Override
             public Tuple2<K, Iterable<V>> apply(@Nullable Map.Entry<K, Collection<V>> e) {
                 assert e!=null: "E cannot be null";
                 return new Tuple2<K, Iterable<V>>(e.getKey(), e.getValue());
             }
-        }).iterator());
+        }),context);
     }
 
     @Override
@@ -177,68 +201,62 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     @Override
     public <W> PairDataSet< K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(final PairDataSet< K, W> rightDataSet) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterable<Tuple2<K, Tuple2<V, Optional<W>>>>>() {
-            @Nullable
+        final OperationContext ctx = contextWith(rightDataSet);
+        final SpillableHashTable<K,W> rightSide = hashTableFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source,ctx);
+        return new ControlPairDataSet<>(rightSide.probe(source,new SpillableHashTable.ProbeFunction<K, V, W, Tuple2<K, Tuple2<V, Optional<W>>>>() {
             @Override
-            public Iterable<Tuple2<K, Tuple2<V, Optional<W>>>> apply(@Nullable Tuple2<K, V> t) {
-                assert t!=null: "T cannot be null";
+            public Iterator<Tuple2<K, Tuple2<V, Optional<W>>>> apply(K key, V value, Collection<W> matches) {
                 List<Tuple2<K,Tuple2<V,Optional<W>>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                if (rightSide.containsKey(key)) {
-                    for (W rightValue : rightSide.get(key)) {
+                if (!matches.isEmpty()) {
+                    for (W rightValue : matches) {
                         result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.of(rightValue))));
                     }
                 } else
                     result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.<W>empty())));
-                return result;
+                return result.iterator();
             }
-        })));
+        }),ctx);
 
     }
 
     @Override
     public <W> PairDataSet< K, Tuple2<Optional<V>, W>> hashRightOuterJoin(PairDataSet< K, W> rightDataSet) {
         // Materializes the left side
-        final Multimap<K, V> leftSide = multimapFromIterator(source);
-        return new ControlPairDataSet(Iterators.transform( ( (ControlPairDataSet<K,W>) rightDataSet).source, new Function<Tuple2<K, W>, Iterator<Tuple2<K, Tuple2<Optional<V>, W>>>>() {
-            @Nullable
+        final OperationContext ctx = contextWith(rightDataSet);
+        final SpillableHashTable<K, V> leftSide = hashTableFromIterator(source,ctx);
+        return new ControlPairDataSet<>(leftSide.probe(((ControlPairDataSet<K,W>) rightDataSet).source, new SpillableHashTable.ProbeFunction<K, W, V, Tuple2<K, Tuple2<Optional<V>, W>>>() {
             @Override
-            public Iterator<Tuple2<K, Tuple2<Optional<V>, W>>> apply(@Nullable Tuple2<K, W> t) {
-                assert t!=null: "t cannot be null!";
+            public Iterator<Tuple2<K, Tuple2<Optional<V>, W>>> apply(K key, W value, Collection<V> matches) {
                 List<Tuple2<K,Tuple2<Optional<V>,W>>> result = new ArrayList<>();
-                K key = t._1();
-                W value = t._2();
-                if (leftSide.containsKey(key)) {
-                    for (V leftValue: leftSide.get(key)) {
+                if (!matches.isEmpty()) {
+                    for (V leftValue: matches) {
                         result.add(new Tuple2<>(key,new Tuple2<>(Optional.of(leftValue),value)));
                     }
                 } else
                     result.add(new Tuple2<>(key,new Tuple2<>(Optional.<V>absent(),value)));
                 return result.iterator();
             }
-        }));
+        }),ctx);
     }
 
     @Override
     public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet) {
+        return hashJoinInternal(rightDataSet,contextWith(rightDataSet));
+    }
+
+    private <W> PairDataSet< K, Tuple2<V, W>> hashJoinInternal(PairDataSet< K, W> rightDataSet, OperationContext context) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterator<Tuple2<K, Tuple2<V, W>>>>() {
-            @Nullable
+        final SpillableHashTable<K,W> rightSide = hashTableFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source,context);
+        return new ControlPairDataSet<>(rightSide.probe(source,new SpillableHashTable.ProbeFunction<K, V, W, Tuple2<K, Tuple2<V, W>>>() {
             @Override
-            public Iterator<Tuple2<K, Tuple2<V, W>>> apply(@Nullable Tuple2<K, V> t) {
-                assert t!=null: "Tuple cannot be null";
+            public Iterator<Tuple2<K, Tuple2<V, W>>> apply(K key, V value, Collection<W> matches) {
                 List<Tuple2<K,Tuple2<V,W>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                for (W rightValue : rightSide.get(key)) {
+                for (W rightValue : matches) {
                     result.add(new Tuple2<>(key,new Tuple2<>(value,rightValue)));
                 }
                 return result.iterator();
             }
-        })));
+        }),context);
     }
 
     @Override
@@ -246,18 +264,27 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
         // Ignore name on control side
         return hashJoin(rightDataSet);
     }
+
+    @Override
+    public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet, String name, OperationContext context) {
+        // The control side has a single partition, so there is no skew to handle
+        OperationContext ctx = contextWith(rightDataSet);
+        return hashJoinInternal(rightDataSet,ctx!=null? ctx : context);
+    }
     
     @Override
     public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source);
-        return new ControlPairDataSet<>(Iterators.filter(source, new Predicate<Tuple2<K, V>>() {
+        final OperationContext ctx = contextWith(rightDataSet);
+        final SpillableHashTable<K,W> rightSide = hashTableFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source,ctx);
+        return new ControlPairDataSet<>(rightSide.probe(source, new SpillableHashTable.ProbeFunction<K, V, W, Tuple2<K, V>>() {
             @Override
-            public boolean apply(@Nullable Tuple2<K, V> t) {
-                assert t!=null: "T cannot be null";
-                return rightSide.get(t._1()).isEmpty();
+            public Iterator<Tuple2<K, V>> apply(K key, V value, Collection<W> matches) {
+                if (matches.isEmpty())
+                    return Iterators.singletonIterator(new Tuple2<>(key, value));
+                return Iterators.emptyIterator();
             }
-        }));
+        }),ctx);
     }
 
     @Override
@@ -311,16 +338,10 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     
     @Override
     public <W> PairDataSet<K, Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet) {
-        Multimap<K, V> left = multimapFromIterator(source);
-        Multimap<K, W> right = multimapFromIterator( ((ControlPairDataSet<K, W>) rightDataSet).source);
-
-        List<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>> result = new ArrayList<>();
-        for (K key: Sets.union(left.keySet(),right.keySet())){
-            Collection<V> vs=left.get(key);
-            Collection<W> ws=right.get(key);
-            result.add(new Tuple2<>(key,new Tuple2<Iterable<V>, Iterable<W>>(vs,ws)));
-        }
-        return new ControlPairDataSet<>(result.iterator());
+        OperationContext ctx = contextWith(rightDataSet);
+        SpillableHashTable<K, V> left = hashTableFromIterator(source,ctx);
+        SpillableHashTable<K, W> right = hashTableFromIterator( ((ControlPairDataSet<K, W>) rightDataSet).source,ctx);
+        return new ControlPairDataSet<>(SpillableHashTable.cogroup(left,right),ctx);
     }
 
     @Override
@@ -331,7 +352,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, V> union(PairDataSet<K, V> dataSet) {
-        return new ControlPairDataSet(Iterators.concat(source,((ControlPairDataSet<K,V>)dataSet).source));
+        return new ControlPairDataSet<>(Iterators.concat(source,((ControlPairDataSet<K,V>)dataSet).source),contextWith(dataSet));
     }
 
     @Override
@@ -15,10 +15,16 @@
 
 package com.splicemachine.derby.stream.control;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.OperationContext;
 import org.spark_project.guava.base.Function;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -40,12 +46,39 @@ public class ControlUtils {
         });
     }
 
-    public static <K, V> Multimap<K,V> multimapFromIterator(Iterator<Tuple2<K, V>> iterator) {
-        Multimap<K,V> newMap = ArrayListMultimap.create();
-        while (iterator.hasNext()) {
-            Tuple2<K, V> t = iterator.next();
-            newMap.put(t._1(), t._2());
+    /**
+     * Materialize an iterator into a {@link SpillableHashTable}, and register the table with the operation
+     * owning {@code context}, so that its spill files are removed when that operation is closed even if the
+     * table is abandoned before it has been consumed. A table without an owning operation is never spilled,
+     * as nothing would remove its spill files if it were abandoned.
+     */
+    public static <K, V> SpillableHashTable<K,V> hashTableFromIterator(Iterator<Tuple2<K, V>> iterator, OperationContext context) {
+        SpliceOperation op = context==null? null : context.getOperation();
+        SpillableHashTable<K,V> table = newHashTable(op!=null);
+        if (op != null) {
+            try {
+                op.registerCloseable(table);
+            } catch (StandardException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        table.putAll(iterator);
+        return table;
+    }
+
+    private static <K, V> SpillableHashTable<K,V> newHashTable(boolean canSpill) {
+        EngineDriver driver = EngineDriver.driver();
+        if (driver == null) {
+            // no engine running (e.g. in unit tests), so there is no configuration to follow
+            return new SpillableHashTable<>(Long.MAX_VALUE, 1, null);
+        }
+        SConfiguration config = driver.getConfiguration();
+        if (!canSpill || !config.getControlSpill()) {
+            // keep the same partitioning, so that the table can still be cogrouped with a spillable one
+            return new SpillableHashTable<>(Long.MAX_VALUE, config.getControlHashPartitions(), null);
         }
-        return newMap;
+        return new SpillableHashTable<>(config.getControlHashMemoryBudget(),
+                config.getControlHashPartitions(),
+                new File(config.getControlSpillDirectory()));
     }
 }
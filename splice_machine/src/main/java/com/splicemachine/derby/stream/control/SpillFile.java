@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import org.spark_project.guava.collect.AbstractIterator;
+import scala.Tuple2;
+
+import java.io.*;
+import java.util.Iterator;
+
+/**
+ * An append-only local file of key/value pairs, written once and read back once.
+ *
+ * Entries are written using standard java serialization, which {@code ExecRow} and {@code LocatedRow}
+ * both support through {@link Externalizable}. The file is removed as soon as it has been fully read
+ * back, or when it is closed. Owners which may be abandoned before they are consumed must therefore make
+ * sure that they are closed (see {@link SpillableHashTable#close()}).
+ */
+class SpillFile<K,V> implements Closeable{
+    /*
+     * ObjectOutputStream keeps a reference to every object it has written (so that it can
+     * write back-references instead), so we need to reset it periodically or we would keep
+     * the entire spilled partition on the heap anyway
+     */
+    private static final int RESET_INTERVAL = 1024;
+
+    private final File file;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private long count;
+
+    SpillFile(File directory) throws IOException{
+        this.file = File.createTempFile("splice-spill-",".tmp",directory);
+        this.out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    void write(K key,V value) throws IOException{
+        assert out!=null: "Cannot write to a spill file after it has been read";
+        out.writeObject(key);
+        out.writeObject(value);
+        count++;
+        if(count%RESET_INTERVAL==0)
+            out.reset();
+    }
+
+    long size(){
+        return count;
+    }
+
+    /**
+     * @return an iterator over every entry written to this file, in write order. The file is deleted once
+     * the iterator has been exhausted.
+     * @throws IOException if the file cannot be opened for reading
+     */
+    Iterator<Tuple2<K,V>> read() throws IOException{
+        out.close();
+        out = null;
+        in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        return new AbstractIterator<Tuple2<K, V>>(){
+            private long read = 0;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected Tuple2<K, V> computeNext(){
+                if(read>=count){
+                    try{
+                        close();
+                    }catch(IOException e){
+                        throw new RuntimeException(e);
+                    }
+                    return endOfData();
+                }
+                try{
+                    K key = (K)in.readObject();
+                    V value = (V)in.readObject();
+                    read++;
+                    return new Tuple2<>(key,value);
+                }catch(IOException | ClassNotFoundException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException{
+        try{
+            if(out!=null)
+                out.close();
+            if(in!=null)
+                in.close();
+        }finally{
+            out = null;
+            in = null;
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
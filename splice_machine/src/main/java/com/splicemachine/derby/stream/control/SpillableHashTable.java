@@ -0,0 +1,374 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.collect.*;
+import scala.Tuple2;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A memory-bounded multimap used by the control side for grouping and hash-based joins.
+ *
+ * Entries are hash-partitioned into a fixed number of partitions. As long as the estimated size of all
+ * in-memory partitions stays within the memory budget, this behaves like an ordinary on-heap multimap. Once
+ * the budget is exceeded, the largest in-memory partition is written to a local {@link SpillFile}, and every
+ * subsequent entry for that partition is appended directly to that file (i.e. a hybrid hash table).
+ *
+ * Spilled partitions are read back one at a time when the table is consumed, so that at most one spilled
+ * partition is on the heap at any point in time. When probing (see {@link #probe(Iterator, ProbeFunction)}),
+ * probe rows which belong to a spilled partition are themselves spilled, and joined once the probe input
+ * has been exhausted (i.e. a grace hash join).
+ *
+ * Spilling requires that keys and values be {@link Serializable}; if they are not, the table will log a warning
+ * and remain entirely in memory.
+ */
+public class SpillableHashTable<K,V> implements Closeable{
+    private static final Logger LOG = Logger.getLogger(SpillableHashTable.class);
+    /*
+     * Rough estimate of the heap used per entry by the table itself (multimap entry, list slot, etc),
+     * and the size we assume for objects we don't know how to measure
+     */
+    private static final int ENTRY_OVERHEAD = 48;
+    private static final int UNKNOWN_OBJECT_SIZE = 64;
+
+    private final long memoryBudget;
+    private final File spillDirectory;
+    private final Partition<K,V>[] partitions;
+    private long inMemorySize;
+    private boolean spillable = true;
+    private int spilledPartitions;
+    private final List<SpillFile<?,?>> probeSpillFiles = new ArrayList<>();
+    private boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public SpillableHashTable(long memoryBudget,int numPartitions,File spillDirectory){
+        assert numPartitions>0: "Must have at least one partition";
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.partitions = new Partition[numPartitions];
+        for(int i=0;i<numPartitions;i++){
+            partitions[i] = new Partition<>();
+        }
+    }
+
+    public void put(K key,V value){
+        Partition<K,V> partition = partitions[partitionFor(key)];
+        if(partition.isSpilled()){
+            try{
+                partition.spillFile.write(key,value);
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+        partition.data.put(key,value);
+        long entrySize = ENTRY_OVERHEAD+estimateSize(key)+estimateSize(value);
+        partition.size+=entrySize;
+        inMemorySize+=entrySize;
+        if(spillable && inMemorySize>memoryBudget)
+            spillLargestPartition();
+    }
+
+    public void putAll(Iterator<Tuple2<K,V>> entries){
+        while(entries.hasNext()){
+            Tuple2<K,V> t = entries.next();
+            put(t._1(),t._2());
+        }
+    }
+
+    public int numPartitions(){
+        return partitions.length;
+    }
+
+    public int numSpilledPartitions(){
+        return spilledPartitions;
+    }
+
+    /**
+     * Fetch the contents of a single partition. If the partition was spilled, its contents are read back
+     * from disk (and the spill file is removed), so this should be called at most once for each spilled partition.
+     *
+     * @param partition the partition to fetch
+     * @return the contents of the partition
+     */
+    public Multimap<K,V> partition(int partition){
+        Partition<K,V> p = partitions[partition];
+        if(p.isSpilled())
+            unspill(p);
+        return p.data;
+    }
+
+    /**
+     * @return the contents of the table, grouped by key. Spilled partitions are loaded lazily as
+     * this iterator advances, and the table is closed once the iterator has been exhausted.
+     */
+    public Iterator<Map.Entry<K,Collection<V>>> groups(){
+        return Iterators.concat(new AbstractIterator<Iterator<Map.Entry<K, Collection<V>>>>(){
+            private int next = 0;
+
+            @Override
+            protected Iterator<Map.Entry<K, Collection<V>>> computeNext(){
+                if(next>=partitions.length){
+                    closeExhausted(SpillableHashTable.this);
+                    return endOfData();
+                }
+                Multimap<K,V> data = partition(next);
+                partitions[next] = null; //allow the partition to be collected once it has been returned
+                next++;
+                return data.asMap().entrySet().iterator();
+            }
+        });
+    }
+
+    /**
+     * Join a probe input against this table. Probe rows which hash to an in-memory partition are
+     * joined immediately (preserving the probe order for these rows); rows which hash to a spilled
+     * partition are spilled alongside it and joined, partition by partition, after the probe input
+     * has been exhausted.
+     *
+     * @param probeSide the input to probe with
+     * @param function the function to apply to each probe row and its (possibly empty) matches
+     * @return the joined output
+     */
+    public <L,R> Iterator<R> probe(final Iterator<Tuple2<K,L>> probeSide,final ProbeFunction<K,L,V,R> function){
+        return Iterators.concat(new AbstractIterator<Iterator<R>>(){
+            @SuppressWarnings("unchecked")
+            private final SpillFile<K,L>[] probeSpills = new SpillFile[partitions.length];
+            private int nextSpilledPartition = 0;
+
+            @Override
+            protected Iterator<R> computeNext(){
+                try{
+                    while(probeSide.hasNext()){
+                        Tuple2<K,L> t = probeSide.next();
+                        K key = t._1();
+                        int p = partitionFor(key);
+                        Partition<K,V> partition = partitions[p];
+                        if(partition.isSpilled()){
+                            if(t._2() instanceof Serializable){
+                                if(probeSpills[p]==null){
+                                    probeSpills[p] = new SpillFile<>(spillDirectory);
+                                    probeSpillFiles.add(probeSpills[p]);
+                                }
+                                probeSpills[p].write(key,t._2());
+                                continue;
+                            }
+                            //we can't spill this probe row, so bring the partition back in memory
+                            unspill(partition);
+                        }
+                        return function.apply(key,t._2(),partition.data.get(key));
+                    }
+                    while(nextSpilledPartition<partitions.length){
+                        int p = nextSpilledPartition++;
+                        if(probeSpills[p]==null)
+                            continue;
+                        final Multimap<K,V> buildSide = partition(p);
+                        partitions[p] = null;
+                        return Iterators.concat(Iterators.transform(probeSpills[p].read(),
+                                new org.spark_project.guava.base.Function<Tuple2<K, L>, Iterator<R>>(){
+                                    @Override
+                                    public Iterator<R> apply(Tuple2<K, L> t){
+                                        assert t!=null: "Tuple cannot be null";
+                                        return function.apply(t._1(),t._2(),buildSide.get(t._1()));
+                                    }
+                                }));
+                    }
+                    close();
+                    return endOfData();
+                }catch(IOException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cogroup two tables partition by partition. Both tables must have been created with the
+     * same number of partitions, and both are closed once the returned iterator has been exhausted.
+     */
+    public static <K,V,W> Iterator<Tuple2<K,Tuple2<Iterable<V>,Iterable<W>>>> cogroup(final SpillableHashTable<K,V> left,
+                                                                                      final SpillableHashTable<K,W> right){
+        assert left.numPartitions()==right.numPartitions(): "Cannot cogroup tables with different partitioning";
+        return Iterators.concat(new AbstractIterator<Iterator<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>>>(){
+            private int next = 0;
+
+            @Override
+            protected Iterator<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>> computeNext(){
+                if(next>=left.numPartitions()){
+                    closeExhausted(left);
+                    closeExhausted(right);
+                    return endOfData();
+                }
+                Multimap<K,V> l = left.partition(next);
+                Multimap<K,W> r = right.partition(next);
+                next++;
+                List<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>> result = new ArrayList<>();
+                for(K key : Sets.union(l.keySet(),r.keySet())){
+                    Collection<V> vs=l.get(key);
+                    Collection<W> ws=r.get(key);
+                    result.add(new Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>(key,new Tuple2<Iterable<V>, Iterable<W>>(vs,ws)));
+                }
+                return result.iterator();
+            }
+        });
+    }
+
+    /**
+     * Remove every spill file still owned by this table, including those of probe rows which have not
+     * been joined yet. This is called when the table is consumed, but must also be called by whoever
+     * abandons the table (or an iterator over it) before then. Calling this more than once has no effect.
+     */
+    @Override
+    public void close() throws IOException{
+        if(closed) return;
+        closed = true;
+        IOException error = null;
+        for(Partition<K,V> partition:partitions){
+            if(partition!=null && partition.isSpilled()){
+                try{
+                    partition.spillFile.close();
+                }catch(IOException e){
+                    error = e;
+                }
+            }
+        }
+        for(SpillFile<?,?> spillFile:probeSpillFiles){
+            try{
+                spillFile.close();
+            }catch(IOException e){
+                error = e;
+            }
+        }
+        probeSpillFiles.clear();
+        if(error!=null)
+            throw error;
+    }
+
+    /**
+     * Joins a single probe row to its matches from the build side.
+     */
+    public interface ProbeFunction<K,L,V,R>{
+        /**
+         * @param key the join key
+         * @param probeValue the value from the probe side
+         * @param matches all build side values for {@code key}. Empty if there are no matches
+         * @return the output rows for this probe row
+         */
+        Iterator<R> apply(K key,L probeValue,Collection<V> matches);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int partitionFor(K key){
+        if(partitions.length==1) return 0;
+        int h = key==null? 0 : key.hashCode();
+        h^=(h>>>16);
+        return (h & Integer.MAX_VALUE)%partitions.length;
+    }
+
+    private static void closeExhausted(SpillableHashTable<?,?> table){
+        try{
+            table.close();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void spillLargestPartition(){
+        Partition<K,V> largest = null;
+        for(Partition<K,V> partition:partitions){
+            if(partition.isSpilled()) continue;
+            if(largest==null || partition.size>largest.size)
+                largest = partition;
+        }
+        if(largest==null || largest.data.isEmpty()) return;
+
+        Map.Entry<K,V> sample = largest.data.entries().iterator().next();
+        if(!(sample.getKey() instanceof Serializable) || !(sample.getValue() instanceof Serializable)){
+            LOG.warn("Unable to spill entries of type "+sample.getValue().getClass()+", control-side hash table will remain in memory");
+            spillable = false;
+            return;
+        }
+
+        try{
+            SpillFile<K,V> spillFile = new SpillFile<>(spillDirectory);
+            for(Map.Entry<K,V> entry:largest.data.entries()){
+                spillFile.write(entry.getKey(),entry.getValue());
+            }
+            if(LOG.isDebugEnabled())
+                LOG.debug("Spilled "+spillFile.size()+" entries ("+largest.size+" bytes) to disk");
+            largest.spillFile = spillFile;
+            largest.data = null;
+            inMemorySize-=largest.size;
+            largest.size = 0;
+            spilledPartitions++;
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void unspill(Partition<K,V> partition){
+        Multimap<K,V> data = ArrayListMultimap.create();
+        try{
+            Iterator<Tuple2<K,V>> entries = partition.spillFile.read();
+            while(entries.hasNext()){
+                Tuple2<K,V> t = entries.next();
+                data.put(t._1(),t._2());
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+        partition.spillFile = null;
+        partition.data = data;
+        spilledPartitions--;
+    }
+
+    static long estimateSize(Object o){
+        if(o instanceof ExecRow){
+            long size = UNKNOWN_OBJECT_SIZE;
+            DataValueDescriptor[] dvds = ((ExecRow)o).getRowArray();
+            if(dvds!=null){
+                for(DataValueDescriptor dvd : dvds){
+                    if(dvd!=null)
+                        size+=dvd.estimateMemoryUsage();
+                }
+            }
+            return size;
+        }else if(o instanceof LocatedRow){
+            return UNKNOWN_OBJECT_SIZE+estimateSize(((LocatedRow)o).getRow());
+        }
+        return UNKNOWN_OBJECT_SIZE;
+    }
+
+    private static class Partition<K,V>{
+        private Multimap<K,V> data = ArrayListMultimap.create();
+        private long size;
+        private SpillFile<K,V> spillFile;
+
+        boolean isSpilled(){
+            return spillFile!=null;
+        }
+    }
+}
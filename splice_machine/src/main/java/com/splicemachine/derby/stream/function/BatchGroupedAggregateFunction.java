@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.GroupedAggregateOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.ColumnVector;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.LongColumnVector;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partially aggregates each {@link ColumnarBatch} of a {@link GroupedAggregateOperation}'s input.
+ *
+ * Produces one row per distinct grouping key in each batch, with every aggregate initialized, which is
+ * then keyed and merged by {@link MergeAllAggregatesFunction} exactly like the input rows would have been.
+ * Only a single batch is aggregated at a time, so memory use is bounded by the batch size regardless
+ * of the number of groups.
+ */
+public class BatchGroupedAggregateFunction extends SpliceFlatMapFunction<GroupedAggregateOperation,Iterator<ColumnarBatch>,LocatedRow>{
+    private GroupedAggregateOperation op;
+    private BatchAggregator[] batchAggregators;
+    private int[] groupingKeys;
+
+    public BatchGroupedAggregateFunction(){
+    }
+
+    public BatchGroupedAggregateFunction(OperationContext<GroupedAggregateOperation> operationContext){
+        super(operationContext);
+    }
+
+    @Override
+    public Iterator<LocatedRow> call(Iterator<ColumnarBatch> batches) throws Exception{
+        return Iterators.concat(Iterators.transform(batches,new Function<ColumnarBatch, Iterator<LocatedRow>>(){
+            @Nullable
+            @Override
+            public Iterator<LocatedRow> apply(@Nullable ColumnarBatch batch){
+                assert batch!=null: "Batch cannot be null";
+                try{
+                    return aggregate(batch).iterator();
+                }catch(StandardException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        }));
+    }
+
+    private List<LocatedRow> aggregate(ColumnarBatch batch) throws StandardException{
+        if(op==null){
+            op=getOperation();
+            groupingKeys=op.groupedAggregateContext.getGroupingKeys();
+            batchAggregators=BatchAggregator.create(op.aggregates,batch.getTemplate());
+            assert batchAggregators!=null: "Programmer error: aggregates cannot be evaluated in batches";
+        }
+        operationContext.recordRead(batch.size());
+
+        int[] groupIds=new int[batch.size()];
+        List<ExecRow> groups=new ArrayList<>();
+        ColumnVector singleKey=groupingKeys.length==1?batch.getColumn(groupingKeys[0]+1):null;
+        if(singleKey instanceof LongColumnVector)
+            assignLongGroups((LongColumnVector)singleKey,batch,groupIds,groups);
+        else
+            assignGroups(batch,groupIds,groups);
+
+        ExecRow[] groupRows=groups.toArray(new ExecRow[groups.size()]);
+        for(BatchAggregator batchAggregator : batchAggregators){
+            batchAggregator.aggregate(batch,groupIds,groupRows);
+        }
+        List<LocatedRow> results=new ArrayList<>(groupRows.length);
+        for(ExecRow groupRow : groupRows){
+            results.add(new LocatedRow(groupRow));
+        }
+        return results;
+    }
+
+    private void assignLongGroups(LongColumnVector keys,ColumnarBatch batch,int[] groupIds,List<ExecRow> groups) throws StandardException{
+        LongIntOpenHashMap groupMap=new LongIntOpenHashMap();
+        int nullGroup=-1;
+        for(int r=0;r<groupIds.length;r++){
+            if(keys.isNull(r)){
+                if(nullGroup<0)
+                    nullGroup=newGroup(batch,r,groups);
+                groupIds[r]=nullGroup;
+            }else{
+                long key=keys.getLong(r);
+                if(groupMap.containsKey(key))
+                    groupIds[r]=groupMap.lget();
+                else{
+                    int g=newGroup(batch,r,groups);
+                    groupMap.put(key,g);
+                    groupIds[r]=g;
+                }
+            }
+        }
+    }
+
+    private void assignGroups(ColumnarBatch batch,int[] groupIds,List<ExecRow> groups) throws StandardException{
+        Map<ExecRow,Integer> groupMap=new HashMap<>();
+        for(int r=0;r<groupIds.length;r++){
+            ExecRow row=batch.materialize(r);
+            ExecRow key=row.getKeyedExecRow(groupingKeys);
+            Integer g=groupMap.get(key);
+            if(g==null){
+                g=groups.size();
+                initialize(row);
+                groups.add(row);
+                groupMap.put(key,g);
+            }
+            groupIds[r]=g;
+        }
+    }
+
+    private int newGroup(ColumnarBatch batch,int row,List<ExecRow> groups) throws StandardException{
+        ExecRow groupRow=batch.materialize(row);
+        initialize(groupRow);
+        groups.add(groupRow);
+        return groups.size()-1;
+    }
+
+    private void initialize(ExecRow groupRow) throws StandardException{
+        for(SpliceGenericAggregator aggregate : op.aggregates){
+            aggregate.initialize(groupRow);
+        }
+    }
+}
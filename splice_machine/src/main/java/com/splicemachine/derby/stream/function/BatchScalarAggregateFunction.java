@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ScalarAggregateOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.apache.commons.collections.iterators.SingletonIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * The first phase of a {@link ScalarAggregateOperation} over {@link ColumnarBatch}es of its input.
+ *
+ * Produces a single row per partition with every aggregate initialized, to be merged by
+ * the final phase ({@link ScalarAggregateFlatMapFunction}) exactly like the row-based partial results.
+ */
+public class BatchScalarAggregateFunction extends SpliceFlatMapFunction<ScalarAggregateOperation,Iterator<ColumnarBatch>,LocatedRow>{
+
+    public BatchScalarAggregateFunction(){
+    }
+
+    public BatchScalarAggregateFunction(OperationContext<ScalarAggregateOperation> operationContext){
+        super(operationContext);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterator<LocatedRow> call(Iterator<ColumnarBatch> batches) throws Exception{
+        if(!batches.hasNext())
+            return Collections.<LocatedRow>emptyList().iterator();
+        ScalarAggregateOperation op=getOperation();
+        ColumnarBatch batch=batches.next();
+        BatchAggregator[] batchAggregators=BatchAggregator.create(op.aggregates,batch.getTemplate());
+        assert batchAggregators!=null: "Programmer error: aggregates cannot be evaluated in batches";
+
+        ExecRow[] accumulator=new ExecRow[]{batch.materialize(0)};
+        for(SpliceGenericAggregator aggregate : op.aggregates){
+            aggregate.initialize(accumulator[0]);
+        }
+        while(true){
+            for(BatchAggregator batchAggregator : batchAggregators){
+                batchAggregator.aggregate(batch,null,accumulator);
+            }
+            if(!batches.hasNext())
+                break;
+            batch=batches.next();
+        }
+        return new SingletonIterator(new LocatedRow(accumulator[0]));
+    }
+}
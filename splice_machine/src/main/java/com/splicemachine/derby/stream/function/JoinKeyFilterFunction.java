@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.storage.JoinKeyBloomFilter;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Builds a single {@link JoinKeyBloomFilter} over the (integral) join keys of a partition. Rows with
+ * a null key are left out, since they cannot match anything in an inner join.
+ */
+public class JoinKeyFilterFunction<Op extends SpliceOperation> extends SpliceFlatMapFunction<Op,Iterator<LocatedRow>,JoinKeyBloomFilter>{
+    private int[] hashKeys;
+    private long expectedKeys;
+    private double falsePositiveRate;
+
+    public JoinKeyFilterFunction(){
+    }
+
+    /**
+     * @param hashKeys the (0-based) positions of the join key columns
+     * @param expectedKeys the expected number of keys over all partitions, so that the filters of every
+     *                     partition have the same size and can be merged
+     * @param falsePositiveRate the desired false positive rate of the merged filter
+     */
+    public JoinKeyFilterFunction(OperationContext<Op> operationContext,int[] hashKeys,long expectedKeys,double falsePositiveRate){
+        super(operationContext);
+        this.hashKeys=hashKeys;
+        this.expectedKeys=expectedKeys;
+        this.falsePositiveRate=falsePositiveRate;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        super.writeExternal(out);
+        out.writeLong(expectedKeys);
+        out.writeDouble(falsePositiveRate);
+        out.writeInt(hashKeys.length);
+        for(int hashKey : hashKeys){
+            out.writeInt(hashKey);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        super.readExternal(in);
+        expectedKeys=in.readLong();
+        falsePositiveRate=in.readDouble();
+        hashKeys=new int[in.readInt()];
+        for(int i=0;i<hashKeys.length;i++){
+            hashKeys[i]=in.readInt();
+        }
+    }
+
+    @Override
+    public Iterator<JoinKeyBloomFilter> call(Iterator<LocatedRow> rows) throws Exception{
+        JoinKeyBloomFilter filter=new JoinKeyBloomFilter(expectedKeys,falsePositiveRate);
+        long[] key=new long[hashKeys.length];
+        rows:
+        while(rows.hasNext()){
+            DataValueDescriptor[] row=rows.next().getRow().getRowArray();
+            for(int i=0;i<hashKeys.length;i++){
+                DataValueDescriptor dvd=row[hashKeys[i]];
+                if(dvd==null || dvd.isNull())
+                    continue rows;
+                key[i]=dvd.getLong();
+            }
+            filter.add(key);
+        }
+        return Collections.singletonList(filter).iterator();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.GenericAggregateOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.stream.batch.BatchAggregator;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Iterator;
+
+/**
+ * Turns the {@link PartialAggregate}s computed by each region into rows with every aggregate initialized,
+ * which are then merged exactly like the partial results of the row-based first aggregation phase.
+ */
+public class PartialAggregateFunction<Op extends GenericAggregateOperation> extends SpliceFlatMapFunction<Op,Iterator<PartialAggregate>,LocatedRow>{
+    private int[] groupColumns;
+    private BatchAggregator[] batchAggregators;
+    private ExecRow template;
+
+    public PartialAggregateFunction(){
+    }
+
+    /**
+     * @param groupColumns the (1-based) positions in the aggregate's input row of the group values of each partial
+     */
+    public PartialAggregateFunction(OperationContext<Op> operationContext,int[] groupColumns){
+        super(operationContext);
+        this.groupColumns=groupColumns;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        super.writeExternal(out);
+        out.writeInt(groupColumns.length);
+        for(int column : groupColumns){
+            out.writeInt(column);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        super.readExternal(in);
+        groupColumns=new int[in.readInt()];
+        for(int i=0;i<groupColumns.length;i++){
+            groupColumns[i]=in.readInt();
+        }
+    }
+
+    @Override
+    public Iterator<LocatedRow> call(Iterator<PartialAggregate> partials) throws Exception{
+        return Iterators.transform(partials,new Function<PartialAggregate, LocatedRow>(){
+            @Nullable
+            @Override
+            public LocatedRow apply(@Nullable PartialAggregate partial){
+                assert partial!=null: "Partial aggregate cannot be null";
+                try{
+                    return new LocatedRow(toRow(partial));
+                }catch(StandardException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    private ExecRow toRow(PartialAggregate partial) throws StandardException{
+        Op op=getOperation();
+        if(template==null){
+            template=op.getSource().getExecRowDefinition();
+            batchAggregators=BatchAggregator.create(op.aggregates,template);
+            assert batchAggregators!=null: "Programmer error: aggregates cannot be evaluated in batches";
+        }
+        ExecRow row=template.getNewNullRow();
+        for(int i=0;i<groupColumns.length;i++){
+            row.setColumn(groupColumns[i],partial.getGroupValue(i));
+        }
+        for(SpliceGenericAggregator aggregate : op.aggregates){
+            aggregate.initialize(row);
+        }
+        for(int i=0;i<batchAggregators.length;i++){
+            batchAggregators[i].accumulatePartial(partial,i,row);
+        }
+        return row;
+    }
+}
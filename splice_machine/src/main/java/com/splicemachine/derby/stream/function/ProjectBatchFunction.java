@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Applies a {@link ProjectRestrictOperation} which has neither a restriction nor a projection
+ * (i.e. which only re-arranges columns) to a whole batch at once.
+ */
+public class ProjectBatchFunction extends SpliceFunction<ProjectRestrictOperation,ColumnarBatch,ColumnarBatch>{
+    private int[] outputColumns;
+    private ExecRow template;
+
+    public ProjectBatchFunction(){
+    }
+
+    public ProjectBatchFunction(OperationContext<ProjectRestrictOperation> operationContext,int[] outputColumns){
+        super(operationContext);
+        this.outputColumns=outputColumns;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        super.writeExternal(out);
+        out.writeInt(outputColumns.length);
+        for(int column : outputColumns){
+            out.writeInt(column);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        super.readExternal(in);
+        outputColumns=new int[in.readInt()];
+        for(int i=0;i<outputColumns.length;i++){
+            outputColumns[i]=in.readInt();
+        }
+    }
+
+    @Override
+    public ColumnarBatch call(ColumnarBatch batch) throws Exception{
+        ProjectRestrictOperation op=getOperation();
+        if(template==null)
+            template=op.getExecRowDefinition();
+        return batch.project(op.projectMapping,template,outputColumns);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.spark_project.guava.collect.AbstractIterator;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Iterator;
+
+/**
+ * Gathers the rows of a partition into {@link ColumnarBatch}es holding only the requested columns.
+ */
+public class RowsToBatchesFunction<Op extends SpliceOperation> extends SpliceFlatMapFunction<Op,Iterator<LocatedRow>,ColumnarBatch>{
+    private int[] columns;
+    private int batchSize;
+
+    public RowsToBatchesFunction(){
+    }
+
+    public RowsToBatchesFunction(OperationContext<Op> operationContext,int[] columns,int batchSize){
+        super(operationContext);
+        this.columns=columns;
+        this.batchSize=batchSize;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        super.writeExternal(out);
+        out.writeInt(batchSize);
+        out.writeInt(columns.length);
+        for(int column : columns){
+            out.writeInt(column);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        super.readExternal(in);
+        batchSize=in.readInt();
+        columns=new int[in.readInt()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=in.readInt();
+        }
+    }
+
+    @Override
+    public Iterator<ColumnarBatch> call(final Iterator<LocatedRow> rows) throws Exception{
+        return new AbstractIterator<ColumnarBatch>(){
+            private ExecRow template;
+
+            @Override
+            protected ColumnarBatch computeNext(){
+                if(!rows.hasNext())
+                    return endOfData();
+                try{
+                    ExecRow row=rows.next().getRow();
+                    if(template==null)
+                        template=row.getNewNullRow();
+                    ColumnarBatch batch=new ColumnarBatch(template,columns,batchSize);
+                    boolean full=batch.add(row);
+                    while(!full && rows.hasNext()){
+                        full=batch.add(rows.next().getRow());
+                    }
+                    return batch;
+                }catch(StandardException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+}
@@ -35,6 +35,9 @@ public interface OperationContext<Op extends SpliceOperation> extends Externaliz
 
     void recordJoinedLeft();
     void recordJoinedRight();
+    void recordSkewedJoinKeys(long keys);
+    void recordReplicatedJoinRows(long rows);
+    void recordBaseRowPrefetch(long rows);
 
     long getRecordsRead();
     long getRecordsFiltered();
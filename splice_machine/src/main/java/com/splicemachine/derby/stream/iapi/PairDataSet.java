@@ -159,6 +159,17 @@ public interface PairDataSet<K,V> {
     <W> PairDataSet<K,Tuple2<Optional<V>,W>> hashRightOuterJoin(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet,String name);
+    /**
+     *
+     * Inner join on the key. Implementations may sample the keys of this (the left) side, and spread
+     * the rows of heavily skewed keys over several partitions, recording what they did in {@code context}.
+     *
+     * @param rightDataSet
+     * @param name
+     * @param context
+     * @return
+     */
+    <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet,String name,OperationContext context);
     <W> PairDataSet<K,V> subtractByKey(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,V> subtractByKey(PairDataSet<K, W> rightDataSet,String name);
     <W> PairDataSet<K,Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet);
@@ -20,11 +20,14 @@ import com.splicemachine.db.iapi.services.io.FormatableBitSet;
 import com.splicemachine.db.iapi.sql.Activation;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
 import com.splicemachine.metrics.MetricFactory;
 import com.splicemachine.si.api.server.TransactionalRegion;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.storage.DataScan;
 import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.EntryAggregator;
 import java.io.IOException;
 
 /**
@@ -86,6 +89,29 @@ public interface ScanSetBuilder<V>{
 
     DataSet<V> buildDataSet(Object caller) throws StandardException;
 
+    /**
+     * Build a data set which decodes the scanned rows directly into columnar batches, rather than
+     * materializing each row.
+     *
+     * @param columns the (1-based) template positions of the columns to decode. Each must be
+     *                directly decodable (see {@code ColumnVector#isDirectlyDecodable})
+     * @param batchSize the maximum number of rows in each batch
+     * @return the batches, or {@code null} if this builder cannot decode batches directly
+     */
+    DataSet<ColumnarBatch> buildBatchDataSet(int[] columns,int batchSize) throws StandardException;
+
+    /**
+     * Build a data set of the partial aggregates of the scanned rows, computed where the rows are stored
+     * rather than by the caller.
+     *
+     * @param groupColumns the (1-based) template positions of the columns to group by. Empty for a scalar aggregate
+     * @param functions the aggregates to compute
+     * @param inputColumns the (1-based) template position of the input column of each aggregate
+     * @return one partial aggregate per group per region, or {@code null} if this builder cannot aggregate
+     * the rows where they are stored
+     */
+    DataSet<PartialAggregate> buildPartialAggregateDataSet(int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns) throws StandardException;
+
     ScanSetBuilder<V> activation(Activation activation);
 
     String base64Encode() throws IOException, StandardException;
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.iterator;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.batch.PartialAggregate;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.metrics.MetricFactory;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.storage.Partition;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Scans a table with an {@link EntryAggregator} attached, so that each region aggregates its own visible rows
+ * and returns one partial aggregate per group, which is then decoded into a {@link PartialAggregate}.
+ *
+ * Whether the rows are aggregated where they are stored is up to the storage engine, so {@link #open(Partition,MetricFactory)}
+ * checks the first row returned, and reports whether the scan can be used as a source of partial aggregates. If
+ * a later region returns rows which it has not aggregated, the iterator fails rather than skip them.
+ * Scan qualifiers are not applied, so this should only be used for scans without any.
+ */
+@NotThreadSafe
+public class PartialAggregateIterator implements Iterable<PartialAggregate>, Iterator<PartialAggregate>, Closeable {
+    private final TableScannerBuilder siTableBuilder;
+    private final EntryAggregator aggregator;
+    private final int[] groupColumns;
+    private final int[] inputColumns;
+    private DescriptorSerializer[] serializers;
+    private DataScanner scanner;
+    private List<DataCell> currentRow = Collections.emptyList();
+    private int nextCell;
+    private boolean exhausted;
+
+    public PartialAggregateIterator(TableScannerBuilder siTableBuilder,EntryAggregator aggregator,int[] groupColumns,int[] inputColumns){
+        this.siTableBuilder = siTableBuilder;
+        this.aggregator = aggregator;
+        this.groupColumns = groupColumns;
+        this.inputColumns = inputColumns;
+    }
+
+    /**
+     * @param rowDecodingMap the (0-based) template position of each field in the packed row
+     * @param groupColumns the (1-based) template positions of the group columns
+     * @param functions the aggregates to compute
+     * @param inputColumns the (1-based) template position of each aggregate's input, ignored for COUNT(*)
+     * @return an aggregator over the fields of the packed row, or {@code null} if any of the columns
+     * is not held in the packed row
+     */
+    public static EntryAggregator newAggregator(int[] rowDecodingMap,int[] groupColumns,EntryAggregator.Function[] functions,int[] inputColumns){
+        if (rowDecodingMap == null)
+            return null;
+        int[] groupFields = new int[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupFields[i] = fieldOf(rowDecodingMap,groupColumns[i]);
+            if (groupFields[i] < 0)
+                return null;
+        }
+        int[] inputFields = new int[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            if (functions[i] == EntryAggregator.Function.COUNT_STAR)
+                continue;
+            inputFields[i] = fieldOf(rowDecodingMap,inputColumns[i]);
+            if (inputFields[i] < 0)
+                return null;
+        }
+        return new EntryAggregator(groupFields,functions,inputFields);
+    }
+
+    /**
+     * Open the scan, and check that the rows are aggregated where they are stored.
+     *
+     * @return true if this iterator can be used. If not, the scan has been closed
+     */
+    public boolean open(Partition table,MetricFactory metricFactory) throws IOException {
+        DataScan scan = siTableBuilder.getScan();
+        scan.addAttribute(SIConstants.SI_NEEDED,SIConstants.SI_NEEDED_VALUE_BYTES);
+        if (aggregator.isCountOnly())
+            scan.addAttribute(SIConstants.SI_COUNT_STAR,SIConstants.TRUE_BYTES);
+        else
+            scan.addAttribute(SIConstants.ENTRY_PREDICATE_LABEL,new EntryPredicateFilter(aggregator.getFieldsToReturn(),true).toBytes());
+        scan.addAttribute(SIConstants.ENTRY_AGGREGATE_LABEL,aggregator.toBytes());
+
+        scanner = table.openScanner(scan,metricFactory);
+        currentRow = scanner.next(-1);
+        if (currentRow.isEmpty() || isPartial(currentRow.get(0)))
+            return true;
+        //the rows were not aggregated, so the caller will need to scan them itself
+        close();
+        return false;
+    }
+
+    @Override
+    public Iterator<PartialAggregate> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (exhausted)
+            return false;
+        try {
+            while (true) {
+                if (nextCell < currentRow.size()) {
+                    if (isPartial(currentRow.get(nextCell)))
+                        return true;
+                    /*
+                     * A region returned its rows without aggregating them (e.g. a server which doesn't support
+                     * aggregation yet). Partials from other regions have already been handed out, so we can't
+                     * switch to scanning the rows ourselves, and skipping them would give the wrong answer.
+                     */
+                    close();
+                    throw new IllegalStateException("Scan returned rows which were not aggregated by their region; " +
+                            "partial aggregation requires every region server to support it");
+                }
+                currentRow = scanner.next(-1);
+                nextCell = 0;
+                if (currentRow.isEmpty()) {
+                    close();
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public PartialAggregate next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        try {
+            return decode(currentRow.get(nextCell++).value());
+        } catch (StandardException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new RuntimeException("Not Implemented");
+    }
+
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        if (scanner != null) {
+            scanner.close();
+            scanner = null;
+        }
+        if (serializers != null) {
+            for (DescriptorSerializer serializer : serializers) {
+                if (serializer != null)
+                    serializer.close();
+            }
+            serializers = null;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int fieldOf(int[] rowDecodingMap,int column) {
+        for (int i = 0; i < rowDecodingMap.length; i++) {
+            if (rowDecodingMap[i] == column-1)
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isPartial(DataCell cell) {
+        return cell.matchesQualifier(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.AGGREGATE_COLUMN_BYTES);
+    }
+
+    private PartialAggregate decode(byte[] data) throws StandardException {
+        ExecRow template = siTableBuilder.getTemplate();
+        if (serializers == null)
+            serializers = VersionedSerializers.forVersion(siTableBuilder.getTableVersion(),false).getSerializers(template);
+        EntryAggregator.Partial partial = aggregator.decodePartial(data);
+
+        DataValueDescriptor[] groupValues = new DataValueDescriptor[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupValues[i] = decodeColumn(template,groupColumns[i],partial.getGroupValue(i));
+        }
+        EntryAggregator.Function[] functions = aggregator.getFunctions();
+        long[] counts = new long[functions.length];
+        long[] nullCounts = new long[functions.length];
+        DataValueDescriptor[] results = new DataValueDescriptor[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            counts[i] = partial.getCount(i);
+            nullCounts[i] = partial.getNullCount(i);
+            switch (functions[i]) {
+                case COUNT:
+                    results[i] = template.getColumn(inputColumns[i]).getNewNull();
+                    break;
+                case SUM_LONG:
+                    results[i] = longSum(partial.getDecimalSum(i));
+                    break;
+                case SUM_DECIMAL:
+                    BigDecimal sum = partial.getDecimalSum(i);
+                    results[i] = sum == null ? new SQLDecimal() : new SQLDecimal(sum);
+                    break;
+                case SUM_DOUBLE:
+                    results[i] = counts[i] == 0 ? new SQLDouble() : new SQLDouble(partial.getDoubleSum(i));
+                    break;
+                case MIN:
+                case MAX:
+                    results[i] = decodeColumn(template,inputColumns[i],partial.getValue(i));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new PartialAggregate(groupValues,counts,nullCounts,results);
+    }
+
+    private DataValueDescriptor decodeColumn(ExecRow template,int column,byte[] value) throws StandardException {
+        DataValueDescriptor dvd = template.getColumn(column).getNewNull();
+        if (value != null)
+            serializers[column-1].decodeDirect(dvd,value,0,value.length,false);
+        return dvd;
+    }
+
+    private static DataValueDescriptor longSum(BigDecimal sum) {
+        if (sum == null)
+            return new SQLLongint();
+        try {
+            return new SQLLongint(sum.longValueExact());
+        } catch (ArithmeticException overflow) {
+            return new SQLDecimal(sum);
+        }
+    }
+}
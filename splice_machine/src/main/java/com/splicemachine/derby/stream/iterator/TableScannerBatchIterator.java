@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.iterator;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.batch.ColumnVector;
+import com.splicemachine.derby.stream.batch.ColumnarBatch;
+import com.splicemachine.storage.FieldVector;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The batch counterpart of {@link TableScannerIterator}, which decodes the scanned rows directly into
+ * the vectors of a {@link ColumnarBatch} (see {@link SITableScanner#nextBlock(FieldVector[], int)}),
+ * without materializing an intermediate row or row location per row.
+ *
+ * Scan qualifiers are not applied, so this should only be used for scans without any.
+ */
+@NotThreadSafe
+public class TableScannerBatchIterator implements Iterable<ColumnarBatch>, Iterator<ColumnarBatch>, Closeable {
+    private final TableScannerBuilder siTableBuilder;
+    private final SpliceOperation operation;
+    private final int[] columns;
+    private final int batchSize;
+    private SITableScanner tableScanner;
+    private boolean initialized;
+    private boolean exhausted;
+    private ColumnarBatch next;
+
+    public TableScannerBatchIterator(TableScannerBuilder siTableBuilder,SpliceOperation operation,int[] columns,int batchSize){
+        this.siTableBuilder = siTableBuilder;
+        this.operation = operation;
+        this.columns = columns;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Iterator<ColumnarBatch> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null)
+            return true;
+        if (exhausted)
+            return false;
+        try {
+            if (!initialized) {
+                initialized = true;
+                tableScanner = siTableBuilder.build();
+                tableScanner.open();
+                assert tableScanner.canDecodeBlocks(): "Scanner cannot decode blocks";
+                if (operation != null) {
+                    operation.registerCloseable(new Closeable() {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                if (tableScanner != null && initialized)
+                                    tableScanner.close();
+                            } catch (Exception e) {
+                                throw new IOException(e);
+                            }
+                        }
+                    });
+                }
+            }
+            //each batch gets its own vectors, since downstream operators may hold on to earlier batches
+            ColumnarBatch batch = new ColumnarBatch(siTableBuilder.getTemplate(),columns,batchSize);
+            FieldVector[] vectors = new FieldVector[siTableBuilder.getTemplate().nColumns()];
+            for (int column : columns) {
+                ColumnVector vector = batch.getColumn(column);
+                vectors[column-1] = vector;
+            }
+            int rows = tableScanner.nextBlock(vectors,batchSize);
+            if (rows < batchSize) {
+                exhausted = true;
+                tableScanner.close();
+                initialized = false;
+            }
+            if (rows <= 0)
+                return false;
+            batch.setSize(rows);
+            next = batch;
+            return true;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ColumnarBatch next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        ColumnarBatch batch = next;
+        next = null;
+        return batch;
+    }
+
+    @Override
+    public void remove() {
+        throw new RuntimeException("Not Implemented");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (tableScanner != null) {
+            try {
+                tableScanner.close();
+            } catch (StandardException se) {
+                throw new IOException(se);
+            }
+        }
+    }
+}
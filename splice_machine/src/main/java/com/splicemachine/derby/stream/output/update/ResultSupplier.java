@@ -15,19 +15,27 @@
 
 package com.splicemachine.derby.stream.output.update;
 
+import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.storage.*;
+import com.splicemachine.storage.util.MapAttributes;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
 import com.carrotsearch.hppc.BitSet;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
+ * Supplies the current version of the base row for an update which changes the row's key.
  *
- *
- *
- *
+ * Rows are fetched one at a time as they are needed, unless they have been fetched in advance
+ * with {@link #prefetch(List)}, in which case all the rows of the batch are read with a single
+ * multi-get.
  */
 public class ResultSupplier{
     private DataCell result;
@@ -38,6 +46,9 @@ public class ResultSupplier{
     private long heapConglom;
     private transient DataGet remoteGet;
     private transient DataResult dataResult;
+    private final TreeMap<byte[],DataCell> prefetched = new TreeMap<>(Bytes.BASE_COMPARATOR);
+    private long batchesFetched;
+    private long rowsFetched;
 
     public ResultSupplier(BitSet interestedFields,TxnView txnView, long heapConglom) {
         //we need the index so that we can transform data without the information necessary to decode it
@@ -54,17 +65,18 @@ public class ResultSupplier{
     }
 
     public void setResult(EntryDecoder decoder) throws IOException {
+        if(result==null) {
+            //use the row from the last prefetch, if it was fetched there
+            result = prefetched.remove(location);
+        }
         if(result==null) {
             //need to fetch the latest results
-            if(htable==null){
-                htable =SIDriver.driver().getTableFactory().getTable(Long.toString(heapConglom));
-            }
             remoteGet = SIDriver.driver().getOperationFactory().newDataGet(txnView,location,remoteGet);
 
             remoteGet.addColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES);
             remoteGet.addAttribute(SIConstants.ENTRY_PREDICATE_LABEL,filterBytes);
 
-            dataResult = htable.get(remoteGet,dataResult);
+            dataResult = getTable().get(remoteGet,dataResult);
             result = dataResult.userData();
             //we also assume that PACKED_COLUMN_KEY is properly set by the time we get here
 //								getTimer.tick(1);
@@ -72,6 +84,62 @@ public class ResultSupplier{
         decoder.set(result.valueArray(),result.valueOffset(),result.valueLength());
     }
 
+    /**
+     * Fetch the base rows for the given locations with a single multi-get. The locations are sorted
+     * before they are fetched, so that rows in the same region are requested together. Any previously
+     * fetched rows which have not been used yet are discarded.
+     *
+     * @param locations the row locations which are about to be updated
+     */
+    public void prefetch(List<byte[]> locations) throws IOException {
+        prefetched.clear();
+        if(locations.isEmpty()) return;
+        List<byte[]> rowKeys = new ArrayList<>(locations);
+        Collections.sort(rowKeys,Bytes.BASE_COMPARATOR);
+        int unique = 0;
+        for(int i=0;i<rowKeys.size();i++){
+            byte[] rowKey = rowKeys.get(i);
+            if(unique==0 || !Bytes.equals(rowKeys.get(unique-1),rowKey))
+                rowKeys.set(unique++,rowKey);
+        }
+        rowKeys = rowKeys.subList(0,unique);
+
+        Attributable attributes = new MapAttributes();
+        attributes.addAttribute(SIConstants.ENTRY_PREDICATE_LABEL,filterBytes);
+        SIDriver.driver().getOperationFactory().encodeForReads(attributes,txnView,false);
+        Iterator<DataResult> results = getTable().batchGet(attributes,rowKeys);
+        for(byte[] rowKey : rowKeys){
+            if(!results.hasNext())
+                throw new IllegalStateException("Programmer error: incompatible iterator sizes!");
+            DataCell cell = results.next().userData();
+            if(cell!=null)
+                prefetched.put(rowKey,cell.getClone());
+        }
+        batchesFetched++;
+        rowsFetched+=rowKeys.size();
+    }
+
+    /**
+     * @return the number of multi-gets issued by {@link #prefetch(List)}
+     */
+    public long getBatchesFetched(){
+        return batchesFetched;
+    }
+
+    /**
+     * @return the number of rows requested by {@link #prefetch(List)}
+     */
+    public long getRowsFetched(){
+        return rowsFetched;
+    }
+
+    private Partition getTable() throws IOException {
+        if(htable==null){
+            htable =SIDriver.driver().getTableFactory().getTable(Long.toString(heapConglom));
+        }
+        return htable;
+    }
+
     public void close() throws IOException {
         if(htable!=null)
             htable.close();
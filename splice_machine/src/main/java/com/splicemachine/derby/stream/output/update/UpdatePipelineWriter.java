@@ -39,12 +39,14 @@ import com.splicemachine.pipeline.callbuffer.RecordingCallBuffer;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.driver.SIDriver;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by jleach on 5/5/15.
@@ -66,6 +68,8 @@ public class UpdatePipelineWriter extends AbstractPipelineWriter<ExecRow>{
     protected ExecRow currentRow;
     public int rowsUpdated=0;
     protected UpdateOperation updateOperation;
+    protected ResultSupplier resultSupplier;
+    protected int prefetchSize;
 
     @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
     public UpdatePipelineWriter(long heapConglom,int[] formatIds,int[] columnOrdering,
@@ -128,6 +132,7 @@ public class UpdatePipelineWriter extends AbstractPipelineWriter<ExecRow>{
             throw Exceptions.parseException(e);
         }
         writeBuffer=transformWriteBuffer(bufferToTransform);
+        prefetchSize=SIDriver.driver().getConfiguration().getUpdateBaseRowPrefetch();
         encoder=new PairEncoder(getKeyEncoder(),getRowHash(),dataType);
         flushCallback=triggerHandler==null?null:TriggerHandler.flushCallback(writeBuffer);
     }
@@ -171,7 +176,7 @@ public class UpdatePipelineWriter extends AbstractPipelineWriter<ExecRow>{
         if(!modifiedPrimaryKeys){
             return new NonPkRowHash(colPositionMap,null,serializers,heapList);
         }
-        ResultSupplier resultSupplier=new ResultSupplier(new BitSet(),txn,heapConglom);
+        resultSupplier=new ResultSupplier(new BitSet(),txn,heapConglom);
         return new PkRowHash(finalPkColumns,null,heapList,colPositionMap,resultSupplier,serializers);
     }
 
@@ -226,8 +231,37 @@ public class UpdatePipelineWriter extends AbstractPipelineWriter<ExecRow>{
     }
 
     public void update(Iterator<ExecRow> execRows) throws StandardException{
-        while(execRows.hasNext())
-            update(execRows.next());
+        if(resultSupplier==null || prefetchSize<=1){
+            while(execRows.hasNext())
+                update(execRows.next());
+            return;
+        }
+        /*
+         * We are changing the primary key, so each row has to be re-read from the base table before
+         * it can be written. Read ahead of the writer, and fetch the base rows for the whole batch at once
+         */
+        List<ExecRow> rows=new ArrayList<>(prefetchSize);
+        List<byte[]> locations=new ArrayList<>(prefetchSize);
+        while(execRows.hasNext()){
+            rows.clear();
+            locations.clear();
+            while(execRows.hasNext() && rows.size()<prefetchSize){
+                //the source may re-use its rows, so hold on to a copy
+                ExecRow row=execRows.next().getClone();
+                rows.add(row);
+                locations.add(((RowLocation)row.getColumn(row.nColumns()).getObject()).getBytes());
+            }
+            try{
+                resultSupplier.prefetch(locations);
+            }catch(Exception e){
+                throw Exceptions.parseException(e);
+            }
+            if(operationContext!=null)
+                operationContext.recordBaseRowPrefetch(locations.size());
+            for(ExecRow row : rows){
+                update(row);
+            }
+        }
     }
 
     public void write(Iterator<ExecRow> execRows) throws StandardException{
@@ -50,6 +50,10 @@ public class JMXUtils {
     public static final String TIMESTAMP_MASTER_MANAGEMENT = "com.splicemachine.si.client.timestamp.generator:type=TimestampMasterManagement";
     public static final String TIMESTAMP_REGION_MANAGEMENT = "com.splicemachine.si.client.timestamp.request:type=TimestampRegionManagement";
 	public static final String DATABASE_PROPERTY_MANAGEMENT = "com.splicemachine.derby.utils:type=DatabasePropertyManagement";
+    public static final String BROADCAST_JOIN_CACHE = "com.splicemachine.derby.impl.sql.execute.operations:type=BroadcastJoinCacheStatus";
+    public static final String LOW_WATERMARK_MANAGEMENT = "com.splicemachine.si.impl.server:type=LowWatermarkManagement";
+    public static final String TRANSACTION_CACHE_MANAGEMENT = "com.splicemachine.si.impl.store:type=TransactionCacheManagement";
+    public static final String READ_RESOLVER_MANAGEMENT = "com.splicemachine.si.api.readresolve:type=ReadResolverManagement";
 
     public static List<Pair<String,JMXConnector>> getMBeanServerConnections(Collection<Pair<String,String>> serverConnections) throws IOException {
         List<Pair<String,JMXConnector>> mbscArray =new ArrayList<>(serverConnections.size());
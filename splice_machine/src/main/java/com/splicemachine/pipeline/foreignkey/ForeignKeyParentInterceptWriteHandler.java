@@ -17,8 +17,6 @@ package com.splicemachine.pipeline.foreignkey;
 
 import com.carrotsearch.hppc.ObjectArrayList;
 import com.splicemachine.ddl.DDLMessage;
-import com.splicemachine.pipeline.api.Code;
-import com.splicemachine.pipeline.client.WriteResult;
 import com.splicemachine.pipeline.constraint.ConstraintContext;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.data.TxnOperationFactory;
@@ -35,6 +33,7 @@ import com.splicemachine.pipeline.writehandler.WriteHandler;
 import com.splicemachine.si.impl.driver.SIDriver;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -86,26 +85,37 @@ public class ForeignKeyParentInterceptWriteHandler implements WriteHandler{
     @Override
     public void flush(WriteContext ctx) throws IOException {
         try {
-            // TODO Buffer with skip scan
+            /*
+             * Rather than scanning each child index once for every row, we sort the parent keys and check all of
+             * them with a single skip scan of each child index. For each key, we keep the first constraint that it
+             * violates (if any).
+             */
+            byte[][] parentKeys = sortedParentKeys();
+            int[] violations = new int[parentKeys.length];
+            Arrays.fill(violations, -1);
+            for (int i = 0; i < referencingIndexConglomerateIds.size(); i++) {
+                long indexConglomerateId = referencingIndexConglomerateIds.get(i);
+                Partition table = null;
+                if (childPartitions.containsKey(indexConglomerateId))
+                    table = childPartitions.get(indexConglomerateId);
+                else {
+                    table = SIDriver.driver().getTableFactory().getTable(Long.toString((indexConglomerateId)));
+                    childPartitions.put(indexConglomerateId, table);
+                }
+                findReferences(i, indexConglomerateId, table, parentKeys, violations, ctx);
+            }
             for (int k = 0; k<mutations.size();k++) {
                 KVPair mutation = mutations.get(k);
-                for (int i = 0; i < referencingIndexConglomerateIds.size(); i++) {
-                    long indexConglomerateId = referencingIndexConglomerateIds.get(i);
-                    Partition table = null;
-                    if (childPartitions.containsKey(indexConglomerateId))
-                        table = childPartitions.get(indexConglomerateId);
-                    else {
-                        table = SIDriver.driver().getTableFactory().getTable(Long.toString((indexConglomerateId)));
-                        childPartitions.put(indexConglomerateId, table);
-                    }
-                    if (hasReferences(indexConglomerateId, table, mutation, ctx))
-                        failRow(mutation, ctx, constraintInfos.get(i));
-                    else
-                        ctx.success(mutation);
-                }
+                int violation = violations[Arrays.binarySearch(parentKeys, mutation.getRowKey(), Bytes.BASE_COMPARATOR)];
+                if (violation >= 0)
+                    failRow(mutation, ctx, constraintInfos.get(violation));
+                else
+                    ctx.success(mutation);
             }
         } catch (Exception e) {
             violationProcessor.failWrite(e, ctx);
+        } finally {
+            mutations.clear();
         }
 
     }
@@ -124,31 +134,36 @@ public class ForeignKeyParentInterceptWriteHandler implements WriteHandler{
         return getClass().getSimpleName();
     }
 
-            /*
-         * The way prefix keys work is that longer keys sort after shorter keys. We
-         * are already starting exactly where we want to be, and we want to end as soon
-         * as we hit a record which is not this key.
-         *
-         * Historically, we did this by using an HBase PrefixFilter. We can do that again,
-         * but it's a bit of a pain to make that work in an architecture-independent
-         * way (we would need to implement a version of that for other architectures,
-         * for example. It's much easier for us to just make use of row key sorting
-         * to do the job for us.
-         *
-         * We start where we want, and we need to end as soon as we run off that. The
-         * first key which is higher than the start key is the start key as a prefix followed
-         * by 0x00 (in unsigned sort order). Therefore, we make the end key
-         * [startKey | 0x00].
-         */
-
+    /**
+     * Scan the child index for rows referencing any of the parent keys which don't yet have a violation, and
+     * record {@code constraintIndex} as the violation of every key which is referenced.
+     */
+    private void findReferences(int constraintIndex, Long indexConglomerateId, Partition table, byte[][] parentKeys,
+                                int[] violations, WriteContext ctx) throws IOException {
+        int[] positions = new int[parentKeys.length];
+        int numPrefixes = 0;
+        for (int k = 0; k < parentKeys.length; k++) {
+            if (violations[k] < 0)
+                positions[numPrefixes++] = k;
+        }
+        if (numPrefixes == 0)
+            return;
+        byte[][] prefixes = new byte[numPrefixes][];
+        for (int p = 0; p < numPrefixes; p++) {
+            prefixes[p] = parentKeys[positions[p]];
+        }
 
-        private boolean hasReferences(Long indexConglomerateId, Partition table, KVPair kvPair, WriteContext ctx) throws IOException {
-        byte[] startKey = kvPair.getRowKey();
+        /*
+         * The way prefix keys work is that longer keys sort after shorter keys, so the child rows referencing
+         * a parent key all lie between that key and [key | 0x00] (in unsigned sort order). With the parent keys
+         * sorted, every referencing row is between the first key and the end of the last key, and the skip
+         * scan filter seeks over the rows in between which don't reference any of them.
+         */
         //make sure this is a transactional scan
         DataScan scan = txnOperationFactory.newDataScan(null); // Non-Transactional, will resolve on this side
-        scan =scan.startKey(startKey);
-        byte[] endKey = Bytes.unsignedCopyAndIncrement(startKey);//new byte[startKey.length+1];
-        scan = scan.stopKey(endKey);
+        scan = scan.startKey(prefixes[0]);
+        scan = scan.stopKey(Bytes.unsignedCopyAndIncrement(prefixes[numPrefixes - 1]));
+        scan = scan.filter(SIDriver.driver().filterFactory().prefixSkipScanFilter(prefixes));
 
             SimpleTxnFilter readUncommittedFilter;
             SimpleTxnFilter readCommittedFilter;
@@ -165,18 +180,60 @@ public class ForeignKeyParentInterceptWriteHandler implements WriteHandler{
                 throw new IOException("invalidTxn");
         try(DataScanner scanner = table.openScanner(scan)) {
             List<DataCell> next;
+            int p = 0;
             while ((next = scanner.next(-1)) != null && !next.isEmpty()) {
+                DataCell first = next.get(0);
+                byte[] row = first.keyArray();
+                int rowOffset = first.keyOffset();
+                int rowLength = first.keyLength();
+                /*
+                 * Rows come back in key order, so once a row is past a prefix, no later row can be in it either
+                 */
+                while (p < numPrefixes && !startsWith(row, rowOffset, rowLength, prefixes[p])
+                        && Bytes.BASE_COMPARATOR.compare(row, rowOffset, rowLength, prefixes[p], 0, prefixes[p].length) > 0)
+                    p++;
+                if (p >= numPrefixes)
+                    break;
                 readCommittedFilter.reset();
                 readUncommittedFilter.reset();
-                if (hasData(next, readCommittedFilter) || hasData(next, readUncommittedFilter))
-                    return true;
+                if (!hasData(next, readCommittedFilter) && !hasData(next, readUncommittedFilter))
+                    continue;
+                /*
+                 * The row references every prefix that it starts with; usually that's just the current one, but
+                 * a parent key can itself be a prefix of a later one.
+                 */
+                for (int q = p; q < numPrefixes
+                        && Bytes.BASE_COMPARATOR.compare(prefixes[q], 0, prefixes[q].length, row, rowOffset, rowLength) <= 0; q++) {
+                    if (violations[positions[q]] < 0 && startsWith(row, rowOffset, rowLength, prefixes[q]))
+                        violations[positions[q]] = constraintIndex;
+                }
             }
-            return false;
         }catch (Exception e) {
             throw new IOException(e);
         }
     }
 
+    /**
+     * @return the distinct row keys of the intercepted mutations, in ascending order.
+     */
+    private byte[][] sortedParentKeys() {
+        byte[][] keys = new byte[mutations.size()][];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = mutations.get(k).getRowKey();
+        }
+        Arrays.sort(keys, Bytes.BASE_COMPARATOR);
+        int distinct = 0;
+        for (int k = 0; k < keys.length; k++) {
+            if (distinct == 0 || !Bytes.equals(keys[distinct - 1], keys[k]))
+                keys[distinct++] = keys[k];
+        }
+        return distinct == keys.length ? keys : Arrays.copyOf(keys, distinct);
+    }
+
+    private static boolean startsWith(byte[] row, int rowOffset, int rowLength, byte[] prefix) {
+        return rowLength >= prefix.length && Bytes.equals(prefix, 0, prefix.length, row, rowOffset, prefix.length);
+    }
+
     private boolean hasData(List<DataCell> next, SimpleTxnFilter txnFilter) throws IOException {
         int cellCount = next.size();
         for(DataCell dc:next){
@@ -208,9 +265,7 @@ public class ForeignKeyParentInterceptWriteHandler implements WriteHandler{
      * @param fkConstraintInfo
      */
     private void failRow(KVPair mutation, WriteContext ctx, DDLMessage.FKConstraintInfo fkConstraintInfo ) {
-        String failedKvAsHex = Bytes.toHex(mutation.getRowKey());
         ConstraintContext context = ConstraintContext.foreignKey(fkConstraintInfo);
-        WriteResult foreignKeyConstraint = new WriteResult(Code.FOREIGN_KEY_VIOLATION, context.withMessage(1, parentTableName));
-        ctx.failed(mutation, foreignKeyConstraint);
+        violationProcessor.failRow(mutation, context.withMessage(1, parentTableName), ctx);
     }
 }
@@ -16,6 +16,7 @@
 package com.splicemachine.pipeline.foreignkey;
 
 import com.splicemachine.ddl.DDLMessage.*;
+import com.splicemachine.kvpair.KVPair;
 import com.splicemachine.pipeline.api.Code;
 import com.splicemachine.pipeline.api.PipelineExceptionFactory;
 import com.splicemachine.pipeline.constraint.ConstraintContext;
@@ -54,6 +55,14 @@ class ForeignKeyViolationProcessor {
         }
     }
 
+    /**
+     * Fail a single row which is already known to violate a foreign key constraint (i.e. there is no remote
+     * exception to translate).
+     */
+    public void failRow(KVPair mutation, ConstraintContext constraintContext, WriteContext ctx) {
+        ctx.failed(mutation, new WriteResult(Code.FOREIGN_KEY_VIOLATION, constraintContext));
+    }
+
     private void doFail(WriteContext ctx, ForeignKeyViolation cause) {
         String hexEncodedFailedRowKey = cause.getContext().getMessages()[0];
         byte[] failedRowKey = Bytes.fromHex(hexEncodedFailedRowKey);
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.stream.Stream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Category(ArchitectureIndependent.class)
+public class BroadcastJoinCacheTest{
+    /*each estimated row is weighed at the cache's fixed per-row overhead when there is no template row*/
+    private static final long ROW_ESTIMATE=96L;
+
+    @Test
+    public void testConcurrentLoadsAreAdmittedAgainstTheirEstimate() throws Exception{
+        final CountDownLatch firstLoadStarted=new CountDownLatch(1);
+        final CountDownLatch finishFirstLoad=new CountDownLatch(1);
+        final TestLoader loader=new TestLoader(100L){
+            @Override
+            public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys,ExecRow outerTemplateRow,long estimatedInnerRows) throws ExecutionException{
+                if(loads.get()==0){
+                    firstLoadStarted.countDown();
+                    try{
+                        finishFirstLoad.await();
+                    }catch(InterruptedException e){
+                        throw new ExecutionException(e);
+                    }
+                }
+                return super.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow,estimatedInnerRows);
+            }
+        };
+        final BroadcastJoinCache cache=new BroadcastJoinCache(loader,10*ROW_ESTIMATE,TimeUnit.MINUTES.toMillis(1));
+
+        ExecutorService executor=Executors.newFixedThreadPool(2);
+        try{
+            Future<JoinTable.Factory> first=executor.submit(new Get(cache,1L,6));
+            Assert.assertTrue("First load did not start",firstLoadStarted.await(10,TimeUnit.SECONDS));
+            Assert.assertEquals("Estimate was not reserved before loading",6*ROW_ESTIMATE,cache.getReservedBytes());
+
+            Future<JoinTable.Factory> second=executor.submit(new Get(cache,2L,6));
+            waitFor(new Condition(){
+                @Override public boolean holds(){ return cache.getAdmissionWaitCount()==1; }
+            });
+            Assert.assertEquals("Second load should wait for the first estimate",0,loader.loads.get());
+
+            //the first table turns out to be much smaller than estimated, which makes room for the second
+            finishFirstLoad.countDown();
+            first.get(10,TimeUnit.SECONDS);
+            second.get(10,TimeUnit.SECONDS);
+            Assert.assertEquals("Incorrect number of loads",2,loader.loads.get());
+            Assert.assertEquals("Reservations were not adjusted to the loaded sizes",200L,cache.getReservedBytes());
+            Assert.assertEquals("No load should have been admitted over budget",0,cache.getAdmissionTimeoutCount());
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedLoadReleasesItsReservation() throws Exception{
+        TestLoader loader=new TestLoader(100L){
+            @Override
+            public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys,ExecRow outerTemplateRow,long estimatedInnerRows) throws ExecutionException{
+                throw new ExecutionException(new IOException("Cannot read the inner table"));
+            }
+        };
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,10*ROW_ESTIMATE,0L);
+        try{
+            new Get(cache,1L,6).call();
+            Assert.fail("Expected the load to fail");
+        }catch(IOException expected){
+            //expected
+        }
+        Assert.assertEquals("Reservation was not released",0L,cache.getReservedBytes());
+    }
+
+    @Test
+    public void testMemoryIsReleasedWhenTheLastReferenceIsClosed() throws Exception{
+        TestLoader loader=new TestLoader(100L);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,10*ROW_ESTIMATE,0L);
+
+        JoinTable first=new Get(cache,1L,1).call().newTable();
+        JoinTable second=new Get(cache,1L,1).call().newTable();
+        Assert.assertEquals("Table should have been loaded once",1,loader.loads.get());
+        Assert.assertEquals("Incorrect reservation",100L,cache.getReservedBytes());
+
+        first.close();
+        Assert.assertEquals("Memory was released while the table was in use",100L,cache.getReservedBytes());
+        Assert.assertEquals("Table was freed while in use",0,loader.closed.get());
+        second.close();
+        Assert.assertEquals("Memory was not released",0L,cache.getReservedBytes());
+        Assert.assertEquals("Table was not freed",1,loader.closed.get());
+        Assert.assertEquals("Table should have been evicted",0L,cache.getCachedTables());
+
+        //an evicted table must never be handed out again, so it is loaded (and reserved) again
+        JoinTable third=new Get(cache,1L,1).call().newTable();
+        Assert.assertEquals("Table should have been reloaded",2,loader.loads.get());
+        Assert.assertEquals("Incorrect reservation",100L,cache.getReservedBytes());
+        third.close();
+        Assert.assertEquals("Memory was not released",0L,cache.getReservedBytes());
+    }
+
+    @Test
+    public void testNoRoomWhenTheBudgetIsExhausted() throws Exception{
+        TestLoader loader=new TestLoader(8*ROW_ESTIMATE);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,10*ROW_ESTIMATE,0L);
+        Assert.assertTrue("An empty cache should always have room",cache.hasRoomFor(null,100));
+
+        JoinTable table=new Get(cache,1L,8).call().newTable();
+        Assert.assertTrue("Table within the remaining budget should fit",cache.hasRoomFor(null,2));
+        Assert.assertFalse("Table over the remaining budget should not fit",cache.hasRoomFor(null,3));
+        Assert.assertEquals("Incorrect fallback count",1L,cache.getFallbackCount());
+
+        table.close();
+        Assert.assertTrue("Released memory should make room",cache.hasRoomFor(null,3));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private interface Condition{
+        boolean holds();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException{
+        long deadline=System.currentTimeMillis()+10000;
+        while(!condition.holds()){
+            Assert.assertTrue("Timed out waiting for condition",System.currentTimeMillis()<deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Get implements Callable<JoinTable.Factory>{
+        private final BroadcastJoinCache cache;
+        private final long operationId;
+        private final long estimatedRows;
+
+        Get(BroadcastJoinCache cache,long operationId,long estimatedRows){
+            this.cache=cache;
+            this.operationId=operationId;
+            this.estimatedRows=estimatedRows;
+        }
+
+        @Override
+        public JoinTable.Factory call() throws IOException, StandardException{
+            return cache.get(operationId,null,new int[]{0},new int[]{0},null,null,estimatedRows);
+        }
+    }
+
+    private static class TestLoader implements BroadcastJoinCache.JoinTableLoader{
+        final AtomicInteger loads=new AtomicInteger(0);
+        final AtomicInteger closed=new AtomicInteger(0);
+        private final long size;
+
+        TestLoader(long size){
+            this.size=size;
+        }
+
+        @Override
+        public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys,ExecRow outerTemplateRow,long estimatedInnerRows) throws ExecutionException{
+            loads.incrementAndGet();
+            return new JoinTable.Factory(){
+                @Override
+                public JoinTable newTable(){
+                    return new JoinTable(){
+                        @Override
+                        public Iterator<ExecRow> fetchInner(ExecRow outer){
+                            return Collections.emptyIterator();
+                        }
+
+                        @Override public void close(){ }
+                    };
+                }
+
+                @Override
+                public long estimatedSizeInBytes(){
+                    return size;
+                }
+
+                @Override
+                public void close(){
+                    closed.incrementAndGet();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+@Category(ArchitectureIndependent.class)
+public class OffHeapJoinTableTest{
+
+    @Test
+    public void testFindsEveryKeyAcrossSlabsAndResizes() throws Exception{
+        //small slabs and capacity, to force multiple slabs and several resizes
+        OffHeapJoinTable.Storage storage=new OffHeapJoinTable.Storage(64,2);
+        for(int i=0;i<1000;i++){
+            storage.add(Bytes.toBytes(i),Bytes.toBytes((long)i));
+        }
+        Assert.assertEquals("Incorrect row count",1000,storage.numRows());
+
+        ByteBuffer[] slabs=storage.slabViews();
+        for(int i=0;i<1000;i++){
+            long address=storage.find(Bytes.toBytes(i),slabs);
+            Assert.assertTrue("Did not find key "+i,address>=0);
+            Assert.assertEquals("Chain should have a single row",-1L,nextAddress(slabs,address));
+        }
+        Assert.assertEquals("Found a missing key",-1L,storage.find(Bytes.toBytes(1000),slabs));
+    }
+
+    @Test
+    public void testChainsDuplicateKeys() throws Exception{
+        OffHeapJoinTable.Storage storage=new OffHeapJoinTable.Storage();
+        byte[] key=Bytes.toBytes("key");
+        for(int i=0;i<5;i++){
+            storage.add(key,Bytes.toBytes(i));
+        }
+        storage.add(Bytes.toBytes("other"),Bytes.toBytes(5));
+
+        ByteBuffer[] slabs=storage.slabViews();
+        long address=storage.find(key,slabs);
+        int chainLength=0;
+        while(address>=0){
+            chainLength++;
+            address=nextAddress(slabs,address);
+        }
+        Assert.assertEquals("Incorrect number of rows for key",5,chainLength);
+    }
+
+    @Test
+    public void testFirstSlabIsSizedFromTheEstimate() throws Exception{
+        OffHeapJoinTable.Storage small=OffHeapJoinTable.Storage.forEstimatedRows(10);
+        small.add(Bytes.toBytes(0),Bytes.toBytes(0L));
+        Assert.assertTrue("Small table should not allocate a large slab",small.slabCapacity(0)<=(1<<12));
+
+        OffHeapJoinTable.Storage large=OffHeapJoinTable.Storage.forEstimatedRows(10000000L);
+        large.add(Bytes.toBytes(0),Bytes.toBytes(0L));
+        Assert.assertEquals("Large table should start with a full slab",1<<20,large.slabCapacity(0));
+    }
+
+    @Test
+    public void testSlabsGrowWhenTheEstimateIsLow() throws Exception{
+        OffHeapJoinTable.Storage storage=OffHeapJoinTable.Storage.forEstimatedRows(1);
+        for(int i=0;i<10000;i++){
+            storage.add(Bytes.toBytes(i),Bytes.toBytes((long)i));
+        }
+        for(int i=1;i<storage.numSlabs()-1;i++){
+            Assert.assertTrue("Slabs should not shrink",storage.slabCapacity(i)>=storage.slabCapacity(i-1));
+        }
+        Assert.assertTrue("Slabs should have grown",storage.slabCapacity(storage.numSlabs()-1)>storage.slabCapacity(0));
+        ByteBuffer[] slabs=storage.slabViews();
+        for(int i=0;i<10000;i++){
+            Assert.assertTrue("Did not find key "+i,storage.find(Bytes.toBytes(i),slabs)>=0);
+        }
+    }
+
+    @Test
+    public void testFreeReleasesEverySlab() throws Exception{
+        OffHeapJoinTable.Storage storage=new OffHeapJoinTable.Storage(64,2);
+        for(int i=0;i<100;i++){
+            storage.add(Bytes.toBytes(i),Bytes.toBytes((long)i));
+        }
+        Assert.assertTrue("Should have multiple slabs",storage.numSlabs()>1);
+        storage.free();
+        Assert.assertEquals("Slabs were not released",0,storage.numSlabs());
+        storage.free(); //freeing twice is harmless
+    }
+
+    @Test
+    public void testFreeReleasesDirectMemory() throws Exception{
+        Assert.assertTrue("Direct memory cannot be freed on this JVM",OffHeapJoinTable.Storage.canFreeDirect());
+        int slabSize=1<<20;
+        OffHeapJoinTable.Storage storage=new OffHeapJoinTable.Storage(slabSize,2);
+        for(int i=0;i<4;i++){
+            storage.add(Bytes.toBytes(i),new byte[slabSize-32]);
+        }
+        long allocated=directMemoryUsed();
+        storage.free();
+        Assert.assertTrue("Direct memory was not released",allocated-directMemoryUsed()>=4L*slabSize);
+    }
+
+    private static long directMemoryUsed(){
+        for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)){
+            if("direct".equals(pool.getName()))
+                return pool.getMemoryUsed();
+        }
+        throw new AssertionError("No direct buffer pool found");
+    }
+
+    private static long nextAddress(ByteBuffer[] slabs,long address){
+        return slabs[OffHeapJoinTable.Storage.slab(address)].getLong(OffHeapJoinTable.Storage.offset(address));
+    }
+}
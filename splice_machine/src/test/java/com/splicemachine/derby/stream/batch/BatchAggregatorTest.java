@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.batch;
+
+import com.splicemachine.db.iapi.sql.execute.ExecAggregator;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataTypeDescriptor;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.iapi.types.UserType;
+import com.splicemachine.db.impl.sql.execute.CountAggregator;
+import com.splicemachine.db.impl.sql.execute.MaxMinAggregator;
+import com.splicemachine.db.impl.sql.execute.SumAggregator;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+
+@Category(ArchitectureIndependent.class)
+public class BatchAggregatorTest{
+
+    @Test
+    public void testMaterializeRoundTripsEveryVectorType() throws Exception{
+        ExecRow template=new ValueRow(4);
+        template.setRowArray(new DataValueDescriptor[]{new SQLInteger(),new SQLDouble(),new SQLDecimal(),new SQLVarchar()});
+        ColumnarBatch batch=new ColumnarBatch(template,new int[]{1,2,3,4},8);
+        ExecRow[] rows=new ExecRow[8];
+        for(int i=0;i<rows.length;i++){
+            rows[i]=template.getNewNullRow();
+            if(i%3!=0){
+                rows[i].getColumn(1).setValue(i);
+                rows[i].getColumn(2).setValue(i/2d);
+                //mixed scales and a value too large for a long, to exercise the decimal overflow
+                rows[i].getColumn(3).setBigDecimal(i==7?new BigDecimal("123456789012345678901234.5"):BigDecimal.valueOf(i,i%2));
+                rows[i].getColumn(4).setValue("row"+i);
+            }
+            Assert.assertEquals("Incorrect full flag",i==rows.length-1,batch.add(rows[i]));
+        }
+        Assert.assertTrue("Integer vector should be primitive",batch.getColumn(1) instanceof LongColumnVector);
+        Assert.assertTrue("Decimal vector should have overflowed",!((DecimalColumnVector)batch.getColumn(3)).isCompact());
+        for(int i=0;i<rows.length;i++){
+            Assert.assertEquals("Incorrect row "+i,rows[i],batch.materialize(i));
+        }
+    }
+
+    @Test
+    public void testGroupedAggregatesMatchRowByRow() throws Exception{
+        //[group, value, count(*) agg, count(*), count agg, count, sum agg, sum, max agg, max]
+        SpliceGenericAggregator countStar=aggregator(new CountAggregator(),"COUNT(*)",Types.BIGINT,3,2,4);
+        SpliceGenericAggregator count=aggregator(new CountAggregator(),"COUNT",Types.BIGINT,5,2,6);
+        SpliceGenericAggregator sum=aggregator(new SumAggregator(),"SUM",Types.BIGINT,7,2,8);
+        SpliceGenericAggregator max=aggregator(new MaxMinAggregator(),"MAX",Types.INTEGER,9,2,10);
+        SpliceGenericAggregator[] aggregates={countStar,count,sum,max};
+
+        ExecRow template=new ValueRow(10);
+        template.setRowArray(new DataValueDescriptor[]{new SQLInteger(),new SQLInteger(),
+                new UserType(),new SQLLongint(),new UserType(),new SQLLongint(),
+                new UserType(),new SQLLongint(),new UserType(),new SQLInteger()});
+        BatchAggregator[] batchAggregators=BatchAggregator.create(aggregates,template);
+        Assert.assertNotNull("Aggregates should be supported",batchAggregators);
+
+        ColumnarBatch batch=new ColumnarBatch(template,new int[]{1,2},16);
+        int[] groupIds=new int[16];
+        for(int i=0;i<16;i++){
+            ExecRow row=template.getNewNullRow();
+            row.getColumn(1).setValue(i%3);
+            if(i%5!=0)
+                row.getColumn(2).setValue(i);
+            batch.add(row);
+            groupIds[i]=i%3;
+        }
+        ExecRow[] groupRows=new ExecRow[3];
+        for(int g=0;g<3;g++){
+            groupRows[g]=batch.materialize(g);
+            for(SpliceGenericAggregator aggregate : aggregates){
+                aggregate.initialize(groupRows[g]);
+            }
+        }
+        for(BatchAggregator batchAggregator : batchAggregators){
+            batchAggregator.aggregate(batch,groupIds,groupRows);
+        }
+
+        for(int g=0;g<3;g++){
+            long rows=0, nonNull=0, total=0, largest=Long.MIN_VALUE;
+            for(int i=g;i<16;i+=3){
+                rows++;
+                if(i%5==0) continue;
+                nonNull++;
+                total+=i;
+                largest=Math.max(largest,i);
+            }
+            for(SpliceGenericAggregator aggregate : aggregates){
+                aggregate.finish(groupRows[g]);
+            }
+            Assert.assertEquals("Incorrect count(*)",rows,groupRows[g].getColumn(4).getLong());
+            Assert.assertEquals("Incorrect count",nonNull,groupRows[g].getColumn(6).getLong());
+            Assert.assertEquals("Incorrect sum",total,groupRows[g].getColumn(8).getLong());
+            Assert.assertEquals("Incorrect max",largest,groupRows[g].getColumn(10).getLong());
+        }
+    }
+
+    @Test
+    public void testUnsupportedTypesAreRejected() throws Exception{
+        ExecRow template=new ValueRow(3);
+        template.setRowArray(new DataValueDescriptor[]{new SQLVarchar(),new UserType(),new SQLLongint()});
+        SpliceGenericAggregator sum=aggregator(new SumAggregator(),"SUM",Types.BIGINT,2,1,3);
+        Assert.assertNull("Cannot sum a varchar in batches",BatchAggregator.create(sum,template));
+    }
+
+    private static SpliceGenericAggregator aggregator(ExecAggregator aggregator,String name,int resultType,
+                                                      int aggregatorColumn,int inputColumn,int resultColumn){
+        ExecAggregator ua=aggregator.setup(null,name,DataTypeDescriptor.getBuiltInDataTypeDescriptor(resultType));
+        return new SpliceGenericAggregator(ua,aggregatorColumn,inputColumn,resultColumn);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.stream.BaseStreamTest;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.spark_project.guava.collect.Iterators;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+@Category(ArchitectureIndependent.class)
+public class SpillableHashTableTest extends BaseStreamTest{
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testGroupsSurviveSpilling() throws Exception{
+        SpillableHashTable<ExecRow,ExecRow> table = new SpillableHashTable<>(1L,4,tempFolder.getRoot());
+        for(int i=0;i<100;i++){
+            table.put(getExecRow(i%10,1),getExecRow(i,2));
+        }
+        Assert.assertTrue("Table should have spilled",table.numSpilledPartitions()>0);
+
+        int groups = 0;
+        int entries = 0;
+        Iterator<Map.Entry<ExecRow,Collection<ExecRow>>> it = table.groups();
+        while(it.hasNext()){
+            Map.Entry<ExecRow,Collection<ExecRow>> group = it.next();
+            Assert.assertEquals("Incorrect group size",10,group.getValue().size());
+            groups++;
+            entries+=group.getValue().size();
+        }
+        Assert.assertEquals("Incorrect number of groups",10,groups);
+        Assert.assertEquals("Incorrect number of entries",100,entries);
+        assertNoSpillFiles();
+    }
+
+    @Test
+    public void testProbeMatchesSpilledPartitions() throws Exception{
+        SpillableHashTable<ExecRow,ExecRow> table = new SpillableHashTable<>(1L,4,tempFolder.getRoot());
+        for(int i=0;i<20;i++){
+            table.put(getExecRow(i,1),getExecRow(i,2));
+        }
+        Assert.assertTrue("Table should have spilled",table.numSpilledPartitions()>0);
+
+        Iterator<ExecRow> joined = table.probe(evenRows.iterator(),new SpillableHashTable.ProbeFunction<ExecRow, ExecRow, ExecRow, ExecRow>(){
+            @Override
+            public Iterator<ExecRow> apply(ExecRow key,ExecRow probeValue,Collection<ExecRow> matches){
+                Assert.assertEquals("Incorrect number of matches",1,matches.size());
+                return Collections.singletonList(matches.iterator().next()).iterator();
+            }
+        });
+        Assert.assertEquals("Incorrect number of joined rows",evenRows.size(),Iterators.size(joined));
+        assertNoSpillFiles();
+    }
+
+    @Test
+    public void testDoesNotSpillWithinBudget() throws Exception{
+        SpillableHashTable<ExecRow,ExecRow> table = new SpillableHashTable<>(Long.MAX_VALUE,4,tempFolder.getRoot());
+        table.putAll(tenRows.iterator());
+        Assert.assertEquals("Table should not have spilled",0,table.numSpilledPartitions());
+        Assert.assertEquals("Incorrect number of groups",2,Iterators.size(table.groups()));
+    }
+
+    @Test
+    public void testClosingAbandonedGroupsRemovesSpillFiles() throws Exception{
+        SpillableHashTable<ExecRow,ExecRow> table = new SpillableHashTable<>(1L,4,tempFolder.getRoot());
+        for(int i=0;i<100;i++){
+            table.put(getExecRow(i%10,1),getExecRow(i,2));
+        }
+        Assert.assertTrue("Table should have spilled",table.numSpilledPartitions()>1);
+
+        Iterator<Map.Entry<ExecRow,Collection<ExecRow>>> it = table.groups();
+        Assert.assertTrue("Should have a group",it.hasNext());
+        it.next();
+        Assert.assertTrue("Remaining partitions should still be on disk",spillFiles().length>0);
+
+        //the iterator is abandoned, so cleanup is up to the owning operation
+        table.close();
+        assertNoSpillFiles();
+        table.close();
+    }
+
+    @Test
+    public void testClosingAbandonedProbeRemovesSpillFiles() throws Exception{
+        SpillableHashTable<ExecRow,ExecRow> table = new SpillableHashTable<>(1L,4,tempFolder.getRoot());
+        for(int i=0;i<20;i++){
+            table.put(getExecRow(i,1),getExecRow(i,2));
+        }
+        Assert.assertTrue("Table should have spilled",table.numSpilledPartitions()>1);
+
+        Iterator<ExecRow> joined = table.probe(evenRows.iterator(),new SpillableHashTable.ProbeFunction<ExecRow, ExecRow, ExecRow, ExecRow>(){
+            @Override
+            public Iterator<ExecRow> apply(ExecRow key,ExecRow probeValue,Collection<ExecRow> matches){
+                return matches.iterator();
+            }
+        });
+        Assert.assertTrue("Should have a joined row",joined.hasNext());
+        joined.next();
+        Assert.assertTrue("Probe rows should have been spilled",spillFiles().length>0);
+
+        table.close();
+        assertNoSpillFiles();
+    }
+
+    private File[] spillFiles(){
+        File[] files = tempFolder.getRoot().listFiles();
+        Assert.assertNotNull(files);
+        return files;
+    }
+
+    private void assertNoSpillFiles(){
+        File[] files = tempFolder.getRoot().listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals("Spill files were not cleaned up",0,files.length);
+    }
+}
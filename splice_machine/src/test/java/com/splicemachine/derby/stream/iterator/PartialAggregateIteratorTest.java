@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.iterator;
+
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.metrics.MetricFactory;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.EntryAggregator;
+import com.splicemachine.storage.Partition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around reading the partial aggregates computed by each region.
+ */
+@Category(ArchitectureIndependent.class)
+public class PartialAggregateIteratorTest{
+    private TableScannerBuilder builder;
+    private Partition table;
+    private DataScanner scanner;
+
+    @Before
+    public void setUp() throws Exception{
+        builder=mock(TableScannerBuilder.class);
+        when(builder.getScan()).thenReturn(mock(DataScan.class));
+        when(builder.getTemplate()).thenReturn(new ValueRow(0));
+        scanner=mock(DataScanner.class);
+        table=mock(Partition.class);
+        when(table.openScanner(any(DataScan.class),any(MetricFactory.class))).thenReturn(scanner);
+    }
+
+    @Test
+    public void testPartialsFromEveryRegionAreReturned() throws Exception{
+        List<DataCell> first=Collections.singletonList(partialCell(3));
+        List<DataCell> second=Collections.singletonList(partialCell(4));
+        when(scanner.next(anyInt())).thenReturn(first,second,Collections.<DataCell>emptyList());
+
+        PartialAggregateIterator partials=newIterator();
+        Assert.assertTrue("Aggregated scan should be usable",partials.open(table,null));
+        long count=0;
+        int regions=0;
+        while(partials.hasNext()){
+            count+=partials.next().getCount(0);
+            regions++;
+        }
+        Assert.assertEquals("Incorrect number of partials!",2,regions);
+        Assert.assertEquals("Incorrect count!",7l,count);
+        verify(scanner).close();
+    }
+
+    @Test
+    public void testUnaggregatedFirstRegionIsNotUsed() throws Exception{
+        List<DataCell> raw=Collections.singletonList(rawCell());
+        when(scanner.next(anyInt())).thenReturn(raw);
+
+        PartialAggregateIterator partials=newIterator();
+        Assert.assertFalse("Unaggregated scan should not be used",partials.open(table,null));
+        verify(scanner).close();
+    }
+
+    @Test
+    public void testUnaggregatedLaterRegionFails() throws Exception{
+        List<DataCell> first=Collections.singletonList(partialCell(3));
+        List<DataCell> second=Arrays.asList(rawCell(),rawCell());
+        when(scanner.next(anyInt())).thenReturn(first,second,Collections.<DataCell>emptyList());
+
+        PartialAggregateIterator partials=newIterator();
+        Assert.assertTrue("Aggregated scan should be usable",partials.open(table,null));
+        Assert.assertTrue("Missing the first region's partial!",partials.hasNext());
+        Assert.assertEquals("Incorrect count!",3l,partials.next().getCount(0));
+        try{
+            partials.hasNext();
+            Assert.fail("Rows which were not aggregated should not be skipped");
+        }catch(IllegalStateException expected){
+            //expected
+        }
+        verify(scanner).close();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private PartialAggregateIterator newIterator(){
+        return new PartialAggregateIterator(builder,countStar(),new int[0],new int[]{0});
+    }
+
+    private static EntryAggregator countStar(){
+        return new EntryAggregator(new int[0],new EntryAggregator.Function[]{EntryAggregator.Function.COUNT_STAR},new int[]{0});
+    }
+
+    private static DataCell partialCell(int rows) throws Exception{
+        EntryAggregator aggregator=countStar();
+        for(int i=0;i<rows;i++){
+            aggregator.aggregate(null,0,0);
+        }
+        byte[] partial=aggregator.encodePartials().get(0);
+        DataCell cell=mock(DataCell.class);
+        when(cell.matchesQualifier(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.AGGREGATE_COLUMN_BYTES)).thenReturn(true);
+        when(cell.value()).thenReturn(partial);
+        return cell;
+    }
+
+    private static DataCell rawCell(){
+        //mocks don't match any qualifier
+        return mock(DataCell.class);
+    }
+}
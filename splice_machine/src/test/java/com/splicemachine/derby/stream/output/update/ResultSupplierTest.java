@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.output.update;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.driver.SIEnvironment;
+import com.splicemachine.si.impl.txn.ActiveWriteTxn;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.Attributable;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataGet;
+import com.splicemachine.storage.DataResult;
+import com.splicemachine.storage.EntryDecoder;
+import com.splicemachine.storage.Partition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around fetching the base rows of a primary key update, both in batches and one row at a time.
+ */
+@Category(ArchitectureIndependent.class)
+public class ResultSupplierTest{
+    private static final long HEAP_CONGLOM=1184l;
+
+    private SIDriver previousDriver;
+    private Partition table;
+    private TxnOperationFactory operationFactory;
+    private TxnView txn;
+
+    @Before
+    public void setUp() throws Exception{
+        previousDriver=SIDriver.driver();
+        table=mock(Partition.class);
+        PartitionFactory tableFactory=mock(PartitionFactory.class);
+        when(tableFactory.getTable(Long.toString(HEAP_CONGLOM))).thenReturn(table);
+        operationFactory=mock(TxnOperationFactory.class);
+        when(operationFactory.newDataGet(any(TxnView.class),any(byte[].class),any(DataGet.class))).thenReturn(mock(DataGet.class));
+
+        SIEnvironment env=mock(SIEnvironment.class);
+        when(env.configuration()).thenReturn(mock(SConfiguration.class));
+        when(env.tableFactory()).thenReturn(tableFactory);
+        when(env.operationFactory()).thenReturn(operationFactory);
+        SIDriver.loadDriver(env);
+
+        txn=new ActiveWriteTxn(10l,10l,Txn.ROOT_TRANSACTION,false,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        //don't leak our mocked driver into other tests
+        Field instance=SIDriver.class.getDeclaredField("INSTANCE");
+        instance.setAccessible(true);
+        instance.set(null,previousDriver);
+    }
+
+    @Test
+    public void testPrefetchSortsAndRemovesDuplicateLocations() throws Exception{
+        baseRows("a","b","c");
+        ResultSupplier supplier=newSupplier();
+
+        supplier.prefetch(locations("c","a","b","a","c"));
+
+        ArgumentCaptor<List> rowKeys=ArgumentCaptor.forClass(List.class);
+        verify(table,times(1)).batchGet(any(Attributable.class),rowKeys.capture());
+        assertRowKeys(rowKeys.getValue(),"a","b","c");
+        verify(operationFactory).encodeForReads(any(Attributable.class),eq(txn),eq(false));
+        Assert.assertEquals("Incorrect number of batches fetched!",1l,supplier.getBatchesFetched());
+        Assert.assertEquals("Incorrect number of rows fetched!",3l,supplier.getRowsFetched());
+    }
+
+    @Test
+    public void testPrefetchedRowsAreUsed() throws Exception{
+        baseRows("a","b");
+        ResultSupplier supplier=newSupplier();
+        supplier.prefetch(locations("b","a"));
+
+        assertResult(supplier,"a");
+        assertResult(supplier,"b");
+
+        verify(table,never()).get(any(DataGet.class),any(DataResult.class));
+        verify(operationFactory,never()).newDataGet(any(TxnView.class),any(byte[].class),any(DataGet.class));
+    }
+
+    @Test
+    public void testRowsOutsideThePrefetchAreFetchedSingly() throws Exception{
+        baseRows("a");
+        DataCell single=cell("single");
+        DataResult singleResult=result(single);
+        when(table.get(any(DataGet.class),any(DataResult.class))).thenReturn(singleResult);
+        ResultSupplier supplier=newSupplier();
+        supplier.prefetch(locations("a"));
+
+        //a row which was not part of the batch
+        supplier.setLocation(Bytes.toBytes("z"));
+        EntryDecoder decoder=mock(EntryDecoder.class);
+        supplier.setResult(decoder);
+        verify(decoder).set(single.valueArray(),single.valueOffset(),single.valueLength());
+        verify(operationFactory).newDataGet(eq(txn),eq(Bytes.toBytes("z")),any(DataGet.class));
+
+        //a prefetched row is only used once, after that it is read again
+        assertResult(supplier,"a");
+        supplier.setLocation(Bytes.toBytes("a"));
+        decoder=mock(EntryDecoder.class);
+        supplier.setResult(decoder);
+        verify(decoder).set(single.valueArray(),single.valueOffset(),single.valueLength());
+        verify(table,times(2)).get(any(DataGet.class),any(DataResult.class));
+    }
+
+    @Test
+    public void testMissingPrefetchedRowIsFetchedSingly() throws Exception{
+        //the batch came back without a row for "b"
+        DataResult present=result(cell("a"));
+        DataResult missing=result(null);
+        when(table.batchGet(any(Attributable.class),anyListOf(byte[].class))).thenReturn(Arrays.asList(present,missing).iterator());
+        DataCell single=cell("single");
+        DataResult singleResult=result(single);
+        when(table.get(any(DataGet.class),any(DataResult.class))).thenReturn(singleResult);
+        ResultSupplier supplier=newSupplier();
+        supplier.prefetch(locations("a","b"));
+
+        supplier.setLocation(Bytes.toBytes("b"));
+        EntryDecoder decoder=mock(EntryDecoder.class);
+        supplier.setResult(decoder);
+        verify(decoder).set(single.valueArray(),single.valueOffset(),single.valueLength());
+        verify(table,times(1)).get(any(DataGet.class),any(DataResult.class));
+    }
+
+    @Test
+    public void testEmptyPrefetchDoesNotReadTheTable() throws Exception{
+        ResultSupplier supplier=newSupplier();
+        supplier.prefetch(new ArrayList<byte[]>());
+
+        verify(table,never()).batchGet(any(Attributable.class),anyListOf(byte[].class));
+        Assert.assertEquals("Incorrect number of batches fetched!",0l,supplier.getBatchesFetched());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ResultSupplier newSupplier(){
+        BitSet fields=new BitSet();
+        fields.set(0);
+        return new ResultSupplier(fields,txn,HEAP_CONGLOM);
+    }
+
+    private void baseRows(String... rowKeys) throws Exception{
+        final List<DataResult> results=new ArrayList<>(rowKeys.length);
+        for(String rowKey : rowKeys){
+            results.add(result(cell(rowKey)));
+        }
+        when(table.batchGet(any(Attributable.class),anyListOf(byte[].class))).thenAnswer(new Answer<Object>(){
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable{
+                return results.iterator();
+            }
+        });
+    }
+
+    private static DataResult result(DataCell cell){
+        DataResult result=mock(DataResult.class);
+        when(result.userData()).thenReturn(cell);
+        return result;
+    }
+
+    private static DataCell cell(String value){
+        byte[] bytes=Bytes.toBytes(value);
+        DataCell cell=mock(DataCell.class);
+        when(cell.valueArray()).thenReturn(bytes);
+        when(cell.valueOffset()).thenReturn(0);
+        when(cell.valueLength()).thenReturn(bytes.length);
+        when(cell.getClone()).thenReturn(cell);
+        return cell;
+    }
+
+    private static List<byte[]> locations(String... rowKeys){
+        List<byte[]> locations=new ArrayList<>(rowKeys.length);
+        for(String rowKey : rowKeys){
+            locations.add(Bytes.toBytes(rowKey));
+        }
+        return locations;
+    }
+
+    private static void assertRowKeys(List actual,String... expected){
+        Assert.assertEquals("Incorrect number of row keys!",expected.length,actual.size());
+        for(int i=0;i<expected.length;i++){
+            Assert.assertArrayEquals("Incorrect row key at position "+i,Bytes.toBytes(expected[i]),(byte[])actual.get(i));
+        }
+    }
+
+    private static void assertResult(ResultSupplier supplier,String expected) throws Exception{
+        supplier.setLocation(Bytes.toBytes(expected));
+        EntryDecoder decoder=mock(EntryDecoder.class);
+        supplier.setResult(decoder);
+        byte[] bytes=Bytes.toBytes(expected);
+        verify(decoder).set(eq(bytes),eq(0),eq(bytes.length));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.derby.stream.output.update;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLRef;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.store.access.hbase.HBaseRowLocation;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.impl.txn.ActiveWriteTxn;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around reading the base rows of a primary key update ahead of the writer.
+ */
+@Category(ArchitectureIndependent.class)
+public class UpdatePipelineWriterTest{
+
+    @Test
+    public void testBaseRowsArePrefetchedAheadOfTheWrites() throws Exception{
+        final List<String> events=new ArrayList<>();
+        ResultSupplier supplier=recordingSupplier(events);
+        RecordingWriter writer=new RecordingWriter(events);
+        writer.resultSupplier=supplier;
+        writer.prefetchSize=2;
+
+        writer.update(rows("a","b","c","d","e").iterator());
+
+        List<String> expected=new ArrayList<>();
+        expected.add("prefetch[a,b]");
+        expected.add("update a");
+        expected.add("update b");
+        expected.add("prefetch[c,d]");
+        expected.add("update c");
+        expected.add("update d");
+        expected.add("prefetch[e]");
+        expected.add("update e");
+        Assert.assertEquals("Incorrect order of prefetches and writes!",expected,events);
+    }
+
+    @Test
+    public void testNoPrefetchWithoutKeyChange() throws Exception{
+        List<String> events=new ArrayList<>();
+        RecordingWriter writer=new RecordingWriter(events);
+        writer.prefetchSize=2;
+
+        writer.update(rows("a","b").iterator());
+
+        List<String> expected=new ArrayList<>();
+        expected.add("update a");
+        expected.add("update b");
+        Assert.assertEquals("Rows should be written without prefetching!",expected,events);
+    }
+
+    @Test
+    public void testNoPrefetchWhenReadAheadIsDisabled() throws Exception{
+        List<String> events=new ArrayList<>();
+        ResultSupplier supplier=recordingSupplier(events);
+        RecordingWriter writer=new RecordingWriter(events);
+        writer.resultSupplier=supplier;
+        writer.prefetchSize=1;
+
+        writer.update(rows("a","b").iterator());
+
+        verify(supplier,never()).prefetch(anyListOf(byte[].class));
+        List<String> expected=new ArrayList<>();
+        expected.add("update a");
+        expected.add("update b");
+        Assert.assertEquals("Rows should be written without prefetching!",expected,events);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods and classes*/
+    private static ResultSupplier recordingSupplier(final List<String> events) throws Exception{
+        ResultSupplier supplier=mock(ResultSupplier.class);
+        doAnswer(new Answer<Void>(){
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws Throwable{
+                //the writer re-uses its list of locations, so record what it holds right now
+                StringBuilder sb=new StringBuilder("prefetch[");
+                boolean first=true;
+                for(byte[] location : (List<byte[]>)invocation.getArguments()[0]){
+                    if(!first) sb.append(",");
+                    else first=false;
+                    sb.append(Bytes.toString(location));
+                }
+                events.add(sb.append("]").toString());
+                return null;
+            }
+        }).when(supplier).prefetch(anyListOf(byte[].class));
+        return supplier;
+    }
+
+    private static List<ExecRow> rows(String... rowKeys){
+        List<ExecRow> rows=new ArrayList<>(rowKeys.length);
+        for(int i=0;i<rowKeys.length;i++){
+            ExecRow row=new ValueRow(2);
+            row.setColumn(1,new SQLInteger(i));
+            row.setColumn(2,new SQLRef(new HBaseRowLocation(Bytes.toBytes(rowKeys[i]))));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static class RecordingWriter extends UpdatePipelineWriter{
+        private final List<String> events;
+
+        RecordingWriter(List<String> events) throws StandardException{
+            super(1184l,new int[]{},new int[]{},new int[]{},new FormatableBitSet(),null,
+                    new ActiveWriteTxn(10l,10l,Txn.ROOT_TRANSACTION,false,Txn.IsolationLevel.SNAPSHOT_ISOLATION),
+                    null,new FormatableBitSet(),null);
+            this.events=events;
+        }
+
+        @Override
+        public void update(ExecRow execRow) throws StandardException{
+            byte[] location=((HBaseRowLocation)execRow.getColumn(execRow.nColumns()).getObject()).getBytes();
+            events.add("update "+Bytes.toString(location));
+        }
+    }
+}
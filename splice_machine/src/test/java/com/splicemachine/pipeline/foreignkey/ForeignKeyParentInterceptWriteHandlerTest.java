@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.pipeline.foreignkey;
+
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.ddl.DDLMessage;
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.pipeline.api.Code;
+import com.splicemachine.pipeline.api.PipelineExceptionFactory;
+import com.splicemachine.pipeline.client.WriteResult;
+import com.splicemachine.pipeline.context.WriteContext;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnStore;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.driver.SIEnvironment;
+import com.splicemachine.si.impl.txn.ActiveWriteTxn;
+import com.splicemachine.si.impl.txn.CommittedTxn;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.CellType;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataFilter;
+import com.splicemachine.storage.DataFilterFactory;
+import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.Partition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around checking all the deleted parent keys of a write against each child index with a single scan.
+ */
+@Category(ArchitectureIndependent.class)
+public class ForeignKeyParentInterceptWriteHandlerTest{
+    private static final long CHILD_WRITER=1l;
+
+    private SIDriver previousDriver;
+    private PartitionFactory tableFactory;
+    private DataFilterFactory filterFactory;
+    private WriteContext ctx;
+
+    @Before
+    public void setUp() throws Exception{
+        previousDriver=SIDriver.driver();
+        tableFactory=mock(PartitionFactory.class);
+        filterFactory=mock(DataFilterFactory.class);
+        when(filterFactory.prefixSkipScanFilter(any(byte[][].class))).thenReturn(mock(DataFilter.class));
+
+        TxnOperationFactory operationFactory=mock(TxnOperationFactory.class);
+        when(operationFactory.newDataScan(any(Txn.class))).thenReturn(mock(DataScan.class,new Answer<Object>(){
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable{
+                //scan builder methods return the scan itself
+                return invocation.getMethod().getReturnType().isInstance(invocation.getMock())?invocation.getMock():null;
+            }
+        }));
+        TxnStore txnStore=mock(TxnStore.class);
+        when(txnStore.getTransaction(anyLong())).thenReturn(new CommittedTxn(CHILD_WRITER,CHILD_WRITER+1));
+        when(txnStore.getTransaction(anyLong(),anyBoolean())).thenReturn(new CommittedTxn(CHILD_WRITER,CHILD_WRITER+1));
+
+        SIEnvironment env=mock(SIEnvironment.class);
+        when(env.configuration()).thenReturn(mock(SConfiguration.class));
+        when(env.tableFactory()).thenReturn(tableFactory);
+        when(env.filterFactory()).thenReturn(filterFactory);
+        when(env.operationFactory()).thenReturn(operationFactory);
+        when(env.txnStore()).thenReturn(txnStore);
+        SIDriver.loadDriver(env);
+
+        ctx=mock(WriteContext.class);
+        when(ctx.getTxn()).thenReturn(new ActiveWriteTxn(10l,10l,Txn.ROOT_TRANSACTION,false,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        //don't leak our mocked driver into other tests
+        Field instance=SIDriver.class.getDeclaredField("INSTANCE");
+        instance.setAccessible(true);
+        instance.set(null,previousDriver);
+    }
+
+    @Test
+    public void testReferencedParentKeysFail() throws Exception{
+        childIndex(1l,"a\u0000child","b\u0000unrelated","e\u0000child");
+        ForeignKeyParentInterceptWriteHandler handler=newHandler(1l);
+
+        KVPair a=delete("a");
+        KVPair c=delete("c");
+        KVPair e=delete("e");
+        handler.next(e,ctx);
+        handler.next(a,ctx);
+        handler.next(c,ctx);
+        handler.flush(ctx);
+
+        assertFailed(a,"fk1");
+        verify(ctx).success(c);
+        assertFailed(e,"fk1");
+        verify(ctx,never()).success(a);
+        verify(ctx,never()).success(e);
+
+        //all the parent keys are checked with a single skip scan over the child index
+        ArgumentCaptor<byte[][]> prefixes=ArgumentCaptor.forClass(byte[][].class);
+        verify(filterFactory,times(1)).prefixSkipScanFilter(prefixes.capture());
+        assertPrefixes(prefixes.getValue(),"a","c","e");
+        verify(tableFactory.getTable("1"),times(1)).openScanner(any(DataScan.class));
+    }
+
+    @Test
+    public void testUnreferencedParentKeysSucceed() throws Exception{
+        childIndex(1l,"b\u0000child","d\u0000child");
+        ForeignKeyParentInterceptWriteHandler handler=newHandler(1l);
+
+        KVPair a=delete("a");
+        KVPair c=delete("c");
+        KVPair cAgain=delete("c");
+        handler.next(a,ctx);
+        handler.next(c,ctx);
+        handler.next(cAgain,ctx);
+        handler.flush(ctx);
+
+        verify(ctx).success(a);
+        verify(ctx,times(2)).success(c);
+        verify(ctx,never()).failed(any(KVPair.class),any(WriteResult.class));
+
+        //duplicate parent keys are only checked once
+        ArgumentCaptor<byte[][]> prefixes=ArgumentCaptor.forClass(byte[][].class);
+        verify(filterFactory).prefixSkipScanFilter(prefixes.capture());
+        assertPrefixes(prefixes.getValue(),"a","c");
+    }
+
+    @Test
+    public void testLaterIndexesOnlyCheckUnreferencedKeys() throws Exception{
+        childIndex(1l,"a\u0000child");
+        childIndex(2l,"a\u0000child","c\u0000child");
+        ForeignKeyParentInterceptWriteHandler handler=newHandler(1l,2l);
+
+        KVPair a=delete("a");
+        KVPair c=delete("c");
+        KVPair e=delete("e");
+        handler.next(a,ctx);
+        handler.next(c,ctx);
+        handler.next(e,ctx);
+        handler.flush(ctx);
+
+        assertFailed(a,"fk1");
+        assertFailed(c,"fk2");
+        verify(ctx).success(e);
+
+        ArgumentCaptor<byte[][]> prefixes=ArgumentCaptor.forClass(byte[][].class);
+        verify(filterFactory,times(2)).prefixSkipScanFilter(prefixes.capture());
+        assertPrefixes(prefixes.getAllValues().get(0),"a","c","e");
+        assertPrefixes(prefixes.getAllValues().get(1),"c","e");
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ForeignKeyParentInterceptWriteHandler newHandler(Long... childConglomerates){
+        List<DDLMessage.FKConstraintInfo> constraints=new ArrayList<>(childConglomerates.length);
+        for(Long conglomerate:childConglomerates){
+            constraints.add(DDLMessage.FKConstraintInfo.newBuilder()
+                    .setConstraintName("fk"+conglomerate).setTableName("child").setColumnNames("col").build());
+        }
+        return new ForeignKeyParentInterceptWriteHandler("parent",Arrays.asList(childConglomerates),
+                mock(PipelineExceptionFactory.class),constraints);
+    }
+
+    private void childIndex(long conglomerate,String... rows) throws Exception{
+        final List<List<DataCell>> scanRows=new ArrayList<>(rows.length);
+        for(String row:rows){
+            scanRows.add(Collections.singletonList(childCell(row)));
+        }
+        DataScanner scanner=mock(DataScanner.class);
+        when(scanner.next(anyInt())).thenAnswer(new Answer<List<DataCell>>(){
+            private int position;
+
+            @Override
+            public List<DataCell> answer(InvocationOnMock invocation) throws Throwable{
+                return position<scanRows.size()?scanRows.get(position++):Collections.<DataCell>emptyList();
+            }
+        });
+        Partition table=mock(Partition.class);
+        when(table.openScanner(any(DataScan.class))).thenReturn(scanner);
+        when(tableFactory.getTable(Long.toString(conglomerate))).thenReturn(table);
+    }
+
+    private static DataCell childCell(String row){
+        byte[] key=Bytes.toBytes(row);
+        DataCell cell=mock(DataCell.class);
+        when(cell.dataType()).thenReturn(CellType.USER_DATA);
+        when(cell.version()).thenReturn(CHILD_WRITER);
+        when(cell.keyArray()).thenReturn(key);
+        when(cell.keyOffset()).thenReturn(0);
+        when(cell.keyLength()).thenReturn(key.length);
+        return cell;
+    }
+
+    private static KVPair delete(String row){
+        return new KVPair(Bytes.toBytes(row),new byte[]{},KVPair.Type.DELETE);
+    }
+
+    private void assertFailed(KVPair mutation,String constraintName){
+        ArgumentCaptor<WriteResult> result=ArgumentCaptor.forClass(WriteResult.class);
+        verify(ctx).failed(eq(mutation),result.capture());
+        Assert.assertEquals("Incorrect result code!",Code.FOREIGN_KEY_VIOLATION,result.getValue().getCode());
+        Assert.assertEquals("Incorrect violated constraint!",constraintName,result.getValue().getConstraintContext().getMessages()[0]);
+    }
+
+    private static void assertPrefixes(byte[][] actual,String... expected){
+        Assert.assertEquals("Incorrect number of prefixes!",expected.length,actual.length);
+        for(int i=0;i<expected.length;i++){
+            Assert.assertArrayEquals("Incorrect prefix!",Bytes.toBytes(expected[i]),actual[i]);
+        }
+    }
+}
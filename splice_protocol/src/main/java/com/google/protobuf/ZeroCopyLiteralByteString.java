@@ -39,12 +39,26 @@ public final class ZeroCopyLiteralByteString extends LiteralByteString {
         return new LiteralByteString(array);
     }
 
+    /**
+     * Wraps a subset of a byte array in a {@link ByteString} without copying it.
+     */
+    public static ByteString wrap(final byte[] array, int offset, int length) {
+        if (offset == 0 && length == array.length) {
+            return new LiteralByteString(array);
+        }
+        return new BoundedByteString(array, offset, length);
+    }
+
     /**
      * Extracts the byte array from the given {@link ByteString} without copy.
      * @param buf A buffer from which to extract the array.  This buffer must be
      * actually an instance of a {@code LiteralByteString}.
      */
     public static byte[] zeroCopyGetBytes(final ByteString buf) {
+        if (buf instanceof BoundedByteString) {
+            // the backing array holds more than this buffer, so we have to copy
+            return buf.toByteArray();
+        }
         if (buf instanceof LiteralByteString) {
             return ((LiteralByteString) buf).bytes;
         }
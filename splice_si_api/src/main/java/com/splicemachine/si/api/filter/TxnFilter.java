@@ -18,9 +18,28 @@ package com.splicemachine.si.api.filter;
 import com.splicemachine.storage.DataCell;
 import com.splicemachine.storage.DataFilter;
 
+import java.io.IOException;
+
 public interface TxnFilter extends DataFilter{
     void nextRow();
 
+    /**
+     * @param keyValue the cell to check
+     * @return true if filtering {@code keyValue} would require looking up its writing transaction
+     * (i.e. the writer is not already known to this filter or its caches)
+     */
+    boolean requiresLookup(DataCell keyValue);
+
+    /**
+     * Fetch the transactions in {@code txnIds} in a single bulk lookup, so that cells of the current
+     * row written by them can be filtered without looking up each writer individually. Prefetched
+     * transactions are discarded when the row completes.
+     *
+     * @param txnIds the writers to fetch
+     * @throws IOException if the transactions cannot be fetched
+     */
+    void prefetch(long[] txnIds) throws IOException;
+
     DataCell produceAccumulatedResult();
     boolean getExcludeRow();
 
@@ -15,6 +15,8 @@
 
 package com.splicemachine.si.api.readresolve;
 
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongOpenHashSet;
 import com.lmax.disruptor.*;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
@@ -26,9 +28,15 @@ import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.TrafficControl;
 import org.apache.log4j.Logger;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Read-Resolver which asynchronously submits regions for execution, discarding
@@ -36,12 +44,19 @@ import java.util.concurrent.TimeUnit;
  * <p/>
  * This implementation uses an LMAX disruptor to asynchronously pass Read-resolve events
  * to a background thread, which in turn uses a SynchronousReadResolver to actually perform the resolution.
+ * <p/>
+ * The background thread coalesces each batch of events that it receives from the disruptor: events are
+ * grouped by region and sorted by row key, duplicate requests for the same row and transaction are
+ * discarded, and any uncached transactions are fetched in a single bulk lookup before the rows are resolved.
+ * <p/>
+ * The number of submitted, dropped, coalesced and resolved events is exposed through {@link ReadResolverManagement},
+ * so that the queue size can be chosen based on the observed load.
  *
  * @author Scott Fines
  *         Date: 7/1/14
  */
 @ThreadSafe
-public class AsyncReadResolver{
+public class AsyncReadResolver implements ReadResolverManagement{
     private static final Logger LOG=Logger.getLogger(AsyncReadResolver.class);
     private final RingBuffer<ResolveEvent> ringBuffer;
     private final Disruptor<ResolveEvent> disruptor;
@@ -52,12 +67,32 @@ public class AsyncReadResolver{
     private final RollForwardStatus status;
     private final TrafficControl trafficControl;
     private final KeyedReadResolver synchronousResolver;
+    private final String waitStrategyName;
+
+    private final AtomicLong submitted=new AtomicLong(0l);
+    private final AtomicLong dropped=new AtomicLong(0l);
+    private final AtomicLong coalesced=new AtomicLong(0l);
+    private final AtomicLong resolved=new AtomicLong(0l);
+    private final AtomicLong unresolved=new AtomicLong(0l);
 
     public AsyncReadResolver(int maxThreads,int bufferSize,
                              TxnSupplier txnSupplier,
                              RollForwardStatus status,
                              TrafficControl trafficControl,
                              KeyedReadResolver synchronousResolver){
+        this(maxThreads,bufferSize,"blocking",txnSupplier,status,trafficControl,synchronousResolver);
+    }
+
+    /**
+     * @param waitStrategy the name of the strategy the resolver threads use to wait for events. One of
+     *                     "blocking", "phased" or "yielding"; unknown names fall back to "blocking".
+     */
+    public AsyncReadResolver(int maxThreads,int bufferSize,
+                             String waitStrategy,
+                             TxnSupplier txnSupplier,
+                             RollForwardStatus status,
+                             TrafficControl trafficControl,
+                             KeyedReadResolver synchronousResolver){
         this.txnSupplier=txnSupplier;
         this.trafficControl=trafficControl;
         this.status=status;
@@ -70,9 +105,11 @@ public class AsyncReadResolver{
         int bSize=1;
         while(bSize<bufferSize)
             bSize<<=1;
+        WaitStrategy strategy=newWaitStrategy(waitStrategy);
+        this.waitStrategyName=strategy instanceof BlockingWaitStrategy?"blocking":waitStrategy.toLowerCase();
         disruptor=new Disruptor<>(new ResolveEventFactory(),bSize,consumerThreads,
                 ProducerType.MULTI,
-                new BlockingWaitStrategy()); //we want low latency here, but it might cost too much in CPU
+                strategy);
         disruptor.handleEventsWith(new ResolveEventHandler());
         ringBuffer=disruptor.getRingBuffer();
     }
@@ -92,6 +129,37 @@ public class AsyncReadResolver{
         return new PartitionReadResolver(region,rollForward);
     }
 
+    @Override public long getTotalSubmitted(){ return submitted.get(); }
+    @Override public long getTotalDropped(){ return dropped.get(); }
+    @Override public long getTotalCoalesced(){ return coalesced.get(); }
+    @Override public long getTotalResolved(){ return resolved.get(); }
+    @Override public long getTotalUnresolved(){ return unresolved.get(); }
+    @Override public int getBufferSize(){ return ringBuffer.getBufferSize(); }
+    @Override public long getRemainingCapacity(){ return ringBuffer.remainingCapacity(); }
+    @Override public String getWaitStrategy(){ return waitStrategyName; }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods and classes*/
+
+    private static WaitStrategy newWaitStrategy(String name){
+        if(name!=null){
+            switch(name.toLowerCase()){
+                case "blocking":
+                    return new BlockingWaitStrategy();
+                case "phased":
+                    /*
+                     * Spin briefly, then yield, then fall back to blocking, so that we are responsive
+                     * under load without burning CPU when there is nothing to resolve
+                     */
+                    return PhasedBackoffWaitStrategy.withLock(100,1000,TimeUnit.MICROSECONDS);
+                case "yielding":
+                    return new YieldingWaitStrategy();
+            }
+        }
+        LOG.warn("Unknown read resolver wait strategy <"+name+">, using a blocking wait strategy");
+        return new BlockingWaitStrategy();
+    }
+
     private static class ResolveEvent{
         Partition region;
         long txnId;
@@ -107,23 +175,105 @@ public class AsyncReadResolver{
         }
     }
 
+    /**
+     * A resolve request which has been taken off the ring buffer, so that the ring slot
+     * can be reused while the request waits for the rest of its batch.
+     */
+    private static class ResolveRequest{
+        final Partition region;
+        final long txnId;
+        final ByteSlice rowKey;
+        final RollForward rollForward;
+
+        ResolveRequest(ResolveEvent event){
+            this.region=event.region;
+            this.txnId=event.txnId;
+            //the producer always sets a fresh copy of the row key, so we can keep the array
+            this.rowKey=ByteSlice.wrap(event.rowKey.array());
+            this.rollForward=event.rollForward;
+        }
+
+        boolean isDuplicateOf(ResolveRequest other){
+            return region==other.region && txnId==other.txnId && rowKey.equals(other.rowKey);
+        }
+    }
+
+    private static final Comparator<ResolveRequest> REQUEST_ORDER=new Comparator<ResolveRequest>(){
+        @Override
+        public int compare(ResolveRequest o1,ResolveRequest o2){
+            int c=o1.region.getName().compareTo(o2.region.getName());
+            if(c!=0) return c;
+            c=o1.rowKey.compareTo(o2.rowKey);
+            if(c!=0) return c;
+            return Long.compare(o1.txnId,o2.txnId);
+        }
+    };
+
     private class ResolveEventHandler implements EventHandler<ResolveEvent>{
+        private final List<ResolveRequest> batch=new ArrayList<>();
 
         @Override
         public void onEvent(ResolveEvent event,long sequence,boolean endOfBatch) throws Exception{
-            try{
-                if(synchronousResolver.resolve(event.region,
-                        event.rowKey,
-                        event.txnId,
-                        txnSupplier,
-                        status,
-                        false,
-                        trafficControl)){
-                    event.rollForward.recordResolved(event.rowKey,event.txnId);
+            batch.add(new ResolveRequest(event));
+            event.region=null; //don't hold on to the region from the ring buffer
+            event.rollForward=null;
+            if(endOfBatch){
+                try{
+                    resolveBatch();
+                }finally{
+                    batch.clear();
+                }
+            }
+        }
+
+        private void resolveBatch(){
+            if(batch.size()>1)
+                Collections.sort(batch,REQUEST_ORDER);
+            prefetchTransactions();
+            ResolveRequest last=null;
+            for(ResolveRequest request:batch){
+                if(last!=null && request.isDuplicateOf(last)){
+                    coalesced.incrementAndGet();
+                    continue;
                 }
+                last=request;
+                try{
+                    if(synchronousResolver.resolve(request.region,
+                            request.rowKey,
+                            request.txnId,
+                            txnSupplier,
+                            status,
+                            false,
+                            trafficControl)){
+                        request.rollForward.recordResolved(request.rowKey,request.txnId);
+                        resolved.incrementAndGet();
+                    }else
+                        unresolved.incrementAndGet();
+                }catch(Exception e){
+                    unresolved.incrementAndGet();
+                    LOG.info("Error during read resolution",e);
+                }
+            }
+        }
+
+        /*
+         * Fetch all the transactions in the batch which are not already cached with a single lookup, rather
+         * than paying for a separate round trip as each row is resolved.
+         */
+        private void prefetchTransactions(){
+            if(batch.size()<2) return;
+            LongOpenHashSet seen=new LongOpenHashSet(batch.size());
+            LongArrayList toFetch=new LongArrayList();
+            for(ResolveRequest request:batch){
+                if(seen.add(request.txnId) && !txnSupplier.transactionCached(request.txnId))
+                    toFetch.add(request.txnId);
+            }
+            if(toFetch.size()<2) return;
+            try{
+                txnSupplier.getTransactions(toFetch.toArray());
             }catch(Exception e){
-                LOG.info("Error during read resolution",e);
-                throw e;
+                //we'll fetch them one at a time during resolution instead
+                LOG.debug("Unable to prefetch transactions for read resolution",e);
             }
         }
     }
@@ -144,6 +294,7 @@ public class AsyncReadResolver{
             try{
                 sequence=ringBuffer.tryNext();
             }catch(InsufficientCapacityException e){
+                dropped.incrementAndGet();
                 if(LOG.isTraceEnabled())
                     LOG.trace("Unable to submit for read resolution");
                 return;
@@ -158,6 +309,7 @@ public class AsyncReadResolver{
             }finally{
                 ringBuffer.publish(sequence);
             }
+            submitted.incrementAndGet();
         }
     }
 }
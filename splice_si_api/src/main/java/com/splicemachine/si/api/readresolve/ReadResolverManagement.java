@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.api.readresolve;
+
+import javax.management.MXBean;
+
+/**
+ * JMX Hook for monitoring the behavior of the asynchronous Read-Resolver.
+ *
+ * Comparing the number of dropped requests with the number of submitted requests shows whether the
+ * resolution queue is large enough for the write load.
+ */
+@MXBean
+public interface ReadResolverManagement{
+
+    /**
+     * @return the total number of resolve requests which were accepted onto the resolution queue
+     */
+    long getTotalSubmitted();
+
+    /**
+     * @return the total number of resolve requests which were discarded because the resolution queue was full
+     */
+    long getTotalDropped();
+
+    /**
+     * @return the total number of accepted requests which were merged with another request for the
+     * same row and transaction
+     */
+    long getTotalCoalesced();
+
+    /**
+     * @return the total number of rows which were resolved
+     */
+    long getTotalResolved();
+
+    /**
+     * @return the total number of requests which were processed without resolving the row, either
+     * because the transaction was not yet resolvable or because an error occurred
+     */
+    long getTotalUnresolved();
+
+    /**
+     * @return the size of the resolution queue
+     */
+    int getBufferSize();
+
+    /**
+     * @return the number of free slots remaining in the resolution queue
+     */
+    long getRemainingCapacity();
+
+    /**
+     * @return the name of the wait strategy used by the resolver threads
+     */
+    String getWaitStrategy();
+}
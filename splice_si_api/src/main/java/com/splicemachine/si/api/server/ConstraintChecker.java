@@ -61,4 +61,11 @@ public interface ConstraintChecker{
      * @throws IOException
      */
     MutationStatus checkConstraint(KVPair mutation,DataResult existingRow) throws IOException;
+
+    /**
+     * @param writeType the type of the attempted write
+     * @return false if this constraint can never fail a write of {@code writeType}. Rows written with such
+     * a type need not be read just to check the constraint.
+     */
+    boolean appliesTo(KVPair.Type writeType);
 }
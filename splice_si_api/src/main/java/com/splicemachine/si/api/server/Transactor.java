@@ -51,4 +51,12 @@ public interface Transactor{
                                     TxnView txn,
                                     ConstraintChecker constraintChecker) throws IOException;
 
+    /**
+     * Forget every writer which has been remembered for conflict detection in {@code region}. This must
+     * be called whenever the region is closed, or rows are written to it without going through this transactor.
+     *
+     * @param region the region to forget the writers of
+     */
+    void discardRecentWriters(Partition region);
+
 }
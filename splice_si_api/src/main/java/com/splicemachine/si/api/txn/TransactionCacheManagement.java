@@ -26,4 +26,49 @@ import javax.management.MXBean;
 @MXBean
 public interface TransactionCacheManagement {
 
+    /**
+     * @return the total number of transactions which have been evicted from the cache
+     */
+    long getTotalEvictedEntries();
+
+    /**
+     * @return the total number of lookups which were served from the cache
+     */
+    long getTotalHits();
+
+    /**
+     * @return the total number of lookups which were not found in the cache
+     */
+    long getTotalMisses();
+
+    /**
+     * @return the total number of lookups against the cache
+     */
+    long getTotalRequests();
+
+    /**
+     * @return the fraction of lookups which were served from the cache
+     */
+    float getHitPercentage();
+
+    /**
+     * @return the number of transactions currently held in the cache
+     */
+    int getCurrentSize();
+
+    /**
+     * @return the maximum number of transactions which the cache can hold
+     */
+    int getMaxSize();
+
+    /**
+     * @return the number of visibility checks during scans which were answered by a scan's visibility memo,
+     * without looking up the writing transaction
+     */
+    long getVisibilityMemoHits();
+
+    /**
+     * @return the number of visibility checks during scans which had to look up the writing transaction
+     */
+    long getVisibilityMemoMisses();
 }
@@ -38,6 +38,18 @@ public interface TxnStore extends TxnSupplier{
 
     boolean keepAlive(long txnId) throws IOException;
 
+    /**
+     * Keep many transactions alive at once. Implementations should use as few calls to the
+     * underlying storage as they can, rather than keeping each transaction alive separately.
+     *
+     * @param txnIds the transactions to keep alive
+     * @return for each transaction (in the same order as {@code txnIds}): {@link Txn.State#ACTIVE} if it was kept alive,
+     * {@link Txn.State#ROLLEDBACK} if it has already timed out, or {@code null} if it is no longer active (and so
+     * no longer needs to be kept alive).
+     * @throws IOException if the transactions could not be kept alive
+     */
+    Txn.State[] keepAlive(long[] txnIds) throws IOException;
+
     void elevateTransaction(Txn txn,byte[] newDestinationTable) throws IOException;
 
     /**
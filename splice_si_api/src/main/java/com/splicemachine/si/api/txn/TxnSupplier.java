@@ -43,6 +43,21 @@ public interface TxnSupplier {
 		 */
 		TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException;
 
+		/**
+		 * Get the transactions associated with each of {@code txnIds}.
+		 *
+		 * This is functionally equivalent to calling {@link #getTransaction(long)} for each
+		 * id, but allows implementations to fetch all the transactions which are not
+		 * held locally with as few remote calls as possible. It is intended for callers
+		 * which can see many unresolved transactions at once (e.g. a block of cells
+		 * during a scan or compaction).
+		 *
+		 * @param txnIds the transaction ids to fetch. May contain duplicates.
+		 * @return the transaction for each id, in the same order as {@code txnIds}. An
+		 * entry is {@code null} if the corresponding transaction could not be found.
+		 */
+		TxnView[] getTransactions(long[] txnIds) throws IOException;
+
 		/**
 		 * Determines whether this Store has the transaction in its local cache
 		 * or not.
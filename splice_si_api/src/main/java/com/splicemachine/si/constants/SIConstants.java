@@ -77,6 +77,9 @@ public class SIConstants {
     // The column in which splice stores encoded/packed user data.
     public static final byte[] PACKED_COLUMN_BYTES = Bytes.toBytes("7");
 
+    // The column in which a region returns the partial aggregates of a scan with an ENTRY_AGGREGATE_LABEL.
+    public static final byte[] AGGREGATE_COLUMN_BYTES = Bytes.toBytes("8");
+
     public static final String DEFAULT_FAMILY_NAME = "V";
 
     public static final byte[] DEFAULT_FAMILY_BYTES = Bytes.toBytes("V");
@@ -89,6 +92,8 @@ public class SIConstants {
     public static final String CHECK_BLOOM_ATTRIBUTE_NAME = "cb";
 
     public static final String ENTRY_PREDICATE_LABEL= "p";
+    public static final String ENTRY_AGGREGATE_LABEL= "ag";
+    public static final String JOIN_KEY_FILTER_LABEL= "jk";
 
     public static final int DEFAULT_CACHE_SIZE=1<<10;
 
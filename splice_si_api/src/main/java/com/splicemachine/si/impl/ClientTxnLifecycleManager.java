@@ -18,6 +18,7 @@ package com.splicemachine.si.impl;
 import com.splicemachine.annotations.ThreadSafe;
 import com.splicemachine.si.api.data.ExceptionFactory;
 import com.splicemachine.si.api.txn.*;
+import com.splicemachine.si.impl.hlc.HLCReadTimestampSource;
 import com.splicemachine.si.impl.txn.ReadOnlyTxn;
 import com.splicemachine.si.impl.txn.WritableTxn;
 import com.splicemachine.timestamp.api.TimestampSource;
@@ -40,6 +41,7 @@ public class ClientTxnLifecycleManager implements TxnLifecycleManager{
     @ThreadSafe private TxnStore store;
     @ThreadSafe private KeepAliveScheduler keepAliveScheduler;
     @ThreadSafe private final ExceptionFactory exceptionFactory;
+    @ThreadSafe private HLCReadTimestampSource readOnlyTimestampSource;
 
     private volatile boolean restoreMode=false;
 
@@ -57,6 +59,14 @@ public class ClientTxnLifecycleManager implements TxnLifecycleManager{
         this.keepAliveScheduler = kas;
     }
 
+    /**
+     * Take the begin timestamps of top-level read-only transactions from {@code readOnlyTimestampSource}, rather
+     * than from the timestamp oracle.
+     */
+    public void setReadOnlyTimestampSource(HLCReadTimestampSource readOnlyTimestampSource){
+        this.readOnlyTimestampSource = readOnlyTimestampSource;
+    }
+
     @Override
     public Txn beginTransaction() throws IOException{
         return beginTransaction(Txn.ROOT_TRANSACTION.getIsolationLevel());
@@ -158,7 +168,17 @@ public class ClientTxnLifecycleManager implements TxnLifecycleManager{
         if(!txn.allowsWrites()){
             //we've elevated from a read-only to a writable, so make sure that we add
             //it to the keep alive
-            Txn writableTxn=new WritableTxn(txn,this,destinationTable,exceptionFactory);
+            Txn writableTxn;
+            if(readOnlyTimestampSource!=null){
+                /*
+                 * The read-only transaction's id may have been handed to other read-only transactions as well,
+                 * so the writable transaction needs an id of its own. It keeps the original begin timestamp,
+                 * so that it continues to read from the same snapshot.
+                 */
+                writableTxn=new WritableTxn(timestampSource.nextTimestamp(),txn.getBeginTimestamp(),txn.getIsolationLevel(),
+                        txn.getParentTxnView(),this,txn.isAdditive(),destinationTable,exceptionFactory);
+            }else
+                writableTxn=new WritableTxn(txn,this,destinationTable,exceptionFactory);
             store.recordNewTransaction(writableTxn);
             keepAliveScheduler.scheduleKeepAlive(writableTxn);
             txn=writableTxn;
@@ -172,7 +192,10 @@ public class ClientTxnLifecycleManager implements TxnLifecycleManager{
         if(restoreMode){
             return -1; // we are in restore mode, don't try to access the store
         }
-        return store.commit(txnId);
+        long commitTs=store.commit(txnId);
+        if(readOnlyTimestampSource!=null && commitTs>=0)
+            readOnlyTimestampSource.observe(commitTs); //make sure our later reads can see this commit
+        return commitTs;
         //TODO -sf- add the transaction to the global cache?
     }
 
@@ -226,7 +249,7 @@ public class ClientTxnLifecycleManager implements TxnLifecycleManager{
 		 *
 		 */
         if(parentTxn.equals(Txn.ROOT_TRANSACTION)){
-            long beginTimestamp=timestampSource.nextTimestamp();
+            long beginTimestamp=readOnlyTimestampSource!=null?readOnlyTimestampSource.nextTimestamp():timestampSource.nextTimestamp();
             return ReadOnlyTxn.createReadOnlyParentTransaction(beginTimestamp,beginTimestamp,isolationLevel,this,exceptionFactory,additive);
         }else{
             return ReadOnlyTxn.createReadOnlyChildTransaction(parentTxn,this,additive,exceptionFactory);
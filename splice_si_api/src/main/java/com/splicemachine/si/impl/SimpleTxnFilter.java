@@ -16,7 +16,9 @@
 package com.splicemachine.si.impl;
 
 import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
 import com.carrotsearch.hppc.LongOpenHashSet;
+import com.splicemachine.collections.ConcurrentLongKeyedCache;
 import com.splicemachine.si.api.filter.RowAccumulator;
 import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.si.api.readresolve.ReadResolver;
@@ -30,6 +32,7 @@ import com.splicemachine.storage.DataFilter;
 import com.splicemachine.utils.ByteSlice;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Transaction filter which performs basic transactional filtering (i.e. row visibility, tombstones,
@@ -39,7 +42,26 @@ import java.io.IOException;
  *         Date: 6/23/14
  */
 public class SimpleTxnFilter implements TxnFilter{
+    /*
+     * The largest number of writers to memoize. Once the memo is full, writers which haven't been
+     * checked recently are evicted to make room for new ones. The memo is allocated up front, so this
+     * is kept small enough that short scans don't pay much for it
+     */
+    private static final int MAX_MEMO_SIZE=1<<10;
+    /*
+     * The number of visibility checks a filter makes between publishing its counts to the shared totals.
+     * Filters are never told when their scan is done, so this bounds how far the totals can lag
+     * without touching shared counters for every row
+     */
+    static final int PUBLISH_INTERVAL=1<<10;
+    /*
+     * Memo hits and misses across all scans, published through the transaction cache's JMX interface
+     */
+    private static final LongAdder TOTAL_MEMO_HITS=new LongAdder();
+    private static final LongAdder TOTAL_MEMO_MISSES=new LongAdder();
+
     private final TxnSupplier transactionStore;
+    private final TxnSupplier baseSupplier;
     private final TxnView myTxn;
     private final ReadResolver readResolver;
     //per row fields
@@ -48,6 +70,10 @@ public class SimpleTxnFilter implements TxnFilter{
     private final LongArrayList antiTombstonedTxnRows=new LongArrayList(1);
     private final ByteSlice rowKey=new ByteSlice();
     private final String tableName;
+    /*
+     * Writers of the current row which were fetched in bulk ahead of filtering its cells
+     */
+    private final LongObjectOpenHashMap<TxnView> prefetchedTxns=new LongObjectOpenHashMap<>();
 
     /*
      * The most common case for databases is insert-only--that is, that there
@@ -61,6 +87,18 @@ public class SimpleTxnFilter implements TxnFilter{
      */
     private TxnView currentTxn;
 
+    /*
+     * Per-scan memo of whether each writer we've checked is visible to us. Only writers whose
+     * (effective) state is final are memoized, since their visibility to us can no longer change; writers
+     * which are still active are looked up each time. For scans over many rows written by a few transactions,
+     * this reduces the visibility check for each cell to a single primitive-keyed lookup.
+     */
+    private final ConcurrentLongKeyedCache<Boolean> visibilityMemo=new ConcurrentLongKeyedCache<>(MAX_MEMO_SIZE);
+    private long memoHits;
+    private long memoMisses;
+    private long publishedMemoHits;
+    private long publishedMemoMisses;
+
     @SuppressWarnings("unchecked")
     public SimpleTxnFilter(String tableName,
                            TxnView myTxn,
@@ -68,6 +106,7 @@ public class SimpleTxnFilter implements TxnFilter{
                            TxnSupplier baseSupplier){
         assert readResolver!=null;
         this.transactionStore = new ActiveTxnCacheSupplier(baseSupplier,1024); //TODO -sf- configure
+        this.baseSupplier=baseSupplier;
         this.tableName=tableName;
         this.myTxn=myTxn;
         this.readResolver=readResolver;
@@ -123,6 +162,30 @@ public class SimpleTxnFilter implements TxnFilter{
         tombstonedTxnRows.clear();
         antiTombstonedTxnRows.clear();
         rowKey.reset();
+        if(!prefetchedTxns.isEmpty())
+            prefetchedTxns.clear();
+        if((memoHits-publishedMemoHits)+(memoMisses-publishedMemoMisses)>=PUBLISH_INTERVAL)
+            publishMemoStats();
+    }
+
+    @Override
+    public boolean requiresLookup(DataCell keyValue){
+        CellType type=keyValue.dataType();
+        if(type==CellType.COMMIT_TIMESTAMP || type==CellType.FOREIGN_KEY_COUNTER) return false;
+        long ts=keyValue.version();
+        if(visibilityMemo.contains(ts) || prefetchedTxns.containsKey(ts)) return false;
+        if(currentTxn!=null && currentTxn.getTxnId()==ts) return false;
+        return !transactionStore.transactionCached(ts) && !baseSupplier.transactionCached(ts);
+    }
+
+    @Override
+    public void prefetch(long[] txnIds) throws IOException{
+        if(txnIds.length<=0) return;
+        TxnView[] txns=transactionStore.getTransactions(txnIds);
+        for(int i=0;i<txnIds.length;i++){
+            if(txns[i]!=null)
+                prefetchedTxns.put(txnIds[i],txns[i]);
+        }
     }
 
     @Override
@@ -130,6 +193,45 @@ public class SimpleTxnFilter implements TxnFilter{
         return false;
     }
 
+    /**
+     * @return the number of visibility checks answered by the per-scan visibility memo
+     */
+    public long getVisibilityMemoHits(){
+        return memoHits;
+    }
+
+    /**
+     * @return the number of visibility checks which required looking up the writing transaction
+     */
+    public long getVisibilityMemoMisses(){
+        return memoMisses;
+    }
+
+    /**
+     * @return the number of visibility checks answered by the visibility memo, across all scans
+     */
+    public static long getTotalVisibilityMemoHits(){
+        return TOTAL_MEMO_HITS.sum();
+    }
+
+    /**
+     * @return the number of visibility checks which missed the visibility memo, across all scans
+     */
+    public static long getTotalVisibilityMemoMisses(){
+        return TOTAL_MEMO_MISSES.sum();
+    }
+
+    private void publishMemoStats(){
+        if(memoHits!=publishedMemoHits){
+            TOTAL_MEMO_HITS.add(memoHits-publishedMemoHits);
+            publishedMemoHits=memoHits;
+        }
+        if(memoMisses!=publishedMemoMisses){
+            TOTAL_MEMO_MISSES.add(memoMisses-publishedMemoMisses);
+            publishedMemoMisses=memoMisses;
+        }
+    }
+
 
     private void readResolve(DataCell element) throws IOException{
         /*
@@ -162,6 +264,11 @@ public class SimpleTxnFilter implements TxnFilter{
             return;
         }
 
+        if(visibilityMemo.contains(ts)){
+            //only transactions in a final state are memoized, so there's no need to look it up
+            doResolve(element,ts);
+            return;
+        }
         TxnView t=fetchTransaction(ts);
         assert t!=null:"Could not find a transaction for id "+ts;
 
@@ -210,14 +317,25 @@ public class SimpleTxnFilter implements TxnFilter{
     }
 
     private boolean isVisible(long txnId) throws IOException{
+        Boolean memo=visibilityMemo.get(txnId);
+        if(memo!=null){
+            memoHits++;
+            return memo;
+        }
+        memoMisses++;
         TxnView toCompare=fetchTransaction(txnId);
-        return myTxn.canSee(toCompare);
+        boolean visible=myTxn.canSee(toCompare);
+        if(toCompare.getEffectiveState().isFinal())
+            visibilityMemo.put(txnId,visible);
+        return visible;
     }
 
     private TxnView fetchTransaction(long txnId) throws IOException{
         TxnView toCompare=currentTxn;
         if(currentTxn==null || currentTxn.getTxnId()!=txnId){
-            toCompare=transactionStore.getTransaction(txnId);
+            toCompare=prefetchedTxns.get(txnId);
+            if(toCompare==null)
+                toCompare=transactionStore.getTransaction(txnId);
             currentTxn=toCompare;
         }
         return toCompare;
@@ -36,10 +36,12 @@ import com.splicemachine.si.api.txn.TxnStore;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.ClientTxnLifecycleManager;
 import com.splicemachine.si.impl.TxnRegion;
+import com.splicemachine.si.impl.hlc.HLCReadTimestampSource;
 import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
 import com.splicemachine.si.impl.rollforward.NoopRollForward;
 import com.splicemachine.si.impl.rollforward.RollForwardStatus;
 import com.splicemachine.si.impl.server.SITransactor;
+import com.splicemachine.si.impl.server.TxnLowWatermark;
 import com.splicemachine.si.impl.txn.SITransactionReadController;
 import com.splicemachine.storage.DataFilterFactory;
 import com.splicemachine.storage.Partition;
@@ -81,6 +83,7 @@ public class SIDriver {
     private final Transactor transactor;
     private final TxnOperationFactory txnOpFactory;
     private final RollForward rollForward;
+    private final SIEnvironment env;
     private final TxnLifecycleManager lifecycleManager;
     private final DataFilterFactory filterFactory;
     private final Clock clock;
@@ -89,6 +92,7 @@ public class SIDriver {
     private final OperationFactory baseOpFactory;
     private final PartitionInfoCache partitionInfoCache;
     private final SnowflakeFactory snowflakeFactory;
+    private final TxnLowWatermark lowWatermark;
 
     public SIDriver(SIEnvironment env){
         this.tableFactory = env.tableFactory();
@@ -100,6 +104,7 @@ public class SIDriver {
         this.txnSupplier = env.txnSupplier();
         this.txnOpFactory = env.operationFactory();
         this.rollForward = env.rollForward();
+        this.env = env;
         this.filterFactory = env.filterFactory();
         this.clock = env.systemClock();
         this.partitionInfoCache = env.partitionInfoCache();
@@ -111,13 +116,19 @@ public class SIDriver {
                 this.txnOpFactory,
                 env.baseOperationFactory(),
                 this.operationStatusFactory,
-                this.exceptionFactory);
+                this.exceptionFactory,
+                config.getRecentWritersSize(),
+                config.getRecentWritersMaxAge(),
+                this.clock);
         ClientTxnLifecycleManager clientTxnLifecycleManager=new ClientTxnLifecycleManager(this.timestampSource,env.exceptionFactory());
         clientTxnLifecycleManager.setTxnStore(this.txnStore);
         clientTxnLifecycleManager.setKeepAliveScheduler(env.keepAliveScheduler());
+        if("hlc".equalsIgnoreCase(config.getReadOnlyTimestampSource()))
+            clientTxnLifecycleManager.setReadOnlyTimestampSource(new HLCReadTimestampSource(this.timestampSource,config.getHlcMaxClockSkew()));
         this.lifecycleManager =clientTxnLifecycleManager;
         readController = new SITransactionReadController(txnSupplier);
         readResolver = initializedReadResolver(config,env.keyedReadResolver());
+        this.lowWatermark = new TxnLowWatermark(this.txnStore,this.timestampSource,this.clock,config);
         this.fileSystem = env.fileSystem();
         this.baseOpFactory = env.baseOperationFactory();
     }
@@ -176,10 +187,25 @@ public class SIDriver {
         return rollForward;
     }
 
+    /**
+     * @param partition the partition being written to
+     * @return the RollForward which tracks unresolved writes to {@code partition}
+     */
+    public RollForward getRollForward(Partition partition){
+        return env.rollForward(partition);
+    }
+
+    /**
+     * @return the asynchronous read resolver, or {@code null} if asynchronous read resolution is disabled
+     */
+    public AsyncReadResolver getAsyncReadResolver(){
+        return readResolver;
+    }
+
     public ReadResolver getReadResolver(Partition basePartition){
         if(readResolver==null) return NoOpReadResolver.INSTANCE;
         else
-        return readResolver.getResolver(basePartition,getRollForward());
+        return readResolver.getResolver(basePartition,getRollForward(basePartition));
     }
 
     public TxnLifecycleManager lifecycleManager(){
@@ -193,7 +219,7 @@ public class SIDriver {
     public TransactionalRegion transactionalPartition(long conglomId,Partition basePartition){
         if(conglomId>=0){
             return new TxnRegion(basePartition,
-                    getRollForward(),
+                    getRollForward(basePartition),
                     getReadResolver(basePartition),
                     getTxnSupplier(),
                     getTransactor(),
@@ -208,6 +234,10 @@ public class SIDriver {
         }
     }
 
+    public TxnLowWatermark getLowWatermark(){
+        return lowWatermark;
+    }
+
     public Clock getClock(){
         return clock;
     }
@@ -229,6 +259,7 @@ public class SIDriver {
         if(bufferSize<=0) return null;
         final AsyncReadResolver asyncReadResolver=new AsyncReadResolver(maxThreads,
                 bufferSize,
+                config.getReadResolverWaitStrategy(),
                 txnSupplier,
                 new RollForwardStatus(),
                 GreenLight.INSTANCE,keyedResolver);
@@ -28,6 +28,7 @@ import com.splicemachine.si.api.txn.TxnStore;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.storage.DataFilterFactory;
 import com.splicemachine.storage.DataFilterFactory;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.PartitionInfoCache;
 import com.splicemachine.timestamp.api.TimestampSource;
 
@@ -52,6 +53,12 @@ public interface SIEnvironment{
 
     RollForward rollForward();
 
+    /**
+     * @param partition the partition which will be written to
+     * @return the RollForward to record writes to {@code partition} with
+     */
+    RollForward rollForward(Partition partition);
+
     TxnOperationFactory operationFactory();
 
     SIDriver getSIDriver();
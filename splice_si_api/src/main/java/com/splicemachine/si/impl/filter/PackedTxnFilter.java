@@ -63,6 +63,16 @@ public class PackedTxnFilter implements TxnFilter, SIFilter{
         }
     }
 
+    @Override
+    public boolean requiresLookup(DataCell keyValue){
+        return simpleFilter.requiresLookup(keyValue);
+    }
+
+    @Override
+    public void prefetch(long[] txnIds) throws IOException{
+        simpleFilter.prefetch(txnIds);
+    }
+
     @Override
     public boolean filterRow(){
         return getExcludeRow();
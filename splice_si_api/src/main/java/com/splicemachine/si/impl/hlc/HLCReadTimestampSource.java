@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.hlc;
+
+import com.splicemachine.timestamp.api.TimestampSource;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A TimestampSource for the begin timestamps of read-only transactions, which avoids a round trip
+ * to the timestamp oracle for most transactions.
+ *
+ * Oracle timestamps are a logical counter rather than a clock, so values from the hybrid logical clock
+ * cannot be mixed with them directly. Instead, this pairs the most recent oracle timestamp seen by this server
+ * (either fetched from the oracle here, or observed as the commit timestamp of a local transaction) with the
+ * {@link HLC} time at which it was seen. That timestamp is handed out again until it is older than the maximum
+ * clock skew, at which point a fresh one is fetched from the oracle.
+ *
+ * A transaction which begins with a reused timestamp sees a consistent snapshot which is at most the maximum
+ * skew behind the oracle, and which always includes the transactions committed through this server. Because
+ * the same timestamp may be handed to several transactions, it must not be used as the id of a writable
+ * transaction; see {@link com.splicemachine.si.impl.ClientTxnLifecycleManager#elevateTransaction}.
+ */
+public class HLCReadTimestampSource implements TimestampSource{
+    private final TimestampSource oracle;
+    private final long maxClockSkewMs;
+    private final HLC hlc=new HLC();
+    private final AtomicReference<Observation> latest=new AtomicReference<>();
+
+    /*monitoring fields*/
+    private final AtomicLong localTimestamps=new AtomicLong(0l);
+    private final AtomicLong oracleTimestamps=new AtomicLong(0l);
+
+    public HLCReadTimestampSource(TimestampSource oracle,long maxClockSkewMs){
+        this.oracle=oracle;
+        this.maxClockSkewMs=maxClockSkewMs;
+    }
+
+    @Override
+    public long nextTimestamp(){
+        Observation o=latest.get();
+        if(o!=null && physical(hlc.sendOrLocalEvent())-physical(o.hlc)<=maxClockSkewMs){
+            localTimestamps.incrementAndGet();
+            return o.timestamp;
+        }
+        long timestamp=oracle.nextTimestamp();
+        oracleTimestamps.incrementAndGet();
+        observe(timestamp);
+        return timestamp;
+    }
+
+    /**
+     * Record a timestamp issued by the oracle, such as the commit timestamp of a transaction. Timestamps
+     * older than the latest one seen are ignored.
+     *
+     * @param timestamp the timestamp issued by the oracle
+     */
+    public void observe(long timestamp){
+        Observation o;
+        Observation n=null;
+        do{
+            o=latest.get();
+            if(o!=null && o.timestamp>=timestamp) return;
+            if(n==null)
+                n=new Observation(timestamp,hlc.sendOrLocalEvent());
+        }while(!latest.compareAndSet(o,n));
+    }
+
+    @Override
+    public void rememberTimestamp(long timestamp){
+        oracle.rememberTimestamp(timestamp);
+    }
+
+    @Override
+    public long retrieveTimestamp(){
+        return oracle.retrieveTimestamp();
+    }
+
+    @Override
+    public void shutdown(){
+        //the oracle source is owned (and shut down) elsewhere
+    }
+
+    /**
+     * @return the number of timestamps served without contacting the oracle
+     */
+    public long getLocalTimestampCount(){
+        return localTimestamps.get();
+    }
+
+    /**
+     * @return the number of timestamps fetched from the oracle
+     */
+    public long getOracleTimestampCount(){
+        return oracleTimestamps.get();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static long physical(long hlcTime){
+        return hlcTime>>HLC.hlcNumBitsToShift;
+    }
+
+    private static class Observation{
+        private final long timestamp;
+        private final long hlc;
+
+        Observation(long timestamp,long hlc){
+            this.timestamp=timestamp;
+            this.hlc=hlc;
+        }
+    }
+}
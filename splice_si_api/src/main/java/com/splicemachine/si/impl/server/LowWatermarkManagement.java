@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.server;
+
+import javax.management.MXBean;
+
+/**
+ * Monitoring of the removal of old versions during compaction.
+ */
+@MXBean
+public interface LowWatermarkManagement{
+
+    /**
+     * @return the current low-watermark: every version committed before this timestamp is visible
+     * to every running transaction. 0 if versions are not being purged.
+     */
+    long getLowWatermark();
+
+    /**
+     * @return the total number of cells removed by compactions on this server because no transaction could see them
+     */
+    long getTotalPurgedCells();
+
+    /**
+     * @return the total size (in bytes) of the cells removed by compactions on this server
+     */
+    long getTotalPurgedBytes();
+}
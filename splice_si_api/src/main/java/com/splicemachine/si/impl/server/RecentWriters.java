@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.concurrent.Clock;
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+import com.splicemachine.utils.ByteSlice;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded index of the most recent writer of each recently written row in a single region. {@link SITransactor}
+ * consults it before reading a row for write-write conflict detection, so that rows which are written over and
+ * over don't have to be read on every write.
+ *
+ * The index is direct-mapped: each row key hashes to a single slot, and a write to another row with the
+ * same slot simply replaces it. Each entry holds the full row key, so a hash collision is a miss rather than a
+ * wrong answer. Entries older than the maximum age are also treated as misses.
+ *
+ * A writer is only recorded when its write found no child or additive conflicts on the row. Every older version
+ * of that row is then either rolled back, or was committed before the writer began; so once the writer has
+ * committed before another transaction began, the row cannot conflict with that transaction. Any other write to
+ * the row must {@link #invalidate(ByteSlice) invalidate} its entry.
+ *
+ * Entries describe versions of a row, not where those versions are stored, so they remain correct when the region
+ * flushes or compacts. They do not survive the region itself: the index must be discarded when the region is
+ * closed (e.g. because it is moving to another server), or when files are bulk loaded into it.
+ */
+public class RecentWriters{
+    private static final Hash32 HASH=HashFunctions.murmur3(0);
+
+    private final AtomicReferenceArray<Writer> slots;
+    private final int mask;
+    private final long maxAgeMillis;
+    private final Clock clock;
+
+    private final AtomicLong hits=new AtomicLong(0l);
+    private final AtomicLong misses=new AtomicLong(0l);
+
+    /**
+     * @param size the number of rows to remember. Rounded up to a power of 2
+     * @param maxAgeMillis the longest time to remember the writer of a row
+     * @param clock the clock to measure the age of entries with
+     */
+    public RecentWriters(int size,long maxAgeMillis,Clock clock){
+        int s=1;
+        while(s<size) s<<=1;
+        this.slots=new AtomicReferenceArray<>(s);
+        this.mask=s-1;
+        this.maxAgeMillis=maxAgeMillis;
+        this.clock=clock;
+    }
+
+    /**
+     * @param rowKey the row to look up
+     * @return the most recent writer of the row, or {@code null} if the writer of the row is not known.
+     */
+    public Writer lookup(ByteSlice rowKey){
+        Writer writer=slots.get(slot(rowKey));
+        if(writer==null
+                || !rowKey.equals(writer.rowKey,0,writer.rowKey.length)
+                || clock.currentTimeMillis()-writer.recordedAt>maxAgeMillis){
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return writer;
+    }
+
+    /**
+     * Record {@code txnId} as the most recent writer of {@code rowKey}. This must be called while holding
+     * the row lock.
+     *
+     * @param rowKey the row which was written
+     * @param txnId the id of the writing transaction
+     * @param delete whether the write deleted the row
+     */
+    public void record(ByteSlice rowKey,long txnId,boolean delete){
+        slots.set(slot(rowKey),new Writer(rowKey.getByteCopy(),txnId,-1l,delete,clock.currentTimeMillis()));
+    }
+
+    /**
+     * Forget the writer of {@code rowKey}, if it is known. This must be called while holding the row lock.
+     */
+    public void invalidate(ByteSlice rowKey){
+        int slot=slot(rowKey);
+        Writer writer=slots.get(slot);
+        if(writer!=null && rowKey.equals(writer.rowKey,0,writer.rowKey.length))
+            slots.compareAndSet(slot,writer,null);
+    }
+
+    /**
+     * Remember the commit timestamp of a writer, so that it need not be looked up again.
+     *
+     * @return the writer, with the commit timestamp set
+     */
+    public Writer committed(Writer writer,long commitTimestamp){
+        Writer resolved=new Writer(writer.rowKey,writer.txnId,commitTimestamp,writer.delete,writer.recordedAt);
+        slots.compareAndSet(slot(writer.rowKey),writer,resolved);
+        return resolved;
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int slot(ByteSlice rowKey){
+        return HASH.hash(rowKey.array(),rowKey.offset(),rowKey.length())&mask;
+    }
+
+    private int slot(byte[] rowKey){
+        return HASH.hash(rowKey,0,rowKey.length)&mask;
+    }
+
+    public static class Writer{
+        private final byte[] rowKey;
+        private final long txnId;
+        private final long commitTimestamp;
+        private final boolean delete;
+        private final long recordedAt;
+
+        private Writer(byte[] rowKey,long txnId,long commitTimestamp,boolean delete,long recordedAt){
+            this.rowKey=rowKey;
+            this.txnId=txnId;
+            this.commitTimestamp=commitTimestamp;
+            this.delete=delete;
+            this.recordedAt=recordedAt;
+        }
+
+        public long getTxnId(){
+            return txnId;
+        }
+
+        /**
+         * @return the (effective) commit timestamp of the writer, or -1 if it is not yet known
+         */
+        public long getCommitTimestamp(){
+            return commitTimestamp;
+        }
+
+        public boolean isDelete(){
+            return delete;
+        }
+    }
+}
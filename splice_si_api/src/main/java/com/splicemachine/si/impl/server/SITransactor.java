@@ -19,6 +19,7 @@ import com.carrotsearch.hppc.IntObjectOpenHashMap;
 import com.carrotsearch.hppc.LongOpenHashSet;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.carrotsearch.hppc.cursors.LongCursor;
+import com.splicemachine.concurrent.Clock;
 import com.splicemachine.kvpair.KVPair;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.data.*;
@@ -46,6 +47,8 @@ import org.spark_project.guava.collect.Maps;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import static com.splicemachine.si.constants.SIConstants.*;
 
@@ -63,16 +66,41 @@ public class SITransactor implements Transactor{
     private final TxnOperationFactory txnOperationFactory;
     private final TxnSupplier txnSupplier;
 
+    private final int recentWritersSize;
+    private final long recentWritersMaxAge;
+    private final Clock clock;
+    private final ConcurrentMap<String,RecentWriters> recentWriters=new ConcurrentHashMap<>();
+
     public SITransactor(TxnSupplier txnSupplier,
                         TxnOperationFactory txnOperationFactory,
                         OperationFactory opFactory,
                         OperationStatusFactory operationStatusLib,
                         ExceptionFactory exceptionFactory){
+        this(txnSupplier,txnOperationFactory,opFactory,operationStatusLib,exceptionFactory,0,0l,null);
+    }
+
+    /**
+     * @param recentWritersSize the number of rows per region whose most recent writer is remembered, to avoid
+     *                          reading those rows during conflict detection. 0 to always read the row
+     * @param recentWritersMaxAge the longest time (in milliseconds) to remember the writer of a row
+     * @param clock the clock to measure the age of remembered writers with
+     */
+    public SITransactor(TxnSupplier txnSupplier,
+                        TxnOperationFactory txnOperationFactory,
+                        OperationFactory opFactory,
+                        OperationStatusFactory operationStatusLib,
+                        ExceptionFactory exceptionFactory,
+                        int recentWritersSize,
+                        long recentWritersMaxAge,
+                        Clock clock){
         this.txnSupplier=txnSupplier;
         this.txnOperationFactory=txnOperationFactory;
         this.opFactory= opFactory;
         this.operationStatusLib = operationStatusLib;
         this.exceptionLib = exceptionFactory;
+        this.recentWritersSize=recentWritersSize;
+        this.recentWritersMaxAge=recentWritersMaxAge;
+        this.clock=clock;
     }
 
     // Operation pre-processing. These are to be called "server-side" when we are about to process an operation.
@@ -158,6 +186,26 @@ public class SITransactor implements Transactor{
         return processInternal(table,rollForward,txn,defaultFamilyBytes,packedColumnBytes,toProcess,constraintChecker);
     }
 
+    @Override
+    public void discardRecentWriters(Partition region){
+        recentWriters.remove(region.getName());
+    }
+
+    /**
+     * @return the recent writers index of the region, or {@code null} if no writers are remembered.
+     */
+    public RecentWriters getRecentWriters(Partition region){
+        if(recentWritersSize<=0) return null;
+        RecentWriters writers=recentWriters.get(region.getName());
+        if(writers==null){
+            writers=new RecentWriters(recentWritersSize,recentWritersMaxAge,clock);
+            RecentWriters old=recentWriters.putIfAbsent(region.getName(),writers);
+            if(old!=null)
+                writers=old;
+        }
+        return writers;
+    }
+
     private MutationStatus getCorrectStatus(MutationStatus status,MutationStatus oldStatus){
         return operationStatusLib.getCorrectStatus(status,oldStatus);
     }
@@ -175,6 +223,8 @@ public class SITransactor implements Transactor{
         if(constraintChecker!=null)
             constraintState=new SimpleTxnFilter(null,txn,NoOpReadResolver.INSTANCE,txnSupplier);
         @SuppressWarnings("unchecked") final LongOpenHashSet[] conflictingChildren=new LongOpenHashSet[mutations.size()];
+        RecentWriters recentWriters=getRecentWriters(table);
+        boolean[] cleanWrites=recentWriters==null?null:new boolean[mutations.size()];
         try{
             lockRows(table,mutations,lockPairs,finalStatus);
 
@@ -184,7 +234,8 @@ public class SITransactor implements Transactor{
              * the region can't close until after this method is complete, we don't need the calls.
              */
             IntObjectOpenHashMap<DataPut> writes=checkConflictsForKvBatch(table,rollForwardQueue,lockPairs,
-                    conflictingChildren,txn,family,qualifier,constraintChecker,constraintState,finalStatus);
+                    conflictingChildren,txn,family,qualifier,constraintChecker,constraintState,finalStatus,
+                    recentWriters,cleanWrites);
 
             //TODO -sf- this can probably be made more efficient
             //convert into array for usefulness
@@ -210,6 +261,8 @@ public class SITransactor implements Transactor{
                 }
                 i++;
             }
+            if(recentWriters!=null)
+                updateRecentWriters(recentWriters,txn,lockPairs,cleanWrites,finalStatus);
             return finalStatus;
         }finally{
             releaseLocksForKvBatch(lockPairs);
@@ -232,7 +285,9 @@ public class SITransactor implements Transactor{
                                                                    byte[] family,byte[] qualifier,
                                                                    ConstraintChecker constraintChecker,
                                                                    TxnFilter constraintStateFilter,
-                                                                   MutationStatus[] finalStatus) throws IOException {
+                                                                   MutationStatus[] finalStatus,
+                                                                   RecentWriters recentWriters,
+                                                                   boolean[] cleanWrites) throws IOException {
         IntObjectOpenHashMap<DataPut> finalMutationsToWrite = IntObjectOpenHashMap.newInstance(dataAndLocks.length, 0.9f);
         DataResult possibleConflicts = null;
         BitSet bloomInMemoryCheck  = table.getBloomInMemoryCheck(constraintChecker!=null,dataAndLocks);
@@ -253,13 +308,21 @@ public class SITransactor implements Transactor{
                  * We know that this is the case because there is no constraint checker (constraint checkers are only
                  * applied on key elements.
                  */
-                //todo -sf remove the Row key copy here
-                possibleConflicts=bloomInMemoryCheck==null||bloomInMemoryCheck.get(i)?table.getLatest(kvPair.getRowKey(),possibleConflicts):null;
-                if(possibleConflicts!=null){
-                    //we need to check for write conflicts
-                    conflictResults=ensureNoWriteConflict(transaction,writeType,possibleConflicts);
-                    if(applyConstraint(constraintChecker,constraintStateFilter,i,kvPair,possibleConflicts,finalStatus,conflictResults.hasAdditiveConflicts())) //filter this row out, it fails the constraint
-                        continue;
+                ConflictResults recentConflicts=null;
+                if(recentWriters!=null && (constraintChecker==null || !constraintChecker.appliesTo(writeType)))
+                    recentConflicts=checkRecentWriter(recentWriters,transaction,writeType,kvPair.rowKeySlice());
+                if(recentConflicts!=null){
+                    //the most recent writer of the row tells us everything we need to know, so skip the read
+                    conflictResults=recentConflicts;
+                }else{
+                    //todo -sf remove the Row key copy here
+                    possibleConflicts=bloomInMemoryCheck==null||bloomInMemoryCheck.get(i)?table.getLatest(kvPair.getRowKey(),possibleConflicts):null;
+                    if(possibleConflicts!=null){
+                        //we need to check for write conflicts
+                        conflictResults=ensureNoWriteConflict(transaction,writeType,possibleConflicts);
+                        if(applyConstraint(constraintChecker,constraintStateFilter,i,kvPair,possibleConflicts,finalStatus,conflictResults.hasAdditiveConflicts())) //filter this row out, it fails the constraint
+                            continue;
+                    }
                 }
                 //TODO -sf- if type is an UPSERT, and conflict type is ADDITIVE_CONFLICT, then we
                 //set the status on the row to ADDITIVE_CONFLICT_DURING_UPSERT
@@ -275,6 +338,10 @@ public class SITransactor implements Transactor{
             }
 
             conflictingChildren[i]=conflictResults.getChildConflicts();
+            if(cleanWrites!=null && (constraintChecker!=null || !KVPair.Type.INSERT.equals(writeType))){
+                cleanWrites[i]=!conflictResults.hasAdditiveConflicts()
+                        && (conflictingChildren[i]==null || conflictingChildren[i].isEmpty());
+            }
             DataPut mutationToRun=getMutationToRun(table,rollForwardQueue,kvPair,
                     family,qualifier,transaction,conflictResults);
             finalMutationsToWrite.put(i,mutationToRun);
@@ -282,6 +349,61 @@ public class SITransactor implements Transactor{
         return finalMutationsToWrite;
     }
 
+    /**
+     * Determine the conflicts of a write from the most recent writer of the row, if that writer is known.
+     *
+     * Only a committed writer which committed before {@code updateTxn} began is enough to decide: every older version
+     * of the row was committed before the writer began (or was rolled back), so none of them can conflict either. In
+     * every other case the row must be read to find out how it conflicts.
+     *
+     * @return the conflicts of the write, or {@code null} if the row must be read to determine them.
+     */
+    private ConflictResults checkRecentWriter(RecentWriters recentWriters,
+                                              TxnView updateTxn,
+                                              KVPair.Type writeType,
+                                              ByteSlice rowKey) throws IOException{
+        /*
+         * Deletes must also check the FK counter, which isn't written by us, and additive transactions can
+         * conflict with committed writers, so neither of them can use the recent writer
+         */
+        if(writeType==KVPair.Type.DELETE || updateTxn.isAdditive()) return null;
+        RecentWriters.Writer writer=recentWriters.lookup(rowKey);
+        if(writer==null) return null;
+
+        long commitTs=writer.getCommitTimestamp();
+        if(commitTs<0){
+            TxnView writerTxn=txnSupplier.getTransaction(writer.getTxnId());
+            if(writerTxn.getEffectiveState()!=Txn.State.COMMITTED) return null;
+            commitTs=writerTxn.getEffectiveCommitTimestamp();
+            writer=recentWriters.committed(writer,commitTs);
+        }
+        if(commitTs>updateTxn.getEffectiveBeginTimestamp()) return null;
+
+        ConflictResults conflictResults=new ConflictResults();
+        //the writer's tombstone is visible to us, so we'll need to mask it
+        conflictResults.setHasTombstone(writer.isDelete());
+        return conflictResults;
+    }
+
+    private void updateRecentWriters(RecentWriters recentWriters,
+                                     TxnView txn,
+                                     Pair<KVPair, Lock>[] dataAndLocks,
+                                     boolean[] cleanWrites,
+                                     MutationStatus[] finalStatus){
+        /*
+         * We still hold the row locks, so no one else can have written these rows since we wrote them.
+         */
+        for(int i=0;i<dataAndLocks.length;i++){
+            Pair<KVPair, Lock> dataAndLock=dataAndLocks[i];
+            if(dataAndLock==null) continue;
+            KVPair kvPair=dataAndLock.getFirst();
+            if(cleanWrites[i] && finalStatus[i]!=null && finalStatus[i].isSuccess())
+                recentWriters.record(kvPair.rowKeySlice(),txn.getTxnId(),kvPair.getType()==KVPair.Type.DELETE);
+            else
+                recentWriters.invalidate(kvPair.rowKeySlice());
+        }
+    }
+
     private boolean applyConstraint(ConstraintChecker constraintChecker,
                                     TxnFilter constraintStateFilter,
                                     int rowPosition,
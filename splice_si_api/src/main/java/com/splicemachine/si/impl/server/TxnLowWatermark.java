@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.concurrent.Clock;
+import com.splicemachine.si.api.txn.TxnStore;
+import com.splicemachine.timestamp.api.TimestampSource;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the cluster-wide low-watermark used to purge old versions during compaction.
+ *
+ * The low-watermark is the begin timestamp of the oldest transaction which is still active
+ * according to the transaction table. Any version whose transaction committed before the watermark
+ * is visible to every running (and future) transaction, so once a newer such version exists, the older
+ * versions it shadows can never be read again.
+ *
+ * Read-only transactions are not recorded in the transaction table, so they are protected differently:
+ * the watermark is never allowed to pass a timestamp which was handed out less than the retention period ago.
+ * To do so, we periodically sample the timestamp source, and only consider active transactions which
+ * began before the newest sample which is older than the retention period.
+ *
+ * This class is thread-safe.
+ */
+public class TxnLowWatermark implements LowWatermarkManagement{
+    private static final Logger LOG=Logger.getLogger(TxnLowWatermark.class);
+
+    private final TxnStore txnStore;
+    private final TimestampSource timestampSource;
+    private final Clock clock;
+    private final boolean enabled;
+    private final long retentionMs;
+    private final long refreshIntervalMs;
+
+    /*(time,timestamp) samples, oldest first*/
+    private final ArrayDeque<long[]> samples=new ArrayDeque<>();
+    private volatile long watermark=0l;
+    private long lastRefresh=-1l;
+
+    private final AtomicLong purgedCells=new AtomicLong(0l);
+    private final AtomicLong purgedBytes=new AtomicLong(0l);
+
+    public TxnLowWatermark(TxnStore txnStore,TimestampSource timestampSource,Clock clock,SConfiguration config){
+        this(txnStore,timestampSource,clock,
+                config.isCompactionPurgeVersions(),
+                config.getCompactionWatermarkRetention(),
+                config.getCompactionWatermarkRefreshInterval());
+    }
+
+    public TxnLowWatermark(TxnStore txnStore,TimestampSource timestampSource,Clock clock,
+                           boolean enabled,long retentionMs,long refreshIntervalMs){
+        this.txnStore=txnStore;
+        this.timestampSource=timestampSource;
+        this.clock=clock;
+        this.enabled=enabled;
+        this.retentionMs=retentionMs;
+        this.refreshIntervalMs=refreshIntervalMs;
+    }
+
+    /**
+     * Get the low-watermark to use for a compaction, refreshing it if it is older than the refresh interval.
+     *
+     * @return the low-watermark, or 0 if no versions should be purged.
+     * @throws IOException if we are unable to read the active transactions
+     */
+    public synchronized long purgeWatermark() throws IOException{
+        if(!enabled) return 0l;
+        long now=clock.currentTimeMillis();
+        if(lastRefresh>=0 && now-lastRefresh<refreshIntervalMs) return watermark;
+        lastRefresh=now;
+        samples.addLast(new long[]{now,timestampSource.nextTimestamp()});
+
+        long[] retained=null;
+        while(!samples.isEmpty() && now-samples.peekFirst()[0]>=retentionMs){
+            retained=samples.pollFirst();
+        }
+        if(retained==null){
+            //we haven't been sampling for long enough to protect read-only transactions yet
+            return watermark;
+        }
+        //keep the newest expired sample, so that we still have a bound on the next refresh
+        samples.addFirst(retained);
+
+        long[] activeTxnIds=txnStore.getActiveTransactionIds(0l,retained[1],null);
+        long oldestActive=retained[1];
+        for(long activeTxnId:activeTxnIds){
+            if(activeTxnId<oldestActive)
+                oldestActive=activeTxnId;
+        }
+        if(oldestActive>watermark){
+            watermark=oldestActive;
+            if(LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG,"Advanced the low-watermark to %d",watermark);
+        }
+        return watermark;
+    }
+
+    public void recordPurged(long bytes){
+        purgedCells.incrementAndGet();
+        purgedBytes.addAndGet(bytes);
+    }
+
+    @Override
+    public long getLowWatermark(){
+        return watermark;
+    }
+
+    @Override
+    public long getTotalPurgedCells(){
+        return purgedCells.get();
+    }
+
+    @Override
+    public long getTotalPurgedBytes(){
+        return purgedBytes.get();
+    }
+}
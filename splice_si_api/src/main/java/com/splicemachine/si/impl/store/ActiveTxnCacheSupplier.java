@@ -62,6 +62,32 @@ public class ActiveTxnCacheSupplier implements TxnSupplier {
 				return txn;
 		}
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException {
+        TxnView[] txns = new TxnView[txnIds.length];
+        int[] misses = new int[txnIds.length];
+        int numMisses = 0;
+        for(int i=0;i<txnIds.length;i++){
+            txns[i] = this.cache.get(txnIds[i]);
+            if(txns[i]==null)
+                misses[numMisses++] = i;
+        }
+        if(numMisses==0) return txns;
+
+        long[] missingIds = new long[numMisses];
+        for(int i=0;i<numMisses;i++){
+            missingIds[i] = txnIds[misses[i]];
+        }
+        TxnView[] fetched = delegate.getTransactions(missingIds);
+        for(int i=0;i<numMisses;i++){
+            TxnView txn = fetched[i];
+            txns[misses[i]] = txn;
+            if(txn!=null && txn.getEffectiveState()== Txn.State.ACTIVE)
+                this.cache.put(txn.getTxnId(),txn);
+        }
+        return txns;
+    }
+
 		@Override
 		public boolean transactionCached(long txnId) {
         return cache.get(txnId) !=null;
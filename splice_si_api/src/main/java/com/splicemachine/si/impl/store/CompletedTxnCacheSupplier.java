@@ -15,40 +15,57 @@
 
 package com.splicemachine.si.impl.store;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.splicemachine.collections.ConcurrentLongKeyedCache;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.SimpleTxnFilter;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import org.spark_project.guava.cache.CacheStats;
+
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TxnSupplier which caches transaction which have "Completed"--i.e. which have entered the COMMITTED or ROLLEDBACK
  * state.
  * <p/>
- * This class is thread-safe, and safe to be shared between many threads.
+ * This class is thread-safe, and safe to be shared between many threads. Transactions are held in a lock-free
+ * cache keyed by the primitive transaction id (see {@link ConcurrentLongKeyedCache}), so lookups neither box
+ * the id nor contend on a lock.
  *
  * @author Scott Fines
  *         Date: 6/18/14
  */
-public class CompletedTxnCacheSupplier implements TxnSupplier{
-    private ConcurrentLinkedHashMap<Long, TxnView> cache; // autobox for now
+public class CompletedTxnCacheSupplier implements TxnSupplier,TransactionCacheManagement{
+    private final ConcurrentLongKeyedCache<TxnView> cache;
     private final TxnSupplier delegate;
-    private final AtomicLong hits=new AtomicLong();
-    private final AtomicLong requests=new AtomicLong();
 
+    /**
+     * @param delegate the supplier to fetch uncached transactions from
+     * @param maxSize the maximum number of transactions to cache. This is rounded up to a power of two
+     * @param concurrencyLevel unused, as the cache does not take any locks. Retained so that existing
+     *                         configurations remain valid
+     */
     public CompletedTxnCacheSupplier(TxnSupplier delegate,int maxSize,int concurrencyLevel){
-        cache=new ConcurrentLinkedHashMap.Builder<Long, TxnView>()
-                .maximumWeightedCapacity(maxSize)
-                .concurrencyLevel(concurrencyLevel)
-                .build();
+        this.cache=new ConcurrentLongKeyedCache<>(maxSize);
         this.delegate=delegate;
     }
 
-    public int getMaxSize(){
-        return cache.size();
+    @Override public long getTotalEvictedEntries(){ return cache.getStats().evictionCount(); }
+    @Override public long getTotalHits(){ return cache.getStats().hitCount(); }
+    @Override public long getTotalMisses(){ return cache.getStats().missCount(); }
+    @Override public long getTotalRequests(){ return cache.getStats().requestCount(); }
+    @Override public int getCurrentSize(){ return cache.size(); }
+    @Override public int getMaxSize(){ return cache.maxSize(); }
+    @Override public long getVisibilityMemoHits(){ return SimpleTxnFilter.getTotalVisibilityMemoHits(); }
+    @Override public long getVisibilityMemoMisses(){ return SimpleTxnFilter.getTotalVisibilityMemoMisses(); }
+
+    @Override
+    public float getHitPercentage(){
+        CacheStats stats=cache.getStats();
+        return (float)stats.hitRate();
     }
 
     @Override
@@ -63,12 +80,9 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
     public TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException{
         if(txnId==-1)
             return Txn.ROOT_TRANSACTION;
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId); // autobox until Cliff C merge
-        if(txn!=null){
-            hits.incrementAndGet();
+        TxnView txn=cache.get(txnId);
+        if(txn!=null)
             return txn;
-        }
         //bummer, we aren't in the cache, need to check the delegate
         TxnView transaction=delegate.getTransaction(txnId,getDestinationTables);
         if(transaction==null) //noinspection ConstantConditions
@@ -82,9 +96,48 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
         return transaction;
     }
 
+    @Override
+    @SuppressFBWarnings("SF_SWITCH_NO_DEFAULT") //intentional
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        int[] misses=new int[txnIds.length];
+        int numMisses=0;
+        for(int i=0;i<txnIds.length;i++){
+            long txnId=txnIds[i];
+            if(txnId==-1){
+                txns[i]=Txn.ROOT_TRANSACTION;
+                continue;
+            }
+            TxnView txn=cache.get(txnId);
+            if(txn!=null)
+                txns[i]=txn;
+            else
+                misses[numMisses++]=i;
+        }
+        if(numMisses==0) return txns;
+
+        //fetch everything we are missing from the delegate at once
+        long[] missingIds=new long[numMisses];
+        for(int i=0;i<numMisses;i++){
+            missingIds[i]=txnIds[misses[i]];
+        }
+        TxnView[] fetched=delegate.getTransactions(missingIds);
+        for(int i=0;i<numMisses;i++){
+            TxnView transaction=fetched[i];
+            txns[misses[i]]=transaction;
+            if(transaction==null) continue;
+            switch(transaction.getEffectiveState()){
+                case COMMITTED:
+                case ROLLEDBACK:
+                    cache.put(transaction.getTxnId(),transaction);
+            }
+        }
+        return txns;
+    }
+
     @Override
     public boolean transactionCached(long txnId){
-        return cache.get(txnId)!=null;
+        return cache.contains(txnId);
     }
 
     @Override
@@ -95,10 +148,6 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
 
     @Override
     public TxnView getTransactionFromCache(long txnId){
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId);
-        if(txn!=null)
-            hits.incrementAndGet();
-        return txn;
+        return cache.get(txnId);
     }
 }
@@ -15,8 +15,10 @@
 
 package com.splicemachine.si.impl.store;
 
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.SimpleTxnFilter;
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
 import java.io.IOException;
@@ -27,7 +29,7 @@ import java.util.concurrent.ExecutionException;
  * @author Scott Fines
  *         Date: 9/5/14
  */
-public class SimpleCompletedTxnCacheSupplier implements TxnSupplier{
+public class SimpleCompletedTxnCacheSupplier implements TxnSupplier,TransactionCacheManagement{
     private final Cache<Long,TxnView> cache;
     private final TxnSupplier delegate;
     private final int maxSize;
@@ -58,6 +60,31 @@ public class SimpleCompletedTxnCacheSupplier implements TxnSupplier{
         }
     }
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException {
+        TxnView[] txns = new TxnView[txnIds.length];
+        int[] misses = new int[txnIds.length];
+        int numMisses = 0;
+        for (int i = 0; i < txnIds.length; i++) {
+            txns[i] = cache.getIfPresent(txnIds[i]);
+            if (txns[i] == null)
+                misses[numMisses++] = i;
+        }
+        if (numMisses == 0) return txns;
+
+        long[] missingIds = new long[numMisses];
+        for (int i = 0; i < numMisses; i++) {
+            missingIds[i] = txnIds[misses[i]];
+        }
+        TxnView[] fetched = delegate.getTransactions(missingIds);
+        for (int i = 0; i < numMisses; i++) {
+            txns[misses[i]] = fetched[i];
+            if (fetched[i] != null)
+                cache.put(fetched[i].getTxnId(), fetched[i]);
+        }
+        return txns;
+    }
+
     @Override
     public boolean transactionCached(long txnId) {
         return getTransactionFromCache(txnId)!=null;
@@ -73,13 +100,16 @@ public class SimpleCompletedTxnCacheSupplier implements TxnSupplier{
         return cache.getIfPresent(txnId);
     }
 
-    public long getTotalEvictedEntries() { return cache.stats().evictionCount(); }
-    public long getTotalHits() { return cache.stats().hitCount(); }
-    public long getTotalMisses() { return cache.stats().missCount(); }
-    public long getTotalRequests() { return cache.stats().requestCount(); }
-    public float getHitPercentage() { return (float)cache.stats().hitRate(); }
-    public int getCurrentSize() { return (int)cache.size(); }
+    @Override public long getTotalEvictedEntries() { return cache.stats().evictionCount(); }
+    @Override public long getTotalHits() { return cache.stats().hitCount(); }
+    @Override public long getTotalMisses() { return cache.stats().missCount(); }
+    @Override public long getTotalRequests() { return cache.stats().requestCount(); }
+    @Override public float getHitPercentage() { return (float)cache.stats().hitRate(); }
+    @Override public int getCurrentSize() { return (int)cache.size(); }
+    @Override public long getVisibilityMemoHits() { return SimpleTxnFilter.getTotalVisibilityMemoHits(); }
+    @Override public long getVisibilityMemoMisses() { return SimpleTxnFilter.getTotalVisibilityMemoMisses(); }
 
+    @Override
     public int getMaxSize() {
         return maxSize;
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.api.readresolve;
+
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.impl.rollforward.RollForwardStatus;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.utils.ByteSlice;
+import com.splicemachine.utils.GreenLight;
+import com.splicemachine.utils.TrafficControl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests around coalescing and dropping of asynchronous read-resolution requests.
+ */
+@Category(ArchitectureIndependent.class)
+public class AsyncReadResolverTest{
+    private KeyedReadResolver synchronousResolver;
+    private TxnSupplier txnSupplier;
+    private AsyncReadResolver resolver;
+
+    @Before
+    public void setUp() throws Exception{
+        synchronousResolver=mock(KeyedReadResolver.class);
+        when(synchronousResolver.resolve(any(Partition.class),any(ByteSlice.class),anyLong(),any(TxnSupplier.class),
+                any(RollForwardStatus.class),anyBoolean(),any(TrafficControl.class))).thenReturn(true);
+        txnSupplier=mock(TxnSupplier.class);
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        if(resolver!=null)
+            resolver.shutdown();
+    }
+
+    @Test
+    public void testDuplicatesAreOnlyCoalescedWithinARegion() throws Exception{
+        resolver=new AsyncReadResolver(1,16,txnSupplier,new RollForwardStatus(),GreenLight.INSTANCE,synchronousResolver);
+        Partition regionA=mockRegion("a");
+        Partition regionB=mockRegion("b");
+        RollForward rollForward=mock(RollForward.class);
+        ReadResolver resolverA=resolver.getResolver(regionA,rollForward);
+        ReadResolver resolverB=resolver.getResolver(regionB,rollForward);
+
+        //submit everything before starting, so that the requests are handled as a single batch
+        resolverA.resolve(row("r1"),1l);
+        resolverB.resolve(row("r1"),1l);
+        resolverA.resolve(row("r2"),1l);
+        resolverA.resolve(row("r1"),1l);
+        resolverB.resolve(row("r1"),2l);
+        resolverA.resolve(row("r2"),1l);
+        Assert.assertEquals("Incorrect number of submitted requests!",6l,resolver.getTotalSubmitted());
+
+        resolver.start();
+        waitForRequests(6l);
+
+        Assert.assertEquals("Incorrect number of coalesced requests!",2l,resolver.getTotalCoalesced());
+        Assert.assertEquals("Incorrect number of resolved requests!",4l,resolver.getTotalResolved());
+        Assert.assertEquals("Incorrect number of unresolved requests!",0l,resolver.getTotalUnresolved());
+        Assert.assertEquals("Incorrect number of dropped requests!",0l,resolver.getTotalDropped());
+
+        verifyResolved(regionA,"r1",1l);
+        verifyResolved(regionA,"r2",1l);
+        verifyResolved(regionB,"r1",1l);
+        verifyResolved(regionB,"r1",2l);
+        verify(rollForward,times(4)).recordResolved(any(ByteSlice.class),anyLong());
+    }
+
+    @Test
+    public void testRequestsAreDroppedWhenTheRingIsFull() throws Exception{
+        resolver=new AsyncReadResolver(1,4,txnSupplier,new RollForwardStatus(),GreenLight.INSTANCE,synchronousResolver);
+        ReadResolver regionResolver=resolver.getResolver(mockRegion("a"),mock(RollForward.class));
+
+        //nothing is consuming yet, so only the first requests fit into the ring
+        for(int i=0;i<6;i++){
+            regionResolver.resolve(row("r"+i),1l);
+        }
+        Assert.assertEquals("Incorrect number of submitted requests!",4l,resolver.getTotalSubmitted());
+        Assert.assertEquals("Incorrect number of dropped requests!",2l,resolver.getTotalDropped());
+        Assert.assertEquals("Ring should be full!",0l,resolver.getRemainingCapacity());
+
+        resolver.start();
+        waitForRequests(4l);
+        Assert.assertEquals("Incorrect number of resolved requests!",4l,resolver.getTotalResolved());
+        Assert.assertEquals("Incorrect number of coalesced requests!",0l,resolver.getTotalCoalesced());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void waitForRequests(long count) throws InterruptedException{
+        long deadline=System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+        while(resolver.getTotalResolved()+resolver.getTotalUnresolved()+resolver.getTotalCoalesced()<count){
+            Assert.assertTrue("Requests were not handled in time!",System.nanoTime()<deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private void verifyResolved(Partition region,String row,long txnId){
+        verify(synchronousResolver,times(1)).resolve(eq(region),eq(row(row)),eq(txnId),any(TxnSupplier.class),
+                any(RollForwardStatus.class),anyBoolean(),any(TrafficControl.class));
+    }
+
+    private static Partition mockRegion(String name){
+        Partition region=mock(Partition.class);
+        when(region.getName()).thenReturn(name);
+        return region;
+    }
+
+    private static ByteSlice row(String row){
+        return ByteSlice.wrap(row.getBytes());
+    }
+}
@@ -50,6 +50,7 @@ import org.mockito.stubbing.Answer;
 import java.io.IOException;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -131,6 +132,99 @@ public class SimpleTxnFilterTest{
         Assert.assertEquals("Incorrect return code for data cell!",DataFilter.ReturnCode.SKIP,returnCode);
     }
 
+    @Test
+    public void testPrefetchedWritersAreNotLookedUpPerCell() throws Exception{
+        TxnView committed=getMockCommittedTxn(1l,2l,null);
+        TxnView rolledBack=getMockRolledBackTxn(3l,null);
+        TxnSupplier baseStore=mock(TxnSupplier.class);
+        when(baseStore.getTransactions(any(long[].class))).thenReturn(new TxnView[]{committed,rolledBack});
+
+        TxnView myTxn=new InheritingTxnView(Txn.ROOT_TRANSACTION,5l,5l,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ACTIVE);
+        SimpleTxnFilter filter=new SimpleTxnFilter(null,myTxn,NoOpReadResolver.INSTANCE,baseStore);
+
+        DataCell committedCell=getUserCell(committed);
+        DataCell rolledBackCell=getUserCell(rolledBack);
+        Assert.assertTrue("Unknown writer should require a lookup!",filter.requiresLookup(committedCell));
+        Assert.assertTrue("Unknown writer should require a lookup!",filter.requiresLookup(rolledBackCell));
+
+        filter.prefetch(new long[]{committed.getTxnId(),rolledBack.getTxnId()});
+        Assert.assertFalse("Prefetched writer should not require a lookup!",filter.requiresLookup(committedCell));
+        Assert.assertFalse("Prefetched writer should not require a lookup!",filter.requiresLookup(rolledBackCell));
+        Assert.assertEquals("Incorrect return code for committed cell!",DataFilter.ReturnCode.INCLUDE,filter.filterCell(committedCell));
+        Assert.assertEquals("Incorrect return code for rolled back cell!",DataFilter.ReturnCode.SKIP,filter.filterCell(rolledBackCell));
+
+        verify(baseStore,times(1)).getTransactions(any(long[].class));
+        verify(baseStore,never()).getTransaction(anyLong());
+        verify(baseStore,never()).getTransaction(anyLong(),anyBoolean());
+    }
+
+    @Test
+    public void testMemoizesVisibilityOfFinishedWriters() throws Exception{
+        TxnSupplier baseStore=txnSupplier;
+        TxnView committed=getMockCommittedTxn(1l,2l,null);
+        TxnView active=getMockActiveTxn(3l,null);
+        baseStore.cache(committed);
+        baseStore.cache(active);
+
+        TxnView myTxn=new InheritingTxnView(Txn.ROOT_TRANSACTION,5l,5l,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ACTIVE);
+        SimpleTxnFilter filter=new SimpleTxnFilter(null,myTxn,NoOpReadResolver.INSTANCE,baseStore);
+
+        DataCell committedCell=getUserCell(committed);
+        DataCell activeCell=getUserCell(active);
+        long totalHits=SimpleTxnFilter.getTotalVisibilityMemoHits();
+        long totalMisses=SimpleTxnFilter.getTotalVisibilityMemoMisses();
+        for(int i=0;i<3;i++){
+            filter.nextRow();
+            Assert.assertEquals("Incorrect return code for committed cell!",DataFilter.ReturnCode.INCLUDE,filter.filterCell(committedCell));
+            Assert.assertEquals("Incorrect return code for active cell!",DataFilter.ReturnCode.SKIP,filter.filterCell(activeCell));
+        }
+        //the committed writer is only looked up once, but the active writer must be checked every time
+        Assert.assertEquals("Incorrect memo hits!",2l,filter.getVisibilityMemoHits());
+        Assert.assertEquals("Incorrect memo misses!",4l,filter.getVisibilityMemoMisses());
+        //the counts are published to the shared totals in batches, rather than for every row
+        for(int i=0;i<SimpleTxnFilter.PUBLISH_INTERVAL;i++){
+            filter.nextRow();
+            filter.filterCell(committedCell);
+        }
+        filter.nextRow();
+        long publishedHits=SimpleTxnFilter.getTotalVisibilityMemoHits()-totalHits;
+        long publishedMisses=SimpleTxnFilter.getTotalVisibilityMemoMisses()-totalMisses;
+        Assert.assertTrue("Memo checks were not published!",publishedHits+publishedMisses>=SimpleTxnFilter.PUBLISH_INTERVAL);
+        Assert.assertTrue("Memo misses were not published!",publishedMisses>=4l);
+    }
+
+    @Test
+    public void testMemoKeepsWorkingOnceFull() throws Exception{
+        //more writers than the memo (or any of the caches) can hold, each committed right after it began
+        Answer<TxnView> committedWriters=new Answer<TxnView>(){
+            @Override
+            public TxnView answer(InvocationOnMock invocation) throws Throwable{
+                long txnId=(Long)invocation.getArguments()[0];
+                return getMockCommittedTxn(txnId,txnId+1,null);
+            }
+        };
+        TxnSupplier baseStore=mock(TxnSupplier.class);
+        when(baseStore.getTransaction(anyLong())).thenAnswer(committedWriters);
+        when(baseStore.getTransaction(anyLong(),anyBoolean())).thenAnswer(committedWriters);
+        int numWriters=4096;
+        DataCell[] cells=new DataCell[numWriters];
+        for(int i=0;i<numWriters;i++){
+            cells[i]=getUserCell(getMockCommittedTxn(2*i+1,2*i+2,null));
+        }
+
+        TxnView myTxn=new InheritingTxnView(Txn.ROOT_TRANSACTION,2*numWriters+1,2*numWriters+1,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ACTIVE);
+        SimpleTxnFilter filter=new SimpleTxnFilter(null,myTxn,NoOpReadResolver.INSTANCE,baseStore);
+        for(DataCell cell:cells){
+            filter.nextRow();
+            Assert.assertEquals("Incorrect return code!",DataFilter.ReturnCode.INCLUDE,filter.filterCell(cell));
+        }
+        Assert.assertEquals("Incorrect memo misses!",numWriters,filter.getVisibilityMemoMisses());
+
+        //the memo is well past full, but the writer we just checked is still remembered
+        filter.nextRow();
+        Assert.assertEquals("Incorrect return code!",DataFilter.ReturnCode.INCLUDE,filter.filterCell(cells[numWriters-1]));
+        Assert.assertEquals("Recent writer was evicted from the memo!",1l,filter.getVisibilityMemoHits());
+    }
 
 	/*Tests that Read-Resolution doesn't happen with active transactions*/
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.hlc;
+
+import com.splicemachine.timestamp.api.TimestampSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HLCReadTimestampSourceTest{
+
+    @Test
+    public void reusesTimestampWithinSkew(){
+        CountingSource oracle=new CountingSource();
+        HLCReadTimestampSource source=new HLCReadTimestampSource(oracle,Long.MAX_VALUE>>HLC.hlcNumBitsToShift);
+        long first=source.nextTimestamp();
+        for(int i=0;i<100;i++){
+            Assert.assertEquals("Did not reuse the timestamp",first,source.nextTimestamp());
+        }
+        Assert.assertEquals("Incorrect number of oracle calls",1,oracle.calls);
+        Assert.assertEquals("Incorrect oracle count",1l,source.getOracleTimestampCount());
+        Assert.assertEquals("Incorrect local count",100l,source.getLocalTimestampCount());
+    }
+
+    @Test
+    public void goesToOracleOutsideSkew(){
+        CountingSource oracle=new CountingSource();
+        HLCReadTimestampSource source=new HLCReadTimestampSource(oracle,-1l);
+        long last=-1l;
+        for(int i=0;i<10;i++){
+            long next=source.nextTimestamp();
+            Assert.assertTrue("Timestamp went backwards",next>last);
+            last=next;
+        }
+        Assert.assertEquals("Incorrect number of oracle calls",10,oracle.calls);
+    }
+
+    @Test
+    public void observedCommitTimestampsAreSeen(){
+        CountingSource oracle=new CountingSource();
+        HLCReadTimestampSource source=new HLCReadTimestampSource(oracle,Long.MAX_VALUE>>HLC.hlcNumBitsToShift);
+        long first=source.nextTimestamp();
+        source.observe(first+10);
+        Assert.assertEquals("Did not see the observed timestamp",first+10,source.nextTimestamp());
+        source.observe(first+5);
+        Assert.assertEquals("Went back to an older timestamp",first+10,source.nextTimestamp());
+        Assert.assertEquals("Incorrect number of oracle calls",1,oracle.calls);
+    }
+
+    private static class CountingSource implements TimestampSource{
+        private long next=1l;
+        private int calls;
+
+        @Override
+        public long nextTimestamp(){
+            calls++;
+            return next++;
+        }
+
+        @Override public void rememberTimestamp(long timestamp){ }
+        @Override public long retrieveTimestamp(){ return 0; }
+        @Override public void shutdown(){ }
+    }
+}
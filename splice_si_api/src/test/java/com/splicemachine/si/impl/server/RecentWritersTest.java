@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.utils.ByteSlice;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.TimeUnit;
+
+@Category(ArchitectureIndependent.class)
+public class RecentWritersTest{
+
+    @Test
+    public void testRemembersMostRecentWriter() throws Exception{
+        RecentWriters writers=new RecentWriters(16,1000l,new IncrementingClock());
+        ByteSlice row=ByteSlice.wrap(Bytes.toBytes("row"));
+        Assert.assertNull("Should not know the writer of an unwritten row",writers.lookup(row));
+
+        writers.record(row,1l,false);
+        writers.record(row,2l,true);
+        RecentWriters.Writer writer=writers.lookup(row);
+        Assert.assertNotNull("Should know the writer",writer);
+        Assert.assertEquals("Incorrect writer",2l,writer.getTxnId());
+        Assert.assertTrue("Writer should have deleted the row",writer.isDelete());
+        Assert.assertEquals("Commit timestamp should not be known",-1l,writer.getCommitTimestamp());
+
+        writers.committed(writer,3l);
+        Assert.assertEquals("Commit timestamp should be remembered",3l,writers.lookup(row).getCommitTimestamp());
+        Assert.assertEquals("Incorrect hit count",2l,writers.getHits());
+        Assert.assertEquals("Incorrect miss count",1l,writers.getMisses());
+    }
+
+    @Test
+    public void testInvalidateForgetsWriter() throws Exception{
+        RecentWriters writers=new RecentWriters(16,1000l,new IncrementingClock());
+        ByteSlice row=ByteSlice.wrap(Bytes.toBytes("row"));
+        writers.record(row,1l,false);
+        writers.invalidate(row);
+        Assert.assertNull("Should have forgotten the writer",writers.lookup(row));
+    }
+
+    @Test
+    public void testForgetsExpiredWriters() throws Exception{
+        IncrementingClock clock=new IncrementingClock();
+        RecentWriters writers=new RecentWriters(16,1000l,clock);
+        ByteSlice row=ByteSlice.wrap(Bytes.toBytes("row"));
+        writers.record(row,1l,false);
+        clock.sleep(1000l,TimeUnit.MILLISECONDS);
+        Assert.assertNotNull("Should still know the writer",writers.lookup(row));
+        clock.sleep(1l,TimeUnit.MILLISECONDS);
+        Assert.assertNull("Should have forgotten the expired writer",writers.lookup(row));
+    }
+
+    @Test
+    public void testCollidingRowsDoNotShareWriters() throws Exception{
+        //a single slot, so every row collides
+        RecentWriters writers=new RecentWriters(1,1000l,new IncrementingClock());
+        ByteSlice row1=ByteSlice.wrap(Bytes.toBytes("row1"));
+        ByteSlice row2=ByteSlice.wrap(Bytes.toBytes("row2"));
+        writers.record(row1,1l,false);
+        writers.record(row2,2l,false);
+        Assert.assertNull("Should not return the writer of another row",writers.lookup(row1));
+        Assert.assertEquals("Incorrect writer",2l,writers.lookup(row2).getTxnId());
+
+        writers.invalidate(row1);
+        Assert.assertNotNull("Invalidating another row should not forget the writer",writers.lookup(row2));
+    }
+}
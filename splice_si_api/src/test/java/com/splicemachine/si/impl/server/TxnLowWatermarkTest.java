@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.si.api.txn.TxnStore;
+import com.splicemachine.si.impl.store.TestingTimestampSource;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class TxnLowWatermarkTest{
+
+    @Test
+    public void testDisabledNeverPurges() throws Exception{
+        TxnStore store=mock(TxnStore.class);
+        TxnLowWatermark watermark=new TxnLowWatermark(store,new TestingTimestampSource(),new IncrementingClock(),false,0l,0l);
+        Assert.assertEquals("Should not purge when disabled!",0l,watermark.purgeWatermark());
+        verifyZeroInteractions(store);
+    }
+
+    @Test
+    public void testWatermarkHeldBackByRetentionAndActiveTransactions() throws Exception{
+        TxnStore store=mock(TxnStore.class);
+        TestingTimestampSource timestamps=new TestingTimestampSource();
+        IncrementingClock clock=new IncrementingClock();
+        TxnLowWatermark watermark=new TxnLowWatermark(store,timestamps,clock,true,1000l,10l);
+
+        //timestamp 1 is handed out now, so it must be retained for a second
+        Assert.assertEquals("Watermark advanced before the retention period!",0l,watermark.purgeWatermark());
+        Assert.assertEquals("Watermark advanced before the refresh interval!",0l,watermark.purgeWatermark());
+
+        when(store.getActiveTransactionIds(0l,1l,null)).thenReturn(new long[]{});
+        clock.sleep(1,TimeUnit.SECONDS);
+        Assert.assertEquals("Watermark should advance to the retained timestamp!",1l,watermark.purgeWatermark());
+
+        //timestamp 2 is retained now, but an older transaction is still active
+        when(store.getActiveTransactionIds(0l,2l,null)).thenReturn(new long[]{1l});
+        clock.sleep(1,TimeUnit.SECONDS);
+        Assert.assertEquals("Watermark should be held back by the active transaction!",1l,watermark.purgeWatermark());
+        Assert.assertEquals("Incorrect reported watermark!",1l,watermark.getLowWatermark());
+    }
+}
@@ -160,4 +160,38 @@ public class CompletedTxnCacheSupplierTest{
         TxnView fromCache=store.getTransaction(txn.getTxnId());
         assertTxnsMatch("Transaction from store is not correct!",txn,fromCache);
     }
+
+    @Test
+    public void testBulkLookupOnlyFetchesUncachedTransactions() throws Exception{
+        TxnLifecycleManager tc=mock(TxnLifecycleManager.class);
+        when(tc.commit(anyLong())).thenReturn(3l,4l);
+        Txn cached=new WritableTxn(1,1,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.ROOT_TRANSACTION,tc,false,null);
+        cached.commit();
+        Txn uncached=new WritableTxn(2,2,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.ROOT_TRANSACTION,tc,false,null);
+        uncached.commit();
+
+        final long[][] requested=new long[1][];
+        TxnStore backStore=new TestingTxnStore(new IncrementingClock(),new TestingTimestampSource(),null,Long.MAX_VALUE){
+            @Override
+            public TxnView[] getTransactions(long[] txnIds) throws IOException{
+                Assert.assertNull("Should only make one bulk lookup!",requested[0]);
+                requested[0]=txnIds;
+                return super.getTransactions(txnIds);
+            }
+        };
+        backStore.recordNewTransaction(cached);
+        backStore.recordNewTransaction(uncached);
+
+        TxnSupplier store=new CompletedTxnCacheSupplier(backStore,10,16);
+        store.getTransaction(cached.getTxnId());
+
+        TxnView[] txns=store.getTransactions(new long[]{cached.getTxnId(),uncached.getTxnId(),100l,-1l});
+        Assert.assertArrayEquals("Incorrect transactions fetched from the store!",new long[]{uncached.getTxnId(),100l},requested[0]);
+        assertTxnsMatch("Incorrect cached transaction!",cached,txns[0]);
+        assertTxnsMatch("Incorrect fetched transaction!",uncached,txns[1]);
+        Assert.assertNull("Found a transaction which does not exist!",txns[2]);
+        Assert.assertEquals("Incorrect root transaction!",Txn.ROOT_TRANSACTION,txns[3]);
+
+        Assert.assertTrue("Cache does not think it is present!",store.transactionCached(uncached.getTxnId()));
+    }
 }
@@ -30,5 +30,30 @@ public interface TimestampClientStatistics{
 	long getNumberTimestampRequests();
 	
  	double getAvgTimestampRequestDuration();
+
+	/**
+	 * @return the number of batched requests sent to the timestamp server. Each batch
+	 * serves one or more timestamp requests.
+	 */
+	long getNumberTimestampBatches();
+
+	double getAvgTimestampBatchSize();
+
+	/*
+	 * Latency percentiles, in microseconds. Request latencies are measured from the point of view
+	 * of the caller (including any time spent waiting to be batched), batch latencies are the
+	 * round trip time to the timestamp server.
+	 */
+	long getTimestampRequestLatencyP50();
+
+	long getTimestampRequestLatencyP95();
+
+	long getTimestampRequestLatencyP99();
+
+	long getTimestampRequestLatencyMax();
+
+	long getTimestampBatchLatencyP50();
+
+	long getTimestampBatchLatencyP99();
 	
 }
@@ -25,6 +25,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -40,6 +43,7 @@ import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.handler.codec.frame.FixedLengthFrameDecoder;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import com.splicemachine.concurrent.CountDownLatches;
+import com.splicemachine.metrics.LatencyHistogram;
 import com.splicemachine.timestamp.api.Callback;
 import com.splicemachine.timestamp.api.TimestampClientStatistics;
 import com.splicemachine.timestamp.api.TimestampHostProvider;
@@ -53,6 +57,20 @@ import org.apache.log4j.Logger;
  * For the caller, the invocation of {@link #getNextTimestamp()}
  * is synchronous.
  * <p>
+ * Requests are sent in batches, each of which is answered with a contiguous range
+ * of timestamps. Up to {@code maxInFlight} batches may be outstanding on the connection
+ * at once; while that many are in flight, new requests are queued and sent together
+ * as the next batch once a response arrives. Under light load, then, every request is sent
+ * on its own as soon as it is made, and under heavy load the number of round trips to the
+ * server grows much more slowly than the number of requests.
+ * <p>
+ * A batch only ever contains requests which were waiting at the time it was sent, so every
+ * timestamp is still allocated by the server after its request was made.
+ * <p>
+ * Each request message is 4 bytes: a 2 byte batch id followed by a 2 byte count of timestamps.
+ * This is not compatible with servers which expect the older 2 byte request (a caller id
+ * alone), so clients and servers must be upgraded together.
+ * <p>
  * This class should generally not be constructed directly.
  *
  * @author Walt Koetke
@@ -74,10 +92,18 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     }
 
     /**
-     * A map representing all currently active callers to this TimestampClient
-     * waiting for their response.
+     * A map representing all batches sent by this TimestampClient
+     * which are waiting for their response.
+     */
+    private ConcurrentMap<Short, Batch> clientCallbacks = null;
+
+    /**
+     * Requests which have not yet been sent to the server.
      */
-    private ConcurrentMap<Short, Callback> clientCallbacks = null;
+    private final Queue<ClientCallback> pendingRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger batchesInFlight = new AtomicInteger(0);
+    private final int maxInFlight;
+    private final int maxBatchSize;
 
     private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
 
@@ -95,19 +121,38 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     // We might even get away with using a byte here (256 concurrent client calls),
     // but use a short just in case.
     private AtomicInteger clientCallCounter = new AtomicInteger(CLIENT_COUNTER_INIT);
+    private AtomicInteger batchCounter = new AtomicInteger(CLIENT_COUNTER_INIT);
 
     int timeoutMillis;
 
     // Metrics to expose via JMX. See TimestampClientStatistics
     // for solid definitions of each metric.
     private AtomicLong numRequests = new AtomicLong(0);
-    private AtomicLong totalRequestDuration = new AtomicLong(0);
+    private AtomicLong totalRequestDuration = new AtomicLong(0); // nanoseconds
+    private AtomicLong numBatches = new AtomicLong(0);
+    private AtomicLong numBatchedRequests = new AtomicLong(0);
+    private final LatencyHistogram requestLatency = new LatencyHistogram(); // microseconds
+    private final LatencyHistogram batchLatency = new LatencyHistogram(); // microseconds
     private TimestampHostProvider timestampHostProvider;
 
 
     public TimestampClient(int timeoutMillis,TimestampHostProvider timestampHostProvider) {
+        this(timeoutMillis,timestampHostProvider,4,1024);
+    }
+
+    /**
+     * @param maxInFlight the maximum number of batches to keep outstanding on the connection
+     * @param maxBatchSize the maximum number of timestamps to request in a single batch. The count is
+     *                     sent to the server as a short, so this is capped at {@link Short#MAX_VALUE}
+     */
+    public TimestampClient(int timeoutMillis,TimestampHostProvider timestampHostProvider,int maxInFlight,int maxBatchSize) {
         this.timeoutMillis = timeoutMillis;
         this.timestampHostProvider = timestampHostProvider;
+        this.maxInFlight = Math.max(1,maxInFlight);
+        if (maxBatchSize > Short.MAX_VALUE) {
+            SpliceLogUtils.warn(LOG, "Timestamp client batch size %s is too large, using %s instead", maxBatchSize, Short.MAX_VALUE);
+        }
+        this.maxBatchSize = Math.max(1,Math.min(maxBatchSize,Short.MAX_VALUE));
         clientCallbacks = new ConcurrentHashMap<>();
 
         ExecutorService workerExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("timestampClient-worker-%d").setDaemon(true).build());
@@ -211,7 +256,7 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     public long getNextTimestamp() throws TimestampIOException {
 
         // Measure duration of full client request for JMX
-        long requestStartTime = System.currentTimeMillis();
+        long requestStartTime = System.nanoTime();
 
         connectIfNeeded();
 
@@ -219,44 +264,21 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         final ClientCallback callback = new ClientCallback(clientCallId);
         SpliceLogUtils.debug(LOG, "Starting new client call with id %s", clientCallId);
 
-        // Add this caller (id and callback) to the map of current clients.
-        // If an entry was already present for this caller id, that is a bug,
-        // so throw an exception.
-        if (clientCallbacks.putIfAbsent(clientCallId, callback) != null) {
-            doClientErrorThrow(LOG, "Found existing client callback with caller id %s, so unable to handle new call.", null, clientCallId);
-        }
-
-        try {
-            ChannelBuffer buffer = ChannelBuffers.buffer(2);
-            buffer.writeShort(clientCallId);
-            SpliceLogUtils.trace(LOG, "Writing request message to server for client: %s", callback);
-            ChannelFuture futureWrite = channel.write(buffer);
-            futureWrite.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (!future.isSuccess()) {
-                        doClientErrorThrow(LOG, "Error writing message from timestamp client to server", future.getCause());
-                    } else {
-                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for client: %s", callback);
-                    }
-                }
-            });
-        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove client call
-            clientCallbacks.remove(clientCallId);
-            callback.error(e);
-            doClientErrorThrow(LOG, "Exception writing message to timestamp server for client: %s", e, callback);
-        }
+        pendingRequests.add(callback);
+        sendPendingRequests();
 
-        // If we get here, request was successfully sent without exception.
-        // However, we might not have received response yet, so we need to
-        // wait for that now.
+        // We might not have sent the request yet (if there are already too many batches
+        // in flight), or received the response, so we need to wait for that now.
 
         try {
             boolean success = callback.await(timeoutMillis);
             if (!success) {
+                // don't send a request nobody is waiting for any more
+                pendingRequests.remove(callback);
                 doClientErrorThrow(LOG, "Client timed out after %s ms waiting for new timestamp: %s", null, timeoutMillis, callback);
             }
         } catch (InterruptedException e) {
+            pendingRequests.remove(callback);
             doClientErrorThrow(LOG, "Interrupted waiting for timestamp client: %s", e, callback);
         }
 
@@ -265,41 +287,117 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         long timestamp = callback.getNewTimestamp();
         if (timestamp < 0) {
-            doClientErrorThrow(LOG, "Invalid timestamp found for client: %s", null, callback);
+            doClientErrorThrow(LOG, "Invalid timestamp found for client: %s", callback.getException(), callback);
         }
 
         SpliceLogUtils.debug(LOG, "Client call complete: %s", callback);
 
         // Since request was successful, update JMX metrics
+        long duration = System.nanoTime() - requestStartTime;
         numRequests.incrementAndGet();
-        totalRequestDuration.addAndGet(System.currentTimeMillis() - requestStartTime);
+        totalRequestDuration.addAndGet(duration);
+        requestLatency.update(TimeUnit.NANOSECONDS.toMicros(duration));
 
         return timestamp;
     }
 
+    /**
+     * Send the pending requests, in as many batches as we are allowed to have in flight. Anything
+     * left over is sent by whichever thread receives the next response.
+     */
+    private void sendPendingRequests() {
+        while (!pendingRequests.isEmpty()) {
+            int inFlight = batchesInFlight.get();
+            if (inFlight >= maxInFlight) return;
+            if (!batchesInFlight.compareAndSet(inFlight, inFlight + 1)) continue;
+
+            Batch batch = new Batch((short) batchCounter.getAndIncrement());
+            ClientCallback next;
+            while (batch.size() < maxBatchSize && (next = pendingRequests.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.size() == 0) {
+                batchesInFlight.decrementAndGet(); // someone else took them first
+                continue;
+            }
+            sendBatch(batch);
+        }
+    }
+
+    private void sendBatch(final Batch batch) {
+        // Add this batch (id and callbacks) to the map of outstanding batches.
+        // If an entry was already present for this id, that is a bug, so fail the batch.
+        batch.sentTime = System.nanoTime();
+        if (clientCallbacks.putIfAbsent(batch.id, batch) != null) {
+            batchesInFlight.decrementAndGet();
+            batch.error(new TimestampIOException("Found existing batch with id " + batch.id + ", so unable to send new batch"));
+            return;
+        }
+
+        try {
+            Channel c = channel;
+            if (c == null) {
+                throw new TimestampIOException("Not connected to TimestampServer");
+            }
+            ChannelBuffer buffer = ChannelBuffers.buffer(4);
+            buffer.writeShort(batch.id);
+            buffer.writeShort(batch.size());
+            SpliceLogUtils.trace(LOG, "Writing request message to server for batch: %s", batch);
+            ChannelFuture futureWrite = c.write(buffer);
+            futureWrite.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        failBatch(batch.id, new TimestampIOException("Error writing message from timestamp client to server", future.getCause()));
+                    } else {
+                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for batch: %s", batch);
+                    }
+                }
+            });
+        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove the batch
+            SpliceLogUtils.error(LOG, "Exception writing message to timestamp server for batch: %s", e, batch);
+            failBatch(batch.id, e);
+        }
+    }
+
+    private void failBatch(short batchId, Exception e) {
+        Batch batch = clientCallbacks.remove(batchId);
+        if (batch == null) return; // already completed or failed
+        batchesInFlight.decrementAndGet();
+        batch.error(e);
+        sendPendingRequests();
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         ChannelBuffer buf = (ChannelBuffer) e.getMessage();
         assert (buf != null);
         ensureReadableBytes(buf, FIXED_MSG_RECEIVED_LENGTH);
 
-        short clientCallerId = buf.readShort();
+        short batchId = buf.readShort();
         ensureReadableBytes(buf, 8);
 
         long timestamp = buf.readLong();
         assert (timestamp > 0);
         ensureReadableBytes(buf, 0);
 
-        SpliceLogUtils.debug(LOG, "Response from server: clientCallerId = %s, timestamp = %s", clientCallerId, timestamp);
-        Callback cb = clientCallbacks.remove(clientCallerId);
-        if (cb == null) {
-            doClientErrorThrow(LOG, "Client callback with id %s not found, so unable to deliver timestamp %s", null, clientCallerId, timestamp);
+        SpliceLogUtils.debug(LOG, "Response from server: batchId = %s, first timestamp = %s", batchId, timestamp);
+        Batch batch = clientCallbacks.remove(batchId);
+        if (batch == null) {
+            doClientErrorThrow(LOG, "Batch with id %s not found, so unable to deliver timestamp %s", null, batchId, timestamp);
         }
+        batchesInFlight.decrementAndGet();
+        numBatches.incrementAndGet();
+        numBatchedRequests.addAndGet(batch.size());
+        batchLatency.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - batch.sentTime));
+
+        // This releases the latches the original client threads are waiting for
+        // (to provide the synchronous behavior for those callers) and also
+        // provides the timestamps.
+        batch.complete(timestamp);
 
-        // This releases the latch the original client thread is waiting for
-        // (to provide the synchronous behavior for that caller) and also
-        // provides the timestamp.
-        cb.complete(timestamp);
+        // and send anything which queued up while we were waiting
+        sendPendingRequests();
 
         super.messageReceived(ctx, e);
     }
@@ -322,6 +420,10 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
             channel=null;
             shouldContinue = !state.compareAndSet(s,State.DISCONNECTED);
         }while(shouldContinue);
+        // outstanding batches will never be answered, so fail them rather than leave the callers waiting
+        for(Short batchId : clientCallbacks.keySet()){
+            failBatch(batchId, new TimestampIOException("TimestampClient was disconnected from the server"));
+        }
         connectIfNeeded();
     }
 
@@ -348,11 +450,53 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
     @Override
     public double getAvgTimestampRequestDuration() {
-        double a = (double) totalRequestDuration.get();
+        double a = (double) TimeUnit.NANOSECONDS.toMillis(totalRequestDuration.get());
         double b = (double) numRequests.get();
         return a / b;
     }
 
+    @Override
+    public long getNumberTimestampBatches() {
+        return numBatches.get();
+    }
+
+    @Override
+    public double getAvgTimestampBatchSize() {
+        long b = numBatches.get();
+        if (b == 0) return 0d;
+        return (double) numBatchedRequests.get() / b;
+    }
+
+    @Override
+    public long getTimestampRequestLatencyP50() {
+        return requestLatency.getP50Latency();
+    }
+
+    @Override
+    public long getTimestampRequestLatencyP95() {
+        return requestLatency.getP95Latency();
+    }
+
+    @Override
+    public long getTimestampRequestLatencyP99() {
+        return requestLatency.getP99Latency();
+    }
+
+    @Override
+    public long getTimestampRequestLatencyMax() {
+        return requestLatency.getMaxLatency();
+    }
+
+    @Override
+    public long getTimestampBatchLatencyP50() {
+        return batchLatency.getP50Latency();
+    }
+
+    @Override
+    public long getTimestampBatchLatencyP99() {
+        return batchLatency.getP99Latency();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         if(state.get() != State.SHUTDOWN) {
@@ -360,6 +504,47 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         }
     }
 
+    /**
+     * The requests sent to the server in a single message, which are answered with
+     * a contiguous range of timestamps (one per request, in order).
+     */
+    private static class Batch implements Callback {
+        private final short id;
+        private final List<ClientCallback> callbacks = new ArrayList<>();
+        private long sentTime;
+
+        Batch(short id) {
+            this.id = id;
+        }
+
+        void add(ClientCallback callback) {
+            callbacks.add(callback);
+        }
+
+        int size() {
+            return callbacks.size();
+        }
+
+        @Override
+        public void complete(long firstTimestamp) {
+            for (int i = 0; i < callbacks.size(); i++) {
+                callbacks.get(i).complete(firstTimestamp + i);
+            }
+        }
+
+        @Override
+        public void error(Exception e) {
+            for (ClientCallback callback : callbacks) {
+                callback.error(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Batch (id = " + id + ", size = " + callbacks.size() + ")";
+        }
+    }
+
     public static void doClientErrorThrow(Logger logger, String message, Throwable t, Object... args) throws TimestampIOException {
         if (message == null) message = "";
         TimestampIOException t1 = t != null ? new TimestampIOException(message, t) : new TimestampIOException(message);
@@ -64,7 +64,7 @@ public class TimestampOracle implements TimestampOracleStatistics{
 		return to;
 	}
 	
-	private TimestampOracle(TimestampBlockManager timestampBlockManager, int blockSize) throws TimestampIOException {
+	TimestampOracle(TimestampBlockManager timestampBlockManager, int blockSize) throws TimestampIOException {
         this.timestampBlockManager=timestampBlockManager;
         this.blockSize = blockSize;
 		initialize();
@@ -88,19 +88,35 @@ public class TimestampOracle implements TimestampOracleStatistics{
     }
 
 	public long getNextTimestamp() throws TimestampIOException {
-		long nextTS = _timestampCounter.getAndIncrement();
+		return getNextTimestamps(1);
+	}
+
+    /**
+     * Allocate a contiguous range of timestamps.
+     *
+     * @param count the number of timestamps to allocate
+     * @return the first timestamp of the range; the range is {@code [first, first+count)}
+     * @throws TimestampIOException
+     */
+	public long getNextTimestamps(int count) throws TimestampIOException {
+		assert count>0: "Must request at least one timestamp";
+		long nextTS = _timestampCounter.getAndAdd(count);
+		long lastTS = nextTS+count-1;
 		long maxTS = _maxReservedTimestamp; // avoid the double volatile read
-		if (nextTS > maxTS) {
-			reserveNextBlock(maxTS);
+		if (lastTS > maxTS) {
+			reserveThrough(lastTS);
 		}
-		_numTimestampsCreated.incrementAndGet(); // JMX metric
+		_numTimestampsCreated.addAndGet(count); // JMX metric
 		return nextTS;
 	}
 
-    private void reserveNextBlock(long priorMaxReservedTimestamp) throws TimestampIOException {
+    private void reserveThrough(long timestamp) throws TimestampIOException {
         synchronized(this)  {
-            if (_maxReservedTimestamp > priorMaxReservedTimestamp) return; // some other thread got there first
+            if (_maxReservedTimestamp >= timestamp) return; // some other thread got there first
             long nextMax = _maxReservedTimestamp + blockSize;
+            while (nextMax < timestamp) {
+                nextMax += blockSize;
+            }
             timestampBlockManager.reserveNextBlock(nextMax);
             _maxReservedTimestamp = nextMax;
             _numBlocksReserved.incrementAndGet(); // JMX metric
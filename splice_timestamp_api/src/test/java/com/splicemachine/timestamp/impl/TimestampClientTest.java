@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampHostProvider;
+import com.splicemachine.timestamp.api.TimestampIOException;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class TimestampClientTest{
+    private final BlockingQueue<ChannelBuffer> requests=new LinkedBlockingQueue<>();
+    private final List<Thread> callers=new ArrayList<>();
+    private final ChannelHandlerContext ctx=mock(ChannelHandlerContext.class);
+    private Channel channel;
+    private TimestampClient client;
+
+    @After
+    public void tearDown() throws Exception{
+        if(client!=null)
+            client.shutdown();
+    }
+
+    @Test
+    public void testQueuedRequestsAreSplitAtMaxBatchSize() throws Exception{
+        connect(60000,1,2,false);
+
+        List<FutureTask<Long>> results=new ArrayList<>();
+        results.add(call());
+        ChannelBuffer first=nextRequest();
+        Assert.assertEquals("First request should be sent on its own!",1,first.getShort(2));
+
+        //these all queue up behind the batch in flight
+        for(int i=0;i<5;i++){
+            results.add(call());
+        }
+        waitUntilCallersAreWaiting();
+
+        respond(first.getShort(0),10l);
+        ChannelBuffer second=nextRequest();
+        respond(second.getShort(0),20l);
+        ChannelBuffer third=nextRequest();
+        respond(third.getShort(0),30l);
+        ChannelBuffer fourth=nextRequest();
+        respond(fourth.getShort(0),40l);
+
+        Assert.assertEquals("Queued requests were not sent at the maximum batch size!",
+                Arrays.asList(2,2,1),Arrays.asList((int)second.getShort(2),(int)third.getShort(2),(int)fourth.getShort(2)));
+        Assert.assertTrue("Too many requests were sent!",requests.isEmpty());
+
+        //each caller in a batch gets its own timestamp from the range
+        Set<Long> timestamps=new HashSet<>();
+        for(FutureTask<Long> result:results){
+            timestamps.add(result.get(10,TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList(10l,20l,21l,30l,31l,40l)),timestamps);
+    }
+
+    @Test
+    public void testBatchIdsWrapAround() throws Exception{
+        connect(60000,1,1,true);
+
+        int calls=(1<<16)+1000;
+        for(int i=1;i<=calls;i++){
+            Assert.assertEquals("Wrong timestamp!",i,client.getNextTimestamp());
+        }
+        Set<Short> batchIds=new HashSet<>();
+        ChannelBuffer request;
+        while((request=requests.poll())!=null){
+            batchIds.add(request.getShort(0));
+        }
+        Assert.assertEquals("Batch ids did not cover every short!",1<<16,batchIds.size());
+    }
+
+    @Test
+    public void testTimedOutRequestIsNotSent() throws Exception{
+        connect(50,1,10,false);
+
+        try{
+            client.getNextTimestamp();
+            Assert.fail("Request should have timed out");
+        }catch(TimestampIOException expected){ }
+        ChannelBuffer inFlight=nextRequest();
+
+        //queued behind the unanswered batch, so it times out before being sent
+        try{
+            client.getNextTimestamp();
+            Assert.fail("Request should have timed out");
+        }catch(TimestampIOException expected){ }
+
+        respond(inFlight.getShort(0),10l);
+        Assert.assertTrue("A timed out request was sent to the server!",requests.isEmpty());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void connect(int timeoutMillis,int maxInFlight,int maxBatchSize,final boolean answerImmediately) throws Exception{
+        client=new TimestampClient(timeoutMillis,mock(TimestampHostProvider.class),maxInFlight,maxBatchSize);
+        channel=mock(Channel.class);
+        final ChannelFuture written=mock(ChannelFuture.class);
+        when(channel.write(any())).thenAnswer(new Answer<ChannelFuture>(){
+            private long nextTimestamp=1l;
+
+            @Override
+            public ChannelFuture answer(InvocationOnMock invocation) throws Throwable{
+                ChannelBuffer request=(ChannelBuffer)invocation.getArguments()[0];
+                requests.add(request);
+                if(answerImmediately){
+                    respond(request.getShort(0),nextTimestamp);
+                    nextTimestamp+=request.getShort(2);
+                }
+                return written;
+            }
+        });
+        ChannelStateEvent connected=mock(ChannelStateEvent.class);
+        when(connected.getChannel()).thenReturn(channel);
+        client.channelConnected(ctx,connected);
+    }
+
+    private void respond(short batchId,long firstTimestamp) throws Exception{
+        ChannelBuffer response=ChannelBuffers.buffer(TimestampServer.FIXED_MSG_SENT_LENGTH);
+        response.writeShort(batchId);
+        response.writeLong(firstTimestamp);
+        client.messageReceived(ctx,new UpstreamMessageEvent(channel,response,null));
+    }
+
+    private ChannelBuffer nextRequest() throws InterruptedException{
+        ChannelBuffer request=requests.poll(10,TimeUnit.SECONDS);
+        Assert.assertNotNull("No request was sent",request);
+        return request;
+    }
+
+    private FutureTask<Long> call(){
+        FutureTask<Long> task=new FutureTask<>(new Callable<Long>(){
+            @Override
+            public Long call() throws Exception{
+                return client.getNextTimestamp();
+            }
+        });
+        Thread t=new Thread(task);
+        t.setDaemon(true);
+        t.start();
+        callers.add(t);
+        return task;
+    }
+
+    private void waitUntilCallersAreWaiting() throws InterruptedException{
+        //once a caller is waiting for its timestamp, its request has been sent or queued
+        long deadline=System.currentTimeMillis()+10000;
+        for(Thread t:callers){
+            while(t.getState()!=Thread.State.TIMED_WAITING || !isWaitingForTimestamp(t)){
+                Assert.assertTrue("Caller never started waiting",System.currentTimeMillis()<deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static boolean isWaitingForTimestamp(Thread t){
+        for(StackTraceElement element:t.getStackTrace()){
+            if(element.getClassName().equals(ClientCallback.class.getName()) && element.getMethodName().equals("await"))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampBlockManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class TimestampOracleTest{
+
+    @Test
+    public void testRangesAreContiguous() throws Exception{
+        TimestampBlockManager blockManager=mock(TimestampBlockManager.class);
+        when(blockManager.initialize()).thenReturn(0l);
+        TimestampOracle oracle=new TimestampOracle(blockManager,10);
+
+        Assert.assertEquals(1l,oracle.getNextTimestamps(1));
+        Assert.assertEquals(2l,oracle.getNextTimestamps(5));
+        Assert.assertEquals(7l,oracle.getNextTimestamps(3));
+        Assert.assertEquals(10l,oracle.getNextTimestamp());
+        Assert.assertEquals(10l,oracle.getNumberTimestampsCreated());
+    }
+
+    @Test
+    public void testReservesOnlyWhenTheBlockIsUsedUp() throws Exception{
+        TimestampBlockManager blockManager=mock(TimestampBlockManager.class);
+        when(blockManager.initialize()).thenReturn(0l);
+        TimestampOracle oracle=new TimestampOracle(blockManager,10);
+
+        oracle.getNextTimestamps(10); //[1,10]
+        verify(blockManager).reserveNextBlock(10l);
+        oracle.getNextTimestamps(1); //11
+        verify(blockManager).reserveNextBlock(20l);
+        oracle.getNextTimestamps(9); //[12,20] fits in the reserved block
+        verifyNoMoreInteractions(ignoreInit(blockManager));
+        Assert.assertEquals(2l,oracle.getNumberBlocksReserved());
+    }
+
+    @Test
+    public void testRangeLargerThanABlockReservesInOneStep() throws Exception{
+        TimestampBlockManager blockManager=mock(TimestampBlockManager.class);
+        when(blockManager.initialize()).thenReturn(100l);
+        TimestampOracle oracle=new TimestampOracle(blockManager,10);
+
+        //[101,125] needs three more blocks, which should be reserved with a single call
+        Assert.assertEquals(101l,oracle.getNextTimestamps(25));
+        verify(blockManager).reserveNextBlock(130l);
+        verifyNoMoreInteractions(ignoreInit(blockManager));
+        Assert.assertEquals(1l,oracle.getNumberBlocksReserved());
+        Assert.assertEquals(126l,oracle.getNextTimestamp());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static TimestampBlockManager ignoreInit(TimestampBlockManager blockManager) throws Exception{
+        verify(blockManager).initialize();
+        return blockManager;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampBlockManager;
+import com.splicemachine.timestamp.api.TimestampIOException;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class TimestampServerHandlerTest{
+    private TimestampServerHandler handler;
+    private Channel channel;
+
+    @Before
+    public void setUp() throws Exception{
+        TimestampBlockManager blockManager=mock(TimestampBlockManager.class);
+        when(blockManager.initialize()).thenReturn(0l);
+        handler=new TimestampServerHandler(blockManager,1000);
+        handler.initializeIfNeeded();
+        channel=mock(Channel.class);
+    }
+
+    @Test
+    public void testAnswersWithTheFirstTimestampOfTheRange() throws Exception{
+        ChannelBuffer first=request((short)7,(short)3);
+        ChannelBuffer second=request((short)8,(short)2);
+
+        Assert.assertEquals("Wrong batch id!",7,first.readShort());
+        Assert.assertEquals("Wrong batch id!",8,second.readShort());
+        //the first request was given three timestamps, so the second range starts right after them
+        Assert.assertEquals(first.readLong()+3,second.readLong());
+    }
+
+    @Test
+    public void testLargestBatchIsAllowed() throws Exception{
+        ChannelBuffer first=request((short)1,Short.MAX_VALUE);
+        ChannelBuffer second=request((short)2,(short)1);
+
+        first.readShort();
+        second.readShort();
+        Assert.assertEquals(first.readLong()+Short.MAX_VALUE,second.readLong());
+    }
+
+    @Test(expected=TimestampIOException.class)
+    public void testRejectsEmptyRequest() throws Exception{
+        request((short)1,(short)0);
+    }
+
+    @Test(expected=TimestampIOException.class)
+    public void testRejectsNegativeCount() throws Exception{
+        //anything above Short.MAX_VALUE wraps around to a negative count on the wire
+        request((short)1,(short)(Short.MAX_VALUE+1));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ChannelBuffer request(short batchId,short count) throws Exception{
+        ChannelBuffer buffer=ChannelBuffers.buffer(TimestampServer.FIXED_MSG_RECEIVED_LENGTH);
+        buffer.writeShort(batchId);
+        buffer.writeShort(count);
+        MessageEvent event=mock(MessageEvent.class);
+        when(event.getMessage()).thenReturn(buffer);
+        when(event.getChannel()).thenReturn(channel);
+        reset(channel);
+        when(channel.write(any())).thenReturn(mock(ChannelFuture.class));
+
+        handler.messageReceived(mock(ChannelHandlerContext.class),event);
+
+        ArgumentCaptor<Object> response=ArgumentCaptor.forClass(Object.class);
+        verify(channel).write(response.capture());
+        ChannelBuffer answer=(ChannelBuffer)response.getValue();
+        Assert.assertEquals("Wrong response length!",TimestampServer.FIXED_MSG_SENT_LENGTH,answer.readableBytes());
+        return answer;
+    }
+}
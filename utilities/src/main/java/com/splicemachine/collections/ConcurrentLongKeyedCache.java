@@ -0,0 +1,203 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.collections;
+
+import org.spark_project.guava.cache.CacheStats;
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe, lock-free Cache that is keyed by a primitive long.
+ *
+ * The cache is set-associative: each key hashes to a single set of {@link #WAYS} slots, and may only
+ * be held in one of those slots. Lookups scan the set without taking any locks, and inserts
+ * claim a slot with a compare-and-swap. Because a set never changes size, entries never move once
+ * they are placed, so readers never observe a partially updated table.
+ *
+ * When a set is full, an entry is evicted using the CLOCK algorithm within the set: each entry carries
+ * a reference bit which is set whenever it is read, and the set's clock hand sweeps the set, clearing reference
+ * bits until it finds an entry which has not been read since the hand last passed it. This approximates
+ * LRU without requiring any shared structure to be updated on reads.
+ *
+ * Hit, request and eviction counts are kept in striped counters, so that threads reading the cache
+ * do not contend on a single memory location.
+ *
+ * Because concurrent writers can race on the same set, this cache only offers best-effort semantics: an inserted
+ * entry may be dropped, or evicted earlier than strict CLOCK would require, and the same key may briefly occupy
+ * two slots of a set. Callers must tolerate misses for entries which were previously inserted.
+ *
+ * @param <T> the type of cached values
+ */
+public class ConcurrentLongKeyedCache<T>{
+    /*The number of slots in each set*/
+    static final int WAYS=8;
+
+    private final AtomicReferenceArray<Entry<T>> entries;
+    private final int[] clockHands;
+    private final int setMask;
+    private final int maxSize;
+    private final Hash32 hashFunction;
+
+    private final LongAdder size=new LongAdder();
+    private final LongAdder requests=new LongAdder();
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder evictions=new LongAdder();
+
+    public ConcurrentLongKeyedCache(int maxSize){
+        this(maxSize,HashFunctions.murmur3(0));
+    }
+
+    public ConcurrentLongKeyedCache(int maxSize,Hash32 hashFunction){
+        assert maxSize>0: "Cannot create an empty cache!";
+        int numSets=1;
+        while(numSets*WAYS<maxSize){
+            numSets<<=1;
+        }
+        this.maxSize=numSets*WAYS;
+        this.entries=new AtomicReferenceArray<>(this.maxSize);
+        this.clockHands=new int[numSets];
+        this.setMask=numSets-1;
+        this.hashFunction=hashFunction;
+    }
+
+    /**
+     * @param key the key to lookup
+     * @return the element attached to the specified key, or {@code null} if no element with
+     * {@code key} is present in the cache
+     */
+    public T get(long key){
+        requests.increment();
+        Entry<T> e=find(key);
+        if(e==null) return null;
+        if(!e.referenced)
+            e.referenced=true; //only write if we need to, to keep the cache line clean
+        hits.increment();
+        return e.value;
+    }
+
+    /**
+     * Determine whether {@code key} is present, without affecting either the statistics or the
+     * eviction order of the cache.
+     *
+     * @param key the key to lookup
+     * @return true if an element with {@code key} is present in the cache
+     */
+    public boolean contains(long key){
+        return find(key)!=null;
+    }
+
+    /**
+     * Put the specified element in the cache. If an element with the same key is already
+     * present, it is kept instead.
+     *
+     * @param key the key for the element.
+     * @param value the value for the element.
+     * @return true if the element was added to the cache.
+     */
+    public boolean put(long key,T value){
+        assert value!=null: "Cannot insert a null value!";
+        int set=set(key);
+        int start=set*WAYS;
+        int empty=-1;
+        for(int i=start;i<start+WAYS;i++){
+            Entry<T> e=entries.get(i);
+            if(e==null){
+                if(empty<0) empty=i;
+            }else if(e.key==key)
+                return false;
+        }
+        Entry<T> newEntry=new Entry<>(key,value);
+        if(empty>=0 && entries.compareAndSet(empty,null,newEntry)){
+            size.increment();
+            return true;
+        }
+
+        /*
+         * The set is full, so sweep the clock hand over it. The first pass over an entry clears its
+         * reference bit, so we are guaranteed to find a victim within two passes, unless we keep losing
+         * races with other writers, in which case we just give up--this is only a cache, after all.
+         */
+        for(int sweep=0;sweep<2*WAYS;sweep++){
+            int pos=start+(clockHands[set]++ & (WAYS-1));
+            Entry<T> e=entries.get(pos);
+            if(e==null){
+                if(entries.compareAndSet(pos,null,newEntry)){
+                    size.increment();
+                    return true;
+                }
+            }else if(e.referenced){
+                e.referenced=false;
+            }else if(entries.compareAndSet(pos,e,newEntry)){
+                evictions.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the current size of this cache
+     */
+    public int size(){
+        return size.intValue();
+    }
+
+    /**
+     * @return the maximum number of elements which this cache can hold.
+     */
+    public int maxSize(){
+        return maxSize;
+    }
+
+    public CacheStats getStats(){
+        long requestCount=requests.sum();
+        long hitCount=hits.sum();
+        return new CacheStats(hitCount,Math.max(0l,requestCount-hitCount),0l,0l,0l,evictions.sum());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Entry<T> find(long key){
+        int start=set(key)*WAYS;
+        for(int i=start;i<start+WAYS;i++){
+            Entry<T> e=entries.get(i);
+            if(e!=null && e.key==key)
+                return e;
+        }
+        return null;
+    }
+
+    private int set(long key){
+        return hashFunction.hash(key) & setMask;
+    }
+
+    private static final class Entry<T>{
+        private final long key;
+        private final T value;
+        /*
+         * Deliberately not volatile: the reference bit is only a hint for eviction, and a lost
+         * update just means that an entry gets one more (or one fewer) pass of the clock hand
+         */
+        private boolean referenced;
+
+        Entry(long key,T value){
+            this.key=key;
+            this.value=value;
+        }
+    }
+}
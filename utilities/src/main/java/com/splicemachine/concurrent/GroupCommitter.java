@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.concurrent;
+
+import com.splicemachine.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces writes which arrive from many threads into batches, so that a group of them may be
+ * made durable with a single (expensive) operation, such as a WAL sync.
+ *
+ * Callers which arrive while no batch is open start a new batch and become its <em>leader</em>. Later
+ * callers join the open batch as <em>followers</em>. The leader closes the batch once it reaches
+ * {@code maxBatchSize} elements, or once {@code maxWait} has elapsed, whichever comes first, and
+ * writes it; followers simply wait for the leader to finish. Only one batch is written at a time, so while
+ * one batch is being written the next one keeps filling; this means that writes are coalesced under load
+ * even when {@code maxWait} is zero, without adding latency to a lone writer.
+ *
+ * Every caller returns only once the batch holding its element has been written, and sees either the failure
+ * of the batch as a whole, or the failure of its own element.
+ */
+@ThreadSafe
+public class GroupCommitter<T>{
+
+    public interface BatchWriter<T>{
+        /**
+         * Write a batch of elements.
+         *
+         * @param batch the elements to write, in arrival order
+         * @return {@code null} if every element was written, otherwise an array holding, at each position of
+         * {@code batch}, the error for that element (or {@code null} if that element was written)
+         * @throws IOException if the batch as a whole could not be written
+         */
+        IOException[] write(List<T> batch) throws IOException;
+    }
+
+    private final BatchWriter<T> writer;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private Batch<T> open;
+    private boolean writing;
+
+    private final AtomicLong batchesWritten = new AtomicLong(0l);
+    private final AtomicLong elementsWritten = new AtomicLong(0l);
+
+    public GroupCommitter(BatchWriter<T> writer,int maxBatchSize,long maxWait,TimeUnit waitUnit){
+        this(writer,maxBatchSize,maxWait,waitUnit,SystemClock.INSTANCE);
+    }
+
+    public GroupCommitter(BatchWriter<T> writer,int maxBatchSize,long maxWait,TimeUnit waitUnit,Clock clock){
+        assert maxBatchSize>0: "Batch size must be positive";
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = waitUnit.toNanos(maxWait);
+        this.clock = clock;
+    }
+
+    /**
+     * Write {@code element} as part of a group, returning once it is durable.
+     *
+     * @param element the element to write
+     * @throws IOException if the element could not be written
+     */
+    public void write(T element) throws IOException{
+        Batch<T> batch;
+        int position;
+        boolean leader;
+        lock.lock();
+        try{
+            batch = open;
+            leader = batch==null;
+            if(leader){
+                batch = new Batch<>(clock.nanoTime()+maxWaitNanos);
+                open = batch;
+            }
+            position = batch.elements.size();
+            batch.elements.add(element);
+            if(batch.elements.size()>=maxBatchSize){
+                open = null;
+                changed.signalAll();
+            }
+
+            if(leader)
+                lead(batch);
+            else
+                follow(batch);
+        }finally{
+            lock.unlock();
+        }
+        if(batch.failure!=null)
+            throw batch.failure;
+        if(batch.errors!=null && batch.errors[position]!=null)
+            throw batch.errors[position];
+    }
+
+    public long getBatchesWritten(){
+        return batchesWritten.get();
+    }
+
+    public long getElementsWritten(){
+        return elementsWritten.get();
+    }
+
+    /**
+     * @return the number of elements in the batch which is currently open (i.e. waiting to be written)
+     */
+    public int getPendingElements(){
+        lock.lock();
+        try{
+            return open==null? 0 : open.elements.size();
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /*
+     * Called with the lock held, and returns with it held
+     */
+    private void lead(Batch<T> batch){
+        boolean interrupted = false;
+        while(writing || open==batch){
+            try{
+                if(writing){
+                    changed.await();
+                }else{
+                    long remaining = batch.deadline-clock.nanoTime();
+                    if(remaining<=0) break;
+                    changed.awaitNanos(remaining);
+                }
+            }catch(InterruptedException ie){
+                /*
+                 * The followers in this batch depend on us to write it, so we can't give up; instead
+                 * we carry on, and restore the interrupt once the batch is written
+                 */
+                interrupted = true;
+            }
+        }
+        if(open==batch)
+            open = null;
+        writing = true;
+        lock.unlock();
+        boolean completed = false;
+        try{
+            batch.errors = writer.write(batch.elements);
+            completed = true;
+        }catch(IOException e){
+            batch.failure = e;
+            completed = true;
+        }catch(RuntimeException e){
+            batch.failure = new IOException(e);
+            completed = true;
+        }finally{
+            /*
+             * If the writer threw an Error, it propagates to the leader; the followers must still see
+             * that their elements were not written, rather than returning as if they were durable
+             */
+            if(!completed)
+                batch.failure = new IOException("Batch write did not complete");
+            lock.lock();
+            writing = false;
+            batch.done = true;
+            batchesWritten.incrementAndGet();
+            elementsWritten.addAndGet(batch.elements.size());
+            changed.signalAll();
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /*
+     * Called with the lock held, and returns with it held
+     */
+    private void follow(Batch<T> batch){
+        boolean interrupted = false;
+        while(!batch.done){
+            try{
+                changed.await();
+            }catch(InterruptedException e){
+                /*
+                 * Our element is already in the batch, and the leader will write it whether we wait or not;
+                 * giving up now would tell the caller the write failed when it may well be durable. So we
+                 * wait for the outcome, and restore the interrupt once we have it
+                 */
+                interrupted = true;
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static class Batch<T>{
+        private final List<T> elements = new ArrayList<>();
+        private final long deadline;
+        private boolean done;
+        private IOException[] errors;
+        private IOException failure;
+
+        Batch(long deadline){
+            this.deadline=deadline;
+        }
+    }
+}
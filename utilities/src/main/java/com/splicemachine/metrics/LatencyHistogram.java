@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe, fixed-size histogram of latencies (or any other non-negative values).
+ *
+ * Values are counted in log-linear buckets: values below 16 each get their own bucket, and every
+ * power of two above that is divided into 8 equal buckets. Percentiles are therefore exact for small
+ * values, and within 12.5% of the true value otherwise. Recording a value costs a few atomic
+ * increments, and never allocates.
+ *
+ * The unit of the values is up to the caller; every statistic is reported in the same unit.
+ */
+public class LatencyHistogram implements LatencyView{
+    private static final int LINEAR_BUCKETS=16;
+    private static final int SUB_BUCKET_BITS=3;
+    private static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT=4; //log2(LINEAR_BUCKETS)
+    private static final int NUM_BUCKETS=LINEAR_BUCKETS+(63-MIN_EXPONENT)*SUB_BUCKETS;
+
+    private final AtomicLongArray buckets=new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count=new AtomicLong(0L);
+    private final AtomicLong total=new AtomicLong(0L);
+    private final AtomicLong min=new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max=new AtomicLong(0L);
+
+    public void update(long value){
+        if(value<0) value=0;
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long m;
+        while(value<(m=min.get())){
+            if(min.compareAndSet(m,value)) break;
+        }
+        while(value>(m=max.get())){
+            if(max.compareAndSet(m,value)) break;
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    /**
+     * @param percentile the percentile to compute, between 0 and 1
+     * @return the (approximate) value below which {@code percentile} of the recorded values fall, or 0 if
+     * no values have been recorded.
+     */
+    public long getPercentile(double percentile){
+        long n=count.get();
+        if(n<=0) return 0L;
+        long rank=(long)Math.ceil(percentile*n);
+        if(rank<1) rank=1;
+        long seen=0L;
+        for(int i=0;i<NUM_BUCKETS;i++){
+            seen+=buckets.get(i);
+            if(seen>=rank)
+                return Math.min(upperBound(i),max.get());
+        }
+        return max.get();
+    }
+
+    @Override public double getOverallLatency(){
+        long n=count.get();
+        return n==0? 0d : ((double)total.get())/n;
+    }
+
+    @Override public long getP25Latency(){ return getPercentile(0.25d); }
+    @Override public long getP50Latency(){ return getPercentile(0.50d); }
+    @Override public long getP75Latency(){ return getPercentile(0.75d); }
+    @Override public long getP90Latency(){ return getPercentile(0.90d); }
+    @Override public long getP95Latency(){ return getPercentile(0.95d); }
+    @Override public long getP99Latency(){ return getPercentile(0.99d); }
+
+    @Override
+    public long getMinLatency(){
+        long m=min.get();
+        return m==Long.MAX_VALUE? 0L : m;
+    }
+
+    @Override
+    public long getMaxLatency(){
+        return max.get();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    static int bucket(long value){
+        if(value<LINEAR_BUCKETS) return (int)value;
+        int exponent=63-Long.numberOfLeadingZeros(value);
+        int subBucket=(int)(value>>>(exponent-SUB_BUCKET_BITS))&(SUB_BUCKETS-1);
+        return LINEAR_BUCKETS+(exponent-MIN_EXPONENT)*SUB_BUCKETS+subBucket;
+    }
+
+    static long upperBound(int bucket){
+        if(bucket<LINEAR_BUCKETS) return bucket;
+        int exponent=(bucket-LINEAR_BUCKETS)/SUB_BUCKETS+MIN_EXPONENT;
+        long subBucket=(bucket-LINEAR_BUCKETS)%SUB_BUCKETS;
+        long lowerBound=(1L<<exponent)+(subBucket<<(exponent-SUB_BUCKET_BITS));
+        return lowerBound+(1L<<(exponent-SUB_BUCKET_BITS))-1;
+    }
+}
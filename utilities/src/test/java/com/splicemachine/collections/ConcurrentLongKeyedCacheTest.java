@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.collections;
+
+import org.spark_project.guava.cache.CacheStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for the ConcurrentLongKeyedCache.
+ */
+public class ConcurrentLongKeyedCacheTest{
+
+    @Test
+    public void testCanPutAndThenFetch() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(16);
+        Assert.assertTrue("Did not insert!",cache.put(1l,1l));
+        Assert.assertEquals("incorrect size estimate!",1,cache.size());
+        Assert.assertEquals("Incorrect cache fetch!",1l,cache.get(1l).longValue());
+        Assert.assertNull("Found a missing key!",cache.get(2l));
+
+        CacheStats stats=cache.getStats();
+        Assert.assertEquals("Incorrect request count!",2l,stats.requestCount());
+        Assert.assertEquals("Incorrect hit count!",1l,stats.hitCount());
+    }
+
+    @Test
+    public void testPuttingSameElementInTwiceDoesNotDuplicateEntries() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(16);
+        cache.put(1l,1l);
+        Assert.assertFalse("Inserted a duplicate!",cache.put(1l,2l));
+        Assert.assertEquals("incorrect size estimate!",1,cache.size());
+        Assert.assertEquals("Existing entry was replaced!",1l,cache.get(1l).longValue());
+    }
+
+    @Test
+    public void testEvictsWhenFull() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(16);
+        int maxSize=cache.maxSize();
+        for(long i=0;i<4*maxSize;i++){
+            cache.put(i,i);
+        }
+        Assert.assertTrue("Cache grew beyond its maximum size!",cache.size()<=maxSize);
+        Assert.assertTrue("Nothing was evicted!",cache.getStats().evictionCount()>0);
+        Assert.assertEquals("Size and evictions do not account for all insertions!",
+                4*maxSize,cache.size()+cache.getStats().evictionCount());
+    }
+
+    @Test
+    public void testReferencedEntriesSurviveEviction() throws Exception{
+        //a single set, so every key competes for the same slots
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(ConcurrentLongKeyedCache.WAYS);
+        for(long i=0;i<ConcurrentLongKeyedCache.WAYS;i++){
+            cache.put(i,i);
+        }
+        Assert.assertNotNull(cache.get(0l));
+        cache.put(100l,100l);
+        Assert.assertTrue("Referenced entry was evicted!",cache.contains(0l));
+        Assert.assertTrue("New entry was not inserted!",cache.contains(100l));
+        Assert.assertEquals("Incorrect eviction count!",1l,cache.getStats().evictionCount());
+    }
+
+    @Test
+    public void testConcurrentAccessReturnsCorrectValues() throws Exception{
+        final ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(256);
+        final AtomicBoolean corrupted=new AtomicBoolean(false);
+        final CountDownLatch start=new CountDownLatch(1);
+        int numThreads=4;
+        ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+        try{
+            List<Future<Void>> futures=new ArrayList<>(numThreads);
+            for(int t=0;t<numThreads;t++){
+                final long seed=t;
+                futures.add(executor.submit(new Callable<Void>(){
+                    @Override
+                    public Void call() throws Exception{
+                        start.await();
+                        for(long i=0;i<100000;i++){
+                            long key=(i*31+seed)%1024;
+                            Long value=cache.get(key);
+                            if(value==null)
+                                cache.put(key,key);
+                            else if(value!=key)
+                                corrupted.set(true);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for(Future<Void> future:futures){
+                future.get(1,TimeUnit.MINUTES);
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertFalse("Returned the wrong value for a key!",corrupted.get());
+        Assert.assertTrue("Cache grew beyond its maximum size!",cache.size()<=cache.maxSize());
+        Assert.assertEquals("Incorrect request count!",4*100000l,cache.getStats().requestCount());
+    }
+}
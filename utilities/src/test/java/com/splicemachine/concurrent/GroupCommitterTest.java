@@ -0,0 +1,291 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitterTest{
+
+    @Test
+    public void testSingleWriterIsWrittenAlone() throws Exception{
+        final List<List<Integer>> batches = new ArrayList<>();
+        GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                batches.add(new ArrayList<>(batch));
+                return null;
+            }
+        },16,0,TimeUnit.MILLISECONDS);
+
+        committer.write(1);
+        committer.write(2);
+        Assert.assertEquals("Incorrect number of batches",2,batches.size());
+        Assert.assertEquals("Incorrect batch count",2l,committer.getBatchesWritten());
+        Assert.assertEquals("Incorrect element count",2l,committer.getElementsWritten());
+    }
+
+    @Test
+    public void testCoalescesWritesWhileABatchIsInFlight() throws Exception{
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        final List<Integer> batchSizes = new ArrayList<>();
+        final GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                synchronized(batchSizes){
+                    batchSizes.add(batch.size());
+                }
+                if(batch.contains(-1)){
+                    firstWriteStarted.countDown();
+                    try{
+                        releaseFirstWrite.await();
+                    }catch(InterruptedException e){
+                        throw new IOException(e);
+                    }
+                }
+                return null;
+            }
+        },100,0,TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try{
+            Future<Void> first = executor.submit(writeTask(committer,-1));
+            firstWriteStarted.await();
+            List<Future<Void>> rest = new ArrayList<>();
+            for(int i=0;i<10;i++){
+                rest.add(executor.submit(writeTask(committer,i)));
+            }
+            //wait until all 10 are queued behind the in-flight batch
+            while(committer.getPendingElements()<10){
+                Thread.sleep(1);
+            }
+            releaseFirstWrite.countDown();
+            first.get();
+            for(Future<Void> f:rest){
+                f.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("Incorrect number of batches",2,batchSizes.size());
+        Assert.assertEquals("Incorrect size of the coalesced batch",10,batchSizes.get(1).intValue());
+    }
+
+    @Test
+    public void testBatchIsClosedAtMaxSize() throws Exception{
+        final AtomicInteger maxSeen = new AtomicInteger(0);
+        final GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                int size = batch.size();
+                int max;
+                while((max = maxSeen.get())<size && !maxSeen.compareAndSet(max,size));
+                return null;
+            }
+        },4,10,TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try{
+            List<Future<Void>> futures = new ArrayList<>();
+            for(int i=0;i<200;i++){
+                futures.add(executor.submit(writeTask(committer,i)));
+            }
+            for(Future<Void> f:futures){
+                f.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("Batch exceeded the maximum size",maxSeen.get()<=4);
+        Assert.assertEquals("Incorrect element count",200l,committer.getElementsWritten());
+    }
+
+    @Test
+    public void testPerElementErrorsAreOnlySeenByThatElement() throws Exception{
+        GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                IOException[] errors = new IOException[batch.size()];
+                for(int i=0;i<batch.size();i++){
+                    if(batch.get(i)<0)
+                        errors[i] = new IOException("negative");
+                }
+                return errors;
+            }
+        },16,0,TimeUnit.MILLISECONDS);
+
+        committer.write(1);
+        try{
+            committer.write(-1);
+            Assert.fail("Did not see the element error");
+        }catch(IOException expected){
+            Assert.assertEquals("negative",expected.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBatchFailureIsThrown() throws Exception{
+        GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                throw new IOException("failed");
+            }
+        },16,0,TimeUnit.MILLISECONDS);
+        committer.write(1);
+    }
+
+    @Test
+    public void testFollowersFailWhenTheWriterThrowsAnError() throws Exception{
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        final GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                if(batch.contains(-1)){
+                    firstWriteStarted.countDown();
+                    try{
+                        releaseFirstWrite.await();
+                    }catch(InterruptedException e){
+                        throw new IOException(e);
+                    }
+                    return null;
+                }
+                throw new OutOfMemoryError("write failed");
+            }
+        },100,0,TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        int errors = 0;
+        int failures = 0;
+        try{
+            Future<Void> first = executor.submit(writeTask(committer,-1));
+            firstWriteStarted.await();
+            List<Future<Void>> rest = new ArrayList<>();
+            for(int i=0;i<5;i++){
+                rest.add(executor.submit(writeTask(committer,i)));
+            }
+            while(committer.getPendingElements()<5){
+                Thread.sleep(1);
+            }
+            releaseFirstWrite.countDown();
+            first.get();
+            for(Future<Void> f:rest){
+                try{
+                    f.get();
+                    Assert.fail("Write should not have succeeded");
+                }catch(ExecutionException ee){
+                    if(ee.getCause() instanceof OutOfMemoryError) errors++;
+                    else if(ee.getCause() instanceof IOException) failures++;
+                }
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("Only the leader should see the Error",1,errors);
+        Assert.assertEquals("Followers should see a failure",4,failures);
+    }
+
+    @Test
+    public void testInterruptedFollowerWaitsForItsBatch() throws Exception{
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        final List<Integer> written = new ArrayList<>();
+        final GroupCommitter<Integer> committer = new GroupCommitter<>(new GroupCommitter.BatchWriter<Integer>(){
+            @Override
+            public IOException[] write(List<Integer> batch) throws IOException{
+                synchronized(written){
+                    written.addAll(batch);
+                }
+                if(batch.contains(-1)){
+                    firstWriteStarted.countDown();
+                    try{
+                        releaseFirstWrite.await();
+                    }catch(InterruptedException e){
+                        throw new IOException(e);
+                    }
+                }
+                return null;
+            }
+        },100,0,TimeUnit.MILLISECONDS);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try{
+            Future<Void> first = executor.submit(writeTask(committer,-1));
+            firstWriteStarted.await();
+            //the leader of the second batch waits for the first to be written
+            Future<Void> leader = executor.submit(writeTask(committer,1));
+            while(committer.getPendingElements()<1){
+                Thread.sleep(1);
+            }
+            final AtomicInteger followerInterrupted = new AtomicInteger(-1);
+            final Exception[] followerError = new Exception[1];
+            Thread follower = new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        committer.write(2);
+                    }catch(Exception e){
+                        followerError[0] = e;
+                    }
+                    followerInterrupted.set(Thread.currentThread().isInterrupted()?1:0);
+                }
+            });
+            follower.start();
+            while(committer.getPendingElements()<2){
+                Thread.sleep(1);
+            }
+            follower.interrupt();
+            follower.join(100);
+            Assert.assertTrue("Follower should not return before its batch is written",follower.isAlive());
+
+            releaseFirstWrite.countDown();
+            first.get();
+            leader.get();
+            follower.join();
+            Assert.assertNull("Follower should not see a failure",followerError[0]);
+            Assert.assertEquals("Follower should have its interrupt restored",1,followerInterrupted.get());
+        }finally{
+            executor.shutdownNow();
+        }
+        synchronized(written){
+            Assert.assertTrue("Follower's element should be written",written.contains(2));
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static Callable<Void> writeTask(final GroupCommitter<Integer> committer,final int value){
+        return new Callable<Void>(){
+            @Override
+            public Void call() throws Exception{
+                committer.write(value);
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest{
+
+    @Test
+    public void testBucketsCoverEveryValue() throws Exception{
+        long[] values={0L,1L,15L,16L,17L,31L,32L,1000L,123456789L,Long.MAX_VALUE};
+        for(long value : values){
+            int bucket=LatencyHistogram.bucket(value);
+            Assert.assertTrue("Value "+value+" above its bucket's bound",value<=LatencyHistogram.upperBound(bucket));
+            if(bucket>0)
+                Assert.assertTrue("Value "+value+" within the previous bucket",value>LatencyHistogram.upperBound(bucket-1));
+        }
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketError() throws Exception{
+        LatencyHistogram histogram=new LatencyHistogram();
+        for(long i=1;i<=10000;i++){
+            histogram.update(i);
+        }
+        Assert.assertEquals(10000L,histogram.getCount());
+        Assert.assertEquals(1L,histogram.getMinLatency());
+        Assert.assertEquals(10000L,histogram.getMaxLatency());
+        Assert.assertEquals(5000.5d,histogram.getOverallLatency(),0d);
+        assertWithin(5000L,histogram.getP50Latency());
+        assertWithin(9900L,histogram.getP99Latency());
+        Assert.assertEquals("Percentile should not exceed the maximum",10000L,histogram.getPercentile(1d));
+    }
+
+    @Test
+    public void testEmptyHistogram() throws Exception{
+        LatencyHistogram histogram=new LatencyHistogram();
+        Assert.assertEquals(0L,histogram.getP99Latency());
+        Assert.assertEquals(0L,histogram.getMinLatency());
+        Assert.assertEquals(0d,histogram.getOverallLatency(),0d);
+    }
+
+    private static void assertWithin(long expected,long actual){
+        Assert.assertTrue("Expected "+actual+" to be at least "+expected,actual>=expected);
+        Assert.assertTrue("Expected "+actual+" to be within 12.5% of "+expected,actual<=expected*1.125d);
+    }
+}